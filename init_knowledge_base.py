@@ -83,7 +83,9 @@ def create_milvus_collection():
             FieldSchema(name="embedding", dtype=DataType.FLOAT_VECTOR, dim=VECTOR_DIM),  # 使用1536维向量
             FieldSchema(name="content", dtype=DataType.VARCHAR, max_length=65535),
             FieldSchema(name="category", dtype=DataType.VARCHAR, max_length=100),
-            FieldSchema(name="title", dtype=DataType.VARCHAR, max_length=500)
+            FieldSchema(name="title", dtype=DataType.VARCHAR, max_length=500),
+            # 入库时归类的知识类型（sop/general），与 Java 端 VectorSearchFilter.classifyKnowledge 一致
+            FieldSchema(name="knowledge_type", dtype=DataType.VARCHAR, max_length=16)
         ]
 
         # 创建集合模式
@@ -119,6 +121,18 @@ def create_milvus_collection():
         print(f"❌ 创建Milvus集合失败: {e}")
         return None
 
+# SOP/专家知识的识别关键词（小写），与 Java 端 VectorSearchFilter 一致
+SOP_TITLE_KEYWORDS = ("sop", "手册", "manual", "handbook")
+SOP_CATEGORY_KEYWORDS = ("sop", "专家", "expert", "standard")
+
+def classify_knowledge(title, category):
+    """按标题、分类归类知识类型，关键词不区分大小写"""
+    title = (title or "").lower()
+    category = (category or "").lower()
+    if any(k in title for k in SOP_TITLE_KEYWORDS) or any(k in category for k in SOP_CATEGORY_KEYWORDS):
+        return "sop"
+    return "general"
+
 def load_sample_data(collection):
     """加载示例数据到Milvus集合"""
     try:
@@ -145,7 +159,8 @@ def load_sample_data(collection):
         entities = [
             [data["content"] for data in sample_data],
             [data["category"] for data in sample_data],
-            [data["title"] for data in sample_data]
+            [data["title"] for data in sample_data],
+            [classify_knowledge(data["title"], data["category"]) for data in sample_data]
         ]
 
         # 注意：这里需要实际的向量数据，暂时用占位符
@@ -0,0 +1,38 @@
+package org.example.smarttransportation.component;
+
+import org.example.smarttransportation.config.ColumnarConfig;
+import org.example.smarttransportation.service.ColumnarStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 列式内存表初始化组件
+ * 应用启动后在后台加载列式内存表，不阻塞就绪；加载完成前统计分析与 NL2SQL 查询仍访问数据库。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class ColumnarStoreInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarStoreInitializer.class);
+
+    @Autowired
+    private ColumnarStore columnarStore;
+
+    @Autowired
+    private ColumnarConfig.ColumnarProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!Boolean.TRUE.equals(properties.getEnabled()) || !Boolean.TRUE.equals(properties.getLoadOnStartup())) {
+            return;
+        }
+        logger.info("开始在后台加载列式内存表: {}", properties.getTables());
+        columnarStore.loadAllAsync();
+    }
+}
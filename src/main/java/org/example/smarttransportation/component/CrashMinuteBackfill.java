@@ -0,0 +1,120 @@
+package org.example.smarttransportation.component;
+
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.dto.DataChangeEvent;
+import org.example.smarttransportation.service.AccidentBaselineService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 事故发生时间回填组件
+ * 经 JPA 保存的事故在保存前由 crash_time 计算 crash_minute；直接导入数据库的事故该列为空，
+ * 启动时与收到事故表的非实体变更事件后在后台按 collision_id 分段回填，回填后重建事故历史基线。
+ * 回填条件与 TrafficAccident.parseMinuteOfDay 一致，无法解析的发生时间保持为空。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class CrashMinuteBackfill implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrashMinuteBackfill.class);
+
+    private static final String TABLE = "nyc_traffic_accidents";
+
+    /**
+     * 每段 collision_id 跨度，控制单条 UPDATE 的锁范围
+     */
+    private static final long CHUNK_IDS = 50_000;
+
+    private static final String RANGE_SQL = "SELECT MIN(collision_id) AS min_id, MAX(collision_id) AS max_id " +
+        "FROM " + TABLE + " WHERE crash_minute IS NULL AND crash_time IS NOT NULL";
+
+    private static final String UPDATE_SQL = "UPDATE " + TABLE +
+        " SET crash_minute = HOUR(TRIM(crash_time)) * 60 + MINUTE(TRIM(crash_time))" +
+        " WHERE collision_id >= ? AND collision_id < ? AND crash_minute IS NULL" +
+        " AND TRIM(crash_time) REGEXP '^[0-9]{1,2}:[0-5][0-9](:[0-9]{2})?$'" +
+        " AND CAST(SUBSTRING_INDEX(TRIM(crash_time), ':', 1) AS UNSIGNED) < 24";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AccidentBaselineService accidentBaselineService;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crash-minute-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        backfillAsync();
+    }
+
+    /**
+     * 事故数据绕过 JPA 写入后回填；实体保存的记录已带 crash_minute
+     */
+    @EventListener
+    public void onDataChange(DataChangeEvent event) {
+        if (TABLE.equalsIgnoreCase(event.getTable()) && !"entity".equals(event.getSource())) {
+            backfillAsync();
+        }
+    }
+
+    /**
+     * 后台回填，已在排队时忽略
+     */
+    public void backfillAsync() {
+        if (queued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                queued.set(false);
+                backfill();
+            });
+        }
+    }
+
+    /**
+     * 回填 crash_minute 为空的事故，返回更新行数
+     */
+    long backfill() {
+        long updated = 0;
+        try {
+            Map<String, Object> range = jdbcTemplate.queryForMap(RANGE_SQL);
+            if (range.get("min_id") == null) {
+                return 0;
+            }
+            long minId = ((Number) range.get("min_id")).longValue();
+            long maxId = ((Number) range.get("max_id")).longValue();
+            for (long from = minId; from <= maxId; from += CHUNK_IDS) {
+                updated += jdbcTemplate.update(UPDATE_SQL, from, Math.min(from + CHUNK_IDS, maxId + 1));
+            }
+            if (updated > 0) {
+                logger.info("事故发生时间回填完成: {} 条", updated);
+                accidentBaselineService.refreshAsync();
+            }
+        } catch (Exception e) {
+            logger.warn("事故发生时间回填失败，按小时统计暂不包含未回填的事故: {}", e.getMessage());
+        }
+        return updated;
+    }
+}
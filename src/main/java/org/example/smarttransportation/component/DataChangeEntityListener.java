@@ -0,0 +1,68 @@
+package org.example.smarttransportation.component;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.Table;
+import org.example.smarttransportation.entity.Complaint;
+import org.example.smarttransportation.entity.PermittedEvent;
+import org.example.smarttransportation.entity.SubwayRidership;
+import org.example.smarttransportation.entity.TrafficAccident;
+import org.example.smarttransportation.entity.TransportationData;
+import org.example.smarttransportation.entity.WeatherData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 交通数据实体监听器
+ * 经 JPA 保存、更新、删除交通数据后把表名与记录的数据日期交给 DataChangeMonitor，
+ * 由其按轮询间隔合并后发布变更事件（Hibernate 通过 Spring 容器取得该监听器）
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class DataChangeEntityListener {
+
+    @Autowired
+    private DataChangeMonitor dataChangeMonitor;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(TransportationData entity) {
+        Table table = entity.getClass().getAnnotation(Table.class);
+        if (table == null) {
+            return;
+        }
+        LocalDate from;
+        LocalDate to;
+        if (entity instanceof TrafficAccident accident) {
+            from = accident.getCrashDate();
+            to = from;
+        } else if (entity instanceof WeatherData weather) {
+            from = toLocalDate(weather.getDatetime());
+            to = from;
+        } else if (entity instanceof SubwayRidership ridership) {
+            from = toLocalDate(ridership.getTransitTimestamp());
+            to = from;
+        } else if (entity instanceof PermittedEvent event) {
+            from = toLocalDate(event.getStartAt());
+            to = toLocalDate(event.getEndAt());
+        } else if (entity instanceof Complaint) {
+            from = toLocalDate(entity.getCreatedAt());
+            to = from;
+        } else {
+            from = null;
+            to = null;
+        }
+        dataChangeMonitor.record(table.name(), from, to);
+    }
+
+    private static LocalDate toLocalDate(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toLocalDate() : null;
+    }
+}
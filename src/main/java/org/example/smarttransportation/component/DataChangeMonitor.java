@@ -0,0 +1,211 @@
+package org.example.smarttransportation.component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.DataChangeEvent;
+import org.example.smarttransportation.service.TableVersionRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据变更监测组件
+ * 变更有三个来源：实体保存（DataChangeEntityListener 记录后按轮询间隔合并）、
+ * created_at 高水位轮询（发现绕过应用直接写入数据库的新记录）、数据导入完成通知接口。
+ * 每次变更递增表版本并发布带日期范围的 DataChangeEvent，风险立方体据此只重算受影响的日期。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class DataChangeMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataChangeMonitor.class);
+
+    /**
+     * 高水位轮询的数据表与记录数据日期范围的表达式
+     */
+    private static final Map<String, String[]> WATERMARK_TABLES = Map.of(
+        "nyc_traffic_accidents", new String[] {"crash_date", "crash_date"},
+        "nyc_weather_data", new String[] {"DATE(datetime)", "DATE(datetime)"},
+        "subway_ridership", new String[] {"DATE(transit_timestamp)", "DATE(transit_timestamp)"},
+        "nyc_permitted_events", new String[] {"DATE(start_at)", "DATE(end_at)"},
+        "complaints", new String[] {"DATE(created_at)", "DATE(created_at)"});
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 尚未发布的实体变更，按表合并日期范围
+     */
+    private final Map<String, PendingChange> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 各表已处理到的 created_at；首次轮询只记录当前最大值
+     */
+    private final Map<String, Timestamp> watermarks = new ConcurrentHashMap<>();
+
+    private final Map<String, DataChangeEvent> lastEvents = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一条实体变更，from/to 为空表示日期未知
+     */
+    public void record(String table, LocalDate from, LocalDate to) {
+        PendingChange change = new PendingChange(from, to, System.currentTimeMillis());
+        pending.merge(normalize(table), change, PendingChange::merge);
+    }
+
+    /**
+     * 数据导入完成通知：立即递增表版本并发布变更事件，from/to 为空时按整表变更处理
+     */
+    public DataChangeEvent notify(String table, LocalDate from, LocalDate to) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("结束日期不能早于起始日期");
+        }
+        return publish(normalize(table), from, to, "api", System.currentTimeMillis());
+    }
+
+    /**
+     * 发布合并后的实体变更并轮询各表高水位
+     */
+    @Scheduled(initialDelayString = "${risk.changes.poll-interval-seconds:5}",
+        fixedDelayString = "${risk.changes.poll-interval-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    public void poll() {
+        RiskConfig.RiskProperties.Changes config = properties.getChanges();
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return;
+        }
+        for (String table : new ArrayList<>(pending.keySet())) {
+            PendingChange change = pending.remove(table);
+            if (change != null) {
+                publish(table, change.from, change.to, "entity", change.detectedAt);
+            }
+        }
+        if (Boolean.TRUE.equals(config.getWatermarkEnabled())) {
+            WATERMARK_TABLES.forEach(this::pollWatermark);
+        }
+    }
+
+    /**
+     * 各表高水位与最近一次变更
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (String table : new TreeSet<>(WATERMARK_TABLES.keySet())) {
+            DataChangeEvent last = lastEvents.get(table);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("table", table);
+            item.put("version", tableVersionRegistry.currentVersion(table));
+            item.put("watermark", watermarks.get(table));
+            item.put("pending", pending.containsKey(table));
+            item.put("lastSource", last != null ? last.getSource() : null);
+            item.put("lastFrom", last != null ? last.getFrom() : null);
+            item.put("lastTo", last != null ? last.getTo() : null);
+            stats.add(item);
+        }
+        return stats;
+    }
+
+    private void pollWatermark(String table, String[] dateExpressions) {
+        try {
+            Timestamp max = jdbcTemplate.queryForObject("SELECT MAX(created_at) FROM " + table, Timestamp.class);
+            Timestamp watermark = watermarks.get(table);
+            if (watermark == null) {
+                watermarks.put(table, max != null ? max : new Timestamp(0));
+                return;
+            }
+            if (max == null || !max.after(watermark)) {
+                return;
+            }
+            long detectedAt = System.currentTimeMillis();
+            Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(" + dateExpressions[0]
+                + ") AS date_from, MAX(" + dateExpressions[1] + ") AS date_to FROM " + table
+                + " WHERE created_at > ? AND created_at <= ?", watermark, max);
+            watermarks.put(table, max);
+            publish(table, toLocalDate(range.get("date_from")), toLocalDate(range.get("date_to")), "watermark",
+                detectedAt);
+        } catch (Exception e) {
+            logger.warn("数据表 {} 高水位轮询失败: {}", table, e.getMessage());
+        }
+    }
+
+    /**
+     * 串行发布，保证同一张表的事件按版本顺序到达
+     */
+    private synchronized DataChangeEvent publish(String table, LocalDate from, LocalDate to, String source,
+                                                 long detectedAt) {
+        long version = tableVersionRegistry.bump(table);
+        DataChangeEvent event = new DataChangeEvent(table, from, to, version, source, detectedAt);
+        lastEvents.put(table, event);
+        Counter.builder("data.changes").tag("table", table).tag("source", source)
+            .description("发布的数据变更事件数").register(meterRegistry).increment();
+        logger.info("数据表变更: {} {} ~ {}, 版本 {}, 来源 {}", table, from, to, version, source);
+        eventPublisher.publishEvent(event);
+        return event;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date date) {
+            return date.toLocalDate();
+        }
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        return value != null ? LocalDate.parse(value.toString().substring(0, 10)) : null;
+    }
+
+    private static String normalize(String table) {
+        if (table == null || table.isBlank()) {
+            throw new IllegalArgumentException("表名不能为空");
+        }
+        return table.replace("`", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 待发布的变更：日期范围任一端未知时按整表变更处理
+     */
+    private static class PendingChange {
+        private final LocalDate from;
+        private final LocalDate to;
+        private final long detectedAt;
+
+        PendingChange(LocalDate from, LocalDate to, long detectedAt) {
+            this.from = from;
+            this.to = to;
+            this.detectedAt = detectedAt;
+        }
+
+        PendingChange merge(PendingChange other) {
+            long first = Math.min(detectedAt, other.detectedAt);
+            if (from == null || to == null || other.from == null || other.to == null) {
+                return new PendingChange(null, null, first);
+            }
+            return new PendingChange(from.isBefore(other.from) ? from : other.from,
+                to.isAfter(other.to) ? to : other.to, first);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.smarttransportation.component;
+
+import org.example.smarttransportation.service.VectorStoreService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Milvus 健康检查
+ * 只在健康检查明细中展示，不纳入 readiness 探针分组：Milvus 不可用时 RAG 检索降级，应用其余功能照常接收流量
+ */
+@Component("milvus")
+@ConditionalOnProperty(name = "milvus.enabled", havingValue = "true")
+public class MilvusHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private VectorStoreService vectorStoreService;
+
+    @Override
+    public Health health() {
+        try {
+            if (!vectorStoreService.isHealthy()) {
+                return Health.down().withDetail("reason", "Milvus服务不可用").build();
+            }
+
+            boolean loaded = vectorStoreService.isCollectionLoaded();
+            Health.Builder builder = loaded ? Health.up() : Health.outOfService();
+            return builder
+                .withDetail("collectionLoaded", loaded)
+                .withDetail("clientPoolSize", vectorStoreService.getClientPoolSize())
+                .withDetail("indexPlan", String.valueOf(vectorStoreService.getActiveIndexPlan()))
+                .build();
+        } catch (Exception e) {
+            return Health.down(e).build();
+        }
+    }
+}
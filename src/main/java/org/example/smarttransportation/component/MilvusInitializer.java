@@ -1,35 +1,50 @@
 package org.example.smarttransportation.component;
 
+import org.example.smarttransportation.config.MilvusConfig;
+import org.example.smarttransportation.service.VectorSearchFilter;
 import org.example.smarttransportation.service.VectorStoreService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Milvus 初始化组件
- * 在应用启动完成后自动初始化 Milvus 集合
+ * 在应用进入就绪状态之前初始化 Milvus 集合、加载集合并执行预热检索。
+ * ApplicationRunner 全部执行完毕后 Spring Boot 才会将就绪状态切换为 ACCEPTING_TRAFFIC，
+ * 因此部署后的第一个用户请求不再承担集合加载和索引冷启动的开销。
  */
 @Component
-public class MilvusInitializer {
-    
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MilvusInitializer implements ApplicationRunner {
+
     private static final Logger logger = LoggerFactory.getLogger(MilvusInitializer.class);
-    
+
+    private static final int WARMUP_TOP_K = 5;
+
     @Autowired
     private VectorStoreService vectorStoreService;
-    
+
+    @Autowired
+    private MilvusConfig.MilvusProperties milvusProperties;
+
     /**
-     * 应用启动完成后自动初始化 Milvus 集合
+     * 应用启动时初始化 Milvus 集合并预热
      */
-    @EventListener(ApplicationReadyEvent.class)
-    public void initializeMilvusCollections() {
+    @Override
+    public void run(ApplicationArguments args) {
         try {
             logger.info("开始初始化 Milvus 集合...");
             boolean success = vectorStoreService.initializeCollection();
             if (success) {
                 logger.info("Milvus 集合初始化成功");
+                warmUp();
             } else {
                 logger.warn("Milvus 集合初始化失败");
             }
@@ -37,4 +52,42 @@ public class MilvusInitializer {
             logger.error("初始化 Milvus 集合时发生错误: {}", e.getMessage(), e);
         }
     }
+
+    /**
+     * 预热：确保集合已加载，再让每个连接执行若干代表性检索（含标量过滤检索）
+     */
+    private void warmUp() {
+        MilvusConfig.MilvusProperties.Warmup warmup = milvusProperties.getWarmup();
+        if (!Boolean.TRUE.equals(warmup.getEnabled())) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        vectorStoreService.ensureCollectionLoaded();
+
+        List<String> queries = warmup.getQueries();
+        if (queries == null || queries.isEmpty()) {
+            return;
+        }
+
+        // 轮询客户端池，保证每个 gRPC 通道都完成连接建立
+        int searches = Math.max(1, warmup.getRounds()) * Math.max(1, vectorStoreService.getClientPoolSize());
+        int succeeded = 0;
+        for (int i = 0; i < searches; i++) {
+            String query = queries.get(i % queries.size());
+            try {
+                if (i % 2 == 0 || !vectorStoreService.hasKnowledgeTypeField()) {
+                    vectorStoreService.semanticSearch(query, WARMUP_TOP_K);
+                } else {
+                    vectorStoreService.semanticSearch(query, WARMUP_TOP_K, VectorSearchFilter.sopOrExpertKnowledge());
+                }
+                succeeded++;
+            } catch (Exception e) {
+                logger.warn("Milvus 预热检索失败: {}", e.getMessage());
+            }
+        }
+
+        logger.info("Milvus 预热完成: {}/{} 次检索成功, 耗时 {}ms",
+            succeeded, searches, System.currentTimeMillis() - start);
+    }
 }
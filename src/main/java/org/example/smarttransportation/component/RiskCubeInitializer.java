@@ -0,0 +1,56 @@
+package org.example.smarttransportation.component;
+
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.service.AccidentBaselineService;
+import org.example.smarttransportation.service.RiskCubeService;
+import org.example.smarttransportation.service.SpatialRiskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 风险立方体初始化组件
+ * 应用启动后在后台预计算风险立方体、空间风险网格与事故历史基线，不阻塞就绪；构建完成前风险预警仍实时查询计算。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class RiskCubeInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskCubeInitializer.class);
+
+    @Autowired
+    private RiskCubeService riskCubeService;
+
+    @Autowired
+    private SpatialRiskService spatialRiskService;
+
+    @Autowired
+    private AccidentBaselineService accidentBaselineService;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        RiskConfig.RiskProperties.Cube config = properties.getCube();
+        if (!Boolean.TRUE.equals(config.getBuildOnStartup())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(properties.getBaseline().getEnabled())) {
+            accidentBaselineService.refreshAsync();
+        }
+        if (Boolean.TRUE.equals(config.getEnabled())) {
+            logger.info("开始在后台构建风险立方体: {} ~ {}", config.getStartDate(), config.getEndDate());
+            riskCubeService.refreshAllAsync();
+        }
+        if (Boolean.TRUE.equals(properties.getSpatial().getEnabled())) {
+            logger.info("开始在后台构建空间风险网格: 网格边长 {} 米", properties.getSpatial().getCellMeters());
+            spatialRiskService.refreshAllAsync();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.smarttransportation.component;
+
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.RiskWarningReport;
+import org.example.smarttransportation.service.RiskAlertService;
+import org.example.smarttransportation.service.RiskWarningService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 风险预警定时扫描组件
+ * 按配置的间隔评估参考时间起未来若干小时内的各个时间窗口，报告经 scanForRisk 保存并在风险等级变化时推送。
+ * 风险立方体可用时每个窗口只是一次查表，扫描本身开销很小。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class RiskScanScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskScanScheduler.class);
+
+    @Autowired
+    private RiskWarningService riskWarningService;
+
+    @Autowired
+    private RiskAlertService riskAlertService;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    @Scheduled(initialDelayString = "${risk.scanner.initial-delay-seconds:60}",
+        fixedDelayString = "${risk.scanner.interval-seconds:300}", timeUnit = TimeUnit.SECONDS)
+    public void scheduledScan() {
+        if (!Boolean.TRUE.equals(properties.getScanner().getEnabled())) {
+            return;
+        }
+        try {
+            scan();
+        } catch (Exception e) {
+            logger.error("风险预警定时扫描失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 扫描一轮，返回各时间窗口的风险等级
+     */
+    public synchronized List<Map<String, Object>> scan() {
+        RiskConfig.RiskProperties.Scanner config = properties.getScanner();
+        int windowHours = Math.max(1, config.getWindowHours());
+        LocalDateTime reference = referenceTime(config);
+        LocalDateTime end = reference.plusHours(config.getHorizonHours());
+
+        // 窗口从零点起按窗口长度对齐，同一窗口在多轮扫描中的目标时间不变，便于去重
+        LocalDateTime first = reference.truncatedTo(ChronoUnit.HOURS)
+            .minusHours(reference.getHour() % windowHours);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (LocalDateTime target = first; target.isBefore(end); target = target.plusHours(windowHours)) {
+            RiskWarningReport report = riskWarningService.scanForRisk(target);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("targetTime", target);
+            item.put("timeWindow", report.getTimeWindow());
+            item.put("riskLevel", report.getRiskLevel());
+            item.put("overallScore", report.getRiskAnalysis().getOverallRiskScore());
+            results.add(item);
+        }
+        riskAlertService.evictBefore(first);
+
+        logger.info("风险预警扫描完成: 参考时间={}, 窗口数={}, 订阅数={}", reference, results.size(),
+            riskAlertService.getSubscriberCount());
+        return results;
+    }
+
+    private LocalDateTime referenceTime(RiskConfig.RiskProperties.Scanner config) {
+        String referenceTime = config.getReferenceTime();
+        return referenceTime == null || referenceTime.isBlank() ? LocalDateTime.now() : LocalDateTime.parse(referenceTime);
+    }
+}
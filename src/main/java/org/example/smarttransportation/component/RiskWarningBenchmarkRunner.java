@@ -0,0 +1,280 @@
+package org.example.smarttransportation.component;
+
+import org.example.smarttransportation.repository.SubwayRidershipRepository;
+import org.example.smarttransportation.repository.TrafficAccidentRepository;
+import org.example.smarttransportation.service.RiskCube;
+import org.example.smarttransportation.service.RiskRuleService;
+import org.example.smarttransportation.service.RiskRules;
+import org.example.smarttransportation.service.RiskWarningService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 风险预警数据访问基准测试
+ * 对比 generateRiskWarning 中交通风险与高风险区域的两种取数方式：
+ * 加载实体列表后取 size()/前 N 条（改造前）与计数、Top-N 投影查询（改造后），
+ * 统计每次调用的延迟与当前线程的堆分配字节数，并给出 generateRiskWarning 整体的延迟与分配。
+ * 两种方式之外的逻辑完全相同，二者的差值即 generateRiskWarning 改造前后的差值。
+ * 另对随机生成的时间窗口输入，对比硬编码评分（规则外置前的实现）与编译后的 RiskRules 的吞吐，
+ * 使用默认规则文件时两者校验值应一致。
+ * 通过 risk.benchmark.enabled=true 启用，仅用于离线评估；风险立方体或列式内存表可用时整体结果不经过数据库。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(name = "risk.benchmark.enabled", havingValue = "true")
+public class RiskWarningBenchmarkRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskWarningBenchmarkRunner.class);
+
+    private static final int WARMUP_ITERATIONS = 3;
+
+    @Autowired
+    private RiskWarningService riskWarningService;
+
+    @Autowired
+    private TrafficAccidentRepository trafficAccidentRepository;
+
+    @Autowired
+    private SubwayRidershipRepository subwayRidershipRepository;
+
+    @Autowired
+    private RiskRuleService riskRuleService;
+
+    @Value("${risk.benchmark.iterations:20}")
+    private int iterations;
+
+    @Value("${risk.benchmark.target-time:2024-02-13T17:00}")
+    private String targetTime;
+
+    @Value("${risk.benchmark.rule-windows:100000}")
+    private int ruleWindows;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            for (BenchmarkResult result : runBenchmark()) {
+                logger.info("风险预警基准 {} -> 校验值={}, p50={}ms, p95={}ms, 平均分配={}KB", result.getName(),
+                    result.getChecksum(), String.format("%.2f", result.getP50Millis()),
+                    String.format("%.2f", result.getP95Millis()), result.getAllocatedBytes() / 1024);
+            }
+        } catch (Exception e) {
+            logger.error("风险预警基准测试失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 依次测量实体加载、投影查询与 generateRiskWarning 整体
+     */
+    public List<BenchmarkResult> runBenchmark() {
+        LocalDateTime target = LocalDateTime.parse(targetTime);
+        LocalDate startDate = target.toLocalDate().minusDays(30);
+        LocalDate endDate = target.toLocalDate().plusDays(1);
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
+
+        logger.info("开始风险预警基准测试: 目标时间={}, 迭代次数={}", target, iterations);
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        results.add(measure("实体加载", () -> {
+            int accidents = trafficAccidentRepository.findByDateRange(startDate, endDate).size();
+            int stations = subwayRidershipRepository.findHighDensityStations(startDate, endDate, 500).size();
+            int streets = Math.min(5, trafficAccidentRepository.countAccidentsByStreet(startDate, endDate).size());
+            int zones = Math.min(3, subwayRidershipRepository.findHighDensityStations(startDate, endDate, 800).size());
+            return accidents + stations + streets + zones;
+        }));
+        results.add(measure("投影查询", () -> {
+            long accidents = trafficAccidentRepository.countByDateRange(startDate, endDate);
+            long stations = subwayRidershipRepository.countHighDensityRecords(start, end, 500);
+            int streets = trafficAccidentRepository.countAccidentsByStreet(startDate, endDate, PageRequest.of(0, 5)).size();
+            int zones = subwayRidershipRepository.findTopRidershipStations(start, end, 800, PageRequest.of(0, 3)).size();
+            return accidents + stations + streets + zones;
+        }));
+        results.add(measure("generateRiskWarning", () ->
+            riskWarningService.generateRiskWarning(target).getHighRiskZones().size()));
+        results.addAll(runRuleBenchmark());
+        return results;
+    }
+
+    /**
+     * 对比硬编码评分与编译规则评分，校验值为所有窗口综合评分与等级序号之和
+     */
+    public List<BenchmarkResult> runRuleBenchmark() {
+        int[][] windows = randomWindows(ruleWindows);
+        RiskRules rules = riskRuleService.getRules();
+        List<BenchmarkResult> results = new ArrayList<>();
+        results.add(measure("硬编码评分 x" + windows.length, () -> {
+            long checksum = 0;
+            for (int[] window : windows) {
+                int score = legacyWeatherScore(window[0] == 1, window[1] == 1, window[2] == 1)
+                    + legacyTrafficScore(legacyIsRushHour(window[3]), window[5], window[8])
+                    + legacyEventScore(window[6], window[7]);
+                checksum += score + legacyLevel(score);
+            }
+            return checksum;
+        }));
+        results.add(measure("编译规则 x" + windows.length, () -> {
+            long checksum = 0;
+            for (int[] window : windows) {
+                int score = rules.weatherScore(window[0] == 1, window[1] == 1, window[2] == 1)
+                    + rules.trafficScore(rules.isRushHour(window[3]), window[4], window[5], window[8])
+                    + rules.eventScore(window[6], window[7]);
+                checksum += score + rules.levelRank(score);
+            }
+            return checksum;
+        }));
+        return results;
+    }
+
+    /**
+     * 随机时间窗口输入：降雪、结冰、恶劣天气、小时、事故数、高客流记录数、活动数、高影响活动数、事故 z 分数
+     */
+    private int[][] randomWindows(int count) {
+        Random random = new Random(42);
+        int[][] windows = new int[count][];
+        for (int i = 0; i < count; i++) {
+            windows[i] = new int[]{random.nextInt(2), random.nextInt(2), random.nextInt(2),
+                random.nextInt(RiskCube.HOURS_PER_DAY), random.nextInt(30), random.nextInt(15),
+                random.nextInt(8), random.nextInt(3), random.nextInt(6) - 2};
+        }
+        return windows;
+    }
+
+    private static int legacyWeatherScore(boolean hasSnow, boolean hasIcingRisk, boolean isSevereWeather) {
+        int score = 0;
+        if (hasSnow) {
+            score += 30;
+        }
+        if (hasIcingRisk) {
+            score += 25;
+        }
+        if (isSevereWeather) {
+            score += 20;
+        }
+        return score;
+    }
+
+    private static boolean legacyIsRushHour(int hour) {
+        return (hour >= 7 && hour <= 9) || (hour >= 17 && hour <= 19);
+    }
+
+    private static int legacyTrafficScore(boolean isRushHour, int highDensityStations, double accidentZ) {
+        int score = 0;
+        if (isRushHour) {
+            score += 25;
+        }
+        if (accidentZ >= 2) {
+            score += 20;
+        }
+        if (highDensityStations > 5) {
+            score += 15;
+        }
+        return score;
+    }
+
+    private static int legacyEventScore(int activeEvents, int highImpactEvents) {
+        int score = 0;
+        if (activeEvents > 3) {
+            score += 15;
+        }
+        if (highImpactEvents > 0) {
+            score += 20;
+        }
+        return score;
+    }
+
+    private static int legacyLevel(int totalScore) {
+        if (totalScore >= 70) {
+            return 0;
+        } else if (totalScore >= 50) {
+            return 1;
+        } else if (totalScore >= 30) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private BenchmarkResult measure(String name, Workload workload) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            workload.run();
+        }
+
+        double[] latencies = new double[iterations];
+        long allocated = 0;
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+            long begin = System.nanoTime();
+            checksum = workload.run();
+            latencies[i] = (System.nanoTime() - begin) / 1_000_000.0;
+            allocated += threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+
+        Arrays.sort(latencies);
+        return new BenchmarkResult(name, checksum, percentile(latencies, 0.50), percentile(latencies, 0.95),
+            iterations > 0 ? allocated / iterations : 0);
+    }
+
+    private double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int position = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(position, sorted.length - 1))];
+    }
+
+    /**
+     * 被测逻辑，返回校验值；实体加载与投影查询、硬编码评分与编译规则的返回值应分别一致
+     */
+    @FunctionalInterface
+    private interface Workload {
+        long run();
+    }
+
+    /**
+     * 单种取数方式的测试结果
+     */
+    public static class BenchmarkResult {
+        private final String name;
+        private final long checksum;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final long allocatedBytes;
+
+        public BenchmarkResult(String name, long checksum, double p50Millis, double p95Millis, long allocatedBytes) {
+            this.name = name;
+            this.checksum = checksum;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getName() { return name; }
+        public long getChecksum() { return checksum; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP95Millis() { return p95Millis; }
+        public long getAllocatedBytes() { return allocatedBytes; }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.smarttransportation.component;
+
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.example.smarttransportation.service.RollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 汇总表初始化组件
+ * 应用启动后在后台构建预聚合汇总表（已存在时按水位线增量刷新），不阻塞就绪；
+ * 构建完成前 NL2SQL 聚合查询仍查询原始表。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class RollupInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupInitializer.class);
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        NL2SQLConfig.NL2SQLProperties.Rollup config = properties.getRollup();
+        if (!Boolean.TRUE.equals(config.getEnabled()) || !Boolean.TRUE.equals(config.getBuildOnStartup())) {
+            return;
+        }
+        logger.info("开始在后台构建预聚合汇总表...");
+        rollupService.refreshAllAsync(false);
+    }
+}
@@ -0,0 +1,265 @@
+package org.example.smarttransportation.component;
+
+import io.milvus.param.IndexType;
+import org.example.smarttransportation.config.MilvusConfig;
+import org.example.smarttransportation.service.EmbeddingService;
+import org.example.smarttransportation.service.QuantizationBenchmark;
+import org.example.smarttransportation.service.VectorIndexStrategy;
+import org.example.smarttransportation.service.VectorStoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 向量索引离线基准测试
+ * 以暴力检索结果为真值，评估不同检索参数下的召回率与延迟，并给出推荐配置。
+ * 同时在同一批样本上评估本地量化检索（二值粗筛 + int8/float 重排）的召回率与内存占用。
+ * 通过 milvus.index.benchmark.enabled=true 启用，仅用于离线调参；在 MilvusInitializer 完成初始化后执行。
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(name = "milvus.index.benchmark.enabled", havingValue = "true")
+public class VectorIndexBenchmarkRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexBenchmarkRunner.class);
+
+    private static final int[] HNSW_EF_CANDIDATES = {16, 32, 64, 128, 256, 512};
+    private static final int[] IVF_NPROBE_CANDIDATES = {1, 4, 8, 16, 32, 64, 128, 256};
+    private static final int QUANTIZATION_CANDIDATE_FACTOR = 10;
+
+    @Autowired
+    private VectorStoreService vectorStoreService;
+
+    @Autowired
+    private MilvusConfig.MilvusProperties milvusProperties;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            List<BenchmarkResult> results = runBenchmark();
+            BenchmarkResult recommended = recommend(results);
+            if (recommended != null) {
+                logger.info("推荐检索参数: {} (recall@{}={}, p95={}ms)",
+                    recommended.getSearchParams(), milvusProperties.getIndex().getBenchmark().getTopK(),
+                    String.format("%.4f", recommended.getRecall()), String.format("%.2f", recommended.getP95Millis()));
+            }
+        } catch (Exception e) {
+            logger.error("向量索引基准测试失败: {}", e.getMessage(), e);
+        }
+
+        try {
+            logger.info("本地量化检索基准: {}", runQuantizationBenchmark());
+        } catch (Exception e) {
+            logger.error("本地量化检索基准测试失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 以集合中抽样的真实向量评估本地量化检索
+     */
+    public QuantizationBenchmark.Report runQuantizationBenchmark() {
+        MilvusConfig.MilvusProperties.Benchmark config = milvusProperties.getIndex().getBenchmark();
+        List<List<Float>> corpus = new ArrayList<>(vectorStoreService.sampleVectors(config.getSampleSize()).values());
+        if (corpus.isEmpty()) {
+            throw new IllegalStateException("集合中没有可用的向量样本");
+        }
+
+        Random random = new Random(42);
+        List<List<Float>> queries = new ArrayList<>();
+        int queryCount = Math.min(config.getQueries(), corpus.size());
+        for (int i = 0; i < queryCount; i++) {
+            queries.add(corpus.get(random.nextInt(corpus.size())));
+        }
+
+        return new QuantizationBenchmark(embeddingService)
+            .run(corpus, queries, config.getTopK(), QUANTIZATION_CANDIDATE_FACTOR);
+    }
+
+    /**
+     * 执行基准测试：抽样向量作为语料和查询，暴力计算真值后逐个评估候选检索参数
+     */
+    public List<BenchmarkResult> runBenchmark() {
+        MilvusConfig.MilvusProperties.Benchmark config = milvusProperties.getIndex().getBenchmark();
+        VectorIndexStrategy.IndexPlan plan = vectorStoreService.getActiveIndexPlan();
+        if (plan == null) {
+            throw new IllegalStateException("向量索引尚未初始化，无法进行基准测试");
+        }
+
+        Map<Long, List<Float>> samples = vectorStoreService.sampleVectors(config.getSampleSize());
+        if (samples.isEmpty()) {
+            throw new IllegalStateException("集合中没有可用的向量样本");
+        }
+
+        long[] ids = new long[samples.size()];
+        float[][] corpus = new float[samples.size()][];
+        int index = 0;
+        for (Map.Entry<Long, List<Float>> entry : samples.entrySet()) {
+            ids[index] = entry.getKey();
+            corpus[index] = normalize(entry.getValue());
+            index++;
+        }
+
+        int topK = config.getTopK();
+        int queryCount = Math.min(config.getQueries(), corpus.length);
+        Random random = new Random(42);
+        List<Integer> queryIndexes = new ArrayList<>();
+        for (int i = 0; i < queryCount; i++) {
+            queryIndexes.add(random.nextInt(corpus.length));
+        }
+
+        // 暴力检索真值（样本即全集时为精确真值，否则为样本内近似）
+        List<Set<Long>> groundTruth = new ArrayList<>();
+        for (int queryIndex : queryIndexes) {
+            groundTruth.add(bruteForceTopK(corpus[queryIndex], corpus, ids, topK));
+        }
+
+        logger.info("开始向量索引基准测试: 索引={}, 样本数={}, 查询数={}, topK={}",
+            plan, corpus.length, queryCount, topK);
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        for (Map<String, Integer> candidate : candidateSearchParams(plan)) {
+            VectorIndexStrategy.IndexPlan trial = new VectorIndexStrategy.IndexPlan(plan.getIndexType(), plan.getMetricType());
+            trial.getSearchParams().putAll(candidate);
+            String paramsJson = trial.getSearchParamsJson(topK);
+
+            double recallSum = 0;
+            double[] latencies = new double[queryCount];
+            for (int i = 0; i < queryCount; i++) {
+                List<Float> queryVector = samples.get(ids[queryIndexes.get(i)]);
+                long start = System.nanoTime();
+                List<Long> hits = vectorStoreService.searchIdsByVector(queryVector, topK, paramsJson);
+                latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+
+                Set<Long> truth = groundTruth.get(i);
+                long matched = hits.stream().filter(truth::contains).count();
+                recallSum += truth.isEmpty() ? 1.0 : (double) matched / truth.size();
+            }
+
+            Arrays.sort(latencies);
+            BenchmarkResult result = new BenchmarkResult(paramsJson, recallSum / queryCount,
+                percentile(latencies, 0.50), percentile(latencies, 0.95));
+            results.add(result);
+            logger.info("检索参数 {} -> recall@{}={}, p50={}ms, p95={}ms", paramsJson, topK,
+                String.format("%.4f", result.getRecall()), String.format("%.2f", result.getP50Millis()),
+                String.format("%.2f", result.getP95Millis()));
+        }
+
+        return results;
+    }
+
+    /**
+     * 推荐满足目标召回率且 p95 延迟最低的参数；都不满足时取召回率最高者
+     */
+    public BenchmarkResult recommend(List<BenchmarkResult> results) {
+        double targetRecall = milvusProperties.getIndex().getBenchmark().getTargetRecall();
+        return results.stream()
+            .filter(result -> result.getRecall() >= targetRecall)
+            .min(Comparator.comparingDouble(BenchmarkResult::getP95Millis))
+            .orElseGet(() -> results.stream()
+                .max(Comparator.comparingDouble(BenchmarkResult::getRecall))
+                .orElse(null));
+    }
+
+    private List<Map<String, Integer>> candidateSearchParams(VectorIndexStrategy.IndexPlan plan) {
+        List<Map<String, Integer>> candidates = new ArrayList<>();
+        IndexType indexType = plan.getIndexType();
+        if (indexType == IndexType.HNSW) {
+            for (int ef : HNSW_EF_CANDIDATES) {
+                candidates.add(Map.of("ef", ef));
+            }
+        } else if (plan.getBuildParams().containsKey("nlist")) {
+            int nlist = plan.getBuildParams().get("nlist");
+            for (int nprobe : IVF_NPROBE_CANDIDATES) {
+                if (nprobe <= nlist) {
+                    candidates.add(Map.of("nprobe", nprobe));
+                }
+            }
+        } else {
+            candidates.add(Map.of());
+        }
+        return candidates;
+    }
+
+    private Set<Long> bruteForceTopK(float[] query, float[][] corpus, long[] ids, int topK) {
+        PriorityQueue<double[]> heap = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        for (int i = 0; i < corpus.length; i++) {
+            double score = dot(query, corpus[i]);
+            if (heap.size() < topK) {
+                heap.offer(new double[]{score, i});
+            } else if (score > heap.peek()[0]) {
+                heap.poll();
+                heap.offer(new double[]{score, i});
+            }
+        }
+        Set<Long> result = new HashSet<>();
+        for (double[] entry : heap) {
+            result.add(ids[(int) entry[1]]);
+        }
+        return result;
+    }
+
+    private float[] normalize(List<Float> vector) {
+        float[] result = new float[vector.size()];
+        double norm = 0;
+        for (int i = 0; i < result.length; i++) {
+            result[i] = vector.get(i);
+            norm += result[i] * result[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] /= norm;
+            }
+        }
+        return result;
+    }
+
+    private double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int position = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(position, sorted.length - 1))];
+    }
+
+    /**
+     * 单组检索参数的测试结果
+     */
+    public static class BenchmarkResult {
+        private final String searchParams;
+        private final double recall;
+        private final double p50Millis;
+        private final double p95Millis;
+
+        public BenchmarkResult(String searchParams, double recall, double p50Millis, double p95Millis) {
+            this.searchParams = searchParams;
+            this.recall = recall;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+        }
+
+        public String getSearchParams() { return searchParams; }
+        public double getRecall() { return recall; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP95Millis() { return p95Millis; }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.smarttransportation.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列式内存分析配置类
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Configuration
+public class ColumnarConfig {
+
+    /**
+     * 列式内存分析配置属性类
+     */
+    @Component
+    @ConfigurationProperties(prefix = "columnar")
+    public static class ColumnarProperties {
+        private Boolean enabled = false;
+        private Boolean loadOnStartup = true;
+        private Integer parallelism = 0;
+        private Integer chunkRows = 65536;
+        private List<String> tables = new ArrayList<>(List.of(
+            "nyc_traffic_accidents", "subway_ridership", "complaints", "citibike_trips_202402", "nyc_permitted_events"));
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Boolean getLoadOnStartup() {
+            return loadOnStartup;
+        }
+
+        public void setLoadOnStartup(Boolean loadOnStartup) {
+            this.loadOnStartup = loadOnStartup;
+        }
+
+        /**
+         * 扫描并行度，0 表示按 CPU 核数
+         */
+        public Integer getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(Integer parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public Integer getChunkRows() {
+            return chunkRows;
+        }
+
+        public void setChunkRows(Integer chunkRows) {
+            this.chunkRows = chunkRows;
+        }
+
+        public List<String> getTables() {
+            return tables;
+        }
+
+        public void setTables(List<String> tables) {
+            this.tables = tables;
+        }
+    }
+}
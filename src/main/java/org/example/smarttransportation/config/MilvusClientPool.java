@@ -0,0 +1,62 @@
+package org.example.smarttransportation.config;
+
+import io.milvus.client.MilvusClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Milvus 客户端池
+ * 每个客户端持有独立的 gRPC 通道，并发检索按轮询分摊到不同连接上；
+ * 集合管理类操作统一走第一个客户端，保证顺序性。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class MilvusClientPool implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MilvusClientPool.class);
+
+    private final List<MilvusClient> clients;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    public MilvusClientPool(List<MilvusClient> clients) {
+        if (clients == null || clients.isEmpty()) {
+            throw new IllegalArgumentException("Milvus客户端池至少需要一个客户端");
+        }
+        this.clients = List.copyOf(clients);
+    }
+
+    /**
+     * 获取用于检索的客户端（轮询）
+     */
+    public MilvusClient next() {
+        int index = Math.floorMod(cursor.getAndIncrement(), clients.size());
+        return clients.get(index);
+    }
+
+    /**
+     * 获取用于集合管理操作的主客户端
+     */
+    public MilvusClient primary() {
+        return clients.get(0);
+    }
+
+    public int size() {
+        return clients.size();
+    }
+
+    @Override
+    public void destroy() {
+        for (MilvusClient client : clients) {
+            try {
+                client.close();
+            } catch (Exception e) {
+                logger.warn("关闭Milvus客户端失败: {}", e.getMessage());
+            }
+        }
+    }
+}
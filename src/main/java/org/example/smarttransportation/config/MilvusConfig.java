@@ -1,13 +1,19 @@
 package org.example.smarttransportation.config;
 
+import io.milvus.client.MilvusClient;
 import io.milvus.client.MilvusServiceClient;
 import io.milvus.param.ConnectParam;
+import io.milvus.param.RetryParam;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Milvus 配置类
  * 
@@ -19,25 +25,51 @@ public class MilvusConfig {
 
     @Bean
     @ConditionalOnProperty(name = "milvus.enabled", havingValue = "true", matchIfMissing = false)
-    public MilvusServiceClient milvusServiceClient(MilvusProperties milvusProperties) {
+    public MilvusClientPool milvusClientPool(MilvusProperties milvusProperties) {
+        int poolSize = Math.max(1, milvusProperties.getPool().getSize());
+        List<MilvusClient> clients = new ArrayList<>(poolSize);
         try {
-            ConnectParam.Builder builder = ConnectParam.newBuilder()
-                    .withHost(milvusProperties.getHost())
-                    .withPort(milvusProperties.getPort())
-                    .withDatabaseName(milvusProperties.getDatabase());
-
-            // 如果有token则添加
-            if (milvusProperties.getToken() != null && !milvusProperties.getToken().isEmpty()) {
-                builder.withToken(milvusProperties.getToken());
+            for (int i = 0; i < poolSize; i++) {
+                clients.add(createClient(milvusProperties));
             }
-
-            ConnectParam connectParam = builder.build();
-            return new MilvusServiceClient(connectParam);
+            return new MilvusClientPool(clients);
         } catch (Exception e) {
+            clients.forEach(MilvusClient::close);
             throw new RuntimeException("Failed to connect to Milvus: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 按连接配置创建客户端：超时、保活、空闲回收与失败重试
+     */
+    private MilvusClient createClient(MilvusProperties milvusProperties) {
+        MilvusProperties.Connection connection = milvusProperties.getConnection();
+        ConnectParam.Builder builder = ConnectParam.newBuilder()
+                .withHost(milvusProperties.getHost())
+                .withPort(milvusProperties.getPort())
+                .withDatabaseName(milvusProperties.getDatabase())
+                .withConnectTimeout(connection.getTimeout(), TimeUnit.MILLISECONDS)
+                .withKeepAliveTime(connection.getKeepAliveTime(), TimeUnit.MILLISECONDS)
+                .withKeepAliveTimeout(connection.getKeepAliveTimeout(), TimeUnit.MILLISECONDS)
+                .withIdleTimeout(connection.getMaxIdleTimeout(), TimeUnit.MILLISECONDS)
+                .keepAliveWithoutCalls(true);
+
+        // 如果有token则添加
+        if (milvusProperties.getToken() != null && !milvusProperties.getToken().isEmpty()) {
+            builder.withToken(milvusProperties.getToken());
+        }
+
+        ConnectParam connectParam = builder.build();
+        MilvusClient client = new MilvusServiceClient(connectParam);
+
+        if (connection.getRetryTimes() != null && connection.getRetryTimes() > 0) {
+            client = client.withRetry(RetryParam.newBuilder()
+                    .withMaxRetryTimes(connection.getRetryTimes())
+                    .build());
+        }
+        return client;
+    }
+
     /**
      * Milvus 配置属性类
      */
@@ -50,6 +82,9 @@ public class MilvusConfig {
         private String token = "";
         private String database = "default";
         private Connection connection = new Connection();
+        private Index index = new Index();
+        private Pool pool = new Pool();
+        private Warmup warmup = new Warmup();
 
         public String getHost() {
             return host;
@@ -99,6 +134,30 @@ public class MilvusConfig {
             this.connection = connection;
         }
 
+        public Index getIndex() {
+            return index;
+        }
+
+        public void setIndex(Index index) {
+            this.index = index;
+        }
+
+        public Pool getPool() {
+            return pool;
+        }
+
+        public void setPool(Pool pool) {
+            this.pool = pool;
+        }
+
+        public Warmup getWarmup() {
+            return warmup;
+        }
+
+        public void setWarmup(Warmup warmup) {
+            this.warmup = warmup;
+        }
+
         /**
          * 连接配置
          */
@@ -149,5 +208,274 @@ public class MilvusConfig {
                 this.retryTimes = retryTimes;
             }
         }
+
+        /**
+         * 客户端池配置
+         */
+        public static class Pool {
+            private Integer size = 4;
+
+            public Integer getSize() {
+                return size;
+            }
+
+            public void setSize(Integer size) {
+                this.size = size;
+            }
+        }
+
+        /**
+         * 启动预热配置：加载集合并执行若干代表性检索后应用才进入就绪状态
+         */
+        public static class Warmup {
+            private Boolean enabled = true;
+            private Integer rounds = 2;
+            private List<String> queries = new ArrayList<>(List.of(
+                    "暴雪天气道路结冰应急处置",
+                    "交通事故现场处置标准操作程序",
+                    "地铁站大客流疏导措施"
+            ));
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Integer getRounds() {
+                return rounds;
+            }
+
+            public void setRounds(Integer rounds) {
+                this.rounds = rounds;
+            }
+
+            public List<String> getQueries() {
+                return queries;
+            }
+
+            public void setQueries(List<String> queries) {
+                this.queries = queries;
+            }
+        }
+
+        /**
+         * 向量索引配置
+         * type 为 AUTO 时按集合规模选择：小集合用 FLAT，中等规模用 HNSW，超大规模用 IVF_PQ
+         */
+        public static class Index {
+            private String type = "AUTO";
+            private String metricType = "COSINE";
+            private Long flatMaxRows = 20000L;
+            private Long hnswMaxRows = 2000000L;
+            private Boolean rebuildOnMismatch = false;
+            private Long checkIntervalSeconds = 600L;
+            private Hnsw hnsw = new Hnsw();
+            private Ivf ivf = new Ivf();
+            private Benchmark benchmark = new Benchmark();
+
+            public String getType() {
+                return type;
+            }
+
+            public void setType(String type) {
+                this.type = type;
+            }
+
+            public String getMetricType() {
+                return metricType;
+            }
+
+            public void setMetricType(String metricType) {
+                this.metricType = metricType;
+            }
+
+            public Long getFlatMaxRows() {
+                return flatMaxRows;
+            }
+
+            public void setFlatMaxRows(Long flatMaxRows) {
+                this.flatMaxRows = flatMaxRows;
+            }
+
+            public Long getHnswMaxRows() {
+                return hnswMaxRows;
+            }
+
+            public void setHnswMaxRows(Long hnswMaxRows) {
+                this.hnswMaxRows = hnswMaxRows;
+            }
+
+            public Boolean getRebuildOnMismatch() {
+                return rebuildOnMismatch;
+            }
+
+            public void setRebuildOnMismatch(Boolean rebuildOnMismatch) {
+                this.rebuildOnMismatch = rebuildOnMismatch;
+            }
+
+            /**
+             * 按集合行数重新规划索引的间隔，由 @Scheduled 直接读取 milvus.index.check-interval-seconds
+             */
+            public Long getCheckIntervalSeconds() {
+                return checkIntervalSeconds;
+            }
+
+            public void setCheckIntervalSeconds(Long checkIntervalSeconds) {
+                this.checkIntervalSeconds = checkIntervalSeconds;
+            }
+
+            public Hnsw getHnsw() {
+                return hnsw;
+            }
+
+            public void setHnsw(Hnsw hnsw) {
+                this.hnsw = hnsw;
+            }
+
+            public Ivf getIvf() {
+                return ivf;
+            }
+
+            public void setIvf(Ivf ivf) {
+                this.ivf = ivf;
+            }
+
+            public Benchmark getBenchmark() {
+                return benchmark;
+            }
+
+            public void setBenchmark(Benchmark benchmark) {
+                this.benchmark = benchmark;
+            }
+        }
+
+        /**
+         * HNSW 参数：M 为图的最大出度，efConstruction 为构建时候选集大小，ef 为检索时候选集大小
+         */
+        public static class Hnsw {
+            private Integer m = 16;
+            private Integer efConstruction = 200;
+            private Integer ef = 64;
+
+            public Integer getM() {
+                return m;
+            }
+
+            public void setM(Integer m) {
+                this.m = m;
+            }
+
+            public Integer getEfConstruction() {
+                return efConstruction;
+            }
+
+            public void setEfConstruction(Integer efConstruction) {
+                this.efConstruction = efConstruction;
+            }
+
+            public Integer getEf() {
+                return ef;
+            }
+
+            public void setEf(Integer ef) {
+                this.ef = ef;
+            }
+        }
+
+        /**
+         * IVF 系列参数：nlist/nprobe 为 0 时按集合规模自动推算，pqM/pqNbits 仅用于 IVF_PQ
+         */
+        public static class Ivf {
+            private Integer nlist = 0;
+            private Integer nprobe = 0;
+            private Integer pqM = 64;
+            private Integer pqNbits = 8;
+
+            public Integer getNlist() {
+                return nlist;
+            }
+
+            public void setNlist(Integer nlist) {
+                this.nlist = nlist;
+            }
+
+            public Integer getNprobe() {
+                return nprobe;
+            }
+
+            public void setNprobe(Integer nprobe) {
+                this.nprobe = nprobe;
+            }
+
+            public Integer getPqM() {
+                return pqM;
+            }
+
+            public void setPqM(Integer pqM) {
+                this.pqM = pqM;
+            }
+
+            public Integer getPqNbits() {
+                return pqNbits;
+            }
+
+            public void setPqNbits(Integer pqNbits) {
+                this.pqNbits = pqNbits;
+            }
+        }
+
+        /**
+         * 离线召回率/延迟基准测试配置
+         */
+        public static class Benchmark {
+            private Boolean enabled = false;
+            private Integer sampleSize = 5000;
+            private Integer queries = 100;
+            private Integer topK = 10;
+            private Double targetRecall = 0.95;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Integer getSampleSize() {
+                return sampleSize;
+            }
+
+            public void setSampleSize(Integer sampleSize) {
+                this.sampleSize = sampleSize;
+            }
+
+            public Integer getQueries() {
+                return queries;
+            }
+
+            public void setQueries(Integer queries) {
+                this.queries = queries;
+            }
+
+            public Integer getTopK() {
+                return topK;
+            }
+
+            public void setTopK(Integer topK) {
+                this.topK = topK;
+            }
+
+            public Double getTargetRecall() {
+                return targetRecall;
+            }
+
+            public void setTargetRecall(Double targetRecall) {
+                this.targetRecall = targetRecall;
+            }
+        }
     }
 }
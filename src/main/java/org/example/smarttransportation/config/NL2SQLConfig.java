@@ -0,0 +1,440 @@
+package org.example.smarttransportation.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * NL2SQL 配置类
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Configuration
+public class NL2SQLConfig {
+
+    /**
+     * NL2SQL 配置属性类
+     */
+    @Component
+    @ConfigurationProperties(prefix = "nl2sql")
+    public static class NL2SQLProperties {
+        private Cache cache = new Cache();
+        private Translation translation = new Translation();
+        private Guard guard = new Guard();
+        private Datasource datasource = new Datasource();
+        private Bulkhead bulkhead = new Bulkhead();
+        private Rollup rollup = new Rollup();
+        private Prompt prompt = new Prompt();
+        private Repair repair = new Repair();
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        public void setCache(Cache cache) {
+            this.cache = cache;
+        }
+
+        public Translation getTranslation() {
+            return translation;
+        }
+
+        public void setTranslation(Translation translation) {
+            this.translation = translation;
+        }
+
+        public Guard getGuard() {
+            return guard;
+        }
+
+        public void setGuard(Guard guard) {
+            this.guard = guard;
+        }
+
+        public Datasource getDatasource() {
+            return datasource;
+        }
+
+        public void setDatasource(Datasource datasource) {
+            this.datasource = datasource;
+        }
+
+        public Bulkhead getBulkhead() {
+            return bulkhead;
+        }
+
+        public void setBulkhead(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        public Rollup getRollup() {
+            return rollup;
+        }
+
+        public void setRollup(Rollup rollup) {
+            this.rollup = rollup;
+        }
+
+        public Prompt getPrompt() {
+            return prompt;
+        }
+
+        public void setPrompt(Prompt prompt) {
+            this.prompt = prompt;
+        }
+
+        public Repair getRepair() {
+            return repair;
+        }
+
+        public void setRepair(Repair repair) {
+            this.repair = repair;
+        }
+
+        /**
+         * 查询结果缓存配置
+         */
+        public static class Cache {
+            private Boolean enabled = true;
+            private Integer maxEntries = 500;
+            private Integer maxRowsPerEntry = 1000;
+            private Long maxTotalRows = 100000L;
+            private Long ttlSeconds = 21600L;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Integer getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(Integer maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public Integer getMaxRowsPerEntry() {
+                return maxRowsPerEntry;
+            }
+
+            public void setMaxRowsPerEntry(Integer maxRowsPerEntry) {
+                this.maxRowsPerEntry = maxRowsPerEntry;
+            }
+
+            public Long getMaxTotalRows() {
+                return maxTotalRows;
+            }
+
+            public void setMaxTotalRows(Long maxTotalRows) {
+                this.maxTotalRows = maxTotalRows;
+            }
+
+            public Long getTtlSeconds() {
+                return ttlSeconds;
+            }
+
+            public void setTtlSeconds(Long ttlSeconds) {
+                this.ttlSeconds = ttlSeconds;
+            }
+        }
+
+        /**
+         * 问题到 SQL 的翻译缓存与模板库配置
+         */
+        public static class Translation {
+            private Boolean enabled = true;
+            private Integer maxTemplates = 2000;
+            private Boolean neighbourEnabled = true;
+            private Double neighbourThreshold = 0.95;
+            private Integer maxStationNames = 5000;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Integer getMaxTemplates() {
+                return maxTemplates;
+            }
+
+            public void setMaxTemplates(Integer maxTemplates) {
+                this.maxTemplates = maxTemplates;
+            }
+
+            public Boolean getNeighbourEnabled() {
+                return neighbourEnabled;
+            }
+
+            public void setNeighbourEnabled(Boolean neighbourEnabled) {
+                this.neighbourEnabled = neighbourEnabled;
+            }
+
+            public Double getNeighbourThreshold() {
+                return neighbourThreshold;
+            }
+
+            public void setNeighbourThreshold(Double neighbourThreshold) {
+                this.neighbourThreshold = neighbourThreshold;
+            }
+
+            public Integer getMaxStationNames() {
+                return maxStationNames;
+            }
+
+            public void setMaxStationNames(Integer maxStationNames) {
+                this.maxStationNames = maxStationNames;
+            }
+        }
+
+        /**
+         * SQL 执行防护配置：LIMIT 注入、查询超时、流式读取、EXPLAIN 行数阈值
+         */
+        public static class Guard {
+            private Integer defaultLimit = 100;
+            private Integer maxLimit = 1000;
+            private Integer queryTimeoutSeconds = 15;
+            private Integer fetchSize = 500;
+            private Integer previewRows = 50;
+            private Boolean explainEnabled = true;
+            private Long maxExplainRows = 5000000L;
+
+            public Integer getDefaultLimit() {
+                return defaultLimit;
+            }
+
+            public void setDefaultLimit(Integer defaultLimit) {
+                this.defaultLimit = defaultLimit;
+            }
+
+            public Integer getMaxLimit() {
+                return maxLimit;
+            }
+
+            public void setMaxLimit(Integer maxLimit) {
+                this.maxLimit = maxLimit;
+            }
+
+            public Integer getQueryTimeoutSeconds() {
+                return queryTimeoutSeconds;
+            }
+
+            public void setQueryTimeoutSeconds(Integer queryTimeoutSeconds) {
+                this.queryTimeoutSeconds = queryTimeoutSeconds;
+            }
+
+            public Integer getFetchSize() {
+                return fetchSize;
+            }
+
+            public void setFetchSize(Integer fetchSize) {
+                this.fetchSize = fetchSize;
+            }
+
+            public Integer getPreviewRows() {
+                return previewRows;
+            }
+
+            public void setPreviewRows(Integer previewRows) {
+                this.previewRows = previewRows;
+            }
+
+            public Boolean getExplainEnabled() {
+                return explainEnabled;
+            }
+
+            public void setExplainEnabled(Boolean explainEnabled) {
+                this.explainEnabled = explainEnabled;
+            }
+
+            public Long getMaxExplainRows() {
+                return maxExplainRows;
+            }
+
+            public void setMaxExplainRows(Long maxExplainRows) {
+                this.maxExplainRows = maxExplainRows;
+            }
+        }
+
+        /**
+         * NL2SQL 专用只读数据源配置，url 为空时沿用 spring.datasource；配置 replica-url 时查询路由到只读副本
+         */
+        public static class Datasource {
+            private String url = "";
+            private String username = "";
+            private String password = "";
+            private String replicaUrl = "";
+            private Long connectionTimeoutMillis = 5000L;
+
+            public String getUrl() {
+                return url;
+            }
+
+            public void setUrl(String url) {
+                this.url = url;
+            }
+
+            public String getUsername() {
+                return username;
+            }
+
+            public void setUsername(String username) {
+                this.username = username;
+            }
+
+            public String getPassword() {
+                return password;
+            }
+
+            public void setPassword(String password) {
+                this.password = password;
+            }
+
+            public String getReplicaUrl() {
+                return replicaUrl;
+            }
+
+            public void setReplicaUrl(String replicaUrl) {
+                this.replicaUrl = replicaUrl;
+            }
+
+            public Long getConnectionTimeoutMillis() {
+                return connectionTimeoutMillis;
+            }
+
+            public void setConnectionTimeoutMillis(Long connectionTimeoutMillis) {
+                this.connectionTimeoutMillis = connectionTimeoutMillis;
+            }
+        }
+
+        /**
+         * 并发隔离配置：同时执行的查询数上限与排队等待超时
+         */
+        public static class Bulkhead {
+            private Integer maxConcurrentQueries = 4;
+            private Long queueTimeoutMillis = 3000L;
+
+            public Integer getMaxConcurrentQueries() {
+                return maxConcurrentQueries;
+            }
+
+            public void setMaxConcurrentQueries(Integer maxConcurrentQueries) {
+                this.maxConcurrentQueries = maxConcurrentQueries;
+            }
+
+            public Long getQueueTimeoutMillis() {
+                return queueTimeoutMillis;
+            }
+
+            public void setQueueTimeoutMillis(Long queueTimeoutMillis) {
+                this.queueTimeoutMillis = queueTimeoutMillis;
+            }
+        }
+
+        /**
+         * 预聚合汇总表配置：启动时构建，数据表版本变化后增量刷新
+         */
+        public static class Rollup {
+            private Boolean enabled = true;
+            private Boolean buildOnStartup = true;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Boolean getBuildOnStartup() {
+                return buildOnStartup;
+            }
+
+            public void setBuildOnStartup(Boolean buildOnStartup) {
+                this.buildOnStartup = buildOnStartup;
+            }
+        }
+
+        /**
+         * 提示词表结构裁剪配置：只发送与问题相关的表结构
+         */
+        public static class Prompt {
+            private Boolean schemaPruning = true;
+            private Boolean embeddingFallback = true;
+            private Double embeddingThreshold = 0.45;
+            private Integer maxTables = 2;
+
+            public Boolean getSchemaPruning() {
+                return schemaPruning;
+            }
+
+            public void setSchemaPruning(Boolean schemaPruning) {
+                this.schemaPruning = schemaPruning;
+            }
+
+            public Boolean getEmbeddingFallback() {
+                return embeddingFallback;
+            }
+
+            public void setEmbeddingFallback(Boolean embeddingFallback) {
+                this.embeddingFallback = embeddingFallback;
+            }
+
+            public Double getEmbeddingThreshold() {
+                return embeddingThreshold;
+            }
+
+            public void setEmbeddingThreshold(Double embeddingThreshold) {
+                this.embeddingThreshold = embeddingThreshold;
+            }
+
+            public Integer getMaxTables() {
+                return maxTables;
+            }
+
+            public void setMaxTables(Integer maxTables) {
+                this.maxTables = maxTables;
+            }
+        }
+
+        /**
+         * SQL 自修正配置：EXPLAIN 或安全校验失败时把错误反馈给大模型修正
+         */
+        public static class Repair {
+            private Boolean enabled = true;
+            private Integer maxAttempts = 2;
+            private Long budgetMillis = 10000L;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Integer getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(Integer maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public Long getBudgetMillis() {
+                return budgetMillis;
+            }
+
+            public void setBudgetMillis(Long budgetMillis) {
+                this.budgetMillis = budgetMillis;
+            }
+        }
+    }
+}
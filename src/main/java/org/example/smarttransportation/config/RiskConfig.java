@@ -0,0 +1,465 @@
+package org.example.smarttransportation.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.stereotype.Component;
+
+/**
+ * 风险预警配置类
+ * 启用定时任务，用于风险预警的定时扫描
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Configuration
+@EnableScheduling
+public class RiskConfig {
+
+    /**
+     * 风险预警配置属性类
+     */
+    @Component
+    @ConfigurationProperties(prefix = "risk")
+    public static class RiskProperties {
+        private Cube cube = new Cube();
+        private Scanner scanner = new Scanner();
+        private Alert alert = new Alert();
+        private Batch batch = new Batch();
+        private Spatial spatial = new Spatial();
+        private Rules rules = new Rules();
+        private Changes changes = new Changes();
+        private Baseline baseline = new Baseline();
+        private ReportCache reportCache = new ReportCache();
+
+        public Cube getCube() {
+            return cube;
+        }
+
+        public void setCube(Cube cube) {
+            this.cube = cube;
+        }
+
+        public Scanner getScanner() {
+            return scanner;
+        }
+
+        public void setScanner(Scanner scanner) {
+            this.scanner = scanner;
+        }
+
+        public Alert getAlert() {
+            return alert;
+        }
+
+        public void setAlert(Alert alert) {
+            this.alert = alert;
+        }
+
+        public Batch getBatch() {
+            return batch;
+        }
+
+        public void setBatch(Batch batch) {
+            this.batch = batch;
+        }
+
+        public Spatial getSpatial() {
+            return spatial;
+        }
+
+        public void setSpatial(Spatial spatial) {
+            this.spatial = spatial;
+        }
+
+        public Rules getRules() {
+            return rules;
+        }
+
+        public void setRules(Rules rules) {
+            this.rules = rules;
+        }
+
+        public Changes getChanges() {
+            return changes;
+        }
+
+        public void setChanges(Changes changes) {
+            this.changes = changes;
+        }
+
+        public Baseline getBaseline() {
+            return baseline;
+        }
+
+        public void setBaseline(Baseline baseline) {
+            this.baseline = baseline;
+        }
+
+        public ReportCache getReportCache() {
+            return reportCache;
+        }
+
+        public void setReportCache(ReportCache reportCache) {
+            this.reportCache = reportCache;
+        }
+
+        /**
+         * 风险立方体配置：后台预计算数据窗口内每个小时的各因子风险评分
+         */
+        public static class Cube {
+            private Boolean enabled = true;
+            private Boolean buildOnStartup = true;
+            private String startDate = "2024-02-01";
+            private String endDate = "2024-02-29";
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Boolean getBuildOnStartup() {
+                return buildOnStartup;
+            }
+
+            public void setBuildOnStartup(Boolean buildOnStartup) {
+                this.buildOnStartup = buildOnStartup;
+            }
+
+            /**
+             * 数据窗口起始日期（含）
+             */
+            public String getStartDate() {
+                return startDate;
+            }
+
+            public void setStartDate(String startDate) {
+                this.startDate = startDate;
+            }
+
+            /**
+             * 数据窗口结束日期（含）
+             */
+            public String getEndDate() {
+                return endDate;
+            }
+
+            public void setEndDate(String endDate) {
+                this.endDate = endDate;
+            }
+        }
+
+        /**
+         * 定时扫描配置：每隔 intervalSeconds 评估从参考时间起 horizonHours 内的各个时间窗口
+         * 执行间隔与首次延迟由 @Scheduled 直接读取 risk.scanner.interval-seconds / initial-delay-seconds
+         */
+        public static class Scanner {
+            private Boolean enabled = true;
+            private Long intervalSeconds = 300L;
+            private Long initialDelaySeconds = 60L;
+            private Integer horizonHours = 6;
+            private Integer windowHours = 2;
+            private String referenceTime = "";
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Long getIntervalSeconds() {
+                return intervalSeconds;
+            }
+
+            public void setIntervalSeconds(Long intervalSeconds) {
+                this.intervalSeconds = intervalSeconds;
+            }
+
+            public Long getInitialDelaySeconds() {
+                return initialDelaySeconds;
+            }
+
+            public void setInitialDelaySeconds(Long initialDelaySeconds) {
+                this.initialDelaySeconds = initialDelaySeconds;
+            }
+
+            public Integer getHorizonHours() {
+                return horizonHours;
+            }
+
+            public void setHorizonHours(Integer horizonHours) {
+                this.horizonHours = horizonHours;
+            }
+
+            /**
+             * 时间窗口长度（小时），窗口从零点起按该长度对齐
+             */
+            public Integer getWindowHours() {
+                return windowHours;
+            }
+
+            public void setWindowHours(Integer windowHours) {
+                this.windowHours = windowHours;
+            }
+
+            /**
+             * 参考时间，为空时使用当前时间；回放历史数据时可设为数据窗口内的时间
+             */
+            public String getReferenceTime() {
+                return referenceTime;
+            }
+
+            public void setReferenceTime(String referenceTime) {
+                this.referenceTime = referenceTime;
+            }
+        }
+
+        /**
+         * 风险等级变化推送配置
+         */
+        public static class Alert {
+            private Long heartbeatSeconds = 30L;
+
+            /**
+             * SSE 心跳间隔，防止代理因空闲断开连接
+             */
+            public Long getHeartbeatSeconds() {
+                return heartbeatSeconds;
+            }
+
+            public void setHeartbeatSeconds(Long heartbeatSeconds) {
+                this.heartbeatSeconds = heartbeatSeconds;
+            }
+        }
+
+        /**
+         * 批量风险评估（风险热力图）配置
+         */
+        public static class Batch {
+            private Integer maxDays = 93;
+            private Integer parallelism = 4;
+
+            /**
+             * 单次评估允许的最大天数
+             */
+            public Integer getMaxDays() {
+                return maxDays;
+            }
+
+            public void setMaxDays(Integer maxDays) {
+                this.maxDays = maxDays;
+            }
+
+            /**
+             * 超出常驻立方体范围时并行加载各数据表的线程数
+             */
+            public Integer getParallelism() {
+                return parallelism;
+            }
+
+            public void setParallelism(Integer parallelism) {
+                this.parallelism = parallelism;
+            }
+        }
+
+        /**
+         * 空间风险网格配置：事故、客流、活动、投诉按坐标分桶到网格，高风险区域按网格评分识别
+         * 数据窗口与风险立方体一致
+         */
+        public static class Spatial {
+            private Boolean enabled = true;
+            private Double cellMeters = 400.0;
+            private Integer topZones = 5;
+            private Double minScore = 20.0;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            /**
+             * 网格边长（米）
+             */
+            public Double getCellMeters() {
+                return cellMeters;
+            }
+
+            public void setCellMeters(Double cellMeters) {
+                this.cellMeters = cellMeters;
+            }
+
+            /**
+             * 预警报告中最多列出的高风险区域数
+             */
+            public Integer getTopZones() {
+                return topZones;
+            }
+
+            public void setTopZones(Integer topZones) {
+                this.topZones = topZones;
+            }
+
+            /**
+             * 平滑后评分（0-100）低于该值的网格不列为高风险区域
+             */
+            public Double getMinScore() {
+                return minScore;
+            }
+
+            public void setMinScore(Double minScore) {
+                this.minScore = minScore;
+            }
+        }
+
+        /**
+         * 风险评分规则配置
+         * 检查间隔由 @Scheduled 直接读取 risk.rules.reload-interval-seconds
+         */
+        public static class Rules {
+            private String location = "classpath:risk-rules.yml";
+            private Long reloadIntervalSeconds = 10L;
+
+            /**
+             * 规则文件位置，可指向外部文件（如 file:/etc/smart-transportation/risk-rules.yml）以便在线修改
+             */
+            public String getLocation() {
+                return location;
+            }
+
+            public void setLocation(String location) {
+                this.location = location;
+            }
+
+            public Long getReloadIntervalSeconds() {
+                return reloadIntervalSeconds;
+            }
+
+            public void setReloadIntervalSeconds(Long reloadIntervalSeconds) {
+                this.reloadIntervalSeconds = reloadIntervalSeconds;
+            }
+        }
+
+        /**
+         * 数据变更通知配置：实体保存与 created_at 高水位轮询发现的变更只重算受影响的日期
+         * 轮询间隔由 @Scheduled 直接读取 risk.changes.poll-interval-seconds
+         */
+        public static class Changes {
+            private Boolean enabled = true;
+            private Long pollIntervalSeconds = 5L;
+            private Boolean watermarkEnabled = true;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public Long getPollIntervalSeconds() {
+                return pollIntervalSeconds;
+            }
+
+            public void setPollIntervalSeconds(Long pollIntervalSeconds) {
+                this.pollIntervalSeconds = pollIntervalSeconds;
+            }
+
+            /**
+             * 是否轮询各表 created_at 高水位，发现绕过应用直接写入数据库的新记录
+             */
+            public Boolean getWatermarkEnabled() {
+                return watermarkEnabled;
+            }
+
+            public void setWatermarkEnabled(Boolean watermarkEnabled) {
+                this.watermarkEnabled = watermarkEnabled;
+            }
+        }
+
+        /**
+         * 事故历史基线配置：按周内小时与空间网格汇总全部历史事故，交通风险按偏离基线的程度评分
+         */
+        public static class Baseline {
+            private Boolean enabled = true;
+            private Double zoneSignificance = 0.01;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            /**
+             * 高风险网格的事故数泊松上尾概率低于该值时，在风险因子中注明显著高于该区域历史基线
+             */
+            public Double getZoneSignificance() {
+                return zoneSignificance;
+            }
+
+            public void setZoneSignificance(Double zoneSignificance) {
+                this.zoneSignificance = zoneSignificance;
+            }
+        }
+
+        /**
+         * 当前风险预警报告缓存配置：按时间桶、区域、规则指纹缓存，本地近端缓存 + Redis 哈希跨节点共享
+         */
+        public static class ReportCache {
+            private Boolean enabled = true;
+            private Integer bucketMinutes = 1;
+            private Integer refreshAheadSeconds = 20;
+            private Boolean shared = true;
+
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(Boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            /**
+             * 时间桶长度（分钟），同一时间桶内的请求共用一份报告
+             */
+            public Integer getBucketMinutes() {
+                return bucketMinutes;
+            }
+
+            public void setBucketMinutes(Integer bucketMinutes) {
+                this.bucketMinutes = bucketMinutes;
+            }
+
+            /**
+             * 当前时间桶结束前多少秒开始在后台生成下一个时间桶的报告
+             */
+            public Integer getRefreshAheadSeconds() {
+                return refreshAheadSeconds;
+            }
+
+            public void setRefreshAheadSeconds(Integer refreshAheadSeconds) {
+                this.refreshAheadSeconds = refreshAheadSeconds;
+            }
+
+            /**
+             * 是否通过 Redis 在节点间共享报告；没有 Redis 时只使用本地缓存
+             */
+            public Boolean getShared() {
+                return shared;
+            }
+
+            public void setShared(Boolean shared) {
+                this.shared = shared;
+            }
+        }
+    }
+}
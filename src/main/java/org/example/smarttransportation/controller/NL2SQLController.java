@@ -0,0 +1,188 @@
+package org.example.smarttransportation.controller;
+
+import org.example.smarttransportation.component.DataChangeMonitor;
+import org.example.smarttransportation.dto.DataChangeEvent;
+import org.example.smarttransportation.service.ColumnarStore;
+import org.example.smarttransportation.service.NL2SQLService;
+import org.example.smarttransportation.service.RiskCubeService;
+import org.example.smarttransportation.service.RollupService;
+import org.example.smarttransportation.service.SpatialRiskService;
+import org.example.smarttransportation.service.SqlQueryExecutor;
+import org.example.smarttransportation.service.SqlResultCache;
+import org.example.smarttransportation.service.SqlTranslationCache;
+import org.example.smarttransportation.service.TableVersionRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NL2SQL 管理控制器
+ * 提供流式查询、查询缓存、翻译模板库、查询并发与汇总表统计，以及数据导入完成后通知表版本变更的接口
+ *
+ * @author pojin
+ * @date 2025/11/23
+ */
+@RestController
+@RequestMapping("/api/nl2sql")
+@CrossOrigin(origins = "*")
+public class NL2SQLController {
+
+    private static final Logger logger = LoggerFactory.getLogger(NL2SQLController.class);
+
+    @Autowired
+    private SqlResultCache sqlResultCache;
+
+    @Autowired
+    private SqlTranslationCache sqlTranslationCache;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private SqlQueryExecutor sqlQueryExecutor;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private ColumnarStore columnarStore;
+
+    @Autowired
+    private NL2SQLService nl2sqlService;
+
+    @Autowired
+    private RiskCubeService riskCubeService;
+
+    @Autowired
+    private SpatialRiskService spatialRiskService;
+
+    @Autowired
+    private DataChangeMonitor dataChangeMonitor;
+
+    /**
+     * 流式执行自然语言查询：以 SSE 推送进度事件（事件名为阶段），最后一个 COMPLETED 事件包含查询结果；
+     * 客户端断开连接时取消数据库上正在执行的查询
+     */
+    @GetMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<NL2SQLService.QueryProgress>> streamQuery(@RequestParam String question) {
+        return nl2sqlService.executeQueryStream(question)
+            .map(progress -> ServerSentEvent.builder(progress).event(progress.getStage().name()).build())
+            .doOnCancel(() -> logger.info("客户端已断开，取消NL2SQL查询: {}", question));
+    }
+
+    /**
+     * 查询结果缓存统计
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(sqlResultCache.getStats());
+    }
+
+    /**
+     * 翻译缓存/模板库统计：命中率与节省的大模型耗时
+     */
+    @GetMapping("/translation/stats")
+    public ResponseEntity<Map<String, Object>> getTranslationStats() {
+        return ResponseEntity.ok(sqlTranslationCache.getStats());
+    }
+
+    /**
+     * 查询并发隔离统计：执行中/排队中的查询数、排队耗时与拒绝次数
+     */
+    @GetMapping("/query/stats")
+    public ResponseEntity<Map<String, Object>> getQueryStats() {
+        return ResponseEntity.ok(sqlQueryExecutor.getStats());
+    }
+
+    /**
+     * 预聚合汇总表状态
+     */
+    @GetMapping("/rollups")
+    public ResponseEntity<List<Map<String, Object>>> getRollups() {
+        return ResponseEntity.ok(rollupService.getStats());
+    }
+
+    /**
+     * 后台刷新汇总表，full=true 时全量重建（历史数据被修正后使用）
+     */
+    @PostMapping("/rollups/refresh")
+    public ResponseEntity<Map<String, Object>> refreshRollups(@RequestParam(defaultValue = "false") boolean full) {
+        rollupService.refreshAllAsync(full);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("full", full);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 列式内存表加载状态
+     */
+    @GetMapping("/columnar")
+    public ResponseEntity<List<Map<String, Object>>> getColumnarTables() {
+        return ResponseEntity.ok(columnarStore.getStats());
+    }
+
+    /**
+     * 数据导入完成后调用：递增表版本，使依赖该表的缓存失效，增量刷新相关汇总表，重新加载列式内存表；
+     * 发布数据变更事件，风险立方体在给出导入数据的日期范围 from/to 时只重算受影响的日期，否则重建相关层
+     */
+    @PostMapping("/tables/{table}/version")
+    public ResponseEntity<Map<String, Object>> bumpTableVersion(
+            @PathVariable String table,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        DataChangeEvent event;
+        try {
+            event = dataChangeMonitor.notify(table, from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        rollupService.refreshAsync(table, false);
+        columnarStore.loadAsync(table);
+        logger.info("收到数据表变更通知: {} {} ~ {}", table, from, to);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("table", table);
+        result.put("version", event.getVersion());
+        result.put("from", from);
+        result.put("to", to);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 各数据表的变更监测状态（高水位、最近一次变更）
+     */
+    @GetMapping("/tables/changes")
+    public ResponseEntity<List<Map<String, Object>>> getTableChanges() {
+        return ResponseEntity.ok(dataChangeMonitor.getStats());
+    }
+
+    /**
+     * 全量数据重新导入后调用：所有表版本递增，汇总表全量重建，列式内存表重新加载，风险立方体重建
+     */
+    @PostMapping("/tables/version")
+    public ResponseEntity<Map<String, Object>> bumpAllTableVersions() {
+        tableVersionRegistry.bumpAll();
+        sqlResultCache.clear();
+        rollupService.refreshAllAsync(true);
+        columnarStore.loadAllAsync();
+        riskCubeService.refreshAllAsync();
+        spatialRiskService.refreshAllAsync();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        return ResponseEntity.ok(result);
+    }
+}
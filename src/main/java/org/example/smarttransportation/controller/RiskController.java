@@ -0,0 +1,213 @@
+package org.example.smarttransportation.controller;
+
+import org.example.smarttransportation.component.RiskScanScheduler;
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.ChartData;
+import org.example.smarttransportation.dto.RiskAlert;
+import org.example.smarttransportation.dto.RiskWarningReport;
+import org.example.smarttransportation.entity.RiskWarningRecord;
+import org.example.smarttransportation.repository.RiskWarningRecordRepository;
+import org.example.smarttransportation.service.AccidentBaselineService;
+import org.example.smarttransportation.service.RiskAlertService;
+import org.example.smarttransportation.service.RiskCubeService;
+import org.example.smarttransportation.service.RiskReportCache;
+import org.example.smarttransportation.service.RiskRuleService;
+import org.example.smarttransportation.service.RiskWarningService;
+import org.example.smarttransportation.service.SpatialRiskIndex;
+import org.example.smarttransportation.service.SpatialRiskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 风险预警控制器
+ * 提供按需生成预警、风险热力图、高风险网格、评分规则管理、预警记录查询、手动扫描，以及风险等级变化的 SSE 推送
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@RestController
+@RequestMapping("/api/risk")
+@CrossOrigin(origins = "*")
+public class RiskController {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskController.class);
+
+    @Autowired
+    private RiskWarningService riskWarningService;
+
+    @Autowired
+    private RiskAlertService riskAlertService;
+
+    @Autowired
+    private RiskCubeService riskCubeService;
+
+    @Autowired
+    private SpatialRiskService spatialRiskService;
+
+    @Autowired
+    private RiskRuleService riskRuleService;
+
+    @Autowired
+    private AccidentBaselineService accidentBaselineService;
+
+    @Autowired
+    private RiskReportCache riskReportCache;
+
+    @Autowired
+    private RiskScanScheduler riskScanScheduler;
+
+    @Autowired
+    private RiskWarningRecordRepository riskWarningRecordRepository;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    /**
+     * 生成指定时间的风险预警报告（不保存）；不指定时间时返回缓存的当前报告
+     */
+    @GetMapping("/warning")
+    public ResponseEntity<RiskWarningReport> getWarning(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime time) {
+        return ResponseEntity.ok(time != null ? riskWarningService.generateRiskWarning(time)
+            : riskReportCache.getCurrentReport());
+    }
+
+    /**
+     * 风险热力图：批量评估 [from, to) 内按 stepHours 划分的各时间窗口
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<?> getHeatmap(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "1") int stepHours) {
+        try {
+            ChartData chart = riskWarningService.evaluateRange(from, to, stepHours);
+            return ResponseEntity.ok(chart);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 分时段事故与客流分布，以及各高峰时段合计
+     */
+    @GetMapping("/hourly")
+    public ResponseEntity<?> getHourlyProfile(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            return ResponseEntity.ok(riskWarningService.getHourlyProfile(startDate, endDate));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 订阅风险等级变化：先推送各时间窗口当前等级，之后只推送变化，并定期发送心跳注释
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RiskAlert>> stream() {
+        Flux<ServerSentEvent<RiskAlert>> alerts = riskAlertService.subscribe()
+            .startWith(riskAlertService.currentAlerts())
+            .map(alert -> ServerSentEvent.<RiskAlert>builder(alert).event("risk-level").build());
+        Flux<ServerSentEvent<RiskAlert>> heartbeats = Flux.interval(Duration.ofSeconds(properties.getAlert().getHeartbeatSeconds()))
+            .map(tick -> ServerSentEvent.<RiskAlert>builder().comment("heartbeat").build());
+        return Flux.merge(alerts, heartbeats)
+            .doOnCancel(() -> logger.debug("风险预警订阅已断开"));
+    }
+
+    /**
+     * 查询预警记录：指定时间范围时按窗口返回，否则返回最近保存的记录
+     */
+    @GetMapping("/records")
+    public ResponseEntity<List<RiskWarningRecord>> getRecords(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (from != null && to != null) {
+            return ResponseEntity.ok(riskWarningRecordRepository.findByTargetTimeBetweenOrderByTargetTimeAscGeneratedAtDesc(from, to));
+        }
+        return ResponseEntity.ok(riskWarningRecordRepository.findTop50ByOrderByGeneratedAtDesc());
+    }
+
+    /**
+     * 立即执行一轮扫描
+     */
+    @PostMapping("/scan")
+    public ResponseEntity<List<Map<String, Object>>> scan() {
+        return ResponseEntity.ok(riskScanScheduler.scan());
+    }
+
+    /**
+     * 风险立方体状态
+     */
+    @GetMapping("/cube")
+    public ResponseEntity<Map<String, Object>> getCubeStats() {
+        return ResponseEntity.ok(riskCubeService.getStats());
+    }
+
+    /**
+     * 指定日期的高风险网格；网格未就绪或日期超出数据窗口时返回 204
+     */
+    @GetMapping("/zones")
+    public ResponseEntity<List<SpatialRiskIndex.Zone>> getZones(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        List<SpatialRiskIndex.Zone> zones = spatialRiskService.findHighRiskZones(date);
+        return zones != null ? ResponseEntity.ok(zones) : ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 空间风险网格状态
+     */
+    @GetMapping("/spatial")
+    public ResponseEntity<Map<String, Object>> getSpatialStats() {
+        return ResponseEntity.ok(spatialRiskService.getStats());
+    }
+
+    /**
+     * 事故历史基线状态与 24 小时期望事故数分布
+     */
+    @GetMapping("/baseline")
+    public ResponseEntity<Map<String, Object>> getBaselineStats() {
+        return ResponseEntity.ok(accidentBaselineService.getStats());
+    }
+
+    /**
+     * 当前风险预警报告缓存状态
+     */
+    @GetMapping("/report-cache")
+    public ResponseEntity<Map<String, Object>> getReportCacheStats() {
+        return ResponseEntity.ok(riskReportCache.getStats());
+    }
+
+    /**
+     * 当前生效的风险评分规则
+     */
+    @GetMapping("/rules")
+    public ResponseEntity<Map<String, Object>> getRules() {
+        return ResponseEntity.ok(riskRuleService.getStatus());
+    }
+
+    /**
+     * 立即重新加载风险评分规则；新规则不合法时保留原规则并返回错误
+     */
+    @PostMapping("/rules/reload")
+    public ResponseEntity<Map<String, Object>> reloadRules() {
+        boolean reloaded = riskRuleService.reload();
+        Map<String, Object> status = riskRuleService.getStatus();
+        status.put("reloaded", reloaded);
+        return reloaded ? ResponseEntity.ok(status) : ResponseEntity.badRequest().body(status);
+    }
+}
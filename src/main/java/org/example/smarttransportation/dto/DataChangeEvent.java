@@ -0,0 +1,75 @@
+package org.example.smarttransportation.dto;
+
+import java.time.LocalDate;
+
+/**
+ * 数据表变更事件
+ * 表版本递增后发布，from/to 为变更记录所在的数据日期范围，为空表示范围未知（按整表变更处理）
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class DataChangeEvent {
+
+    private final String table;
+
+    private final LocalDate from;
+
+    private final LocalDate to;
+
+    /**
+     * 本次变更递增后的表版本
+     */
+    private final long version;
+
+    /**
+     * 变更来源：entity（实体保存）、watermark（created_at 高水位轮询）、api（导入完成通知）
+     */
+    private final String source;
+
+    /**
+     * 最早一条变更被发现的时间（毫秒），用于统计风险数据的新鲜度延迟
+     */
+    private final long detectedAt;
+
+    public DataChangeEvent(String table, LocalDate from, LocalDate to, long version, String source,
+                           long detectedAt) {
+        this.table = table;
+        this.from = from;
+        this.to = to;
+        this.version = version;
+        this.source = source;
+        this.detectedAt = detectedAt;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getDetectedAt() {
+        return detectedAt;
+    }
+
+    /**
+     * 是否给出了变更的日期范围
+     */
+    public boolean hasRange() {
+        return from != null && to != null;
+    }
+}
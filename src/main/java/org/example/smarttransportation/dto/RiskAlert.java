@@ -0,0 +1,113 @@
+package org.example.smarttransportation.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 风险等级变化推送DTO
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class RiskAlert {
+
+    /**
+     * 预警时间窗口的开始时间
+     */
+    private LocalDateTime targetTime;
+
+    private String timeWindow;
+
+    /**
+     * 变化前的风险等级，该窗口首次扫描时为空
+     */
+    private String previousLevel;
+
+    private String riskLevel;
+
+    private String riskType;
+
+    private int overallScore;
+
+    private String reportId;
+
+    private LocalDateTime generatedAt;
+
+    public RiskAlert() {
+    }
+
+    public RiskAlert(LocalDateTime targetTime, String previousLevel, RiskWarningReport report) {
+        this.targetTime = targetTime;
+        this.timeWindow = report.getTimeWindow();
+        this.previousLevel = previousLevel;
+        this.riskLevel = report.getRiskLevel();
+        this.riskType = report.getRiskType();
+        this.overallScore = report.getRiskAnalysis() != null ? report.getRiskAnalysis().getOverallRiskScore() : 0;
+        this.reportId = report.getReportId();
+        this.generatedAt = report.getGeneratedAt();
+    }
+
+    // Getters and Setters
+    public LocalDateTime getTargetTime() {
+        return targetTime;
+    }
+
+    public void setTargetTime(LocalDateTime targetTime) {
+        this.targetTime = targetTime;
+    }
+
+    public String getTimeWindow() {
+        return timeWindow;
+    }
+
+    public void setTimeWindow(String timeWindow) {
+        this.timeWindow = timeWindow;
+    }
+
+    public String getPreviousLevel() {
+        return previousLevel;
+    }
+
+    public void setPreviousLevel(String previousLevel) {
+        this.previousLevel = previousLevel;
+    }
+
+    public String getRiskLevel() {
+        return riskLevel;
+    }
+
+    public void setRiskLevel(String riskLevel) {
+        this.riskLevel = riskLevel;
+    }
+
+    public String getRiskType() {
+        return riskType;
+    }
+
+    public void setRiskType(String riskType) {
+        this.riskType = riskType;
+    }
+
+    public int getOverallScore() {
+        return overallScore;
+    }
+
+    public void setOverallScore(int overallScore) {
+        this.overallScore = overallScore;
+    }
+
+    public String getReportId() {
+        return reportId;
+    }
+
+    public void setReportId(String reportId) {
+        this.reportId = reportId;
+    }
+
+    public LocalDateTime getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public void setGeneratedAt(LocalDateTime generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+}
@@ -220,6 +220,13 @@ public class RiskWarningReport {
         private boolean isRushHour;
         private int accidentCount;
         private int highDensityStations;
+
+        /**
+         * 事故统计窗口的历史基线期望事故数、泊松 z 分数与上尾概率，基线不可用时为空
+         */
+        private Double expectedAccidents;
+        private Double accidentZScore;
+        private Double accidentTailProbability;
         private String trafficPattern;
         private int riskScore;
         
@@ -248,6 +255,30 @@ public class RiskWarningReport {
             this.highDensityStations = highDensityStations;
         }
         
+        public Double getExpectedAccidents() {
+            return expectedAccidents;
+        }
+        
+        public void setExpectedAccidents(Double expectedAccidents) {
+            this.expectedAccidents = expectedAccidents;
+        }
+        
+        public Double getAccidentZScore() {
+            return accidentZScore;
+        }
+        
+        public void setAccidentZScore(Double accidentZScore) {
+            this.accidentZScore = accidentZScore;
+        }
+        
+        public Double getAccidentTailProbability() {
+            return accidentTailProbability;
+        }
+        
+        public void setAccidentTailProbability(Double accidentTailProbability) {
+            this.accidentTailProbability = accidentTailProbability;
+        }
+        
         public String getTrafficPattern() {
             return trafficPattern;
         }
@@ -0,0 +1,145 @@
+package org.example.smarttransportation.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 风险预警记录实体
+ * 定时扫描生成的风险预警报告，同一时间窗口内容未变化的报告不重复保存
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Entity
+@Table(name = "risk_warning_records", indexes = {
+    @Index(name = "idx_risk_warning_target_generated", columnList = "target_time, generated_at")
+})
+public class RiskWarningRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 报告编号
+     */
+    @Column(name = "report_id", length = 64)
+    private String reportId;
+
+    /**
+     * 预警时间窗口的开始时间
+     */
+    @Column(name = "target_time", nullable = false)
+    private LocalDateTime targetTime;
+
+    @Column(name = "risk_level", length = 32)
+    private String riskLevel;
+
+    /**
+     * 该时间窗口上一份报告的风险等级，首次扫描时为空
+     */
+    @Column(name = "previous_level", length = 32)
+    private String previousLevel;
+
+    @Column(name = "risk_type", length = 128)
+    private String riskType;
+
+    @Column(name = "overall_score")
+    private Integer overallScore;
+
+    /**
+     * 报告内容指纹（不含报告编号与生成时间），用于去重
+     */
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
+    /**
+     * 完整报告（JSON格式）
+     */
+    @Column(name = "report_json", columnDefinition = "TEXT")
+    private String reportJson;
+
+    @Column(name = "generated_at")
+    private LocalDateTime generatedAt;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getReportId() {
+        return reportId;
+    }
+
+    public void setReportId(String reportId) {
+        this.reportId = reportId;
+    }
+
+    public LocalDateTime getTargetTime() {
+        return targetTime;
+    }
+
+    public void setTargetTime(LocalDateTime targetTime) {
+        this.targetTime = targetTime;
+    }
+
+    public String getRiskLevel() {
+        return riskLevel;
+    }
+
+    public void setRiskLevel(String riskLevel) {
+        this.riskLevel = riskLevel;
+    }
+
+    public String getPreviousLevel() {
+        return previousLevel;
+    }
+
+    public void setPreviousLevel(String previousLevel) {
+        this.previousLevel = previousLevel;
+    }
+
+    public String getRiskType() {
+        return riskType;
+    }
+
+    public void setRiskType(String riskType) {
+        this.riskType = riskType;
+    }
+
+    public Integer getOverallScore() {
+        return overallScore;
+    }
+
+    public void setOverallScore(Integer overallScore) {
+        this.overallScore = overallScore;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public String getReportJson() {
+        return reportJson;
+    }
+
+    public void setReportJson(String reportJson) {
+        this.reportJson = reportJson;
+    }
+
+    public LocalDateTime getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public void setGeneratedAt(LocalDateTime generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+}
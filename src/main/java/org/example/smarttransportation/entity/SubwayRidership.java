@@ -11,7 +11,10 @@ import java.math.BigDecimal;
  * @date 2025/11/22
  */
 @Entity
-@Table(name = "subway_ridership")
+@Table(name = "subway_ridership", indexes = {
+    // 高客流计数与 Top-N：按 ridership 倒序范围扫描，时间条件在索引内过滤
+    @Index(name = "idx_subway_ridership_ridership_time", columnList = "ridership, transit_timestamp")
+})
 @IdClass(SubwayRidershipId.class)
 public class SubwayRidership extends TransportationData {
 
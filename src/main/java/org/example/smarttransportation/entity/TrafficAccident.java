@@ -13,7 +13,12 @@ import java.math.BigDecimal;
  * @date 2025/11/23
  */
 @Entity
-@Table(name = "nyc_traffic_accidents")
+@Table(name = "nyc_traffic_accidents", indexes = {
+    // 按日期计数与按街道分组统计均可只读索引完成
+    @Index(name = "idx_accidents_date_street", columnList = "CRASH DATE, on_street_name"),
+    // 日期范围内按小时统计只读索引
+    @Index(name = "idx_accidents_date_minute", columnList = "CRASH DATE, crash_minute")
+})
 public class TrafficAccident extends TransportationData {
 
     @Id
@@ -26,6 +31,12 @@ public class TrafficAccident extends TransportationData {
     @Column(name = "crash_time")
     private String crashTime;
 
+    /**
+     * 发生时间的当日分钟数（0-1439），由 crash_time 解析后保存，无法解析时为空
+     */
+    @Column(name = "crash_minute")
+    private Integer crashMinute;
+
     @Column(name = "on_street_name", length = 128)
     private String onStreetName;
 
@@ -117,6 +128,10 @@ public class TrafficAccident extends TransportationData {
         this.crashTime = crashTime;
     }
 
+    public Integer getCrashMinute() {
+        return crashMinute;
+    }
+
     public String getOnStreetName() {
         return onStreetName;
     }
@@ -315,8 +330,46 @@ public class TrafficAccident extends TransportationData {
      * 获取事故时段描述
      */
     public String getTimeSlotDescription() {
-        // 由于只有日期信息，无法确定具体时段
-        return "未知时段";
+        Integer minute = crashMinute != null ? crashMinute : parseMinuteOfDay(crashTime);
+        if (minute == null) return "未知时段";
+
+        int hour = minute / 60;
+        if (hour >= 7 && hour <= 9) return "早高峰";
+        else if (hour >= 17 && hour <= 19) return "晚高峰";
+        else if (hour >= 22 || hour <= 5) return "深夜时段";
+        else return "平峰时段";
+    }
+
+    /**
+     * 保存前由 crash_time 计算 crash_minute
+     */
+    @PrePersist
+    @PreUpdate
+    void syncCrashMinute() {
+        crashMinute = parseMinuteOfDay(crashTime);
+    }
+
+    /**
+     * 解析 crash_time（H:mm 或 HH:mm[:ss]）为当日分钟数，无法解析时返回 null
+     */
+    public static Integer parseMinuteOfDay(String crashTime) {
+        if (crashTime == null) {
+            return null;
+        }
+        String[] parts = crashTime.trim().split(":");
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            int hour = Integer.parseInt(parts[0]);
+            int minute = Integer.parseInt(parts[1]);
+            if (hour < 0 || hour >= 24 || minute < 0 || minute >= 60) {
+                return null;
+            }
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
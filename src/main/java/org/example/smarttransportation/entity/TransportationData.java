@@ -1,16 +1,20 @@
 package org.example.smarttransportation.entity;
 
 import jakarta.persistence.*;
+import org.example.smarttransportation.component.DataChangeEntityListener;
+
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
 
 /**
  * 交通数据基础实体类
- * 
+ * 保存、更新、删除后由 DataChangeEntityListener 通知数据变更
+ *
  * @author pojin
  * @date 2025/11/22
  */
 @MappedSuperclass
+@EntityListeners(DataChangeEntityListener.class)
 public abstract class TransportationData {
     
     @Column(name = "latitude", precision = 10, scale = 7)
@@ -62,4 +62,17 @@ public interface ComplaintRepository extends JpaRepository<Complaint, Long> {
      */
     @Query("SELECT c FROM Complaint c WHERE LOWER(c.complaintType) LIKE '%traffic%' OR LOWER(c.complaintType) LIKE '%vehicle%' OR LOWER(c.complaintType) LIKE '%parking%' OR LOWER(c.complaintType) LIKE '%noise%' OR LOWER(c.complaintType) LIKE '%street%' OR LOWER(c.complaintType) LIKE '%sidewalk%'")
     List<Complaint> findTrafficRelatedComplaints();
+
+    /**
+     * 查询有坐标的投诉时间与位置，用于空间网格分桶
+     *
+     * @param start 开始时间（含）
+     * @param end 结束时间（不含）
+     * @return [createdAt, latitude, longitude, complaintType]
+     */
+    @Query("SELECT c.createdAt, c.latitude, c.longitude, c.complaintType FROM Complaint c " +
+           "WHERE c.createdAt >= :start AND c.createdAt < :end " +
+           "AND c.latitude IS NOT NULL AND c.longitude IS NOT NULL")
+    List<Object[]> findComplaintLocations(@Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end);
 }
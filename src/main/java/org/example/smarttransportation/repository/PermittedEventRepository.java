@@ -90,4 +90,15 @@ public interface PermittedEventRepository extends JpaRepository<PermittedEvent,
            "GROUP BY p.eventLocation ORDER BY COUNT(p) DESC")
     List<Object[]> countEventsByLocation(@Param("startDate") LocalDate startDate,
                                         @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+
+    /**
+     * 查询指定区有坐标的活动时间与位置，用于空间网格分桶
+     * 返回 [startAt, endAt, latitude, longitude, eventLocation]
+     */
+    @Query("SELECT p.startAt, p.endAt, p.latitude, p.longitude, p.eventLocation FROM PermittedEvent p " +
+           "WHERE p.eventBorough = :borough AND DATE(p.startAt) <= :endDate AND DATE(p.endAt) >= :startDate " +
+           "AND p.latitude IS NOT NULL AND p.longitude IS NOT NULL")
+    List<Object[]> findEventLocations(@Param("borough") String borough,
+                                     @Param("startDate") LocalDate startDate,
+                                     @Param("endDate") LocalDate endDate);
+}
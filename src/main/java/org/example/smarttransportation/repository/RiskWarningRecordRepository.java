@@ -0,0 +1,35 @@
+package org.example.smarttransportation.repository;
+
+import org.example.smarttransportation.entity.RiskWarningRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 风险预警记录数据访问层
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Repository
+public interface RiskWarningRecordRepository extends JpaRepository<RiskWarningRecord, Long> {
+
+    /**
+     * 查询时间窗口最近一次保存的报告
+     */
+    Optional<RiskWarningRecord> findFirstByTargetTimeOrderByGeneratedAtDesc(LocalDateTime targetTime);
+
+    /**
+     * 查询时间范围内各窗口的报告
+     */
+    List<RiskWarningRecord> findByTargetTimeBetweenOrderByTargetTimeAscGeneratedAtDesc(LocalDateTime start,
+                                                                                     LocalDateTime end);
+
+    /**
+     * 查询最近保存的报告
+     */
+    List<RiskWarningRecord> findTop50ByOrderByGeneratedAtDesc();
+}
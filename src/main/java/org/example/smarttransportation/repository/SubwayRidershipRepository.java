@@ -2,12 +2,14 @@ package org.example.smarttransportation.repository;
 
 import org.example.smarttransportation.entity.SubwayRidership;
 import org.example.smarttransportation.entity.SubwayRidershipId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -36,11 +38,13 @@ public interface SubwayRidershipRepository extends JpaRepository<SubwayRidership
                                                    @Param("endDate") LocalDate endDate);
 
     /**
-     * 查询高峰时段客流
+     * 按小时汇总 [start, end) 内的客流，返回 [hour, sum(ridership)]
      */
-    @Query("SELECT s FROM SubwayRidership s WHERE DATE(s.transitTimestamp) BETWEEN :startDate AND :endDate")
-    List<SubwayRidership> findRushHourRidership(@Param("startDate") LocalDate startDate,
-                                               @Param("endDate") LocalDate endDate);
+    @Query("SELECT HOUR(s.transitTimestamp), SUM(s.ridership) FROM SubwayRidership s " +
+           "WHERE s.transitTimestamp >= :start AND s.transitTimestamp < :end " +
+           "GROUP BY HOUR(s.transitTimestamp)")
+    List<Object[]> sumRidershipByHour(@Param("start") LocalDateTime start,
+                                      @Param("end") LocalDateTime end);
 
     /**
      * 查询高密度客流站点
@@ -51,6 +55,38 @@ public interface SubwayRidershipRepository extends JpaRepository<SubwayRidership
                                                  @Param("endDate") LocalDate endDate,
                                                  @Param("minRidership") Integer minRidership);
 
+    /**
+     * 统计客流不低于阈值的记录数（只返回计数，不加载实体）
+     * 时间条件为 [start, end) 半开区间，不对列套 DATE()，可走 (ridership, transit_timestamp) 索引
+     */
+    @Query("SELECT COUNT(s) FROM SubwayRidership s WHERE s.transitTimestamp >= :start AND s.transitTimestamp < :end " +
+           "AND s.ridership >= :minRidership")
+    long countHighDensityRecords(@Param("start") LocalDateTime start,
+                                 @Param("end") LocalDateTime end,
+                                 @Param("minRidership") Integer minRidership);
+
+    /**
+     * 按天统计客流不低于阈值的记录数，返回 [日期, count]
+     */
+    @Query("SELECT DATE(s.transitTimestamp), COUNT(s) FROM SubwayRidership s " +
+           "WHERE s.transitTimestamp >= :start AND s.transitTimestamp < :end AND s.ridership >= :minRidership " +
+           "GROUP BY DATE(s.transitTimestamp)")
+    List<Object[]> countHighDensityRecordsByDay(@Param("start") LocalDateTime start,
+                                               @Param("end") LocalDateTime end,
+                                               @Param("minRidership") Integer minRidership);
+
+    /**
+     * 查询客流最高的前 N 条记录，只取站点名称与坐标
+     * 返回 [stationComplex, latitude, longitude, ridership]
+     */
+    @Query("SELECT s.stationComplex, s.latitude, s.longitude, s.ridership FROM SubwayRidership s " +
+           "WHERE s.transitTimestamp >= :start AND s.transitTimestamp < :end " +
+           "AND s.ridership >= :minRidership ORDER BY s.ridership DESC")
+    List<Object[]> findTopRidershipStations(@Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("minRidership") Integer minRidership,
+                                           Pageable pageable);
+
     /**
      * 按站点统计平均客流
      */
@@ -86,4 +122,16 @@ public interface SubwayRidershipRepository extends JpaRepository<SubwayRidership
            "WHERE DATE(sr.transitTimestamp) BETWEEN :startDate AND :endDate)")
     List<SubwayRidership> findAbnormalRidership(@Param("startDate") LocalDate startDate,
                                                @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+
+    /**
+     * 按站点、天统计客流不低于阈值的记录数，用于空间网格分桶
+     * 返回 [日期, stationComplex, latitude, longitude, count]
+     */
+    @Query("SELECT DATE(s.transitTimestamp), s.stationComplex, s.latitude, s.longitude, COUNT(s) FROM SubwayRidership s " +
+           "WHERE s.transitTimestamp >= :start AND s.transitTimestamp < :end AND s.ridership >= :minRidership " +
+           "AND s.latitude IS NOT NULL AND s.longitude IS NOT NULL " +
+           "GROUP BY DATE(s.transitTimestamp), s.stationComplex, s.latitude, s.longitude")
+    List<Object[]> countHighDensityRecordsByStationAndDay(@Param("start") LocalDateTime start,
+                                                         @Param("end") LocalDateTime end,
+                                                         @Param("minRidership") Integer minRidership);
+}
@@ -1,6 +1,7 @@
 package org.example.smarttransportation.repository;
 
 import org.example.smarttransportation.entity.TrafficAccident;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,11 +27,19 @@ public interface TrafficAccidentRepository extends JpaRepository<TrafficAccident
                                          @Param("endDate") LocalDate endDate);
 
     /**
-     * 查询指定时间范围内的高峰时段事故
+     * 统计时间范围内的事故数量（只返回计数，不加载实体）
      */
-    @Query("SELECT t FROM TrafficAccident t WHERE t.crashDate BETWEEN :startDate AND :endDate")
-    List<TrafficAccident> findRushHourAccidents(@Param("startDate") LocalDate startDate,
-                                               @Param("endDate") LocalDate endDate);
+    @Query("SELECT COUNT(t) FROM TrafficAccident t WHERE t.crashDate BETWEEN :startDate AND :endDate")
+    long countByDateRange(@Param("startDate") LocalDate startDate,
+                          @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按天统计事故数量，返回 [crashDate, count]
+     */
+    @Query("SELECT t.crashDate, COUNT(t) FROM TrafficAccident t " +
+           "WHERE t.crashDate BETWEEN :startDate AND :endDate GROUP BY t.crashDate")
+    List<Object[]> countAccidentsByDay(@Param("startDate") LocalDate startDate,
+                                      @Param("endDate") LocalDate endDate);
 
     /**
      * 查询天气相关事故
@@ -52,6 +61,17 @@ public interface TrafficAccidentRepository extends JpaRepository<TrafficAccident
     List<Object[]> countAccidentsByStreet(@Param("startDate") LocalDate startDate,
                                          @Param("endDate") LocalDate endDate);
 
+    /**
+     * 按街道统计事故数量，只取事故最多的前 N 条
+     */
+    @Query("SELECT t.onStreetName, COUNT(t) FROM TrafficAccident t " +
+           "WHERE t.crashDate BETWEEN :startDate AND :endDate " +
+           "AND t.onStreetName IS NOT NULL " +
+           "GROUP BY t.onStreetName ORDER BY COUNT(t) DESC")
+    List<Object[]> countAccidentsByStreet(@Param("startDate") LocalDate startDate,
+                                         @Param("endDate") LocalDate endDate,
+                                         Pageable pageable);
+
     /**
      * 查询严重事故（有伤亡）
      */
@@ -61,11 +81,37 @@ public interface TrafficAccidentRepository extends JpaRepository<TrafficAccident
                                              @Param("endDate") LocalDate endDate);
 
     /**
-     * 按时段统计事故数量
+     * 按小时统计事故数量，返回 [hour, count]，发生时间未知的事故 hour 为 null
      */
-    @Query("SELECT t.crashDate, COUNT(t) FROM TrafficAccident t " +
+    @Query("SELECT FLOOR(t.crashMinute / 60), COUNT(t) FROM TrafficAccident t " +
            "WHERE t.crashDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY t.crashDate ORDER BY t.crashDate")
+           "GROUP BY FLOOR(t.crashMinute / 60)")
     List<Object[]> countAccidentsByHour(@Param("startDate") LocalDate startDate,
                                        @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+
+    /**
+     * 事故数据的最早、最晚日期，返回一行 [minCrashDate, maxCrashDate]
+     */
+    @Query("SELECT MIN(t.crashDate), MAX(t.crashDate) FROM TrafficAccident t")
+    List<Object[]> findCrashDateRange();
+
+    /**
+     * 按日期与小时统计事故数量，用于构建周内小时基线
+     * 返回 [crashDate, hour, count]，发生时间未知的事故 hour 为 null
+     */
+    @Query("SELECT t.crashDate, FLOOR(t.crashMinute / 60), COUNT(t) FROM TrafficAccident t " +
+           "WHERE t.crashDate BETWEEN :startDate AND :endDate " +
+           "GROUP BY t.crashDate, FLOOR(t.crashMinute / 60)")
+    List<Object[]> countAccidentsByDateAndHour(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate);
+
+    /**
+     * 查询有坐标的事故位置，用于空间网格分桶
+     * 返回 [crashDate, latitude, longitude, onStreetName]
+     */
+    @Query("SELECT t.crashDate, t.latitude, t.longitude, t.onStreetName FROM TrafficAccident t " +
+           "WHERE t.crashDate BETWEEN :startDate AND :endDate " +
+           "AND t.latitude IS NOT NULL AND t.longitude IS NOT NULL")
+    List<Object[]> findAccidentLocations(@Param("startDate") LocalDate startDate,
+                                        @Param("endDate") LocalDate endDate);
+}
@@ -43,7 +43,7 @@ public class AIAssistantService {
     private TrafficDataAnalysisService trafficDataAnalysisService;
 
     @Autowired
-    private RiskWarningService riskWarningService;
+    private RiskReportCache riskReportCache;
 
     @Autowired
     private RAGService ragService;
@@ -297,11 +297,8 @@ public class AIAssistantService {
      */
     private ChatResponse handleProactiveWarningScenario(ChatRequest request, String sessionId, long startTime) {
         try {
-            // 调用风险预警服务生成风险预警报告
-            // 这里使用当前时间作为目标时间，实际应用中可以根据用户请求解析具体时间
-            java.time.LocalDateTime targetDateTime = java.time.LocalDateTime.now();
-            org.example.smarttransportation.dto.RiskWarningReport riskReport =
-                riskWarningService.generateRiskWarning(targetDateTime);
+            // 当前时间的风险预警报告：同一时间桶内各节点共用缓存的报告，不重复生成
+            org.example.smarttransportation.dto.RiskWarningReport riskReport = riskReportCache.getCurrentReport();
 
             // 构建响应消息
             StringBuilder responseMessage = new StringBuilder();
@@ -366,7 +363,7 @@ public class AIAssistantService {
 
             if (result.getQueryData() != null && !result.getQueryData().isEmpty()) {
                 responseMessage.append("\n【数据支撑】\n");
-                responseMessage.append("查询到 ").append(result.getQueryData().size()).append(" 条相关数据。\n");
+                responseMessage.append("查询到 ").append(result.getQueryTotalRows()).append(" 条相关数据。\n");
             }
 
             if (result.getRetrievedDocs() != null && !result.getRetrievedDocs().isEmpty()) {
@@ -404,7 +401,7 @@ public class AIAssistantService {
 
             if (result.getQueryData() != null && !result.getQueryData().isEmpty()) {
                 responseMessage.append("\n【数据分析】\n");
-                responseMessage.append("基于 ").append(result.getQueryData().size()).append(" 条数据进行分析。\n");
+                responseMessage.append("基于 ").append(result.getQueryTotalRows()).append(" 条数据进行分析。\n");
             }
 
             if (result.getRetrievedDocs() != null && !result.getRetrievedDocs().isEmpty()) {
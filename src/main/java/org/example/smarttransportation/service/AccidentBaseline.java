@@ -0,0 +1,291 @@
+package org.example.smarttransportation.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 事故率历史基线
+ * 由全部历史事故按周内小时（周一 0 点为 0，共 168 个）与空间网格单元汇总得到期望事故数，
+ * 风险评分用观测值相对期望的偏离（泊松 z 分数、上尾概率）代替固定阈值。
+ * 实例不可变，数组存放：周内小时为 double[168]，网格单元为按编号排序的 long[] 与对应的日均事故数，查询为下标访问或二分查找。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class AccidentBaseline {
+
+    public static final int HOURS_PER_WEEK = 7 * RiskCube.HOURS_PER_DAY;
+
+    private final LocalDate firstDate;
+    private final LocalDate lastDate;
+    private final long totalAccidents;
+    private final long version;
+
+    /**
+     * 各周内小时的期望事故数（全市）
+     */
+    private final double[] hourlyRate;
+
+    /**
+     * 各星期几的期望事故数：hourlyRate 按天求和，下标为 DayOfWeek.getValue() - 1
+     */
+    private final double[] dailyRate = new double[7];
+
+    private final SpatialGrid grid;
+    private final long[] cells;
+    private final double[] cellDailyRate;
+
+    private AccidentBaseline(LocalDate firstDate, LocalDate lastDate, long totalAccidents, long version,
+                             double[] hourlyRate, SpatialGrid grid, long[] cells, double[] cellDailyRate) {
+        this.firstDate = firstDate;
+        this.lastDate = lastDate;
+        this.totalAccidents = totalAccidents;
+        this.version = version;
+        this.hourlyRate = hourlyRate;
+        this.grid = grid;
+        this.cells = cells;
+        this.cellDailyRate = cellDailyRate;
+        for (int hourOfWeek = 0; hourOfWeek < HOURS_PER_WEEK; hourOfWeek++) {
+            dailyRate[hourOfWeek / RiskCube.HOURS_PER_DAY] += hourlyRate[hourOfWeek];
+        }
+    }
+
+    /**
+     * 周内小时：周一 0 点为 0，周日 23 点为 167
+     */
+    public static int hourOfWeek(DayOfWeek dayOfWeek, int hour) {
+        return (dayOfWeek.getValue() - 1) * RiskCube.HOURS_PER_DAY + hour;
+    }
+
+    /**
+     * 目标时间所在小时的期望事故数
+     */
+    public double expectedInHour(LocalDateTime dateTime) {
+        return hourlyRate[hourOfWeek(dateTime.getDayOfWeek(), dateTime.getHour())];
+    }
+
+    /**
+     * [from, to] 内（含两端）的期望事故数，按各天的星期几累加。
+     * 只统计与基线数据范围 [firstDate, lastDate] 重叠的天，与观测值只覆盖有数据的天保持一致
+     */
+    public double expectedCount(LocalDate from, LocalDate to) {
+        if (from.isBefore(firstDate)) {
+            from = firstDate;
+        }
+        if (to.isAfter(lastDate)) {
+            to = lastDate;
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days <= 0) {
+            return 0;
+        }
+        // 整周部分每周期望相同，余下不足一周的天逐天累加
+        double weekly = 0;
+        for (double rate : dailyRate) {
+            weekly += rate;
+        }
+        double expected = weekly * (days / 7);
+        int dayOfWeek = from.getDayOfWeek().getValue() - 1;
+        for (int i = 0; i < days % 7; i++) {
+            expected += dailyRate[(dayOfWeek + i) % 7];
+        }
+        return expected;
+    }
+
+    /**
+     * [from, to] 内（含两端）落在基线数据范围的天数，没有重叠时为 0
+     */
+    public int coveredDays(LocalDate from, LocalDate to) {
+        LocalDate start = from.isBefore(firstDate) ? firstDate : from;
+        LocalDate end = to.isAfter(lastDate) ? lastDate : to;
+        return (int) Math.max(0, ChronoUnit.DAYS.between(start, end) + 1);
+    }
+
+    /**
+     * 网格单元 days 天内的期望事故数；历史上没有事故的单元为 0
+     */
+    public double expectedInCell(long cell, int days) {
+        int index = Arrays.binarySearch(cells, cell);
+        return index >= 0 ? cellDailyRate[index] * days : 0;
+    }
+
+    /**
+     * 泊松 z 分数 (observed - expected) / sqrt(expected)，期望为 0 时返回 0
+     */
+    public static double zScore(long observed, double expected) {
+        return expected > 0 ? (observed - expected) / Math.sqrt(expected) : 0;
+    }
+
+    /**
+     * 泊松上尾概率 P(X >= observed)，X ~ Poisson(expected)；值越小说明观测值越反常地偏高
+     */
+    public static double poissonUpperTail(long observed, double expected) {
+        if (observed <= 0) {
+            return 1;
+        }
+        if (expected <= 0) {
+            return 0;
+        }
+        // 在对数空间计算概率质量，期望上千时也不会下溢
+        double logMass = -expected + observed * Math.log(expected) - logGamma(observed + 1.0);
+        if (observed > expected) {
+            // 上尾各项单调递减，从 observed 向上累加
+            double sum = 0;
+            double term = 1;
+            for (long k = observed; term > 1e-15 * sum || sum == 0; k++) {
+                sum += term;
+                term *= expected / (k + 1);
+                if (term == 0) {
+                    break;
+                }
+            }
+            return Math.min(1, Math.exp(logMass + Math.log(sum)));
+        }
+        // 下尾较短：1 - P(X <= observed - 1)，从 observed - 1 向下累加
+        double sum = 0;
+        double term = observed / expected;
+        for (long k = observed - 1; k >= 0; k--) {
+            sum += term;
+            if (term < 1e-15 * sum) {
+                break;
+            }
+            term *= k / expected;
+        }
+        return Math.max(0, 1 - Math.exp(logMass + Math.log(sum)));
+    }
+
+    /**
+     * ln Γ(x)，Lanczos 近似（g = 7），x > 0
+     */
+    static double logGamma(double x) {
+        if (x < 0.5) {
+            return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        }
+        double[] coefficients = {0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+            771.32342877765313, -176.61502916214059, 12.507343278686905, -0.13857109526572012,
+            9.9843695780195716e-6, 1.5056327351493116e-7};
+        x -= 1;
+        double sum = coefficients[0];
+        for (int i = 1; i < coefficients.length; i++) {
+            sum += coefficients[i] / (x + i);
+        }
+        double t = x + 7.5;
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public long getTotalAccidents() {
+        return totalAccidents;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    public double getHourlyRate(int hourOfWeek) {
+        return hourlyRate[hourOfWeek];
+    }
+
+    /**
+     * 估算占用内存（字节）
+     */
+    public long estimateBytes() {
+        return 16L + hourlyRate.length * 8L + dailyRate.length * 8L + 32L + cells.length * 16L;
+    }
+
+    /**
+     * 基线构建器：按天、小时与坐标累加历史事故
+     */
+    public static class Builder {
+        private final SpatialGrid grid;
+        private final LocalDate firstDate;
+        private final LocalDate lastDate;
+        private final double[] hourlyCounts = new double[HOURS_PER_WEEK];
+        private final Map<Long, long[]> cellCounts = new HashMap<>();
+        private long total;
+
+        public Builder(SpatialGrid grid, LocalDate firstDate, LocalDate lastDate) {
+            if (lastDate.isBefore(firstDate)) {
+                throw new IllegalArgumentException("基线结束日期不能早于起始日期");
+            }
+            this.grid = grid;
+            this.firstDate = firstDate;
+            this.lastDate = lastDate;
+        }
+
+        /**
+         * 累加某天某小时的事故数；hour 为负表示时间未知，平均分摊到当天 24 小时
+         */
+        public void addHourly(LocalDate date, int hour, long count) {
+            if (date == null || date.isBefore(firstDate) || date.isAfter(lastDate) || hour >= RiskCube.HOURS_PER_DAY) {
+                return;
+            }
+            total += count;
+            if (hour >= 0) {
+                hourlyCounts[hourOfWeek(date.getDayOfWeek(), hour)] += count;
+                return;
+            }
+            int base = hourOfWeek(date.getDayOfWeek(), 0);
+            for (int h = 0; h < RiskCube.HOURS_PER_DAY; h++) {
+                hourlyCounts[base + h] += count / (double) RiskCube.HOURS_PER_DAY;
+            }
+        }
+
+        /**
+         * 累加有坐标的事故
+         */
+        public void addLocation(Double latitude, Double longitude, long count) {
+            if (latitude == null || longitude == null) {
+                return;
+            }
+            cellCounts.computeIfAbsent(grid.cellOf(latitude, longitude), cell -> new long[1])[0] += count;
+        }
+
+        public AccidentBaseline build(long version) {
+            int days = (int) ChronoUnit.DAYS.between(firstDate, lastDate) + 1;
+            // 各星期几在历史中出现的次数；不足一周时缺失的星期几按全时段平均小时率估计
+            int[] occurrences = new int[7];
+            for (int i = 0; i < days; i++) {
+                occurrences[firstDate.plusDays(i).getDayOfWeek().getValue() - 1]++;
+            }
+            double meanHourly = total / ((double) days * RiskCube.HOURS_PER_DAY);
+            double[] hourlyRate = new double[HOURS_PER_WEEK];
+            for (int hourOfWeek = 0; hourOfWeek < HOURS_PER_WEEK; hourOfWeek++) {
+                int weeks = occurrences[hourOfWeek / RiskCube.HOURS_PER_DAY];
+                hourlyRate[hourOfWeek] = weeks > 0 ? hourlyCounts[hourOfWeek] / weeks : meanHourly;
+            }
+
+            long[] cells = new long[cellCounts.size()];
+            int index = 0;
+            for (Long cell : cellCounts.keySet()) {
+                cells[index++] = cell;
+            }
+            Arrays.sort(cells);
+            double[] cellDailyRate = new double[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                cellDailyRate[i] = cellCounts.get(cells[i])[0] / (double) days;
+            }
+            return new AccidentBaseline(firstDate, lastDate, total, version, hourlyRate, grid, cells, cellDailyRate);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.DataChangeEvent;
+import org.example.smarttransportation.repository.TrafficAccidentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 事故历史基线服务
+ * 在后台用全部历史事故构建 AccidentBaseline（按日期与小时分组计数一次、读取事故坐标一次），
+ * 事故表版本递增或收到事故表的数据变更事件后重建。新数据相对全部历史占比很小，
+ * 重建完成前继续使用上一版基线。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class AccidentBaselineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccidentBaselineService.class);
+
+    private static final String TABLE = "nyc_traffic_accidents";
+
+    @Autowired
+    private TrafficAccidentRepository trafficAccidentRepository;
+
+    @Autowired
+    private SpatialRiskService spatialRiskService;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "accident-baseline-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    private volatile AccidentBaseline baseline;
+    private volatile long builtVersion = -1;
+    private volatile long lastRefreshMillis;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("risk.baseline.memory.bytes", this, service -> {
+            AccidentBaseline current = service.baseline;
+            return current != null ? current.estimateBytes() : 0;
+        }).description("事故历史基线估算内存占用").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 当前事故基线，未启用或尚未构建时返回 null；已过期时在后台重建并先返回上一版
+     */
+    public AccidentBaseline getBaseline() {
+        if (!Boolean.TRUE.equals(properties.getBaseline().getEnabled())) {
+            return null;
+        }
+        if (builtVersion != tableVersionRegistry.currentVersion(TABLE)) {
+            refreshAsync();
+        }
+        return baseline;
+    }
+
+    /**
+     * 后台重建基线
+     */
+    public void refreshAsync() {
+        if (queued.compareAndSet(false, true)) {
+            refreshExecutor.execute(() -> {
+                queued.set(false);
+                refresh();
+            });
+        }
+    }
+
+    /**
+     * 事故表有新数据时重建
+     */
+    @EventListener
+    public void onDataChange(DataChangeEvent event) {
+        if (TABLE.equalsIgnoreCase(event.getTable()) && Boolean.TRUE.equals(properties.getBaseline().getEnabled())) {
+            refreshAsync();
+        }
+    }
+
+    /**
+     * 基线状态与 24 小时分布（周一至周日各小时期望事故数的平均）
+     */
+    public Map<String, Object> getStats() {
+        AccidentBaseline current = baseline;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.getBaseline().getEnabled());
+        stats.put("ready", current != null);
+        stats.put("builtVersion", builtVersion);
+        stats.put("tableVersion", tableVersionRegistry.currentVersion(TABLE));
+        stats.put("lastRefreshMillis", lastRefreshMillis);
+        stats.put("lastError", lastError);
+        if (current != null) {
+            stats.put("firstDate", current.getFirstDate());
+            stats.put("lastDate", current.getLastDate());
+            stats.put("accidents", current.getTotalAccidents());
+            stats.put("cells", current.getCellCount());
+            stats.put("memoryBytes", current.estimateBytes());
+            double[] hourly = new double[RiskCube.HOURS_PER_DAY];
+            for (int hourOfWeek = 0; hourOfWeek < AccidentBaseline.HOURS_PER_WEEK; hourOfWeek++) {
+                hourly[hourOfWeek % RiskCube.HOURS_PER_DAY] += current.getHourlyRate(hourOfWeek) / 7;
+            }
+            stats.put("hourlyRate", hourly);
+        }
+        return stats;
+    }
+
+    /**
+     * 重建基线；没有事故数据时基线为空
+     */
+    void refresh() {
+        // 先取版本再读数据，重建期间有新数据时版本不一致，下次查询会再触发重建
+        long version = tableVersionRegistry.snapshot(List.of(TABLE)).values().iterator().next();
+        long start = System.nanoTime();
+        try {
+            List<Object[]> range = trafficAccidentRepository.findCrashDateRange();
+            LocalDate firstDate = range.isEmpty() ? null : RiskCubeService.toLocalDate(range.get(0)[0]);
+            LocalDate lastDate = range.isEmpty() ? null : RiskCubeService.toLocalDate(range.get(0)[1]);
+            if (firstDate == null || lastDate == null) {
+                baseline = null;
+            } else {
+                AccidentBaseline.Builder builder = new AccidentBaseline.Builder(spatialRiskService.getGrid(),
+                    firstDate, lastDate);
+                for (Object[] row : trafficAccidentRepository.countAccidentsByDateAndHour(firstDate, lastDate)) {
+                    // 发生时间未知的事故按 -1 平均分摊到当天各小时
+                    int hour = row[1] != null ? ((Number) row[1]).intValue() : -1;
+                    builder.addHourly(RiskCubeService.toLocalDate(row[0]), hour, ((Number) row[2]).longValue());
+                }
+                for (Object[] row : trafficAccidentRepository.findAccidentLocations(firstDate, lastDate)) {
+                    builder.addLocation(RiskCubeService.toDouble(row[1]), RiskCubeService.toDouble(row[2]), 1);
+                }
+                baseline = builder.build(version);
+            }
+            builtVersion = version;
+            lastError = null;
+            logger.info("事故历史基线重建完成: {} ~ {}, 表版本 {}", firstDate, lastDate, version);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.warn("事故历史基线重建失败，交通风险暂不使用基线: {}", e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lastRefreshMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            Timer.builder("risk.baseline.refresh").description("事故历史基线重建耗时").register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+}
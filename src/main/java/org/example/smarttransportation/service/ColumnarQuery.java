@@ -0,0 +1,818 @@
+package org.example.smarttransportation.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 列式内存表查询：过滤 / 分组 / 聚合
+ * 执行时按块（默认 64K 行）拆分为 ForkJoin 任务并行扫描。每块先用选择向量逐个过滤条件收窄命中行，
+ * 再逐列聚合（一次处理一列的全部命中行），最后合并各块的分组结果。
+ *
+ * 示例：ColumnarQuery.from("nyc_traffic_accidents")
+ *     .where(ColumnarQuery.timeRange("crash_date", from, to)).groupBy("borough").count().orderBy(1, true).limit(5)
+ *
+ * 时间按分钟精度比较；字典列等值匹配不区分大小写（与 MySQL 默认排序规则一致）。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public final class ColumnarQuery {
+
+    private static final long MAX_GROUPS = 1L << 24;
+    private static final int MAX_INT_GROUP_RANGE = 1 << 20;
+
+    private final String table;
+    private final List<Filter> filters = new ArrayList<>();
+    private final List<GroupKey> groupKeys = new ArrayList<>();
+    private final List<Aggregate> aggregates = new ArrayList<>();
+    private int orderColumn = -1;
+    private boolean descending;
+    private int limit = Integer.MAX_VALUE;
+
+    private ColumnarQuery(String table) {
+        this.table = table;
+    }
+
+    public static ColumnarQuery from(String table) {
+        return new ColumnarQuery(ColumnarTable.normalize(table));
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public ColumnarQuery where(Filter filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    public ColumnarQuery groupBy(String column) {
+        groupKeys.add(new GroupKey(column, GroupKey.Kind.VALUE));
+        return this;
+    }
+
+    public ColumnarQuery groupByDay(String timeColumn) {
+        groupKeys.add(new GroupKey(timeColumn, GroupKey.Kind.DAY));
+        return this;
+    }
+
+    public ColumnarQuery groupByHour(String timeColumn) {
+        groupKeys.add(new GroupKey(timeColumn, GroupKey.Kind.HOUR_OF_DAY));
+        return this;
+    }
+
+    /**
+     * COUNT(*)
+     */
+    public ColumnarQuery count() {
+        return aggregate(Aggregate.Kind.COUNT, null);
+    }
+
+    /**
+     * COUNT(column)：只统计非 NULL
+     */
+    public ColumnarQuery count(String column) {
+        return aggregate(Aggregate.Kind.COUNT, column);
+    }
+
+    public ColumnarQuery sum(String column) {
+        return aggregate(Aggregate.Kind.SUM, column);
+    }
+
+    public ColumnarQuery avg(String column) {
+        return aggregate(Aggregate.Kind.AVG, column);
+    }
+
+    public ColumnarQuery min(String column) {
+        return aggregate(Aggregate.Kind.MIN, column);
+    }
+
+    public ColumnarQuery max(String column) {
+        return aggregate(Aggregate.Kind.MAX, column);
+    }
+
+    /**
+     * 为最近添加的分组或聚合列命名
+     */
+    public ColumnarQuery as(String label) {
+        if (!aggregates.isEmpty()) {
+            aggregates.get(aggregates.size() - 1).label = label;
+        } else if (!groupKeys.isEmpty()) {
+            groupKeys.get(groupKeys.size() - 1).label = label;
+        } else {
+            throw new IllegalStateException("没有可命名的列");
+        }
+        return this;
+    }
+
+    /**
+     * 按结果列排序（下标为分组列在前、聚合列在后的顺序）
+     */
+    public ColumnarQuery orderBy(int outputColumn, boolean descending) {
+        this.orderColumn = outputColumn;
+        this.descending = descending;
+        return this;
+    }
+
+    public ColumnarQuery limit(int limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+
+    private ColumnarQuery aggregate(Aggregate.Kind kind, String column) {
+        aggregates.add(new Aggregate(kind, column));
+        return this;
+    }
+
+    // ---------------------------------------------------------------- 过滤条件
+
+    /**
+     * 字典列等值 / IN
+     */
+    public static Filter equalTo(String column, String... values) {
+        return in(column, Arrays.asList(values));
+    }
+
+    public static Filter in(String column, Collection<String> values) {
+        List<String> copy = List.copyOf(values);
+        return table -> {
+            ColumnarTable.Column target = dictionaryColumn(table, column);
+            return new CodeSetFilter(target.values, target.matchCodes(copy));
+        };
+    }
+
+    /**
+     * 整数列闭区间
+     */
+    public static Filter between(String column, long min, long max) {
+        return table -> {
+            ColumnarTable.Column target = table.column(column);
+            if (target.getType() != ColumnarTable.Type.INT) {
+                throw new IllegalArgumentException("列 " + column + " 不是整数列");
+            }
+            return new IntRangeFilter(target.values, min, max);
+        };
+    }
+
+    public static Filter atLeast(String column, long min) {
+        return between(column, min, Integer.MAX_VALUE);
+    }
+
+    public static Filter atMost(String column, long max) {
+        return between(column, Integer.MIN_VALUE + 1L, max);
+    }
+
+    /**
+     * 时间列 [from, to)，任一端为 null 表示不限
+     */
+    public static Filter timeRange(String column, LocalDateTime from, LocalDateTime toExclusive) {
+        return table -> {
+            ColumnarTable.Column target = table.column(column);
+            if (target.getType() != ColumnarTable.Type.EPOCH_MINUTE) {
+                throw new IllegalArgumentException("列 " + column + " 不是时间列");
+            }
+            long min = from != null ? ColumnarTable.toEpochMinute(from) : Integer.MIN_VALUE + 1L;
+            long max = toExclusive != null ? ColumnarTable.toEpochMinute(toExclusive) - 1L : Integer.MAX_VALUE;
+            return new IntRangeFilter(target.values, min, max);
+        };
+    }
+
+    /**
+     * 时间列按日期闭区间
+     */
+    public static Filter dateRange(String column, LocalDate from, LocalDate to) {
+        return timeRange(column, from != null ? from.atStartOfDay() : null,
+            to != null ? to.plusDays(1).atStartOfDay() : null);
+    }
+
+    public static Filter notNull(String column) {
+        return table -> {
+            ColumnarTable.Column target = table.column(column);
+            int nullValue = target.getType() == ColumnarTable.Type.DICTIONARY ? ColumnarTable.NULL_CODE : ColumnarTable.NULL_INT;
+            int[] values = target.values;
+            return new BoundFilter() {
+                @Override
+                boolean test(int row) {
+                    return values[row] != nullValue;
+                }
+            };
+        };
+    }
+
+    private static ColumnarTable.Column dictionaryColumn(ColumnarTable table, String column) {
+        ColumnarTable.Column target = table.column(column);
+        if (target.getType() != ColumnarTable.Type.DICTIONARY) {
+            throw new IllegalArgumentException("列 " + column + " 不是字符串列");
+        }
+        return target;
+    }
+
+    /**
+     * 过滤条件，执行时绑定到具体的表
+     */
+    @FunctionalInterface
+    public interface Filter {
+        BoundFilter bind(ColumnarTable table);
+
+        default Filter and(Filter other) {
+            return table -> {
+                BoundFilter left = bind(table);
+                BoundFilter right = other.bind(table);
+                return new BoundFilter() {
+                    @Override
+                    boolean test(int row) {
+                        return left.test(row) && right.test(row);
+                    }
+                };
+            };
+        }
+
+        default Filter or(Filter other) {
+            return table -> {
+                BoundFilter left = bind(table);
+                BoundFilter right = other.bind(table);
+                return new BoundFilter() {
+                    @Override
+                    boolean test(int row) {
+                        return left.test(row) || right.test(row);
+                    }
+                };
+            };
+        }
+    }
+
+    /**
+     * 绑定后的过滤条件：selectRange 从行区间生成选择向量，refine 在已有选择向量上继续收窄
+     */
+    public abstract static class BoundFilter {
+        abstract boolean test(int row);
+
+        int selectRange(int start, int end, int[] selection) {
+            int count = 0;
+            for (int row = start; row < end; row++) {
+                if (test(row)) {
+                    selection[count++] = row;
+                }
+            }
+            return count;
+        }
+
+        int refine(int[] selection, int count) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selection[i];
+                if (test(row)) {
+                    selection[kept++] = row;
+                }
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * 整数区间过滤：NULL 为 Integer.MIN_VALUE，下界至少为 MIN_VALUE + 1 即自动排除 NULL。
+     * 循环内无分支写入选择向量，便于 JIT 展开
+     */
+    private static final class IntRangeFilter extends BoundFilter {
+        private final int[] values;
+        private final int min;
+        private final int max;
+
+        private IntRangeFilter(int[] values, long min, long max) {
+            this.values = values;
+            this.min = (int) Math.max(min, Integer.MIN_VALUE + 1L);
+            this.max = (int) Math.min(max, Integer.MAX_VALUE);
+        }
+
+        @Override
+        boolean test(int row) {
+            int value = values[row];
+            return value >= min && value <= max;
+        }
+
+        @Override
+        int selectRange(int start, int end, int[] selection) {
+            int[] values = this.values;
+            int min = this.min;
+            int max = this.max;
+            int count = 0;
+            for (int row = start; row < end; row++) {
+                int value = values[row];
+                selection[count] = row;
+                count += (value >= min & value <= max) ? 1 : 0;
+            }
+            return count;
+        }
+
+        @Override
+        int refine(int[] selection, int count) {
+            int[] values = this.values;
+            int min = this.min;
+            int max = this.max;
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selection[i];
+                int value = values[row];
+                selection[kept] = row;
+                kept += (value >= min & value <= max) ? 1 : 0;
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * 字典编码集合过滤：按编码查表
+     */
+    private static final class CodeSetFilter extends BoundFilter {
+        private final int[] codes;
+        private final boolean[] matched;
+
+        private CodeSetFilter(int[] codes, boolean[] matched) {
+            this.codes = codes;
+            this.matched = matched;
+        }
+
+        @Override
+        boolean test(int row) {
+            int code = codes[row];
+            return code >= 0 && matched[code];
+        }
+    }
+
+    // ---------------------------------------------------------------- 分组与聚合
+
+    private static final class GroupKey {
+        enum Kind { VALUE, DAY, HOUR_OF_DAY }
+
+        private final String column;
+        private final Kind kind;
+        private String label;
+
+        private GroupKey(String column, Kind kind) {
+            this.column = column;
+            this.kind = kind;
+            this.label = kind == Kind.DAY ? "date(" + column + ")" : kind == Kind.HOUR_OF_DAY ? "hour(" + column + ")" : column;
+        }
+
+        private BoundKey bind(ColumnarTable table) {
+            ColumnarTable.Column target = table.column(column);
+            if (kind != Kind.VALUE && target.getType() != ColumnarTable.Type.EPOCH_MINUTE) {
+                throw new IllegalArgumentException("列 " + column + " 不是时间列");
+            }
+            int[] values = target.values;
+            switch (kind) {
+                case DAY: {
+                    int base = Math.floorDiv(target.getMin(), ColumnarTable.MINUTES_PER_DAY);
+                    int days = Math.max(0, Math.floorDiv(target.getMax(), ColumnarTable.MINUTES_PER_DAY) - base + 1);
+                    return new BoundKey(days + 1) {
+                        @Override
+                        int key(int row) {
+                            int value = values[row];
+                            return value == ColumnarTable.NULL_INT ? days : Math.floorDiv(value, ColumnarTable.MINUTES_PER_DAY) - base;
+                        }
+
+                        @Override
+                        Object label(int key) {
+                            return key == days ? null : LocalDate.ofEpochDay((long) base + key);
+                        }
+                    };
+                }
+                case HOUR_OF_DAY:
+                    return new BoundKey(25) {
+                        @Override
+                        int key(int row) {
+                            int value = values[row];
+                            return value == ColumnarTable.NULL_INT ? 24 : Math.floorMod(value, ColumnarTable.MINUTES_PER_DAY) / 60;
+                        }
+
+                        @Override
+                        Object label(int key) {
+                            return key == 24 ? null : key;
+                        }
+                    };
+                default:
+                    if (target.getType() == ColumnarTable.Type.DICTIONARY) {
+                        int size = target.getDictionarySize();
+                        return new BoundKey(size + 1) {
+                            @Override
+                            int key(int row) {
+                                int code = values[row];
+                                return code == ColumnarTable.NULL_CODE ? size : code;
+                            }
+
+                            @Override
+                            Object label(int key) {
+                                return key == size ? null : target.decode(key);
+                            }
+                        };
+                    }
+                    long range = (long) target.getMax() - target.getMin() + 1;
+                    if (range > MAX_INT_GROUP_RANGE) {
+                        throw new IllegalArgumentException("列 " + column + " 取值范围过大，不能分组");
+                    }
+                    int min = target.getMin();
+                    int nullKey = (int) Math.max(0, range);
+                    return new BoundKey(nullKey + 1) {
+                        @Override
+                        int key(int row) {
+                            int value = values[row];
+                            return value == ColumnarTable.NULL_INT ? nullKey : value - min;
+                        }
+
+                        @Override
+                        Object label(int key) {
+                            return key == nullKey ? null : target.decode(key + min);
+                        }
+                    };
+            }
+        }
+    }
+
+    private abstract static class BoundKey {
+        private final int cardinality;
+
+        private BoundKey(int cardinality) {
+            this.cardinality = cardinality;
+        }
+
+        abstract int key(int row);
+
+        abstract Object label(int key);
+    }
+
+    private static final class Aggregate {
+        enum Kind { COUNT, SUM, AVG, MIN, MAX }
+
+        private final Kind kind;
+        private final String column;
+        private String label;
+
+        private Aggregate(Kind kind, String column) {
+            this.kind = kind;
+            this.column = column;
+            this.label = kind.name().toLowerCase(Locale.ROOT) + "(" + (column != null ? column : "*") + ")";
+        }
+    }
+
+    /**
+     * 每个分组的累加状态：acc 为和/最值，counts 为参与计算的非 NULL 行数（COUNT(*) 为总行数）
+     */
+    private static final class GroupTable {
+        private final Aggregate.Kind[] kinds;
+        private int[] keys = new int[16];
+        private int[] slotsByHash = new int[32];
+        private long[][] acc;
+        private long[][] counts;
+        private int size;
+
+        private GroupTable(Aggregate.Kind[] kinds) {
+            this.kinds = kinds;
+            this.acc = new long[kinds.length][16];
+            this.counts = new long[kinds.length][16];
+        }
+
+        /**
+         * 分组键对应的槽位，不存在时创建（开放寻址，slotsByHash 中保存槽位 + 1）
+         */
+        private int slot(int key) {
+            int mask = slotsByHash.length - 1;
+            int index = mix(key) & mask;
+            while (true) {
+                int slot = slotsByHash[index] - 1;
+                if (slot < 0) {
+                    return create(key, index);
+                }
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private int create(int key, int index) {
+            int slot = size++;
+            if (slot == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                for (int i = 0; i < kinds.length; i++) {
+                    acc[i] = Arrays.copyOf(acc[i], capacity);
+                    counts[i] = Arrays.copyOf(counts[i], capacity);
+                }
+            }
+            keys[slot] = key;
+            for (int i = 0; i < kinds.length; i++) {
+                acc[i][slot] = kinds[i] == Aggregate.Kind.MIN ? Long.MAX_VALUE
+                    : kinds[i] == Aggregate.Kind.MAX ? Long.MIN_VALUE : 0L;
+            }
+            slotsByHash[index] = slot + 1;
+            if (size * 2 > slotsByHash.length) {
+                rehash();
+            }
+            return slot;
+        }
+
+        private void rehash() {
+            slotsByHash = new int[slotsByHash.length * 2];
+            int mask = slotsByHash.length - 1;
+            for (int slot = 0; slot < size; slot++) {
+                int index = mix(keys[slot]) & mask;
+                while (slotsByHash[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                slotsByHash[index] = slot + 1;
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private void merge(GroupTable other) {
+            for (int from = 0; from < other.size; from++) {
+                int to = slot(other.keys[from]);
+                for (int i = 0; i < kinds.length; i++) {
+                    long value = other.acc[i][from];
+                    switch (kinds[i]) {
+                        case MIN:
+                            acc[i][to] = Math.min(acc[i][to], value);
+                            break;
+                        case MAX:
+                            acc[i][to] = Math.max(acc[i][to], value);
+                            break;
+                        default:
+                            acc[i][to] += value;
+                    }
+                    counts[i][to] += other.counts[i][from];
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 执行
+
+    /**
+     * 在 ForkJoinPool 上并行执行查询
+     *
+     * @param chunkRows 每个叶子任务扫描的行数
+     */
+    public ColumnarResult execute(ColumnarTable columnarTable, ForkJoinPool pool, int chunkRows) {
+        if (aggregates.isEmpty()) {
+            throw new IllegalStateException("至少需要一个聚合列");
+        }
+        long start = System.nanoTime();
+        Plan plan = new Plan(columnarTable);
+        GroupTable groups = pool.invoke(new ScanTask(plan, 0, columnarTable.getRowCount(), Math.max(1024, chunkRows)));
+        ColumnarResult result = plan.toResult(groups);
+        result.setScannedRows(columnarTable.getRowCount());
+        result.setElapsedMicros((System.nanoTime() - start) / 1000);
+        return result;
+    }
+
+    /**
+     * 查询绑定到表后的执行计划
+     */
+    private final class Plan {
+        private final BoundFilter[] boundFilters;
+        private final BoundKey[] boundKeys;
+        private final int[] multipliers;
+        private final Aggregate.Kind[] kinds;
+        private final ColumnarTable.Column[] aggregateColumns;
+
+        private Plan(ColumnarTable columnarTable) {
+            boundFilters = new BoundFilter[filters.size()];
+            for (int i = 0; i < boundFilters.length; i++) {
+                boundFilters[i] = filters.get(i).bind(columnarTable);
+            }
+
+            boundKeys = new BoundKey[groupKeys.size()];
+            multipliers = new int[boundKeys.length];
+            long groups = 1;
+            for (int i = boundKeys.length - 1; i >= 0; i--) {
+                boundKeys[i] = groupKeys.get(i).bind(columnarTable);
+                multipliers[i] = (int) groups;
+                groups *= boundKeys[i].cardinality;
+                if (groups > MAX_GROUPS) {
+                    throw new IllegalArgumentException("分组组合数过多");
+                }
+            }
+
+            kinds = new Aggregate.Kind[aggregates.size()];
+            aggregateColumns = new ColumnarTable.Column[kinds.length];
+            for (int i = 0; i < kinds.length; i++) {
+                Aggregate aggregate = aggregates.get(i);
+                kinds[i] = aggregate.kind;
+                if (aggregate.column != null) {
+                    ColumnarTable.Column column = columnarTable.column(aggregate.column);
+                    boolean numeric = column.getType() == ColumnarTable.Type.INT || column.getType() == ColumnarTable.Type.COORDINATE;
+                    if ((aggregate.kind == Aggregate.Kind.SUM || aggregate.kind == Aggregate.Kind.AVG) && !numeric) {
+                        throw new IllegalArgumentException("列 " + aggregate.column + " 不能求和/平均");
+                    }
+                    if ((aggregate.kind == Aggregate.Kind.MIN || aggregate.kind == Aggregate.Kind.MAX)
+                        && column.getType() == ColumnarTable.Type.DICTIONARY) {
+                        // 字典编码按出现顺序分配，不反映字符串大小
+                        throw new IllegalArgumentException("列 " + aggregate.column + " 不能求最值");
+                    }
+                    aggregateColumns[i] = column;
+                }
+            }
+        }
+
+        private int groupKey(int row) {
+            int key = 0;
+            for (int i = 0; i < boundKeys.length; i++) {
+                key += boundKeys[i].key(row) * multipliers[i];
+            }
+            return key;
+        }
+
+        private GroupTable scan(int start, int end) {
+            GroupTable groups = new GroupTable(kinds);
+            int[] selection = new int[end - start];
+            int count;
+            if (boundFilters.length == 0) {
+                count = end - start;
+                for (int i = 0; i < count; i++) {
+                    selection[i] = start + i;
+                }
+            } else {
+                count = boundFilters[0].selectRange(start, end, selection);
+                for (int f = 1; f < boundFilters.length && count > 0; f++) {
+                    count = boundFilters[f].refine(selection, count);
+                }
+            }
+            if (count == 0) {
+                return groups;
+            }
+
+            int[] slots = new int[count];
+            if (boundKeys.length == 0) {
+                int slot = groups.slot(0);
+                Arrays.fill(slots, slot);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    slots[i] = groups.slot(groupKey(selection[i]));
+                }
+            }
+
+            // 逐列聚合
+            for (int a = 0; a < kinds.length; a++) {
+                long[] acc = groups.acc[a];
+                long[] counts = groups.counts[a];
+                ColumnarTable.Column column = aggregateColumns[a];
+                if (column == null) {
+                    for (int i = 0; i < count; i++) {
+                        counts[slots[i]]++;
+                    }
+                    continue;
+                }
+                int[] values = column.values;
+                int nullValue = column.getType() == ColumnarTable.Type.DICTIONARY ? ColumnarTable.NULL_CODE : ColumnarTable.NULL_INT;
+                switch (kinds[a]) {
+                    case MIN:
+                        for (int i = 0; i < count; i++) {
+                            int value = values[selection[i]];
+                            if (value != nullValue) {
+                                acc[slots[i]] = Math.min(acc[slots[i]], value);
+                                counts[slots[i]]++;
+                            }
+                        }
+                        break;
+                    case MAX:
+                        for (int i = 0; i < count; i++) {
+                            int value = values[selection[i]];
+                            if (value != nullValue) {
+                                acc[slots[i]] = Math.max(acc[slots[i]], value);
+                                counts[slots[i]]++;
+                            }
+                        }
+                        break;
+                    default:
+                        for (int i = 0; i < count; i++) {
+                            int value = values[selection[i]];
+                            if (value != nullValue) {
+                                acc[slots[i]] += value;
+                                counts[slots[i]]++;
+                            }
+                        }
+                }
+            }
+            return groups;
+        }
+
+        private ColumnarResult toResult(GroupTable groups) {
+            if (boundKeys.length == 0 && groups.size == 0) {
+                // 无分组时与 SQL 一致，始终返回一行
+                groups.slot(0);
+            }
+            List<String> columns = new ArrayList<>();
+            groupKeys.forEach(key -> columns.add(key.label));
+            aggregates.forEach(aggregate -> columns.add(aggregate.label));
+
+            List<Object[]> rows = new ArrayList<>(groups.size);
+            for (int slot = 0; slot < groups.size; slot++) {
+                Object[] row = new Object[columns.size()];
+                int key = groups.keys[slot];
+                for (int i = 0; i < boundKeys.length; i++) {
+                    row[i] = boundKeys[i].label((key / multipliers[i]) % boundKeys[i].cardinality);
+                }
+                for (int a = 0; a < kinds.length; a++) {
+                    row[boundKeys.length + a] = aggregateValue(a, groups.acc[a][slot], groups.counts[a][slot]);
+                }
+                rows.add(row);
+            }
+
+            if (orderColumn >= 0) {
+                Comparator<Object[]> comparator = (left, right) -> compareValues(left[orderColumn], right[orderColumn]);
+                rows.sort(descending ? comparator.reversed() : comparator);
+            } else if (boundKeys.length > 0) {
+                // 默认按分组列升序
+                rows.sort((left, right) -> {
+                    for (int i = 0; i < boundKeys.length; i++) {
+                        int result = compareValues(left[i], right[i]);
+                        if (result != 0) {
+                            return result;
+                        }
+                    }
+                    return 0;
+                });
+            }
+            if (rows.size() > limit) {
+                rows = new ArrayList<>(rows.subList(0, limit));
+            }
+            return new ColumnarResult(columns, rows);
+        }
+
+        private Object aggregateValue(int index, long acc, long count) {
+            ColumnarTable.Column column = aggregateColumns[index];
+            switch (kinds[index]) {
+                case COUNT:
+                    return count;
+                case SUM:
+                    if (count == 0) {
+                        return null;
+                    }
+                    return column.getType() == ColumnarTable.Type.COORDINATE ? acc / (double) ColumnarTable.COORDINATE_SCALE : (Object) acc;
+                case AVG:
+                    if (count == 0) {
+                        return null;
+                    }
+                    double average = acc / (double) count;
+                    return column.getType() == ColumnarTable.Type.COORDINATE ? average / ColumnarTable.COORDINATE_SCALE : average;
+                default:
+                    return count == 0 ? null : column.decode((int) acc);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object left, Object right) {
+        if (left == null || right == null) {
+            // 与 MySQL 一致，NULL 视为最小值
+            return left == null ? (right == null ? 0 : -1) : 1;
+        }
+        if (left instanceof Number l && right instanceof Number r) {
+            return Double.compare(l.doubleValue(), r.doubleValue());
+        }
+        return ((Comparable) left).compareTo(right);
+    }
+
+    /**
+     * 按行区间二分的扫描任务
+     */
+    private static final class ScanTask extends RecursiveTask<GroupTable> {
+        private final Plan plan;
+        private final int start;
+        private final int end;
+        private final int chunkRows;
+
+        private ScanTask(Plan plan, int start, int end, int chunkRows) {
+            this.plan = plan;
+            this.start = start;
+            this.end = end;
+            this.chunkRows = chunkRows;
+        }
+
+        @Override
+        protected GroupTable compute() {
+            if (end - start <= chunkRows) {
+                return plan.scan(start, end);
+            }
+            int middle = (start + end) >>> 1;
+            ScanTask left = new ScanTask(plan, start, middle, chunkRows);
+            ScanTask right = new ScanTask(plan, middle, end, chunkRows);
+            left.fork();
+            GroupTable rightGroups = right.compute();
+            GroupTable leftGroups = left.join();
+            if (leftGroups.size >= rightGroups.size) {
+                leftGroups.merge(rightGroups);
+                return leftGroups;
+            }
+            rightGroups.merge(leftGroups);
+            return rightGroups;
+        }
+    }
+}
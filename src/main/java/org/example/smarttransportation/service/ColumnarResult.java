@@ -0,0 +1,66 @@
+package org.example.smarttransportation.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 列式查询结果：分组列在前、聚合列在后，每行一个 Object[]
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class ColumnarResult {
+
+    private final List<String> columns;
+    private final List<Object[]> rows;
+    private long scannedRows;
+    private long elapsedMicros;
+
+    public ColumnarResult(List<String> columns, List<Object[]> rows) {
+        this.columns = List.copyOf(columns);
+        this.rows = Collections.unmodifiableList(rows);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    public Object getValue(int row, int column) {
+        return rows.get(row)[column];
+    }
+
+    /**
+     * 数值结果，NULL 或无结果行时返回 0
+     */
+    public long getLong(int row, int column) {
+        if (row >= rows.size()) {
+            return 0;
+        }
+        Object value = rows.get(row)[column];
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    public long getScannedRows() {
+        return scannedRows;
+    }
+
+    public void setScannedRows(long scannedRows) {
+        this.scannedRows = scannedRows;
+    }
+
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    public void setElapsedMicros(long elapsedMicros) {
+        this.elapsedMicros = elapsedMicros;
+    }
+}
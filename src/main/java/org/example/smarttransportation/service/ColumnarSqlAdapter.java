@@ -0,0 +1,614 @@
+package org.example.smarttransportation.service;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.*;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * NL2SQL 查询到列式内存表的转换
+ * 只处理结果与 MySQL 完全一致的单表聚合查询：
+ * SELECT 分组列 / DATE(时间列) / HOUR(时间列) 与 COUNT、SUM、AVG、MIN、MAX，
+ * WHERE 为等值、IN、比较、BETWEEN、IS NOT NULL 的 AND / OR 组合，ORDER BY 至多一列，LIMIT 不带 OFFSET。
+ * 其他查询返回 null，仍交给数据库执行。
+ *
+ * 时间列截断了秒时，只接受 >= 与 < 这类在分钟精度下仍然精确的比较，也不计算 MIN / MAX。
+ * 字典列只在取值忽略大小写后仍互不相同时分组（MySQL 默认排序规则不区分大小写），且不按字典列排序（编码顺序不是排序规则顺序）。
+ * 整数列的 SUM、AVG 与 MySQL 一样返回 DECIMAL（AVG 保留 4 位小数）；坐标列的小数位数取决于库表定义，不计算 SUM、AVG。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public final class ColumnarSqlAdapter {
+
+    private static final Set<String> AGGREGATE_FUNCTIONS = Set.of("count", "sum", "avg", "min", "max");
+
+    /**
+     * MySQL 整数 AVG 结果的小数位数（div_precision_increment 默认值）
+     */
+    private static final int AVG_SCALE = 4;
+
+    /**
+     * 无需转换为 DECIMAL 的输出列
+     */
+    private static final int NOT_DECIMAL = -1;
+
+    private ColumnarSqlAdapter() {
+    }
+
+    /**
+     * 转换结果：列式查询及 SELECT 各列到查询结果列的映射
+     */
+    static final class Translation {
+        private final ColumnarQuery query;
+        private final List<String> labels;
+        private final int[] outputColumns;
+        private final int[] decimalScales;
+
+        private Translation(ColumnarQuery query, List<String> labels, int[] outputColumns, int[] decimalScales) {
+            this.query = query;
+            this.labels = List.copyOf(labels);
+            this.outputColumns = outputColumns;
+            this.decimalScales = decimalScales;
+        }
+
+        ColumnarQuery getQuery() {
+            return query;
+        }
+
+        List<String> getLabels() {
+            return labels;
+        }
+
+        /**
+         * 按 SELECT 列顺序重排查询结果，SUM / AVG 转为与 MySQL 相同的 DECIMAL
+         */
+        List<Object[]> project(ColumnarResult result) {
+            List<Object[]> rows = new ArrayList<>(result.getRowCount());
+            for (Object[] source : result.getRows()) {
+                Object[] row = new Object[outputColumns.length];
+                for (int i = 0; i < outputColumns.length; i++) {
+                    row[i] = toDecimal(source[outputColumns[i]], decimalScales[i]);
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * @param checkedSql 已通过 SqlGuard 校验的 SQL
+     * @param tables     已加载的列式表（表名小写）
+     * @return 无法等价转换时返回 null
+     */
+    static Translation translate(String checkedSql, Map<String, ColumnarTable> tables) {
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(checkedSql);
+        } catch (JSQLParserException e) {
+            return null;
+        }
+        if (!(statement instanceof PlainSelect select)
+            || !(select.getFromItem() instanceof Table from)
+            || (select.getJoins() != null && !select.getJoins().isEmpty())
+            || select.getDistinct() != null || select.getHaving() != null
+            || select.getOffset() != null || select.getFetch() != null) {
+            return null;
+        }
+        ColumnarTable table = tables.get(ColumnarTable.normalize(from.getName()));
+        if (table == null) {
+            return null;
+        }
+        try {
+            return new Translator(table, select).translate();
+        } catch (NotTranslatableException e) {
+            return null;
+        }
+    }
+
+    private static final class Translator {
+        private final ColumnarTable table;
+        private final PlainSelect select;
+        private final ColumnarQuery query;
+        private final List<String> groupKeys = new ArrayList<>();
+        private final Set<String> dictionaryKeys = new HashSet<>();
+        private final Map<String, Expression> aliases = new HashMap<>();
+
+        private Translator(ColumnarTable table, PlainSelect select) {
+            this.table = table;
+            this.select = select;
+            this.query = ColumnarQuery.from(table.getName());
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Translation translate() {
+            for (SelectItem<?> item : select.getSelectItems()) {
+                if (item.getAlias() != null) {
+                    aliases.put(normalize(item.getAlias().getName()), item.getExpression());
+                }
+            }
+
+            if (select.getWhere() != null) {
+                query.where(filter(select.getWhere()));
+            }
+
+            GroupByElement groupBy = select.getGroupBy();
+            if (groupBy != null) {
+                if (groupBy.getGroupingSets() != null && !groupBy.getGroupingSets().isEmpty()) {
+                    throw NotTranslatableException.INSTANCE;
+                }
+                ExpressionList<Expression> expressions = (ExpressionList) groupBy.getGroupByExpressionList();
+                if (expressions != null) {
+                    for (Expression expression : expressions) {
+                        groupBy(resolveAlias(expression));
+                    }
+                }
+            }
+
+            // 分组列在前、聚合列在后
+            List<String> labels = new ArrayList<>();
+            List<String> selectKeys = new ArrayList<>();
+            int[] outputColumns = new int[select.getSelectItems().size()];
+            int[] decimalScales = new int[outputColumns.length];
+            Arrays.fill(decimalScales, NOT_DECIMAL);
+            int aggregates = 0;
+            for (int i = 0; i < outputColumns.length; i++) {
+                SelectItem<?> item = select.getSelectItems().get(i);
+                Expression expression = item.getExpression();
+                String key = RollupRewriter.matchKey(expression);
+                if (key != null && groupKeys.contains(key)) {
+                    outputColumns[i] = groupKeys.indexOf(key);
+                } else if (expression instanceof Function function && isAggregate(function)) {
+                    decimalScales[i] = aggregate(function);
+                    outputColumns[i] = groupKeys.size() + aggregates++;
+                } else {
+                    // 未分组的明细列或其他表达式
+                    throw NotTranslatableException.INSTANCE;
+                }
+                selectKeys.add(key);
+                labels.add(item.getAlias() != null ? item.getAlias().getName().replace("`", "") : expression.toString());
+            }
+            if (aggregates == 0) {
+                throw NotTranslatableException.INSTANCE;
+            }
+
+            List<OrderByElement> orderBy = select.getOrderByElements();
+            if (orderBy != null && !orderBy.isEmpty()) {
+                if (orderBy.size() > 1 || orderBy.get(0).getNullOrdering() != null) {
+                    throw NotTranslatableException.INSTANCE;
+                }
+                OrderByElement element = orderBy.get(0);
+                int orderColumn = orderColumn(element.getExpression(), labels, selectKeys, outputColumns);
+                if (orderColumn < groupKeys.size() && dictionaryKeys.contains(groupKeys.get(orderColumn))) {
+                    throw NotTranslatableException.INSTANCE;
+                }
+                query.orderBy(orderColumn, !element.isAsc());
+            }
+
+            Limit limit = select.getLimit();
+            if (limit != null) {
+                if (limit.getOffset() != null || !(limit.getRowCount() instanceof LongValue rowCount)) {
+                    throw NotTranslatableException.INSTANCE;
+                }
+                query.limit((int) Math.min(Integer.MAX_VALUE, rowCount.getValue()));
+            }
+            return new Translation(query, labels, outputColumns, decimalScales);
+        }
+
+        private Expression resolveAlias(Expression expression) {
+            if (expression instanceof Column column && column.getTable() == null && !table.hasColumn(column.getColumnName())) {
+                Expression aliased = aliases.get(normalize(column.getColumnName()));
+                if (aliased != null) {
+                    return aliased;
+                }
+            }
+            return expression;
+        }
+
+        private void groupBy(Expression expression) {
+            String key = RollupRewriter.matchKey(expression);
+            if (key == null) {
+                throw NotTranslatableException.INSTANCE;
+            }
+            if (expression instanceof Column column) {
+                ColumnarTable.Column target = column(column);
+                if (target.getType() == ColumnarTable.Type.DICTIONARY) {
+                    if (!target.isCaseDistinct()) {
+                        throw NotTranslatableException.INSTANCE;
+                    }
+                    query.groupBy(target.getName());
+                    dictionaryKeys.add(key);
+                } else if (target.getType() == ColumnarTable.Type.INT) {
+                    query.groupBy(target.getName());
+                } else if (target.isDayAligned()) {
+                    query.groupByDay(target.getName());
+                } else {
+                    throw NotTranslatableException.INSTANCE;
+                }
+            } else if (expression instanceof Function function) {
+                String name = normalize(function.getName());
+                ColumnarTable.Column target = timeColumn(singleColumn(function));
+                if ("date".equals(name)) {
+                    query.groupByDay(target.getName());
+                } else if ("hour".equals(name)) {
+                    query.groupByHour(target.getName());
+                } else {
+                    throw NotTranslatableException.INSTANCE;
+                }
+            } else {
+                throw NotTranslatableException.INSTANCE;
+            }
+            groupKeys.add(key);
+        }
+
+        /**
+         * @return 结果需转换为 DECIMAL 时的小数位数，否则为 NOT_DECIMAL
+         */
+        private int aggregate(Function function) {
+            String name = normalize(function.getName());
+            if (function.isDistinct()) {
+                throw NotTranslatableException.INSTANCE;
+            }
+            if ("count".equals(name) && isCountAll(function)) {
+                query.count();
+                return NOT_DECIMAL;
+            }
+            ColumnarTable.Column target = column(singleColumn(function));
+            ColumnarTable.Type type = target.getType();
+            switch (name) {
+                case "count":
+                    query.count(target.getName());
+                    return NOT_DECIMAL;
+                case "sum":
+                case "avg":
+                    if (type != ColumnarTable.Type.INT) {
+                        throw NotTranslatableException.INSTANCE;
+                    }
+                    if ("sum".equals(name)) {
+                        query.sum(target.getName());
+                        return 0;
+                    }
+                    query.avg(target.getName());
+                    return AVG_SCALE;
+                default:
+                    if (type == ColumnarTable.Type.DICTIONARY) {
+                        throw NotTranslatableException.INSTANCE;
+                    }
+                    if (type == ColumnarTable.Type.EPOCH_MINUTE) {
+                        // 截断了秒的时间列，最值的秒数已丢失
+                        requireExact(target.isMinutePrecise());
+                    }
+                    if ("min".equals(name)) {
+                        query.min(target.getName());
+                    } else {
+                        query.max(target.getName());
+                    }
+                    return NOT_DECIMAL;
+            }
+        }
+
+        private int orderColumn(Expression expression, List<String> labels, List<String> selectKeys, int[] outputColumns) {
+            if (expression instanceof Column column && column.getTable() == null) {
+                String name = normalize(column.getColumnName());
+                for (int i = 0; i < labels.size(); i++) {
+                    if (normalize(labels.get(i)).equals(name)) {
+                        return outputColumns[i];
+                    }
+                }
+            }
+            if (expression instanceof LongValue position) {
+                // ORDER BY 2
+                long index = position.getValue() - 1;
+                if (index >= 0 && index < outputColumns.length) {
+                    return outputColumns[(int) index];
+                }
+                throw NotTranslatableException.INSTANCE;
+            }
+            String key = RollupRewriter.matchKey(expression);
+            if (key != null) {
+                if (groupKeys.contains(key)) {
+                    return groupKeys.indexOf(key);
+                }
+                int index = selectKeys.indexOf(key);
+                if (index >= 0) {
+                    return outputColumns[index];
+                }
+            }
+            throw NotTranslatableException.INSTANCE;
+        }
+
+        // ------------------------------------------------------------ WHERE
+
+        private ColumnarQuery.Filter filter(Expression expression) {
+            if (expression instanceof ExpressionList<?> list && list.size() == 1) {
+                return filter(list.get(0));
+            }
+            if (expression instanceof AndExpression and) {
+                return filter(and.getLeftExpression()).and(filter(and.getRightExpression()));
+            }
+            if (expression instanceof OrExpression or) {
+                return filter(or.getLeftExpression()).or(filter(or.getRightExpression()));
+            }
+            if (expression instanceof IsNullExpression isNull && isNull.isNot()
+                && isNull.getLeftExpression() instanceof Column column) {
+                return ColumnarQuery.notNull(column(column).getName());
+            }
+            if (expression instanceof InExpression in && !in.isNot()) {
+                return in(in);
+            }
+            if (expression instanceof Between between && !between.isNot()) {
+                return between(between.getLeftExpression(), between.getBetweenExpressionStart(),
+                    between.getBetweenExpressionEnd());
+            }
+            if (expression instanceof ComparisonOperator comparison) {
+                return comparison(comparison);
+            }
+            throw NotTranslatableException.INSTANCE;
+        }
+
+        private ColumnarQuery.Filter in(InExpression in) {
+            if (!(in.getLeftExpression() instanceof Column column)
+                || !(in.getRightExpression() instanceof ExpressionList<?> values)) {
+                throw NotTranslatableException.INSTANCE;
+            }
+            ColumnarTable.Column target = column(column);
+            if (target.getType() != ColumnarTable.Type.DICTIONARY) {
+                throw NotTranslatableException.INSTANCE;
+            }
+            List<String> candidates = new ArrayList<>();
+            for (Expression value : values) {
+                if (!(value instanceof StringValue text)) {
+                    throw NotTranslatableException.INSTANCE;
+                }
+                candidates.add(text.getValue());
+            }
+            return ColumnarQuery.in(target.getName(), candidates);
+        }
+
+        private ColumnarQuery.Filter comparison(ComparisonOperator comparison) {
+            Expression left = comparison.getLeftExpression();
+            Expression right = comparison.getRightExpression();
+            String operator = comparison.getStringExpression();
+            if (isLiteral(left) && !isLiteral(right)) {
+                // '2024-02-15' <= crash_date
+                Expression swap = left;
+                left = right;
+                right = swap;
+                operator = flip(operator);
+            }
+
+            if (left instanceof Function function && "date".equals(normalize(function.getName()))) {
+                String column = timeColumn(singleColumn(function)).getName();
+                LocalDate day = literalDate(right);
+                switch (operator) {
+                    case "=":
+                        return ColumnarQuery.dateRange(column, day, day);
+                    case ">":
+                        return ColumnarQuery.dateRange(column, day.plusDays(1), null);
+                    case ">=":
+                        return ColumnarQuery.dateRange(column, day, null);
+                    case "<":
+                        return ColumnarQuery.dateRange(column, null, day.minusDays(1));
+                    case "<=":
+                        return ColumnarQuery.dateRange(column, null, day);
+                    default:
+                        throw NotTranslatableException.INSTANCE;
+                }
+            }
+            if (!(left instanceof Column column)) {
+                throw NotTranslatableException.INSTANCE;
+            }
+
+            ColumnarTable.Column target = column(column);
+            switch (target.getType()) {
+                case DICTIONARY:
+                    if (!"=".equals(operator) || !(right instanceof StringValue text)) {
+                        throw NotTranslatableException.INSTANCE;
+                    }
+                    return ColumnarQuery.equalTo(target.getName(), text.getValue());
+                case INT: {
+                    long value = literalLong(right);
+                    switch (operator) {
+                        case "=":
+                            return ColumnarQuery.between(target.getName(), value, value);
+                        case ">":
+                            return ColumnarQuery.atLeast(target.getName(), value + 1);
+                        case ">=":
+                            return ColumnarQuery.atLeast(target.getName(), value);
+                        case "<":
+                            return ColumnarQuery.atMost(target.getName(), value - 1);
+                        case "<=":
+                            return ColumnarQuery.atMost(target.getName(), value);
+                        default:
+                            throw NotTranslatableException.INSTANCE;
+                    }
+                }
+                case EPOCH_MINUTE: {
+                    LocalDateTime time = literalTime(right);
+                    boolean exact = target.isMinutePrecise();
+                    switch (operator) {
+                        case "=":
+                            requireExact(exact);
+                            return ColumnarQuery.timeRange(target.getName(), time, time.plusMinutes(1));
+                        case ">":
+                            requireExact(exact);
+                            return ColumnarQuery.timeRange(target.getName(), time.plusMinutes(1), null);
+                        case ">=":
+                            return ColumnarQuery.timeRange(target.getName(), time, null);
+                        case "<":
+                            return ColumnarQuery.timeRange(target.getName(), null, time);
+                        case "<=":
+                            requireExact(exact);
+                            return ColumnarQuery.timeRange(target.getName(), null, time.plusMinutes(1));
+                        default:
+                            throw NotTranslatableException.INSTANCE;
+                    }
+                }
+                default:
+                    throw NotTranslatableException.INSTANCE;
+            }
+        }
+
+        private ColumnarQuery.Filter between(Expression left, Expression start, Expression end) {
+            if (left instanceof Function function && "date".equals(normalize(function.getName()))) {
+                return ColumnarQuery.dateRange(timeColumn(singleColumn(function)).getName(), literalDate(start), literalDate(end));
+            }
+            if (!(left instanceof Column column)) {
+                throw NotTranslatableException.INSTANCE;
+            }
+            ColumnarTable.Column target = column(column);
+            if (target.getType() == ColumnarTable.Type.INT) {
+                return ColumnarQuery.between(target.getName(), literalLong(start), literalLong(end));
+            }
+            if (target.getType() == ColumnarTable.Type.EPOCH_MINUTE) {
+                requireExact(target.isMinutePrecise());
+                return ColumnarQuery.timeRange(target.getName(), literalTime(start), literalTime(end).plusMinutes(1));
+            }
+            throw NotTranslatableException.INSTANCE;
+        }
+
+        private ColumnarTable.Column column(Column column) {
+            if (!table.hasColumn(column.getColumnName())) {
+                throw NotTranslatableException.INSTANCE;
+            }
+            return table.column(column.getColumnName());
+        }
+
+        private ColumnarTable.Column timeColumn(Column column) {
+            ColumnarTable.Column target = column(column);
+            if (target.getType() != ColumnarTable.Type.EPOCH_MINUTE) {
+                throw NotTranslatableException.INSTANCE;
+            }
+            return target;
+        }
+    }
+
+    private static boolean isAggregate(Function function) {
+        return AGGREGATE_FUNCTIONS.contains(normalize(function.getName()));
+    }
+
+    private static boolean isCountAll(Function function) {
+        if (function.isAllColumns()) {
+            return true;
+        }
+        ExpressionList<?> parameters = function.getParameters();
+        return parameters != null && parameters.size() == 1
+            && (parameters.get(0) instanceof AllColumns || parameters.get(0) instanceof LongValue);
+    }
+
+    private static Column singleColumn(Function function) {
+        ExpressionList<?> parameters = function.getParameters();
+        if (parameters == null || parameters.size() != 1 || !(parameters.get(0) instanceof Column column)) {
+            throw NotTranslatableException.INSTANCE;
+        }
+        return column;
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        return expression instanceof StringValue || expression instanceof LongValue
+            || expression instanceof SignedExpression;
+    }
+
+    private static String flip(String operator) {
+        switch (operator) {
+            case ">":
+                return "<";
+            case ">=":
+                return "<=";
+            case "<":
+                return ">";
+            case "<=":
+                return ">=";
+            default:
+                return operator;
+        }
+    }
+
+    private static Object toDecimal(Object value, int scale) {
+        if (scale == NOT_DECIMAL || !(value instanceof Number number)) {
+            return value;
+        }
+        BigDecimal decimal = number instanceof Long || number instanceof Integer
+            ? BigDecimal.valueOf(number.longValue()) : BigDecimal.valueOf(number.doubleValue());
+        return decimal.setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    private static void requireExact(boolean exact) {
+        if (!exact) {
+            throw NotTranslatableException.INSTANCE;
+        }
+    }
+
+    private static long literalLong(Expression expression) {
+        if (expression instanceof LongValue value) {
+            return value.getValue();
+        }
+        if (expression instanceof SignedExpression signed && signed.getExpression() instanceof LongValue value) {
+            return signed.getSign() == '-' ? -value.getValue() : value.getValue();
+        }
+        if (expression instanceof StringValue text) {
+            try {
+                return Long.parseLong(text.getValue().trim());
+            } catch (NumberFormatException e) {
+                throw NotTranslatableException.INSTANCE;
+            }
+        }
+        throw NotTranslatableException.INSTANCE;
+    }
+
+    private static LocalDate literalDate(Expression expression) {
+        LocalDateTime time = literalTime(expression);
+        if (!time.equals(time.toLocalDate().atStartOfDay())) {
+            throw NotTranslatableException.INSTANCE;
+        }
+        return time.toLocalDate();
+    }
+
+    /**
+     * 时间字面量，必须精确到分钟
+     */
+    private static LocalDateTime literalTime(Expression expression) {
+        if (!(expression instanceof StringValue text)) {
+            throw NotTranslatableException.INSTANCE;
+        }
+        String value = text.getValue().trim();
+        LocalDateTime time;
+        try {
+            time = value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value.replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            throw NotTranslatableException.INSTANCE;
+        }
+        if (time.getSecond() != 0 || time.getNano() != 0) {
+            throw NotTranslatableException.INSTANCE;
+        }
+        return time;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("`", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 查询无法在列式表上等价执行
+     */
+    private static class NotTranslatableException extends RuntimeException {
+        private static final NotTranslatableException INSTANCE = new NotTranslatableException();
+
+        private NotTranslatableException() {
+            super(null, null, false, false);
+        }
+    }
+}
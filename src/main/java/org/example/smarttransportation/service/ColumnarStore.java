@@ -0,0 +1,378 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.config.ColumnarConfig;
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 列式内存分析存储
+ * 启动后在后台把 2024 年 2 月的事故、客流、投诉、单车和活动数据以只进游标读入列式内存表，
+ * 统计分析与 NL2SQL 的单表聚合查询直接在内存中并行扫描，不再访问 MySQL。
+ *
+ * 与汇总表相同按表版本判断是否过期：数据表版本递增后后台重新加载，加载完成前 query 返回 null，
+ * 调用方回退到数据库查询。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class ColumnarStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarStore.class);
+
+    /**
+     * 各表加载的列及编码方式，实际加载时只取数据库中存在的列
+     */
+    static final Map<String, Map<String, ColumnarTable.Type>> TABLE_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        TABLE_COLUMNS.put("nyc_traffic_accidents", columns(
+            "crash_date", ColumnarTable.Type.EPOCH_MINUTE,
+            "borough", ColumnarTable.Type.DICTIONARY,
+            "on_street_name", ColumnarTable.Type.DICTIONARY,
+            "latitude", ColumnarTable.Type.COORDINATE,
+            "longitude", ColumnarTable.Type.COORDINATE,
+            "number_of_persons_injured", ColumnarTable.Type.INT,
+            "number_of_persons_killed", ColumnarTable.Type.INT,
+            "number_of_pedestrians_injured", ColumnarTable.Type.INT,
+            "number_of_pedestrians_killed", ColumnarTable.Type.INT,
+            "number_of_cyclist_injured", ColumnarTable.Type.INT,
+            "number_of_cyclist_killed", ColumnarTable.Type.INT,
+            "number_of_motorist_injured", ColumnarTable.Type.INT,
+            "number_of_motorist_killed", ColumnarTable.Type.INT,
+            "contributing_factor_vehicle_1", ColumnarTable.Type.DICTIONARY,
+            "vehicle_type_code1", ColumnarTable.Type.DICTIONARY));
+        TABLE_COLUMNS.put("subway_ridership", columns(
+            "transit_timestamp", ColumnarTable.Type.EPOCH_MINUTE,
+            "station_complex_id", ColumnarTable.Type.INT,
+            "station_complex", ColumnarTable.Type.DICTIONARY,
+            "borough", ColumnarTable.Type.DICTIONARY,
+            "ridership", ColumnarTable.Type.INT,
+            "latitude", ColumnarTable.Type.COORDINATE,
+            "longitude", ColumnarTable.Type.COORDINATE));
+        TABLE_COLUMNS.put("complaints", columns(
+            "created_at", ColumnarTable.Type.EPOCH_MINUTE,
+            "closed_at", ColumnarTable.Type.EPOCH_MINUTE,
+            "agency", ColumnarTable.Type.DICTIONARY,
+            "complaint_type", ColumnarTable.Type.DICTIONARY,
+            "descriptor", ColumnarTable.Type.DICTIONARY,
+            "status", ColumnarTable.Type.DICTIONARY,
+            "borough", ColumnarTable.Type.DICTIONARY,
+            "latitude", ColumnarTable.Type.COORDINATE,
+            "longitude", ColumnarTable.Type.COORDINATE));
+        TABLE_COLUMNS.put("citibike_trips_202402", columns(
+            "started_at", ColumnarTable.Type.EPOCH_MINUTE,
+            "ended_at", ColumnarTable.Type.EPOCH_MINUTE,
+            "start_station_name", ColumnarTable.Type.DICTIONARY,
+            "end_station_name", ColumnarTable.Type.DICTIONARY,
+            "start_lat", ColumnarTable.Type.COORDINATE,
+            "start_lng", ColumnarTable.Type.COORDINATE,
+            "end_lat", ColumnarTable.Type.COORDINATE,
+            "end_lng", ColumnarTable.Type.COORDINATE));
+        TABLE_COLUMNS.put("nyc_permitted_events", columns(
+            "start_at", ColumnarTable.Type.EPOCH_MINUTE,
+            "end_at", ColumnarTable.Type.EPOCH_MINUTE,
+            "event_borough", ColumnarTable.Type.DICTIONARY,
+            "street_closure_type", ColumnarTable.Type.DICTIONARY,
+            "latitude", ColumnarTable.Type.COORDINATE,
+            "longitude", ColumnarTable.Type.COORDINATE));
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private SchemaCatalog schemaCatalog;
+
+    @Autowired
+    private ColumnarConfig.ColumnarProperties properties;
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties nl2sqlProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, LoadedTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * 只在 init 中写入
+     */
+    private final Map<String, LoadState> states = new LinkedHashMap<>();
+
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "columnar-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ForkJoinPool scanPool;
+
+    @PostConstruct
+    public void init() {
+        for (String table : TABLE_COLUMNS.keySet()) {
+            states.put(table, new LoadState());
+        }
+        int parallelism = properties.getParallelism() != null && properties.getParallelism() > 0
+            ? properties.getParallelism() : Runtime.getRuntime().availableProcessors();
+        scanPool = new ForkJoinPool(parallelism);
+        Gauge.builder("columnar.memory.bytes", this, ColumnarStore::memoryBytes)
+            .description("列式内存表估算占用").baseUnit("bytes").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+        scanPool.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(properties.getEnabled());
+    }
+
+    /**
+     * 在列式表上执行查询；未启用、未加载或表已过期时返回 null，调用方应回退到数据库
+     */
+    public ColumnarResult query(ColumnarQuery query) {
+        ColumnarTable table = currentTable(query.getTable());
+        if (table == null) {
+            return null;
+        }
+        try {
+            ColumnarResult result = query.execute(table, scanPool, properties.getChunkRows());
+            record("api", result);
+            return result;
+        } catch (IllegalArgumentException e) {
+            logger.debug("列式内存表无法执行该查询，回退到数据库: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * NL2SQL 聚合查询尝试在列式表上执行，无法等价转换或表不可用时返回 null
+     */
+    public ResultPreview tryExecute(String checkedSql) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Map<String, ColumnarTable> current = new HashMap<>();
+        for (String table : tables.keySet()) {
+            ColumnarTable columnarTable = currentTable(table);
+            if (columnarTable != null) {
+                current.put(table, columnarTable);
+            }
+        }
+        if (current.isEmpty()) {
+            return null;
+        }
+
+        ColumnarSqlAdapter.Translation translation = ColumnarSqlAdapter.translate(checkedSql, current);
+        if (translation == null) {
+            return null;
+        }
+        ColumnarTable table = current.get(translation.getQuery().getTable());
+        try {
+            ColumnarResult result = translation.getQuery().execute(table, scanPool, properties.getChunkRows());
+            record("nl2sql", result);
+            logger.debug("NL2SQL查询在列式内存表上执行: {} 行, {} 微秒", result.getRowCount(), result.getElapsedMicros());
+            return ResultPreview.of(translation.getLabels(), translation.project(result),
+                Math.max(1, nl2sqlProperties.getGuard().getPreviewRows()));
+        } catch (IllegalArgumentException e) {
+            logger.debug("列式内存表无法执行该查询，回退到数据库: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 后台加载所有表
+     */
+    public void loadAllAsync() {
+        for (String table : properties.getTables()) {
+            loadAsync(table);
+        }
+    }
+
+    /**
+     * 后台重新加载单张表
+     */
+    public void loadAsync(String table) {
+        String key = ColumnarTable.normalize(table);
+        LoadState state = states.get(key);
+        if (!isEnabled() || state == null) {
+            return;
+        }
+        if (state.queued.compareAndSet(false, true)) {
+            loadExecutor.execute(() -> {
+                state.queued.set(false);
+                load(key);
+            });
+        }
+    }
+
+    /**
+     * 各表加载状态
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Map.Entry<String, LoadState> entry : states.entrySet()) {
+            String table = entry.getKey();
+            LoadState state = entry.getValue();
+            LoadedTable loaded = tables.get(table);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("table", table);
+            item.put("loaded", loaded != null);
+            item.put("rows", loaded != null ? loaded.table.getRowCount() : 0);
+            item.put("columns", loaded != null ? loaded.table.getColumnNames() : List.of());
+            item.put("memoryBytes", loaded != null ? loaded.table.memoryBytes() : 0);
+            item.put("loadedVersion", loaded != null ? loaded.version : -1);
+            item.put("sourceVersion", tableVersionRegistry.currentVersion(table));
+            item.put("lastLoadMillis", state.lastLoadMillis);
+            item.put("lastError", state.lastError);
+            stats.add(item);
+        }
+        return stats;
+    }
+
+    /**
+     * 以只进游标流式读取整表并编码为列式表
+     */
+    void load(String table) {
+        LoadState state = states.get(table);
+        Map<String, ColumnarTable.Type> spec = TABLE_COLUMNS.get(table);
+        Set<String> available = new HashSet<>();
+        for (SchemaCatalog.TableSchema schema : schemaCatalog.getTables()) {
+            if (schema.getName().equals(table)) {
+                schema.getColumns().forEach(column -> available.add(column.getName()));
+            }
+        }
+
+        ColumnarTable.Builder builder = ColumnarTable.builder(table);
+        spec.forEach((column, type) -> {
+            if (available.contains(column)) {
+                builder.column(column, type);
+            }
+        });
+        List<String> columns = builder.getColumns();
+        if (columns.isEmpty()) {
+            state.lastError = "没有可加载的列";
+            return;
+        }
+
+        // 先取版本再读数据，加载期间有新导入时版本不一致，下次查询会再触发加载
+        long version = tableVersionRegistry.snapshot(List.of(table)).values().iterator().next();
+        long start = System.nanoTime();
+        try {
+            String sql = "SELECT " + String.join(", ", columns) + " FROM " + table;
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // MySQL 驱动的逐行流式读取，不依赖 useCursorFetch，整表结果不会先缓存在客户端
+                statement.setFetchSize(Integer.MIN_VALUE);
+                return statement;
+            }, (RowCallbackHandler) resultSet -> {
+                Object[] row = new Object[columns.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = resultSet.getObject(i + 1);
+                }
+                builder.append(row);
+            });
+
+            ColumnarTable columnarTable = builder.build();
+            tables.put(table, new LoadedTable(columnarTable, version));
+            state.lastError = null;
+            logger.info("列式内存表 {} 加载完成: {} 行, {} 列, 约 {} MB", table, columnarTable.getRowCount(),
+                columns.size(), columnarTable.memoryBytes() / (1024 * 1024));
+        } catch (Exception e) {
+            state.lastError = e.getMessage();
+            logger.warn("列式内存表 {} 加载失败，查询将回退到数据库: {}", table, e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            state.lastLoadMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            Timer.builder("columnar.load").tag("table", table)
+                .description("列式内存表加载耗时").register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 与数据表版本一致的列式表；已过期时触发后台重新加载并返回 null
+     */
+    private ColumnarTable currentTable(String table) {
+        if (!isEnabled()) {
+            return null;
+        }
+        LoadedTable loaded = tables.get(table);
+        if (loaded == null) {
+            return null;
+        }
+        if (loaded.version != tableVersionRegistry.currentVersion(table)) {
+            loadAsync(table);
+            return null;
+        }
+        return loaded.table;
+    }
+
+    private void record(String source, ColumnarResult result) {
+        Timer.builder("columnar.query").tag("source", source)
+            .description("列式内存表查询耗时").publishPercentileHistogram().register(meterRegistry)
+            .record(result.getElapsedMicros(), TimeUnit.MICROSECONDS);
+    }
+
+    private double memoryBytes() {
+        long bytes = 0;
+        for (LoadedTable loaded : tables.values()) {
+            bytes += loaded.table.memoryBytes();
+        }
+        return bytes;
+    }
+
+    private static Map<String, ColumnarTable.Type> columns(Object... pairs) {
+        Map<String, ColumnarTable.Type> result = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            result.put((String) pairs[i], (ColumnarTable.Type) pairs[i + 1]);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static class LoadedTable {
+        private final ColumnarTable table;
+        private final long version;
+
+        private LoadedTable(ColumnarTable table, long version) {
+            this.table = table;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 表加载运行状态
+     */
+    private static class LoadState {
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile long lastLoadMillis;
+        private volatile String lastError;
+    }
+}
@@ -0,0 +1,359 @@
+package org.example.smarttransportation.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * 列式内存表
+ * 每列保存为一个 int 数组：字符串字典编码（NULL 编码为 -1），时间为纪元分钟数（按本地时间，不含时区），
+ * 经纬度按 1e6 缩放为整数，其余数值按 int 保存（NULL 为 Integer.MIN_VALUE）。
+ * 表构建后只读，可被多个线程并发扫描。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public final class ColumnarTable {
+
+    static final int NULL_INT = Integer.MIN_VALUE;
+    static final int NULL_CODE = -1;
+    static final int COORDINATE_SCALE = 1_000_000;
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * 列编码类型
+     */
+    public enum Type {
+        DICTIONARY,
+        INT,
+        EPOCH_MINUTE,
+        COORDINATE
+    }
+
+    private final String name;
+    private final int rowCount;
+    private final Map<String, Column> columns;
+
+    private ColumnarTable(String name, int rowCount, Map<String, Column> columns) {
+        this.name = name;
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public Set<String> getColumnNames() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    public boolean hasColumn(String column) {
+        return columns.containsKey(normalize(column));
+    }
+
+    public Column column(String column) {
+        Column result = columns.get(normalize(column));
+        if (result == null) {
+            throw new IllegalArgumentException("列存表 " + name + " 中不存在列: " + column);
+        }
+        return result;
+    }
+
+    /**
+     * 估算内存占用（字节）
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Column column : columns.values()) {
+            bytes += 16 + column.values.length * 4L;
+            if (column.dictionary != null) {
+                for (String value : column.dictionary) {
+                    bytes += 40 + value.length() * 2L + 48;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    static String normalize(String column) {
+        return column.replace("`", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    static int toEpochMinute(LocalDateTime time) {
+        return (int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+
+    static LocalDateTime fromEpochMinute(int minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * 列：编码后的取值数组，字典列另有字典
+     */
+    public static final class Column {
+        private final String name;
+        private final Type type;
+        final int[] values;
+        final String[] dictionary;
+        private final int min;
+        private final int max;
+        private final boolean minutePrecise;
+        private final boolean dayAligned;
+        private final boolean caseDistinct;
+
+        private Column(String name, Type type, int[] values, String[] dictionary, int min, int max,
+                       boolean minutePrecise, boolean dayAligned) {
+            this.name = name;
+            this.type = type;
+            this.values = values;
+            this.dictionary = dictionary;
+            this.min = min;
+            this.max = max;
+            this.minutePrecise = minutePrecise;
+            this.dayAligned = dayAligned;
+            this.caseDistinct = dictionary == null || isCaseDistinct(dictionary);
+        }
+
+        private static boolean isCaseDistinct(String[] dictionary) {
+            Set<String> folded = new HashSet<>();
+            for (String value : dictionary) {
+                if (!folded.add(value.stripTrailing().toLowerCase(Locale.ROOT))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * 非 NULL 编码值的最小值（字典列为 0）
+         */
+        public int getMin() {
+            return min;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * 时间列的原始值是否都精确到分钟（无秒），否则编码时截断了秒
+         */
+        public boolean isMinutePrecise() {
+            return minutePrecise;
+        }
+
+        /**
+         * 时间列是否只包含整天（DATE 类型）
+         */
+        public boolean isDayAligned() {
+            return dayAligned;
+        }
+
+        /**
+         * 字典值忽略大小写与尾部空格后是否仍互不相同；否则按字典编码分组与 MySQL 默认排序规则下的分组不一致
+         */
+        public boolean isCaseDistinct() {
+            return caseDistinct;
+        }
+
+        public int getDictionarySize() {
+            return dictionary != null ? dictionary.length : 0;
+        }
+
+        /**
+         * 与 MySQL 默认排序规则一致，字典值按不区分大小写匹配
+         */
+        public boolean[] matchCodes(Collection<String> candidates) {
+            boolean[] matched = new boolean[dictionary.length];
+            Set<String> lower = new HashSet<>();
+            for (String candidate : candidates) {
+                lower.add(candidate.toLowerCase(Locale.ROOT));
+            }
+            for (int code = 0; code < dictionary.length; code++) {
+                matched[code] = lower.contains(dictionary[code].toLowerCase(Locale.ROOT));
+            }
+            return matched;
+        }
+
+        /**
+         * 解码单个取值
+         */
+        public Object decode(int encoded) {
+            switch (type) {
+                case DICTIONARY:
+                    return encoded == NULL_CODE ? null : dictionary[encoded];
+                case EPOCH_MINUTE:
+                    return encoded == NULL_INT ? null : fromEpochMinute(encoded);
+                case COORDINATE:
+                    return encoded == NULL_INT ? null : encoded / (double) COORDINATE_SCALE;
+                default:
+                    return encoded == NULL_INT ? null : encoded;
+            }
+        }
+
+        public Object value(int row) {
+            return decode(values[row]);
+        }
+
+        public boolean isNull(int row) {
+            return values[row] == (type == Type.DICTIONARY ? NULL_CODE : NULL_INT);
+        }
+    }
+
+    /**
+     * 按行追加构建列式表
+     */
+    public static final class Builder {
+        private final String name;
+        private final List<String> names = new ArrayList<>();
+        private final List<Type> types = new ArrayList<>();
+        private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        private final List<Boolean> truncated = new ArrayList<>();
+        private int[][] data = new int[0][];
+        private int size;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder column(String column, Type type) {
+            if (size > 0) {
+                throw new IllegalStateException("已追加数据后不能再添加列");
+            }
+            names.add(normalize(column));
+            types.add(type);
+            dictionaries.add(type == Type.DICTIONARY ? new HashMap<>() : null);
+            truncated.add(false);
+            data = Arrays.copyOf(data, names.size());
+            data[names.size() - 1] = new int[1024];
+            return this;
+        }
+
+        public List<String> getColumns() {
+            return Collections.unmodifiableList(names);
+        }
+
+        /**
+         * 追加一行，取值顺序与列定义一致；支持 String、Number、LocalDate、LocalDateTime 与 java.sql 时间类型
+         */
+        public Builder append(Object... values) {
+            if (values.length != names.size()) {
+                throw new IllegalArgumentException("取值个数与列数不一致");
+            }
+            if (size == data[0].length) {
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = Arrays.copyOf(data[i], size * 2);
+                }
+            }
+            for (int i = 0; i < values.length; i++) {
+                data[i][size] = encode(i, values[i]);
+            }
+            size++;
+            return this;
+        }
+
+        private int encode(int index, Object value) {
+            Type type = types.get(index);
+            if (value == null) {
+                return type == Type.DICTIONARY ? NULL_CODE : NULL_INT;
+            }
+            switch (type) {
+                case DICTIONARY:
+                    Map<String, Integer> dictionary = dictionaries.get(index);
+                    return dictionary.computeIfAbsent(value.toString(), key -> dictionary.size());
+                case EPOCH_MINUTE:
+                    LocalDateTime dateTime = toDateTime(value);
+                    if (dateTime.getSecond() != 0 || dateTime.getNano() != 0) {
+                        truncated.set(index, true);
+                    }
+                    return toEpochMinute(dateTime);
+                case COORDINATE:
+                    return (int) Math.round(((Number) value).doubleValue() * COORDINATE_SCALE);
+                default:
+                    long number = ((Number) value).longValue();
+                    if (number <= NULL_INT || number > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("列 " + names.get(index) + " 的取值超出 int 范围: " + value);
+                    }
+                    return (int) number;
+            }
+        }
+
+        private static LocalDateTime toDateTime(Object value) {
+            if (value instanceof LocalDateTime dateTime) {
+                return dateTime;
+            }
+            if (value instanceof LocalDate date) {
+                return date.atStartOfDay();
+            }
+            if (value instanceof java.sql.Timestamp timestamp) {
+                return timestamp.toLocalDateTime();
+            }
+            if (value instanceof java.sql.Date date) {
+                return date.toLocalDate().atStartOfDay();
+            }
+            if (value instanceof String text) {
+                String trimmed = text.trim();
+                return trimmed.length() <= 10 ? LocalDate.parse(trimmed).atStartOfDay()
+                    : LocalDateTime.parse(trimmed.replace(' ', 'T'));
+            }
+            throw new IllegalArgumentException("无法转换为时间: " + value);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public ColumnarTable build() {
+            Map<String, Column> columns = new LinkedHashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                int[] values = Arrays.copyOf(data[i], size);
+                Type type = types.get(i);
+                String[] dictionary = null;
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                boolean dayAligned = type == Type.EPOCH_MINUTE && !truncated.get(i);
+                if (type == Type.DICTIONARY) {
+                    dictionary = new String[dictionaries.get(i).size()];
+                    for (Map.Entry<String, Integer> entry : dictionaries.get(i).entrySet()) {
+                        dictionary[entry.getValue()] = entry.getKey();
+                    }
+                    min = 0;
+                    max = dictionary.length - 1;
+                } else {
+                    for (int value : values) {
+                        if (value != NULL_INT) {
+                            min = Math.min(min, value);
+                            max = Math.max(max, value);
+                            dayAligned &= Math.floorMod(value, MINUTES_PER_DAY) == 0;
+                        }
+                    }
+                }
+                if (min > max) {
+                    min = 0;
+                    max = -1;
+                }
+                columns.put(names.get(i), new Column(names.get(i), type, values, dictionary, min, max,
+                    !truncated.get(i), dayAligned));
+            }
+            return new ColumnarTable(name, size, Collections.unmodifiableMap(columns));
+        }
+    }
+}
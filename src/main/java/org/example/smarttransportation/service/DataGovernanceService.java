@@ -158,23 +158,23 @@ public class DataGovernanceService {
         Map<String, Long> timeDistribution = accidents.stream()
             .collect(Collectors.groupingBy(
                 accident -> {
-                    // 修复：从LocalDate获取小时信息会报错，需要从字符串解析时间
-                    try {
-                        String[] timeParts = accident.getCrashTime().split(":");
-                        int hour = Integer.parseInt(timeParts[0]);
-                        if (hour >= 6 && hour < 12) {
-                            return "上午(6-12)";
-                        }
-                        if (hour >= 12 && hour < 18) {
-                            return "下午(12-18)";
-                        }
-                        if (hour >= 18 && hour < 24) {
-                            return "晚上(18-24)";
-                        }
-                        return "凌晨(0-6)";
-                    } catch (Exception e) {
+                    // crash_minute 保存时已由 crash_time 解析，未回填的旧数据再现场解析
+                    Integer minute = accident.getCrashMinute() != null ? accident.getCrashMinute()
+                        : TrafficAccident.parseMinuteOfDay(accident.getCrashTime());
+                    if (minute == null) {
                         return "未知时段";
                     }
+                    int hour = minute / 60;
+                    if (hour >= 6 && hour < 12) {
+                        return "上午(6-12)";
+                    }
+                    if (hour >= 12 && hour < 18) {
+                        return "下午(12-18)";
+                    }
+                    if (hour >= 18) {
+                        return "晚上(18-24)";
+                    }
+                    return "凌晨(0-6)";
                 },
                 Collectors.counting()
             ));
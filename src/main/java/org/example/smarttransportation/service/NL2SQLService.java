@@ -1,13 +1,20 @@
 package org.example.smarttransportation.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.smarttransportation.config.NL2SQLConfig;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,32 +34,34 @@ public class NL2SQLService {
     @Autowired(required = false)
     private ChatModel chatModel;
 
+    @Autowired
+    private SqlResultCache sqlResultCache;
+
+    @Autowired
+    private SqlTranslationCache sqlTranslationCache;
+
+    @Autowired
+    private SqlGuard sqlGuard;
+
+    @Autowired
+    private SqlQueryExecutor sqlQueryExecutor;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private ColumnarStore columnarStore;
+
+    @Autowired
+    private SchemaCatalog schemaCatalog;
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private ChatClient chatClient;
-    
-    // 数据库表结构信息
-    private static final String SCHEMA_INFO = """
-        数据库表结构信息：
-        
-        1. citibike_trips_202402 - 共享单车出行数据 (2024年2月数据)
-        字段：started_at, start_station_name, ended_at, end_station_name, start_lat, start_lng, end_lat, end_lng
-        
-        2. complaints - 城市投诉数据
-        字段：unique_key, closed_at, agency, complaint_type, descriptor, status, resolution_description, latitude, longitude, borough, created_at
-        
-        3. nyc_traffic_accidents - 机动车碰撞事故 (注意：数据为2024年2月)
-        字段：collision_id, crash_date, crash_time, borough, latitude, longitude, on_street_name, cross_street_name, 
-               off_street_name, number_of_persons_injured, number_of_persons_killed, number_of_pedestrians_injured, 
-               number_of_pedestrians_killed, number_of_cyclist_injured, number_of_cyclist_killed, 
-               number_of_motorist_injured, number_of_motorist_killed, contributing_factor_vehicle_1, 
-               contributing_factor_vehicle_2, vehicle_type_code1, vehicle_type_code2
-        
-        4. nyc_permitted_events - 纽约许可活动数据 (注意：数据为2024年2月)
-        字段：event_id, event_name, start_at, end_at, event_borough, event_location, event_street_side, 
-               street_closure_type, latitude, longitude, geocode_query, geocode_status
-        
-        5. subway_ridership - 地铁客流数据 (注意：数据为2024年2月)
-        字段：transit_timestamp, station_complex_id, station_complex, borough, ridership, latitude, longitude, stratum
-        """;
 
     /**
      * 将自然语言问题转换为SQL查询
@@ -62,9 +71,17 @@ public class NL2SQLService {
             throw new IllegalArgumentException("查询问题不能为空");
         }
 
+        String sql = generateSQLByLLM(naturalLanguageQuery);
+        // 未配置AI模型或AI转换失败时，使用规则匹配
+        return sql != null ? sql : generateSQLByRules(naturalLanguageQuery);
+    }
+
+    /**
+     * 调用大模型生成SQL，未配置模型或调用失败时返回 null
+     */
+    private String generateSQLByLLM(String naturalLanguageQuery) {
         if (chatModel == null) {
-            // 如果没有配置AI模型，使用规则匹配
-            return generateSQLByRules(naturalLanguageQuery);
+            return null;
         }
 
         // 初始化ChatClient（如果还没有初始化）
@@ -72,6 +89,7 @@ public class NL2SQLService {
             chatClient = ChatClient.builder(chatModel).build();
         }
 
+        long start = System.nanoTime();
         try {
             String prompt = buildNL2SQLPrompt(naturalLanguageQuery);
 
@@ -79,44 +97,220 @@ public class NL2SQLService {
                 .user(prompt)
                 .call()
                 .content();
+            sqlTranslationCache.recordLlmCall(System.nanoTime() - start);
 
             // 提取SQL语句
             return extractSQL(sqlResult);
 
         } catch (Exception e) {
-            // AI转换失败时，回退到规则匹配
-            return generateSQLByRules(naturalLanguageQuery);
+            return null;
+        }
+    }
+
+    /**
+     * 把校验失败的SQL和错误信息反馈给大模型修正，未配置模型或调用失败时返回 null
+     */
+    private String repairSQLByLLM(String naturalLanguageQuery, String failedSql, String error) {
+        if (chatModel == null) {
+            return null;
+        }
+        if (chatClient == null) {
+            chatClient = ChatClient.builder(chatModel).build();
+        }
+
+        long start = System.nanoTime();
+        try {
+            String prompt = String.format("""
+                你生成的SQL查询无法执行，请根据错误信息修正。
+
+                %s
+
+                用户问题：%s
+
+                出错的SQL：
+                %s
+
+                错误信息：%s
+
+                要求：只使用上面列出的表和字段，只返回修正后的一条SELECT语句，不要其他解释。
+
+                修正后的SQL：
+                """, schemaCatalog.buildSchemaPrompt(naturalLanguageQuery), naturalLanguageQuery, failedSql, error);
+
+            String sqlResult = chatClient.prompt()
+                .user(prompt)
+                .call()
+                .content();
+            sqlTranslationCache.recordLlmCall(System.nanoTime() - start);
+            return extractSQL(sqlResult);
+
+        } catch (Exception e) {
+            return null;
         }
     }
 
+    private void recordRepair(String outcome) {
+        Counter.builder("nl2sql.repair").tag("outcome", outcome)
+            .description("NL2SQL自修正结果").register(meterRegistry).increment();
+    }
+
     /**
      * 执行SQL查询并返回结果
      */
     public QueryResult executeQuery(String naturalLanguageQuery) {
+        return executeQuery(naturalLanguageQuery, QueryExecution.untracked());
+    }
+
+    /**
+     * 异步执行查询，依次发出 SQL 已生成、执行中、已读取行数等进度，最后发出包含结果的 COMPLETED 事件。
+     * 查询在弹性线程池上执行；订阅方取消（如 SSE 连接断开）时取消正在执行的 JDBC 语句
+     */
+    public Flux<QueryProgress> executeQueryStream(String naturalLanguageQuery) {
+        return Flux.<QueryProgress>create(sink -> {
+            QueryExecution execution = new QueryExecution(sink::next);
+            sink.onCancel(execution::cancel);
+            QueryResult result = executeQuery(naturalLanguageQuery, execution);
+            if (!execution.isCancelled()) {
+                sink.next(QueryProgress.completed(result));
+                sink.complete();
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 异步执行查询，只关心最终结果；取消订阅同样会终止数据库上的查询
+     */
+    public Mono<QueryResult> executeQueryAsync(String naturalLanguageQuery) {
+        return executeQueryStream(naturalLanguageQuery)
+            .filter(progress -> progress.getStage() == QueryProgress.Stage.COMPLETED)
+            .next()
+            .map(QueryProgress::getResult);
+    }
+
+    private QueryResult executeQuery(String naturalLanguageQuery, QueryExecution execution) {
         try {
-            String sql = generateSQL(naturalLanguageQuery);
+            if (!StringUtils.hasText(naturalLanguageQuery)) {
+                throw new IllegalArgumentException("查询问题不能为空");
+            }
+
+            // 优先复用翻译缓存/模板库中已验证的SQL，未命中再调用大模型
+            QuestionTemplate questionTemplate = sqlTranslationCache.parse(naturalLanguageQuery);
+            // 翻译缓存中的SQL学习前已在数据库上EXPLAIN并执行成功，只做语法树校验，不再EXPLAIN
+            String sql = sqlTranslationCache.lookup(questionTemplate);
+            boolean fromTemplate = sql != null;
+            boolean generatedByLLM = false;
+            if (sql == null) {
+                sql = generateSQLByLLM(naturalLanguageQuery);
+                generatedByLLM = sql != null;
+                if (sql == null) {
+                    sql = generateSQLByRules(naturalLanguageQuery);
+                }
+            }
 
             if (!StringUtils.hasText(sql)) {
                 return new QueryResult(false, "无法生成有效的SQL查询", null, null);
             }
+            execution.progress(QueryProgress.sqlGenerated(sql, fromTemplate ? "template" : generatedByLLM ? "llm" : "rules"));
+
+            // 语法树校验（仅SELECT、白名单表和字段，注入或收紧LIMIT）后先查结果缓存、再尝试列式内存表；
+            // 两者命中时不做EXPLAIN、不占用查询执行许可，只有要到数据库（或汇总表）执行的新SQL才EXPLAIN校验。
+            // 校验失败时把错误反馈给大模型修正，次数与耗时均有上限
+            NL2SQLConfig.NL2SQLProperties.Repair repair = properties.getRepair();
+            long start = System.currentTimeMillis();
+            int attempts = 0;
+            SqlQueryExecutor.Validation validation = null;
+            ResultPreview preview = null;
+            boolean cached = false;
+            while (true) {
+                String error;
+                String checkedSql = null;
+                try {
+                    checkedSql = sqlGuard.check(sql);
+                    error = null;
+                } catch (IllegalArgumentException e) {
+                    error = "SQL查询未通过安全校验: " + e.getMessage();
+                }
+                if (error == null) {
+                    // 数据为静态快照，相同SQL优先复用缓存结果；单表聚合查询其次在列式内存表上执行
+                    preview = sqlResultCache.get(checkedSql);
+                    cached = preview != null;
+                    if (preview == null) {
+                        preview = columnarStore.tryExecute(checkedSql);
+                    }
+                    if (preview == null && !fromTemplate) {
+                        validation = sqlQueryExecutor.validate(checkedSql);
+                        error = validation.isValid() ? null : "SQL校验失败: " + validation.getError();
+                    }
+                }
+                if (error == null) {
+                    sql = checkedSql;
+                    break;
+                }
+
+                String repaired = null;
+                if (Boolean.TRUE.equals(repair.getEnabled()) && attempts < repair.getMaxAttempts()
+                    && System.currentTimeMillis() - start < repair.getBudgetMillis()) {
+                    repaired = repairSQLByLLM(naturalLanguageQuery, sql, error);
+                }
+                if (!StringUtils.hasText(repaired) || repaired.equals(sql)) {
+                    if (attempts > 0) {
+                        recordRepair("failed");
+                    }
+                    return new QueryResult(false, error, null, sql);
+                }
+                attempts++;
+                sql = repaired;
+                execution.checkCancelled();
+                execution.progress(QueryProgress.sqlGenerated(sql, "repair"));
+                // 修正后的SQL需要重新EXPLAIN；修正成功后写入翻译缓存，下次同类问题不必再付修正的代价
+                fromTemplate = false;
+                generatedByLLM = true;
+            }
+            if (attempts > 0) {
+                recordRepair("success");
+            }
 
-            // 验证SQL安全性
-            if (!isSafeSQL(sql)) {
-                return new QueryResult(false, "SQL查询包含不安全的操作", null, sql);
+            execution.checkCancelled();
+
+            if (cached) {
+                execution.progress(QueryProgress.executing(sql, "cache"));
+                execution.progress(QueryProgress.rowsFetched(preview.getTotalRows(), true));
+            } else if (preview != null) {
+                execution.progress(QueryProgress.executing(sql, "columnar"));
+                execution.progress(QueryProgress.rowsFetched(preview.getTotalRows(), true));
+                sqlResultCache.put(sql, preview);
+            } else {
+                // 可由预聚合汇总表等价计算的聚合查询改写到汇总表执行；
+                // 只读连接池上限流执行，内存中只保留预览行
+                String rollupSql = rollupService.rewrite(sql);
+                execution.progress(QueryProgress.executing(sql, rollupSql != null ? "rollup" : "database"));
+                try {
+                    // 直接执行校验过的SQL时沿用校验时的EXPLAIN估算
+                    preview = sqlQueryExecutor.execute(rollupSql != null ? rollupSql : sql, validation, execution);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    return new QueryResult(false, e.getMessage(), null, sql);
+                }
+                sqlResultCache.put(sql, preview);
             }
 
-            // 执行查询
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+            if (generatedByLLM) {
+                sqlTranslationCache.learn(questionTemplate, sql);
+            }
 
-            return new QueryResult(true, "查询成功", results, sql);
+            QueryResult result = new QueryResult(true, "查询成功", preview.toRows(), sql);
+            result.setTotalRows(preview.getTotalRows());
+            result.setCached(cached);
+            return result;
 
+        } catch (CancellationException e) {
+            return new QueryResult(false, e.getMessage(), null, null);
         } catch (Exception e) {
             return new QueryResult(false, "查询执行失败: " + e.getMessage(), null, null);
         }
     }
 
     /**
-     * 构建NL2SQL的提示词
+     * 构建NL2SQL的提示词，只包含与问题相关的表结构
      */
     private String buildNL2SQLPrompt(String query) {
         return String.format("""
@@ -136,7 +330,7 @@ public class NL2SQLService {
             7. 注意：数据库中存储的是2024年2月的历史数据，不要查询最近的数据
             
             SQL查询：
-            """, SCHEMA_INFO, query);
+            """, schemaCatalog.buildSchemaPrompt(query), query);
     }
 
     /**
@@ -289,41 +483,6 @@ public class NL2SQLService {
         return true;
     }
 
-    /**
-     * 验证SQL安全性
-     */
-    private boolean isSafeSQL(String sql) {
-        if (!StringUtils.hasText(sql)) {
-            return false;
-        }
-
-        String upperSQL = sql.toUpperCase().trim();
-
-        // 只允许SELECT查询
-        if (!upperSQL.startsWith("SELECT")) {
-            return false;
-        }
-
-        // 禁止的关键词（但允许UNION ALL用于统计查询）
-        String[] forbiddenKeywords = {
-            "DROP", "DELETE", "UPDATE", "INSERT", "ALTER", "CREATE", "TRUNCATE",
-            "EXEC", "EXECUTE", "SCRIPT", "JAVASCRIPT", "VBSCRIPT"
-        };
-
-        for (String keyword : forbiddenKeywords) {
-            if (upperSQL.contains(keyword)) {
-                return false;
-            }
-        }
-
-        // 特殊处理：允许UNION ALL但不允许单独的UNION
-        if (upperSQL.contains("UNION") && !upperSQL.contains("UNION ALL")) {
-            return false;
-        }
-
-        return true;
-    }
-
     /**
      * 获取查询建议
      */
@@ -348,13 +507,85 @@ public class NL2SQLService {
     }
 
     /**
-     * 查询结果类
+     * 异步查询的进度事件
+     */
+    public static class QueryProgress {
+
+        public enum Stage {
+            SQL_GENERATED,
+            EXECUTING,
+            ROWS_FETCHED,
+            COMPLETED
+        }
+
+        private final Stage stage;
+        private final String message;
+        private String sql;
+        private String source;
+        private Long rows;
+        private QueryResult result;
+
+        private QueryProgress(Stage stage, String message) {
+            this.stage = stage;
+            this.message = message;
+        }
+
+        /**
+         * @param source SQL 来源：template / llm / rules / repair
+         */
+        static QueryProgress sqlGenerated(String sql, String source) {
+            QueryProgress progress = new QueryProgress(Stage.SQL_GENERATED, "repair".equals(source) ? "SQL已修正" : "SQL已生成");
+            progress.sql = sql;
+            progress.source = source;
+            return progress;
+        }
+
+        /**
+         * @param target 执行位置：cache / columnar / rollup / database
+         */
+        static QueryProgress executing(String sql, String target) {
+            QueryProgress progress = new QueryProgress(Stage.EXECUTING, "正在执行查询");
+            progress.sql = sql;
+            progress.source = target;
+            return progress;
+        }
+
+        /**
+         * @param complete rows 是否已是结果总行数
+         */
+        static QueryProgress rowsFetched(long rows, boolean complete) {
+            QueryProgress progress = new QueryProgress(Stage.ROWS_FETCHED,
+                complete ? String.format("共 %d 行", rows) : String.format("已读取 %d 行，正在统计总行数", rows));
+            progress.rows = rows;
+            return progress;
+        }
+
+        static QueryProgress completed(QueryResult result) {
+            QueryProgress progress = new QueryProgress(Stage.COMPLETED, result.getMessage());
+            progress.sql = result.getSql();
+            progress.rows = result.getTotalRows();
+            progress.result = result;
+            return progress;
+        }
+
+        public Stage getStage() { return stage; }
+        public String getMessage() { return message; }
+        public String getSql() { return sql; }
+        public String getSource() { return source; }
+        public Long getRows() { return rows; }
+        public QueryResult getResult() { return result; }
+    }
+
+    /**
+     * 查询结果类（data 为结果预览，至多 nl2sql.guard.preview-rows 行）
      */
     public static class QueryResult {
         private boolean success;
         private String message;
         private List<Map<String, Object>> data;
         private String sql;
+        private boolean cached;
+        private long totalRows = -1;
 
         public QueryResult(boolean success, String message, List<Map<String, Object>> data, String sql) {
             this.success = success;
@@ -372,9 +603,20 @@ public class NL2SQLService {
         public void setData(List<Map<String, Object>> data) { this.data = data; }
         public String getSql() { return sql; }
         public void setSql(String sql) { this.sql = sql; }
+        public boolean isCached() { return cached; }
+        public void setCached(boolean cached) { this.cached = cached; }
+
+        public void setTotalRows(long totalRows) { this.totalRows = totalRows; }
 
         public int getRowCount() {
             return data != null ? data.size() : 0;
         }
+
+        /**
+         * 结果总行数（data 只包含预览行）
+         */
+        public long getTotalRows() {
+            return totalRows >= 0 ? totalRows : getRowCount();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package org.example.smarttransportation.service;
+
+import java.util.*;
+
+/**
+ * 向量量化基准测试
+ * 以 EmbeddingService.calculateCosineSimilarity 暴力检索结果为真值，
+ * 对比各级量化检索的 recall@K、单次查询耗时与内存占用。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class QuantizationBenchmark {
+
+    private final EmbeddingService embeddingService;
+
+    public QuantizationBenchmark(EmbeddingService embeddingService) {
+        this.embeddingService = embeddingService;
+    }
+
+    /**
+     * 执行基准测试
+     *
+     * @param corpus          语料向量
+     * @param queries         查询向量
+     * @param topK            召回数量
+     * @param candidateFactor 二值粗筛候选数相对 topK 的倍数
+     */
+    public Report run(List<List<Float>> corpus, List<List<Float>> queries, int topK, int candidateFactor) {
+        if (corpus == null || corpus.isEmpty() || queries == null || queries.isEmpty()) {
+            throw new IllegalArgumentException("语料和查询向量不能为空");
+        }
+        int dimension = corpus.get(0).size();
+        int candidates = topK * Math.max(1, candidateFactor);
+
+        QuantizedVectorIndex compact = new QuantizedVectorIndex(dimension, false);
+        QuantizedVectorIndex withFloats = new QuantizedVectorIndex(dimension, true);
+        for (List<Float> vector : corpus) {
+            float[] array = EmbeddingQuantizer.toArray(vector);
+            compact.add(array);
+            withFloats.add(array);
+        }
+
+        Report report = new Report(corpus.size(), queries.size(), dimension, topK, candidates);
+        long exactNanos = 0;
+        long binaryNanos = 0;
+        long int8Nanos = 0;
+        long floatNanos = 0;
+        double binaryRecall = 0;
+        double int8Recall = 0;
+        double floatRecall = 0;
+
+        for (List<Float> query : queries) {
+            long start = System.nanoTime();
+            Set<Integer> truth = exactTopK(query, corpus, topK);
+            exactNanos += System.nanoTime() - start;
+
+            float[] queryArray = EmbeddingQuantizer.toArray(query);
+
+            start = System.nanoTime();
+            List<QuantizedVectorIndex.Hit> binaryHits = compact.search(queryArray, topK, topK);
+            binaryNanos += System.nanoTime() - start;
+            binaryRecall += recall(binaryHits, truth);
+
+            start = System.nanoTime();
+            List<QuantizedVectorIndex.Hit> int8Hits = compact.search(queryArray, topK, candidates);
+            int8Nanos += System.nanoTime() - start;
+            int8Recall += recall(int8Hits, truth);
+
+            start = System.nanoTime();
+            List<QuantizedVectorIndex.Hit> floatHits = withFloats.search(queryArray, topK, candidates);
+            floatNanos += System.nanoTime() - start;
+            floatRecall += recall(floatHits, truth);
+        }
+
+        int count = queries.size();
+        report.floatBytes = (long) corpus.size() * dimension * Float.BYTES;
+        report.int8Bytes = (long) corpus.size() * (dimension + Float.BYTES);
+        report.binaryBytes = (long) corpus.size() * EmbeddingQuantizer.binaryWords(dimension) * Long.BYTES;
+        report.indexBytes = compact.memoryBytes();
+        report.binaryRecall = binaryRecall / count;
+        report.int8Recall = int8Recall / count;
+        report.floatRecall = floatRecall / count;
+        report.exactMicros = exactNanos / 1000.0 / count;
+        report.binaryMicros = binaryNanos / 1000.0 / count;
+        report.int8Micros = int8Nanos / 1000.0 / count;
+        report.floatMicros = floatNanos / 1000.0 / count;
+        return report;
+    }
+
+    private Set<Integer> exactTopK(List<Float> query, List<List<Float>> corpus, int topK) {
+        PriorityQueue<double[]> heap = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        for (int i = 0; i < corpus.size(); i++) {
+            double score = embeddingService.calculateCosineSimilarity(query, corpus.get(i));
+            if (heap.size() < topK) {
+                heap.offer(new double[]{score, i});
+            } else if (score > heap.peek()[0]) {
+                heap.poll();
+                heap.offer(new double[]{score, i});
+            }
+        }
+        Set<Integer> result = new HashSet<>();
+        for (double[] entry : heap) {
+            result.add((int) entry[1]);
+        }
+        return result;
+    }
+
+    private double recall(List<QuantizedVectorIndex.Hit> hits, Set<Integer> truth) {
+        if (truth.isEmpty()) {
+            return 1.0;
+        }
+        long matched = hits.stream().filter(hit -> truth.contains(hit.getSlot())).count();
+        return (double) matched / truth.size();
+    }
+
+    /**
+     * 基准测试报告
+     */
+    public static class Report {
+        private final int corpusSize;
+        private final int queryCount;
+        private final int dimension;
+        private final int topK;
+        private final int candidates;
+        private long floatBytes;
+        private long int8Bytes;
+        private long binaryBytes;
+        private long indexBytes;
+        private double binaryRecall;
+        private double int8Recall;
+        private double floatRecall;
+        private double exactMicros;
+        private double binaryMicros;
+        private double int8Micros;
+        private double floatMicros;
+
+        public Report(int corpusSize, int queryCount, int dimension, int topK, int candidates) {
+            this.corpusSize = corpusSize;
+            this.queryCount = queryCount;
+            this.dimension = dimension;
+            this.topK = topK;
+            this.candidates = candidates;
+        }
+
+        public int getCorpusSize() { return corpusSize; }
+        public int getQueryCount() { return queryCount; }
+        public int getDimension() { return dimension; }
+        public int getTopK() { return topK; }
+        public int getCandidates() { return candidates; }
+        public long getFloatBytes() { return floatBytes; }
+        public long getInt8Bytes() { return int8Bytes; }
+        public long getBinaryBytes() { return binaryBytes; }
+        public long getIndexBytes() { return indexBytes; }
+        public double getBinaryRecall() { return binaryRecall; }
+        public double getInt8Recall() { return int8Recall; }
+        public double getFloatRecall() { return floatRecall; }
+        public double getExactMicros() { return exactMicros; }
+        public double getBinaryMicros() { return binaryMicros; }
+        public double getInt8Micros() { return int8Micros; }
+        public double getFloatMicros() { return floatMicros; }
+
+        /**
+         * 相对 float 存储节省的内存比例（量化索引不保留原始向量时）
+         */
+        public double getMemorySavedRatio() {
+            return floatBytes == 0 ? 0 : 1.0 - (double) indexBytes / floatBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "语料=%d, 查询=%d, 维度=%d, topK=%d, 候选=%d | 内存: float=%dKB, int8=%dKB, binary=%dKB, 量化索引=%dKB (节省%.1f%%) | "
+                    + "recall@%d: binary=%.4f, binary+int8=%.4f, binary+int8+float=%.4f | "
+                    + "单次查询: 精确=%.1fus, binary=%.1fus, binary+int8=%.1fus, binary+int8+float=%.1fus",
+                corpusSize, queryCount, dimension, topK, candidates,
+                floatBytes / 1024, int8Bytes / 1024, binaryBytes / 1024, indexBytes / 1024, getMemorySavedRatio() * 100,
+                topK, binaryRecall, int8Recall, floatRecall,
+                exactMicros, binaryMicros, int8Micros, floatMicros);
+        }
+    }
+}
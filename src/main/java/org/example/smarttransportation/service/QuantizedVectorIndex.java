@@ -0,0 +1,291 @@
+package org.example.smarttransportation.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 进程内量化向量索引
+ * 适用于语义缓存、去重等需要常驻内存的向量结构，检索分三级：
+ * 1. 二值编码汉明距离粗筛，保留 candidates 个候选；
+ * 2. int8 点积对候选重排；
+ * 3. 若保留了原始向量（keepFloats=true），再用 float 点积对前 topK*2 个结果精排。
+ *
+ * 写入加锁、读取无锁（基于数组快照），适合读多写少的场景。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class QuantizedVectorIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int dimension;
+    private final int words;
+    private final boolean keepFloats;
+
+    private volatile Storage storage;
+
+    public QuantizedVectorIndex(int dimension, boolean keepFloats) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("向量维度必须大于0");
+        }
+        this.dimension = dimension;
+        this.words = EmbeddingQuantizer.binaryWords(dimension);
+        this.keepFloats = keepFloats;
+        this.storage = new Storage(0, INITIAL_CAPACITY, dimension, words, keepFloats);
+    }
+
+    /**
+     * 添加向量，返回其在索引中的槽位编号（从 0 递增）
+     */
+    public synchronized int add(float[] vector) {
+        checkDimension(vector);
+        float[] normalized = EmbeddingQuantizer.normalize(vector);
+
+        Storage current = storage;
+        if (current.size == current.capacity) {
+            current = current.grow(current.capacity * 2);
+        }
+
+        int slot = current.size;
+        byte[] codes = new byte[dimension];
+        current.scales[slot] = EmbeddingQuantizer.quantizeInt8(normalized, codes);
+        System.arraycopy(codes, 0, current.int8Codes, slot * dimension, dimension);
+
+        long[] bits = new long[words];
+        EmbeddingQuantizer.quantizeBinary(normalized, bits);
+        System.arraycopy(bits, 0, current.binaryCodes, slot * words, words);
+
+        if (keepFloats) {
+            System.arraycopy(normalized, 0, current.floats, slot * dimension, dimension);
+        }
+
+        // 先写数据再发布新的 size，读线程只会看到完整写入的槽位
+        storage = current.withSize(slot + 1);
+        return slot;
+    }
+
+    public int add(List<Float> vector) {
+        return add(EmbeddingQuantizer.toArray(vector));
+    }
+
+    /**
+     * 检索最相似的 topK 个槽位
+     *
+     * @param query      查询向量
+     * @param topK       返回数量
+     * @param candidates 二值粗筛保留的候选数，通常取 topK 的 10 倍左右
+     */
+    public List<Hit> search(float[] query, int topK, int candidates) {
+        checkDimension(query);
+        Storage snapshot = storage;
+        int size = snapshot.size;
+        if (size == 0 || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        float[] normalized = EmbeddingQuantizer.normalize(query);
+        long[] queryBits = new long[words];
+        EmbeddingQuantizer.quantizeBinary(normalized, queryBits);
+        byte[] queryCodes = new byte[dimension];
+        float queryScale = EmbeddingQuantizer.quantizeInt8(normalized, queryCodes);
+
+        // 第一级：汉明距离粗筛（距离越小越相似，取负数统一为“越大越好”）
+        int keep = Math.min(size, Math.max(topK, candidates));
+        TopK coarse = new TopK(keep);
+        for (int slot = 0; slot < size; slot++) {
+            int distance = EmbeddingQuantizer.hamming(queryBits, 0, snapshot.binaryCodes, slot * words, words);
+            coarse.offer(slot, -distance);
+        }
+
+        // 第二级：int8 点积重排
+        int refineKeep = keepFloats ? Math.min(keep, topK * 2) : topK;
+        TopK refined = new TopK(refineKeep);
+        for (int i = 0; i < coarse.size; i++) {
+            int slot = coarse.slots[i];
+            int dot = EmbeddingQuantizer.dotInt8(queryCodes, 0, snapshot.int8Codes, slot * dimension, dimension);
+            refined.offer(slot, dot * queryScale * snapshot.scales[slot]);
+        }
+
+        if (!keepFloats) {
+            return refined.toHits();
+        }
+
+        // 第三级：原始 float 向量精排
+        TopK exact = new TopK(topK);
+        for (int i = 0; i < refined.size; i++) {
+            int slot = refined.slots[i];
+            exact.offer(slot, EmbeddingQuantizer.dotFloat(normalized, 0, snapshot.floats, slot * dimension, dimension));
+        }
+        return exact.toHits();
+    }
+
+    public List<Hit> search(List<Float> query, int topK, int candidates) {
+        return search(EmbeddingQuantizer.toArray(query), topK, candidates);
+    }
+
+    public int size() {
+        return storage.size;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * 当前已用槽位占用的内存（字节），不含数组预留空间
+     */
+    public long memoryBytes() {
+        return bytesPerVector(dimension, keepFloats) * storage.size;
+    }
+
+    /**
+     * 单个向量在本索引中的内存占用（字节）
+     */
+    public static long bytesPerVector(int dimension, boolean keepFloats) {
+        long bytes = (long) EmbeddingQuantizer.binaryWords(dimension) * Long.BYTES
+            + dimension
+            + Float.BYTES;
+        if (keepFloats) {
+            bytes += (long) dimension * Float.BYTES;
+        }
+        return bytes;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配，期望 " + dimension);
+        }
+    }
+
+    /**
+     * 检索命中：槽位编号与相似度
+     */
+    public static class Hit {
+        private final int slot;
+        private final float score;
+
+        public Hit(int slot, float score) {
+            this.slot = slot;
+            this.score = score;
+        }
+
+        public int getSlot() { return slot; }
+        public float getScore() { return score; }
+    }
+
+    /**
+     * 扁平数组存储，扩容时整体复制
+     */
+    private static final class Storage {
+        private final int size;
+        private final int capacity;
+        private final long[] binaryCodes;
+        private final byte[] int8Codes;
+        private final float[] scales;
+        private final float[] floats;
+
+        private Storage(int size, int capacity, int dimension, int words, boolean keepFloats) {
+            this(size, capacity, new long[capacity * words], new byte[capacity * dimension],
+                new float[capacity], keepFloats ? new float[capacity * dimension] : null);
+        }
+
+        private Storage(int size, int capacity, long[] binaryCodes, byte[] int8Codes, float[] scales, float[] floats) {
+            this.size = size;
+            this.capacity = capacity;
+            this.binaryCodes = binaryCodes;
+            this.int8Codes = int8Codes;
+            this.scales = scales;
+            this.floats = floats;
+        }
+
+        private Storage grow(int newCapacity) {
+            int words = binaryCodes.length / capacity;
+            int dimension = int8Codes.length / capacity;
+            return new Storage(size, newCapacity,
+                Arrays.copyOf(binaryCodes, newCapacity * words),
+                Arrays.copyOf(int8Codes, newCapacity * dimension),
+                Arrays.copyOf(scales, newCapacity),
+                floats == null ? null : Arrays.copyOf(floats, newCapacity * dimension));
+        }
+
+        private Storage withSize(int newSize) {
+            return new Storage(newSize, capacity, binaryCodes, int8Codes, scales, floats);
+        }
+    }
+
+    /**
+     * 定长小顶堆，保留得分最高的 k 个槽位
+     */
+    private static final class TopK {
+        private final int[] slots;
+        private final float[] scores;
+        private int size;
+
+        private TopK(int k) {
+            this.slots = new int[k];
+            this.scores = new float[k];
+        }
+
+        private void offer(int slot, float score) {
+            if (size < slots.length) {
+                slots[size] = slot;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                slots[0] = slot;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        private List<Hit> toHits() {
+            List<Hit> hits = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                hits.add(new Hit(slots[i], scores[i]));
+            }
+            hits.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+            return hits;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[index] >= scores[parent]) {
+                    break;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int left = index * 2 + 1;
+                if (left >= size) {
+                    break;
+                }
+                int smallest = left;
+                int right = left + 1;
+                if (right < size && scores[right] < scores[left]) {
+                    smallest = right;
+                }
+                if (scores[index] <= scores[smallest]) {
+                    break;
+                }
+                swap(index, smallest);
+                index = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int slot = slots[i];
+            slots[i] = slots[j];
+            slots[j] = slot;
+            float score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+}
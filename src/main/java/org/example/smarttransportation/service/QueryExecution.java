@@ -0,0 +1,91 @@
+package org.example.smarttransportation.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Statement;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * 单次 NL2SQL 查询的执行上下文
+ * 向订阅方报告进度，并持有当前正在执行的 JDBC Statement：取消时调用 Statement.cancel()，
+ * MySQL 驱动据此发送 KILL QUERY 终止服务器端的查询，而不是等到查询超时。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class QueryExecution {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryExecution.class);
+
+    private final Consumer<NL2SQLService.QueryProgress> listener;
+    private volatile boolean cancelled;
+    private volatile Statement statement;
+
+    public QueryExecution(Consumer<NL2SQLService.QueryProgress> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 不报告进度、不会被取消的执行上下文（同步调用使用）
+     */
+    public static QueryExecution untracked() {
+        return new QueryExecution(progress -> {
+        });
+    }
+
+    void progress(NL2SQLService.QueryProgress progress) {
+        if (!cancelled) {
+            listener.accept(progress);
+        }
+    }
+
+    /**
+     * 登记即将执行的语句；已取消时直接中止
+     */
+    void attach(Statement statement) {
+        checkCancelled();
+        this.statement = statement;
+        if (cancelled) {
+            // 与 cancel() 并发时由这里补发取消
+            cancelStatement(statement);
+        }
+    }
+
+    void detach() {
+        statement = null;
+    }
+
+    /**
+     * 取消查询：终止正在执行的语句，后续阶段不再执行
+     */
+    public void cancel() {
+        cancelled = true;
+        Statement current = statement;
+        if (current != null) {
+            cancelStatement(current);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("查询已取消");
+        }
+    }
+
+    private static void cancelStatement(Statement statement) {
+        try {
+            statement.cancel();
+            logger.info("NL2SQL查询已取消，已通知数据库终止执行");
+        } catch (SQLException e) {
+            // 语句已执行完毕或已关闭
+            logger.debug("取消查询语句失败: {}", e.getMessage());
+        }
+    }
+}
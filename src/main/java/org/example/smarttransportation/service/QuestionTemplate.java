@@ -0,0 +1,371 @@
+package org.example.smarttransportation.service;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 问题模板
+ * 将自然语言问题中的日期、行政区、站点名识别为槽位，得到去除具体取值的模板键，
+ * 例如 “曼哈顿2月15日发生了多少起事故” -> “{borough1}{date1}发生了多少起事故”。
+ * 成功执行的 SQL 可据此学习为参数化模板，相同句式的新问题只需填充槽位即可复用。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class QuestionTemplate {
+
+    /**
+     * 数据快照年份，问题中只写月日时按此补全
+     */
+    private static final int DEFAULT_YEAR = 2024;
+
+    private static final Pattern FULL_DATE_PATTERN = Pattern.compile("(\\d{4})\\s*[-/年]\\s*(\\d{1,2})\\s*[-/月]\\s*(\\d{1,2})\\s*[日号]?");
+    private static final Pattern MONTH_DAY_PATTERN = Pattern.compile("(?<!\\d)(\\d{1,2})\\s*月\\s*(\\d{1,2})\\s*[日号]");
+    private static final Pattern PUNCTUATION_PATTERN = Pattern.compile("[？?。.!！,，、；;：:\"“”']");
+    private static final Pattern NON_SEMANTIC_SPACE_PATTERN = Pattern.compile("\\s*([{}])\\s*|(?<=[^\\x00-\\x7F])\\s+|\\s+(?=[^\\x00-\\x7F])");
+    private static final Pattern LITERAL_PATTERN = Pattern.compile("'((?:[^'\\\\]|\\\\.|'')*)'");
+    private static final Pattern PLACEHOLDER_TIME_PATTERN = Pattern.compile("\\$\\{\\w+}(?:\\s+\\d{1,2}:\\d{2}(?::\\d{2}(?:\\.\\d+)?)?)?");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("(?<![\\w.$])\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern ROW_LIMIT_PATTERN = Pattern.compile("(?i)\\b(?:LIMIT|OFFSET)\\s+(?:\\d+\\s*,\\s*)?$");
+    private static final int MIN_STATION_NAME_LENGTH = 4;
+
+    private static final Map<String, String> BOROUGH_ALIASES = new LinkedHashMap<>();
+
+    static {
+        BOROUGH_ALIASES.put("staten island", "Staten Island");
+        BOROUGH_ALIASES.put("史泰登岛", "Staten Island");
+        BOROUGH_ALIASES.put("斯塔滕岛", "Staten Island");
+        BOROUGH_ALIASES.put("manhattan", "Manhattan");
+        BOROUGH_ALIASES.put("曼哈顿", "Manhattan");
+        BOROUGH_ALIASES.put("brooklyn", "Brooklyn");
+        BOROUGH_ALIASES.put("布鲁克林", "Brooklyn");
+        BOROUGH_ALIASES.put("queens", "Queens");
+        BOROUGH_ALIASES.put("皇后区", "Queens");
+        BOROUGH_ALIASES.put("bronx", "Bronx");
+        BOROUGH_ALIASES.put("布朗克斯", "Bronx");
+    }
+
+    private final String key;
+    private final List<Slot> slots;
+
+    private QuestionTemplate(String key, List<Slot> slots) {
+        this.key = key;
+        this.slots = slots;
+    }
+
+    /**
+     * 解析问题
+     *
+     * @param question     自然语言问题
+     * @param stationNames 已知站点名（小写 -> 原始写法），可为空
+     */
+    public static QuestionTemplate parse(String question, Map<String, String> stationNames) {
+        String text = question == null ? "" : question.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+
+        List<Match> matches = new ArrayList<>();
+        findDates(text, matches);
+        findBoroughs(text, matches);
+        if (stationNames != null) {
+            findStations(text, stationNames, matches);
+        }
+
+        // 按位置排序，重叠时保留更长的匹配
+        matches.sort(Comparator.comparingInt((Match m) -> m.start).thenComparingInt(m -> -(m.end - m.start)));
+        StringBuilder key = new StringBuilder();
+        List<Slot> slots = new ArrayList<>();
+        Map<SlotType, Integer> counters = new EnumMap<>(SlotType.class);
+        int cursor = 0;
+        for (Match match : matches) {
+            if (match.start < cursor) {
+                continue;
+            }
+            int index = counters.merge(match.type, 1, Integer::sum);
+            String name = match.type.prefix + index;
+            key.append(text, cursor, match.start).append('{').append(name).append('}');
+            slots.add(new Slot(name, match.type, match.value));
+            cursor = match.end;
+        }
+        key.append(text.substring(cursor));
+
+        // 去掉标点，以及中文字符和槽位两侧无语义的空白
+        String normalized = PUNCTUATION_PATTERN.matcher(key).replaceAll("").replaceAll("\\s+", " ").trim();
+        normalized = NON_SEMANTIC_SPACE_PATTERN.matcher(normalized).replaceAll("$1");
+        return new QuestionTemplate(normalized, Collections.unmodifiableList(slots));
+    }
+
+    /**
+     * 从已验证的 SQL 学习参数化模板：每个槽位取值都必须出现在 SQL 字符串字面量中，否则返回 null。
+     * 替换槽位后仍含数字的字面量可能由槽位推算而来（如次日 '2024-02-16'、月份 2），同样不学习：
+     * 字符串字面量中的数字只允许是槽位后的时刻（如 '${date1} 23:59:59'），其余数字只允许出现在 LIMIT/OFFSET 中，
+     * 或在问题模板键中原样出现（此时取值由模板键固定）
+     */
+    public SqlTemplate learn(String sql) {
+        if (sql == null || sql.contains("${")) {
+            return null;
+        }
+        Set<String> values = new HashSet<>();
+        for (Slot slot : slots) {
+            if (!values.add(slot.value.toLowerCase(Locale.ROOT))) {
+                // 两个槽位取值相同，无法区分各自在 SQL 中的位置
+                return null;
+            }
+        }
+
+        Map<String, CaseStyle> styles = new HashMap<>();
+        StringBuilder result = new StringBuilder();
+        Matcher literal = LITERAL_PATTERN.matcher(sql);
+        int cursor = 0;
+        while (literal.find()) {
+            result.append(sql, cursor, literal.start(1));
+            result.append(replaceSlots(literal.group(1), styles));
+            cursor = literal.end(1);
+        }
+        result.append(sql.substring(cursor));
+
+        if (styles.size() != slots.size() || hasUnboundNumber(result.toString())) {
+            return null;
+        }
+        return new SqlTemplate(key, result.toString(), styles);
+    }
+
+    private boolean hasUnboundNumber(String template) {
+        StringBuilder code = new StringBuilder();
+        Matcher literal = LITERAL_PATTERN.matcher(template);
+        int cursor = 0;
+        while (literal.find()) {
+            if (PLACEHOLDER_TIME_PATTERN.matcher(literal.group(1)).replaceAll("").chars().anyMatch(Character::isDigit)) {
+                return true;
+            }
+            code.append(template, cursor, literal.start()).append("''");
+            cursor = literal.end();
+        }
+        code.append(template.substring(cursor));
+
+        Set<String> keyNumbers = new HashSet<>();
+        Matcher keyNumber = NUMBER_PATTERN.matcher(key);
+        while (keyNumber.find()) {
+            keyNumbers.add(keyNumber.group());
+        }
+        Matcher number = NUMBER_PATTERN.matcher(code);
+        while (number.find()) {
+            if (!keyNumbers.contains(number.group())
+                && !ROW_LIMIT_PATTERN.matcher(code.substring(0, number.start())).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String replaceSlots(String literal, Map<String, CaseStyle> styles) {
+        String current = literal;
+        for (Slot slot : slots) {
+            String lower = current.toLowerCase(Locale.ROOT);
+            String value = slot.value.toLowerCase(Locale.ROOT);
+            StringBuilder replaced = new StringBuilder();
+            int cursor = 0;
+            int position = lower.indexOf(value);
+            while (position >= 0) {
+                int end = position + value.length();
+                if (isBoundary(current, position - 1) && isBoundary(current, end)) {
+                    String matched = current.substring(position, end);
+                    styles.putIfAbsent(slot.name, CaseStyle.of(matched, slot.value));
+                    replaced.append(current, cursor, position).append("${").append(slot.name).append('}');
+                    cursor = end;
+                }
+                position = lower.indexOf(value, end);
+            }
+            replaced.append(current.substring(cursor));
+            current = replaced.toString();
+        }
+        return current;
+    }
+
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static void findDates(String text, List<Match> matches) {
+        Matcher matcher = FULL_DATE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            addDate(matches, matcher, Integer.parseInt(matcher.group(1)),
+                Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+        }
+        matcher = MONTH_DAY_PATTERN.matcher(text);
+        while (matcher.find()) {
+            addDate(matches, matcher, DEFAULT_YEAR,
+                Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        }
+    }
+
+    private static void addDate(List<Match> matches, Matcher matcher, int year, int month, int day) {
+        try {
+            String value = LocalDate.of(year, month, day).toString();
+            matches.add(new Match(matcher.start(), matcher.end(), SlotType.DATE, value));
+        } catch (DateTimeException e) {
+            // 非法日期不作为槽位
+        }
+    }
+
+    private static void findBoroughs(String text, List<Match> matches) {
+        for (Map.Entry<String, String> alias : BOROUGH_ALIASES.entrySet()) {
+            int position = text.indexOf(alias.getKey());
+            while (position >= 0) {
+                int end = position + alias.getKey().length();
+                if (isBoundary(text, position - 1) && isBoundary(text, end) || !isAscii(alias.getKey())) {
+                    matches.add(new Match(position, end, SlotType.BOROUGH, alias.getValue()));
+                }
+                position = text.indexOf(alias.getKey(), end);
+            }
+        }
+    }
+
+    private static void findStations(String text, Map<String, String> stationNames, List<Match> matches) {
+        for (Map.Entry<String, String> station : stationNames.entrySet()) {
+            String name = station.getKey();
+            if (name.length() < MIN_STATION_NAME_LENGTH) {
+                continue;
+            }
+            int position = text.indexOf(name);
+            if (position >= 0 && isBoundary(text, position - 1) && isBoundary(text, position + name.length())) {
+                matches.add(new Match(position, position + name.length(), SlotType.STATION, station.getValue()));
+            }
+        }
+    }
+
+    private static boolean isAscii(String text) {
+        return text.chars().allMatch(c -> c < 128);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public List<Slot> getSlots() {
+        return slots;
+    }
+
+    /**
+     * 槽位类型
+     */
+    public enum SlotType {
+        DATE("date"),
+        BOROUGH("borough"),
+        STATION("station");
+
+        private final String prefix;
+
+        SlotType(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * SQL 字面量相对槽位规范取值的大小写写法
+     */
+    public enum CaseStyle {
+        AS_IS,
+        UPPER,
+        LOWER;
+
+        static CaseStyle of(String matched, String canonical) {
+            if (matched.equals(canonical)) {
+                return AS_IS;
+            }
+            if (matched.equals(matched.toUpperCase(Locale.ROOT))) {
+                return UPPER;
+            }
+            if (matched.equals(matched.toLowerCase(Locale.ROOT))) {
+                return LOWER;
+            }
+            return AS_IS;
+        }
+
+        String apply(String value) {
+            switch (this) {
+                case UPPER:
+                    return value.toUpperCase(Locale.ROOT);
+                case LOWER:
+                    return value.toLowerCase(Locale.ROOT);
+                default:
+                    return value;
+            }
+        }
+    }
+
+    /**
+     * 槽位：名称（如 date1）、类型与规范取值
+     */
+    public static class Slot {
+        private final String name;
+        private final SlotType type;
+        private final String value;
+
+        public Slot(String name, SlotType type, String value) {
+            this.name = name;
+            this.type = type;
+            this.value = value;
+        }
+
+        public String getName() { return name; }
+        public SlotType getType() { return type; }
+        public String getValue() { return value; }
+    }
+
+    /**
+     * 问题文本中的一处槽位匹配
+     */
+    private static class Match {
+        private final int start;
+        private final int end;
+        private final SlotType type;
+        private final String value;
+
+        private Match(int start, int end, SlotType type, String value) {
+            this.start = start;
+            this.end = end;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 参数化 SQL 模板，占位符形如 ${borough1}
+     */
+    public static class SqlTemplate {
+        private final String key;
+        private final String sql;
+        private final Map<String, CaseStyle> styles;
+
+        public SqlTemplate(String key, String sql, Map<String, CaseStyle> styles) {
+            this.key = key;
+            this.sql = sql;
+            this.styles = Map.copyOf(styles);
+        }
+
+        /**
+         * 用问题中的槽位取值填充模板
+         */
+        public String fill(List<Slot> slots) {
+            if (slots.size() != styles.size()) {
+                return null;
+            }
+            String result = sql;
+            for (Slot slot : slots) {
+                CaseStyle style = styles.get(slot.getName());
+                if (style == null) {
+                    return null;
+                }
+                String value = style.apply(slot.getValue()).replace("\\", "\\\\").replace("'", "''");
+                result = result.replace("${" + slot.getName() + "}", value);
+            }
+            return result;
+        }
+
+        public String getKey() { return key; }
+        public String getSql() { return sql; }
+        public Set<String> getSlotNames() { return styles.keySet(); }
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.smarttransportation.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +22,8 @@ import java.util.concurrent.TimeUnit;
  */
 @Service
 public class RAGService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RAGService.class);
     
     @Autowired
     private VectorStoreService vectorStoreService;
@@ -142,14 +146,14 @@ public class RAGService {
                 // 将查询结果转换为自然语言回答
                 String answer = formatDataQueryAnswer(question, queryResult);
                 
-                return new AnswerResult(
+                return withQueryTotal(new AnswerResult(
                     true,
                     answer,
                     null,
                     QueryIntent.DATA_QUERY,
                     queryResult.getData(),
                     queryResult.getSql()
-                );
+                ), queryResult);
             } else {
                 return new AnswerResult(
                     false,
@@ -178,19 +182,23 @@ public class RAGService {
      */
     private AnswerResult handleKnowledgeQA(String question) {
         try {
-            // 1. 向量检索相关知识，优先检索SOP和专家知识
-            List<VectorStoreService.SearchResult> searchResults =
-                vectorStoreService.semanticSearch(question, DEFAULT_RETRIEVE_COUNT);
+            // 1. 按入库时归类的知识类型分别检索SOP/专家知识与其他知识，避免无关文档占用 top-K 名额；
+            //    两类互斥，结果不会重复，两次检索共用同一个查询向量
+            List<Float> questionVector = embeddingService.embedText(question);
+            VectorStoreService.SearchHits sopHits = searchKnowledge(questionVector, true);
+            VectorStoreService.SearchHits otherHits = searchKnowledge(questionVector, false);
 
             // 2. 如果没有找到相关结果，尝试使用更广泛的查询
-            if (searchResults == null || searchResults.isEmpty()) {
+            if (sopHits.isEmpty() && otherHits.isEmpty()) {
                 // 尝试添加关键词来扩大搜索范围
-                String expandedQuery = question + " 交通管理 标准操作程序 专家建议";
-                searchResults = vectorStoreService.semanticSearch(expandedQuery, DEFAULT_RETRIEVE_COUNT);
+                List<Float> expandedVector = embeddingService.embedText(question + " 交通管理 标准操作程序 专家建议");
+                sopHits = searchKnowledge(expandedVector, true);
+                otherHits = searchKnowledge(expandedVector, false);
             }
 
-            // 3. 构建上下文，优先使用高相关性的SOP和专家知识
-            String context = buildEnhancedContext(searchResults);
+            // 3. 构建上下文，优先使用高相关性的SOP和专家知识；只物化进入上下文的命中
+            List<VectorStoreService.SearchResult> searchResults = new ArrayList<>();
+            String context = buildEnhancedContext(sopHits, otherHits, searchResults);
 
             // 4. 生成回答，强调SOP和专家知识来源
             String answer = generateAnswerWithSOPReference(question, context);
@@ -225,20 +233,19 @@ public class RAGService {
             NL2SQLService.QueryResult queryResult = nl2sqlService.executeQuery(question);
             
             // 2. 向量检索相关分析知识
-            List<VectorStoreService.SearchResult> searchResults = 
-                vectorStoreService.semanticSearch(question + " 分析", DEFAULT_RETRIEVE_COUNT);
+            List<VectorStoreService.SearchResult> searchResults = retrieveKnowledge(question + " 分析");
             
             // 3. 结合数据和知识生成分析
             String analysis = generateAnalysisAnswer(question, queryResult, searchResults);
             
-            return new AnswerResult(
+            return withQueryTotal(new AnswerResult(
                 true,
                 analysis,
                 searchResults,
                 QueryIntent.ANALYSIS,
                 queryResult.isSuccess() ? queryResult.getData() : null,
                 queryResult.getSql()
-            );
+            ), queryResult);
             
         } catch (Exception e) {
             return new AnswerResult(
@@ -258,8 +265,7 @@ public class RAGService {
     private AnswerResult handleRecommendationQuery(String question) {
         try {
             // 1. 检索相关推荐知识
-            List<VectorStoreService.SearchResult> searchResults = 
-                vectorStoreService.semanticSearch(question + " 推荐 建议", DEFAULT_RETRIEVE_COUNT);
+            List<VectorStoreService.SearchResult> searchResults = retrieveKnowledge(question + " 推荐 建议");
             
             // 2. 获取相关数据支撑
             NL2SQLService.QueryResult queryResult = nl2sqlService.executeQuery(question);
@@ -267,14 +273,14 @@ public class RAGService {
             // 3. 生成推荐建议
             String recommendation = generateRecommendationAnswer(question, queryResult, searchResults);
             
-            return new AnswerResult(
+            return withQueryTotal(new AnswerResult(
                 true,
                 recommendation,
                 searchResults,
                 QueryIntent.RECOMMENDATION,
                 queryResult.isSuccess() ? queryResult.getData() : null,
                 queryResult.getSql()
-            );
+            ), queryResult);
             
         } catch (Exception e) {
             return new AnswerResult(
@@ -294,8 +300,7 @@ public class RAGService {
     private AnswerResult handleGeneralQuery(String question) {
         try {
             // 1. 向量检索
-            List<VectorStoreService.SearchResult> searchResults = 
-                vectorStoreService.semanticSearch(question, DEFAULT_RETRIEVE_COUNT);
+            List<VectorStoreService.SearchResult> searchResults = retrieveKnowledge(question);
             
             // 2. 尝试数据查询
             NL2SQLService.QueryResult queryResult = nl2sqlService.executeQuery(question);
@@ -303,14 +308,14 @@ public class RAGService {
             // 3. 综合生成回答
             String answer = generateGeneralAnswer(question, queryResult, searchResults);
             
-            return new AnswerResult(
+            return withQueryTotal(new AnswerResult(
                 true,
                 answer,
                 searchResults,
                 QueryIntent.GENERAL,
                 queryResult.isSuccess() ? queryResult.getData() : null,
                 queryResult.getSql()
-            );
+            ), queryResult);
             
         } catch (Exception e) {
             return new AnswerResult(
@@ -428,11 +433,11 @@ public class RAGService {
             answer.append(formatDataRow(row, i + 1));
         }
         
-        if (data.size() > displayCount) {
-            answer.append(String.format("\n... 还有 %d 条记录未显示", data.size() - displayCount));
+        if (queryResult.getTotalRows() > displayCount) {
+            answer.append(String.format("\n... 还有 %d 条记录未显示", queryResult.getTotalRows() - displayCount));
         }
         
-        answer.append(String.format("\n\n总计找到 %d 条记录。", data.size()));
+        answer.append(String.format("\n\n总计找到 %d 条记录。", queryResult.getTotalRows()));
         
         return answer.toString();
     }
@@ -513,6 +518,16 @@ public class RAGService {
         return generateAnswerWithContext(question, context);
     }
     
+    /**
+     * 记录查询结果总行数（queryData 只保存预览行）
+     */
+    private AnswerResult withQueryTotal(AnswerResult result, NL2SQLService.QueryResult queryResult) {
+        if (queryResult.isSuccess()) {
+            result.setQueryTotalRows(queryResult.getTotalRows());
+        }
+        return result;
+    }
+
     // 关键词检测方法
     private boolean containsDataQueryKeywords(String question) {
         String[] keywords = {"多少", "数量", "统计", "查询", "显示", "列出", "有哪些", "什么时候", "哪里"};
@@ -560,72 +575,76 @@ public class RAGService {
             // 缓存失败不影响主流程
         }
     }
+
     /**
-     * 构建增强的检索上下文，优先使用高相关性的SOP和专家知识
+     * 检索参考知识；向量库不可用时返回空列表，回答降级为只基于数据查询结果与模型生成
      */
-    private String buildEnhancedContext(List<VectorStoreService.SearchResult> searchResults) {
-        if (searchResults == null || searchResults.isEmpty()) {
-            return "";
+    private List<VectorStoreService.SearchResult> retrieveKnowledge(String query) {
+        try {
+            return vectorStoreService.semanticSearch(query, DEFAULT_RETRIEVE_COUNT);
+        } catch (Exception e) {
+            logger.warn("向量检索不可用，回答不附带知识库内容: {}", e.getMessage());
+            return Collections.emptyList();
         }
+    }
 
+    /**
+     * 按知识类型检索；集合缺少 knowledge_type 字段时不做预过滤，全部命中按其他知识处理。
+     * 向量库不可用时返回空命中，与 retrieveKnowledge 一样降级
+     */
+    private VectorStoreService.SearchHits searchKnowledge(List<Float> queryVector, boolean sopOrExpert) {
+        try {
+            if (!vectorStoreService.hasKnowledgeTypeField()) {
+                return sopOrExpert ? VectorStoreService.SearchHits.empty()
+                    : vectorStoreService.searchHits(queryVector, DEFAULT_RETRIEVE_COUNT, null);
+            }
+            return vectorStoreService.searchHits(queryVector, DEFAULT_RETRIEVE_COUNT,
+                sopOrExpert ? VectorSearchFilter.sopOrExpertKnowledge() : VectorSearchFilter.generalKnowledge());
+        } catch (Exception e) {
+            logger.warn("向量检索不可用，回答不附带知识库内容: {}", e.getMessage());
+            return VectorStoreService.SearchHits.empty();
+        }
+    }
+
+    /**
+     * 构建增强的检索上下文，优先使用高相关性的SOP和专家知识；
+     * 按相关度顺序逐条读取命中，写入上下文的命中才物化到 sources，上下文写满即停止
+     */
+    private String buildEnhancedContext(VectorStoreService.SearchHits sopHits,
+                                        VectorStoreService.SearchHits otherHits,
+                                        List<VectorStoreService.SearchResult> sources) {
         StringBuilder context = new StringBuilder();
         int currentLength = 0;
 
-        // 优先处理SOP和专家知识
-        for (VectorStoreService.SearchResult result : searchResults) {
-            String content = result.getContent();
-            String source = result.getSource();
-            String metadata = result.getMetadata();
-
-            // 优先处理来自SOP和专家知识的内容
-            if (StringUtils.hasText(content) && isSOPorExpertKnowledge(source, metadata)) {
+        // 优先处理SOP和专家知识（已在检索阶段完成过滤）
+        for (int i = 0; i < sopHits.size(); i++) {
+            String content = sopHits.content(i);
+            if (StringUtils.hasText(content)) {
                 if (currentLength + content.length() > MAX_CONTEXT_LENGTH) {
                     break;
                 }
                 context.append("[SOP/专家知识] ").append(content).append("\n\n");
                 currentLength += content.length();
+                sources.add(sopHits.materialize(i));
             }
         }
 
         // 如果上下文还不够长，添加其他相关内容
-        if (currentLength < MAX_CONTEXT_LENGTH) {
-            for (VectorStoreService.SearchResult result : searchResults) {
-                String content = result.getContent();
-                String source = result.getSource();
-                String metadata = result.getMetadata();
-
-                // 添加非SOP/专家知识的内容
-                if (StringUtils.hasText(content) && !isSOPorExpertKnowledge(source, metadata)) {
-                    if (currentLength + content.length() > MAX_CONTEXT_LENGTH) {
-                        break;
-                    }
-                    context.append(content).append("\n\n");
-                    currentLength += content.length();
+        for (int i = 0; i < otherHits.size(); i++) {
+            String content = otherHits.content(i);
+            if (StringUtils.hasText(content)) {
+                if (currentLength + content.length() > MAX_CONTEXT_LENGTH) {
+                    break;
                 }
+                context.append(content).append("\n\n");
+                currentLength += content.length();
+                sources.add(otherHits.materialize(i));
             }
         }
 
         return context.toString().trim();
     }
 
-    /**
-     * 判断是否为SOP或专家知识
-     */
-    private boolean isSOPorExpertKnowledge(String source, String metadata) {
-        if (!StringUtils.hasText(source) && !StringUtils.hasText(metadata)) {
-            return false;
-        }
-
-        // 检查来源是否包含SOP或专家知识标识
-        String lowerSource = source != null ? source.toLowerCase() : "";
-        String lowerMetadata = metadata != null ? metadata.toLowerCase() : "";
-
-        return lowerSource.contains("sop") || lowerSource.contains("手册") ||
-               lowerSource.contains("manual") || lowerSource.contains("handbook") ||
-               lowerMetadata.contains("sop") || lowerMetadata.contains("专家") ||
-               lowerMetadata.contains("expert") || lowerMetadata.contains("standard");
-    }
-
     /**
      * 生成带有SOP引用的回答
      */
@@ -698,6 +717,7 @@ public class RAGService {
         private QueryIntent intent;
         private List<Map<String, Object>> queryData;
         private String sql;
+        private long queryTotalRows;
         private boolean fromCache = false;
         
         public AnswerResult(boolean success, String answer, List<VectorStoreService.SearchResult> retrievedDocs,
@@ -723,6 +743,8 @@ public class RAGService {
         public void setQueryData(List<Map<String, Object>> queryData) { this.queryData = queryData; }
         public String getSql() { return sql; }
         public void setSql(String sql) { this.sql = sql; }
+        public long getQueryTotalRows() { return queryTotalRows; }
+        public void setQueryTotalRows(long queryTotalRows) { this.queryTotalRows = queryTotalRows; }
         public boolean isFromCache() { return fromCache; }
         public void setFromCache(boolean fromCache) { this.fromCache = fromCache; }
     }
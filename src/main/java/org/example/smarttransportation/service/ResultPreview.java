@@ -0,0 +1,153 @@
+package org.example.smarttransportation.service;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询结果预览（列式存储）
+ * 流式读取结果集时只保留前 N 行，按列存放取值，不为每行创建 Map；
+ * 结果集超过预览行数时另行统计总行数。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class ResultPreview {
+
+    private final String[] columns;
+    private final Object[][] values;
+    private final int previewRows;
+    private final boolean hasMore;
+    private long totalRows;
+
+    private ResultPreview(String[] columns, Object[][] values, int previewRows, boolean hasMore) {
+        this.columns = columns;
+        this.values = values;
+        this.previewRows = previewRows;
+        this.hasMore = hasMore;
+        this.totalRows = previewRows;
+    }
+
+    /**
+     * 从只进游标读取至多 maxRows 行，并探测是否还有剩余行（不读取其内容）
+     */
+    public static ResultPreview read(ResultSet resultSet, int maxRows) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] columns = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+        }
+
+        Object[][] values = new Object[columnCount][maxRows];
+        int rows = 0;
+        while (rows < maxRows && resultSet.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                values[i][rows] = JdbcUtils.getResultSetValue(resultSet, i + 1);
+            }
+            rows++;
+        }
+        boolean hasMore = rows == maxRows && resultSet.next();
+
+        if (rows < maxRows) {
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = Arrays.copyOf(values[i], rows);
+            }
+        }
+        return new ResultPreview(columns, values, rows, hasMore);
+    }
+
+    /**
+     * 由内存中已计算好的行构建预览（如列式内存表的查询结果），总行数为全部行数
+     */
+    public static ResultPreview of(List<String> columns, List<Object[]> rows, int maxRows) {
+        int columnCount = columns.size();
+        int previewRows = Math.min(rows.size(), maxRows);
+        Object[][] values = new Object[columnCount][previewRows];
+        for (int row = 0; row < previewRows; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                values[i][row] = rows.get(row)[i];
+            }
+        }
+        ResultPreview preview = new ResultPreview(columns.toArray(new String[0]), values, previewRows, rows.size() > previewRows);
+        preview.setTotalRows(rows.size());
+        return preview;
+    }
+
+    public static ResultPreview empty() {
+        return new ResultPreview(new String[0], new Object[0][], 0, false);
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public int getPreviewRows() {
+        return previewRows;
+    }
+
+    public Object getValue(int row, int column) {
+        return values[column][row];
+    }
+
+    /**
+     * 预览之外是否还有行
+     */
+    public boolean isTruncated() {
+        return hasMore;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = Math.max(totalRows, previewRows);
+    }
+
+    /**
+     * 转为按行的 Map 列表（仅预览行，列名大小写不敏感，与 queryForList 一致）
+     */
+    public List<Map<String, Object>> toRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(previewRows);
+        for (int row = 0; row < previewRows; row++) {
+            Map<String, Object> map = new LinkedCaseInsensitiveMap<>(columns.length);
+            for (int column = 0; column < columns.length; column++) {
+                map.put(columns[column], values[column][row]);
+            }
+            rows.add(Collections.unmodifiableMap(map));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * 粗略估算占用内存（字节）
+     */
+    public long estimateBytes() {
+        long bytes = 64;
+        for (int column = 0; column < columns.length; column++) {
+            bytes += 40 + columns[column].length() * 2L + 16 + previewRows * 8L;
+            for (int row = 0; row < previewRows; row++) {
+                Object value = values[column][row];
+                if (value instanceof CharSequence text) {
+                    bytes += 40 + text.length() * 2L;
+                } else if (value != null) {
+                    bytes += 24;
+                }
+            }
+        }
+        return bytes;
+    }
+}
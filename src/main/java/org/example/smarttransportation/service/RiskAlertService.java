@@ -0,0 +1,226 @@
+package org.example.smarttransportation.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.smarttransportation.dto.RiskAlert;
+import org.example.smarttransportation.dto.RiskWarningReport;
+import org.example.smarttransportation.entity.RiskWarningRecord;
+import org.example.smarttransportation.repository.RiskWarningRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 风险预警通报服务
+ * 保存扫描生成的风险预警报告：同一时间窗口的报告与上一份内容相同时不重复保存；
+ * 风险等级变化时推送给所有订阅的大屏。推送通道为多播，慢速订阅方只丢弃自己来不及接收的消息，不影响其他订阅方。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class RiskAlertService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskAlertService.class);
+
+    @Autowired
+    private RiskWarningRecordRepository riskWarningRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Sinks.Many<RiskAlert> sink = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * 各时间窗口最近一份报告的指纹与推送内容
+     */
+    private final Map<LocalDateTime, LastReport> lastReports = new ConcurrentHashMap<>();
+
+    private Counter savedCounter;
+    private Counter deduplicatedCounter;
+    private Counter pushedCounter;
+
+    @PostConstruct
+    public void init() {
+        savedCounter = Counter.builder("risk.alert.reports").tag("result", "saved")
+            .description("定时扫描生成的风险预警报告数").register(meterRegistry);
+        deduplicatedCounter = Counter.builder("risk.alert.reports").tag("result", "deduplicated")
+            .description("定时扫描生成的风险预警报告数").register(meterRegistry);
+        pushedCounter = Counter.builder("risk.alert.pushed")
+            .description("推送的风险等级变化数").register(meterRegistry);
+        Gauge.builder("risk.alert.subscribers", sink, Sinks.Many::currentSubscriberCount)
+            .description("风险预警推送订阅数").register(meterRegistry);
+    }
+
+    /**
+     * 保存时间窗口的报告，风险等级变化时推送
+     *
+     * @return 保存的记录；与上一份报告内容相同时返回 null
+     */
+    public synchronized RiskWarningRecord record(LocalDateTime targetTime, RiskWarningReport report) {
+        String fingerprint = fingerprint(report);
+        LastReport last = lastReports.get(targetTime);
+        if (last == null) {
+            // 重启后从数据库恢复该窗口最近一份报告及其推送内容
+            last = riskWarningRecordRepository.findFirstByTargetTimeOrderByGeneratedAtDesc(targetTime)
+                .map(this::restore)
+                .orElse(null);
+            if (last != null) {
+                lastReports.put(targetTime, last);
+            }
+        }
+        if (last != null && fingerprint.equals(last.fingerprint)) {
+            deduplicatedCounter.increment();
+            return null;
+        }
+
+        String previousLevel = last != null ? last.riskLevel : null;
+        RiskWarningRecord record = new RiskWarningRecord();
+        record.setReportId(report.getReportId());
+        record.setTargetTime(targetTime);
+        record.setRiskLevel(report.getRiskLevel());
+        record.setPreviousLevel(previousLevel);
+        record.setRiskType(report.getRiskType());
+        record.setOverallScore(report.getRiskAnalysis() != null ? report.getRiskAnalysis().getOverallRiskScore() : null);
+        record.setFingerprint(fingerprint);
+        record.setReportJson(toJson(report));
+        record.setGeneratedAt(report.getGeneratedAt());
+        record = riskWarningRecordRepository.save(record);
+        savedCounter.increment();
+
+        RiskAlert alert = new RiskAlert(targetTime, previousLevel, report);
+        boolean levelChanged = last == null || !Objects.equals(previousLevel, report.getRiskLevel());
+        lastReports.put(targetTime, new LastReport(fingerprint, report.getRiskLevel(), alert));
+        if (levelChanged) {
+            publish(alert);
+        }
+        return record;
+    }
+
+    /**
+     * 订阅风险等级变化
+     */
+    public Flux<RiskAlert> subscribe() {
+        return sink.asFlux();
+    }
+
+    /**
+     * 各时间窗口当前的风险等级（新订阅方先收到这些，再接收后续变化）
+     */
+    public List<RiskAlert> currentAlerts() {
+        List<RiskAlert> alerts = new ArrayList<>();
+        for (LastReport last : lastReports.values()) {
+            if (last.alert != null) {
+                alerts.add(last.alert);
+            }
+        }
+        alerts.sort(Comparator.comparing(RiskAlert::getTargetTime));
+        return alerts;
+    }
+
+    /**
+     * 移除已过去的时间窗口
+     */
+    public void evictBefore(LocalDateTime time) {
+        lastReports.keySet().removeIf(targetTime -> targetTime.isBefore(time));
+    }
+
+    public int getSubscriberCount() {
+        return sink.currentSubscriberCount();
+    }
+
+    private void publish(RiskAlert alert) {
+        Sinks.EmitResult result = sink.tryEmitNext(alert);
+        if (result.isSuccess()) {
+            pushedCounter.increment();
+            logger.info("推送风险等级变化: {} {} -> {}", alert.getTimeWindow(), alert.getPreviousLevel(), alert.getRiskLevel());
+        } else if (result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            logger.warn("推送风险等级变化失败: {}", result);
+        }
+    }
+
+    /**
+     * 报告内容指纹：等级、类型、评分、风险因子、高风险区域与建议，不含报告编号与生成时间
+     */
+    static String fingerprint(RiskWarningReport report) {
+        StringBuilder content = new StringBuilder();
+        content.append(report.getRiskLevel()).append('|').append(report.getRiskType()).append('|');
+        RiskWarningReport.RiskAnalysis analysis = report.getRiskAnalysis();
+        if (analysis != null) {
+            content.append(analysis.getOverallRiskScore()).append('|').append(analysis.getRiskFactors()).append('|');
+        }
+        if (report.getHighRiskZones() != null) {
+            for (RiskWarningReport.HighRiskZone zone : report.getHighRiskZones()) {
+                content.append(zone.getLocation()).append(':').append(zone.getRiskLevel()).append(';');
+            }
+        }
+        content.append('|');
+        if (report.getRecommendations() != null) {
+            content.append(String.join(";", report.getRecommendations()));
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 由保存的记录恢复最近一份报告：推送内容按记录中的报告 JSON 与上一等级重建，
+     * 内容相同的报告被去重时 currentAlerts 仍能给新订阅方返回该窗口的等级
+     */
+    private LastReport restore(RiskWarningRecord record) {
+        RiskAlert alert = null;
+        if (record.getReportJson() != null) {
+            try {
+                RiskWarningReport report = objectMapper.readValue(record.getReportJson(), RiskWarningReport.class);
+                alert = new RiskAlert(record.getTargetTime(), record.getPreviousLevel(), report);
+            } catch (JsonProcessingException e) {
+                logger.warn("风险预警报告 {} 反序列化失败: {}", record.getReportId(), e.getMessage());
+            }
+        }
+        return new LastReport(record.getFingerprint(), record.getRiskLevel(), alert);
+    }
+
+    private String toJson(RiskWarningReport report) {
+        try {
+            return objectMapper.writeValueAsString(report);
+        } catch (JsonProcessingException e) {
+            logger.warn("风险预警报告序列化失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 时间窗口最近一份报告
+     */
+    private static class LastReport {
+        private final String fingerprint;
+        private final String riskLevel;
+        private final RiskAlert alert;
+
+        LastReport(String fingerprint, String riskLevel, RiskAlert alert) {
+            this.fingerprint = fingerprint;
+            this.riskLevel = riskLevel;
+            this.alert = alert;
+        }
+    }
+}
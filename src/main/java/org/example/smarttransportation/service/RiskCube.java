@@ -0,0 +1,420 @@
+package org.example.smarttransportation.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * 风险立方体（小时槽位 × 风险因子）
+ * 数据窗口内每天的天气、事故、客流、活动因子输入与高风险区域按层存放，每层只依赖一张数据表，
+ * 该表有新数据导入时只重建这一层，变更带日期范围时只替换受影响的日期；
+ * 各小时槽位的因子评分在构造时按 RiskRules 与事故历史基线预先算好，预警查询为数组下标访问。
+ * 区域不作为立方体的一维：因子评分按全市计算、与区域无关，每天只保存 Top-N 事故街道与高客流站点，
+ * 按网格单元的空间评分由 SpatialRiskIndex 提供。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class RiskCube {
+
+    public static final int HOURS_PER_DAY = 24;
+
+    /**
+     * 风险因子
+     */
+    public enum Factor {
+        WEATHER, TRAFFIC, EVENT
+    }
+
+    private static final int FACTORS = Factor.values().length;
+
+    /**
+     * 与事故层的统计窗口一致：目标日前 30 天至次日
+     */
+    private static final int ACCIDENT_LOOKBACK_DAYS = 30;
+    private static final int ACCIDENT_LOOKAHEAD_DAYS = 1;
+
+    private final LocalDate startDate;
+    private final int days;
+    private final WeatherLayer weather;
+    private final AccidentLayer accidents;
+    private final RidershipLayer ridership;
+    private final EventLayer events;
+    private final RiskRules rules;
+    private final AccidentBaseline baseline;
+    private final byte[] scores;
+
+    /**
+     * 每天事故统计窗口的基线期望事故数，基线不可用时为 0
+     */
+    private final double[] expectedAccidents;
+
+    public RiskCube(LocalDate startDate, int days, WeatherLayer weather, AccidentLayer accidents,
+                    RidershipLayer ridership, EventLayer events, RiskRules rules, AccidentBaseline baseline) {
+        this.startDate = startDate;
+        this.days = days;
+        this.weather = requireDays(weather, days);
+        this.accidents = requireDays(accidents, days);
+        this.ridership = requireDays(ridership, days);
+        this.events = requireDays(events, days);
+        this.rules = rules;
+        this.baseline = baseline;
+
+        this.expectedAccidents = new double[days];
+        this.scores = new byte[days * HOURS_PER_DAY * FACTORS];
+        for (int day = 0; day < days; day++) {
+            LocalDate date = startDate.plusDays(day);
+            expectedAccidents[day] = baseline != null ? baseline.expectedCount(
+                date.minusDays(ACCIDENT_LOOKBACK_DAYS), date.plusDays(ACCIDENT_LOOKAHEAD_DAYS)) : 0;
+            double accidentZ = AccidentBaseline.zScore(accidents.getCount(day), expectedAccidents[day]);
+            int weatherScore = rules.weatherScore(weather.hasSnow(day), weather.hasIcingRisk(day),
+                weather.isSevereWeather(day));
+            int eventScore = rules.eventScore(events.getActiveEvents(day), events.getHighImpactEvents(day));
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                int base = (day * HOURS_PER_DAY + hour) * FACTORS;
+                scores[base + Factor.WEATHER.ordinal()] = (byte) weatherScore;
+                scores[base + Factor.TRAFFIC.ordinal()] = (byte) rules.trafficScore(
+                    rules.isRushHour(hour), accidents.getCount(day), ridership.getCount(day), accidentZ);
+                scores[base + Factor.EVENT.ordinal()] = (byte) eventScore;
+            }
+        }
+    }
+
+    /**
+     * 用新规则或新的事故基线重算评分，各层数据共享
+     */
+    public RiskCube rescore(RiskRules newRules, AccidentBaseline newBaseline) {
+        return new RiskCube(startDate, days, weather, accidents, ridership, events, newRules, newBaseline);
+    }
+
+    /**
+     * 时间所在的小时槽位，超出数据窗口时返回 -1
+     */
+    public int slot(LocalDateTime dateTime) {
+        long day = ChronoUnit.DAYS.between(startDate, dateTime.toLocalDate());
+        if (day < 0 || day >= days) {
+            return -1;
+        }
+        return (int) day * HOURS_PER_DAY + dateTime.getHour();
+    }
+
+    public int score(int slot, Factor factor) {
+        return scores[slot * FACTORS + factor.ordinal()];
+    }
+
+    public int overallScore(int slot) {
+        int base = slot * FACTORS;
+        int total = 0;
+        for (int i = 0; i < FACTORS; i++) {
+            total += scores[base + i];
+        }
+        return total;
+    }
+
+    public static int dayOf(int slot) {
+        return slot / HOURS_PER_DAY;
+    }
+
+    public static int hourOf(int slot) {
+        return slot % HOURS_PER_DAY;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public WeatherLayer getWeather() {
+        return weather;
+    }
+
+    public AccidentLayer getAccidents() {
+        return accidents;
+    }
+
+    public RidershipLayer getRidership() {
+        return ridership;
+    }
+
+    public EventLayer getEvents() {
+        return events;
+    }
+
+    public RiskRules getRules() {
+        return rules;
+    }
+
+    public AccidentBaseline getBaseline() {
+        return baseline;
+    }
+
+    public double getExpectedAccidents(int day) {
+        return expectedAccidents[day];
+    }
+
+    /**
+     * 估算占用内存（字节）
+     */
+    public long estimateBytes() {
+        return scores.length + expectedAccidents.length * 8L + weather.estimateBytes() + accidents.estimateBytes()
+            + ridership.estimateBytes() + events.estimateBytes();
+    }
+
+    private static <T extends Layer> T requireDays(T layer, int days) {
+        if (layer == null || layer.days() != days) {
+            throw new IllegalArgumentException("风险立方体各层天数不一致");
+        }
+        return layer;
+    }
+
+    /**
+     * 按天存放的因子层
+     */
+    abstract static class Layer {
+        abstract int days();
+
+        abstract long estimateBytes();
+
+        static long estimateZones(Zone[][] zones) {
+            long bytes = 16L + zones.length * 8L;
+            for (Zone[] dayZones : zones) {
+                for (Zone zone : dayZones) {
+                    bytes += 64 + (zone.location != null ? zone.location.length() * 2L : 0);
+                }
+            }
+            return bytes;
+        }
+
+        static int[] spliceCounts(int[] counts, int offset, int[] part) {
+            int[] result = counts.clone();
+            System.arraycopy(part, 0, result, offset, part.length);
+            return result;
+        }
+
+        static Zone[][] spliceZones(Zone[][] zones, int offset, Zone[][] part) {
+            Zone[][] result = zones.clone();
+            System.arraycopy(part, 0, result, offset, part.length);
+            return result;
+        }
+    }
+
+    /**
+     * 天气层：每天一个标志字节与天气描述
+     */
+    public static class WeatherLayer extends Layer {
+        static final byte AVAILABLE = 1;
+        static final byte SNOW = 2;
+        static final byte ICING = 4;
+        static final byte SEVERE = 8;
+
+        private final byte[] flags;
+        private final String[] descriptions;
+
+        WeatherLayer(byte[] flags, String[] descriptions) {
+            this.flags = flags;
+            this.descriptions = descriptions;
+        }
+
+        public boolean isAvailable(int day) {
+            return (flags[day] & AVAILABLE) != 0;
+        }
+
+        public boolean hasSnow(int day) {
+            return (flags[day] & SNOW) != 0;
+        }
+
+        public boolean hasIcingRisk(int day) {
+            return (flags[day] & ICING) != 0;
+        }
+
+        public boolean isSevereWeather(int day) {
+            return (flags[day] & SEVERE) != 0;
+        }
+
+        public String getDescription(int day) {
+            return descriptions[day];
+        }
+
+        /**
+         * 用 part 替换从 offset 起的若干天，返回新层（原层不变）
+         */
+        WeatherLayer splice(int offset, WeatherLayer part) {
+            byte[] newFlags = flags.clone();
+            String[] newDescriptions = descriptions.clone();
+            System.arraycopy(part.flags, 0, newFlags, offset, part.days());
+            System.arraycopy(part.descriptions, 0, newDescriptions, offset, part.days());
+            return new WeatherLayer(newFlags, newDescriptions);
+        }
+
+        @Override
+        int days() {
+            return flags.length;
+        }
+
+        @Override
+        long estimateBytes() {
+            long bytes = 16L + flags.length + 16L + descriptions.length * 8L;
+            for (String description : descriptions) {
+                bytes += description != null ? 40 + description.length() * 2L : 0;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 事故层：每天前 30 天至次日的事故数，以及该窗口内事故最多的街道
+     */
+    public static class AccidentLayer extends Layer {
+        private final int[] counts;
+        private final Zone[][] streets;
+
+        AccidentLayer(int[] counts, Zone[][] streets) {
+            this.counts = counts;
+            this.streets = streets;
+        }
+
+        public int getCount(int day) {
+            return counts[day];
+        }
+
+        public List<Zone> getStreets(int day) {
+            return List.of(streets[day]);
+        }
+
+        AccidentLayer splice(int offset, AccidentLayer part) {
+            return new AccidentLayer(spliceCounts(counts, offset, part.counts),
+                spliceZones(streets, offset, part.streets));
+        }
+
+        @Override
+        int days() {
+            return counts.length;
+        }
+
+        @Override
+        long estimateBytes() {
+            return 16L + counts.length * 4L + estimateZones(streets);
+        }
+    }
+
+    /**
+     * 客流层：每天前 30 天至次日的高客流记录数，以及该窗口内客流最高的站点记录
+     */
+    public static class RidershipLayer extends Layer {
+        private final int[] counts;
+        private final Zone[][] stations;
+
+        RidershipLayer(int[] counts, Zone[][] stations) {
+            this.counts = counts;
+            this.stations = stations;
+        }
+
+        public int getCount(int day) {
+            return counts[day];
+        }
+
+        public List<Zone> getStations(int day) {
+            return List.of(stations[day]);
+        }
+
+        RidershipLayer splice(int offset, RidershipLayer part) {
+            return new RidershipLayer(spliceCounts(counts, offset, part.counts),
+                spliceZones(stations, offset, part.stations));
+        }
+
+        @Override
+        int days() {
+            return counts.length;
+        }
+
+        @Override
+        long estimateBytes() {
+            return 16L + counts.length * 4L + estimateZones(stations);
+        }
+    }
+
+    /**
+     * 活动层：每天前后一天内曼哈顿的活动数、高影响活动数与类型分布
+     */
+    public static class EventLayer extends Layer {
+        private final int[] activeEvents;
+        private final int[] highImpactEvents;
+        private final String[] eventTypes;
+
+        EventLayer(int[] activeEvents, int[] highImpactEvents, String[] eventTypes) {
+            this.activeEvents = activeEvents;
+            this.highImpactEvents = highImpactEvents;
+            this.eventTypes = eventTypes;
+        }
+
+        public int getActiveEvents(int day) {
+            return activeEvents[day];
+        }
+
+        public int getHighImpactEvents(int day) {
+            return highImpactEvents[day];
+        }
+
+        public String getEventTypes(int day) {
+            return eventTypes[day];
+        }
+
+        EventLayer splice(int offset, EventLayer part) {
+            String[] newTypes = eventTypes.clone();
+            System.arraycopy(part.eventTypes, 0, newTypes, offset, part.days());
+            return new EventLayer(spliceCounts(activeEvents, offset, part.activeEvents),
+                spliceCounts(highImpactEvents, offset, part.highImpactEvents), newTypes);
+        }
+
+        @Override
+        int days() {
+            return activeEvents.length;
+        }
+
+        @Override
+        long estimateBytes() {
+            long bytes = 32L + activeEvents.length * 8L + 16L + eventTypes.length * 8L;
+            for (String types : eventTypes) {
+                bytes += types != null ? 40 + types.length() * 2L : 0;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 高风险区域：街道或地铁站，metric 为事故数或客流量
+     */
+    public static class Zone {
+        private final String location;
+        private final long metric;
+        private final Double latitude;
+        private final Double longitude;
+
+        Zone(String location, long metric, Double latitude, Double longitude) {
+            this.location = location;
+            this.metric = metric;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public long getMetric() {
+            return metric;
+        }
+
+        public Double getLatitude() {
+            return latitude;
+        }
+
+        public Double getLongitude() {
+            return longitude;
+        }
+    }
+}
@@ -0,0 +1,714 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.DataChangeEvent;
+import org.example.smarttransportation.entity.PermittedEvent;
+import org.example.smarttransportation.entity.WeatherData;
+import org.example.smarttransportation.repository.PermittedEventRepository;
+import org.example.smarttransportation.repository.SubwayRidershipRepository;
+import org.example.smarttransportation.repository.TrafficAccidentRepository;
+import org.example.smarttransportation.repository.WeatherDataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 风险立方体服务
+ * 在后台为数据窗口内的每个小时预计算天气、交通、活动风险评分与高风险区域，风险预警直接查表。
+ * 立方体按数据表分层：天气、事故、客流、活动各一层，某张表版本递增（数据导入）后只重建依赖它的层，
+ * 重建完成前该层已过期，预警回退到实时查询计算。
+ * 收到带日期范围的 DataChangeEvent 时只把受影响的目标日期标记为待重算，后台只重新查询这些日期并替换到层中；
+ * 版本不连续（漏掉了变更）或范围未知时整层重建。
+ * 立方体与构建它的各层表版本作为一个快照整体发布，查询看到的立方体与版本始终对应。
+ *
+ * 事故数与高客流记录数按天分组查询一次后用前缀和得到每天的 32 天滑动窗口计数，
+ * 事故多发街道与人流密集站点按天执行 Top-N 投影查询。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class RiskCubeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskCubeService.class);
+
+    /**
+     * 与 RiskWarningService 一致：事故与客流统计目标日前 30 天至次日，活动统计前后各一天
+     */
+    private static final int LOOKBACK_DAYS = 30;
+    private static final int LOOKAHEAD_DAYS = 1;
+    private static final int EVENT_WINDOW_DAYS = 1;
+    private static final String EVENT_BOROUGH = "Manhattan";
+    private static final int HIGH_DENSITY_RIDERSHIP = 500;
+    private static final int ZONE_RIDERSHIP = 800;
+    private static final int TOP_STREETS = 5;
+    private static final int TOP_STATIONS = 3;
+    private static final RiskCube.Zone[] NO_ZONES = new RiskCube.Zone[0];
+
+    /**
+     * 立方体分层，每层只依赖一张数据表
+     */
+    enum Layer {
+        WEATHER("nyc_weather_data"),
+        ACCIDENTS("nyc_traffic_accidents"),
+        RIDERSHIP("subway_ridership"),
+        EVENTS("nyc_permitted_events");
+
+        private final String table;
+
+        Layer(String table) {
+            this.table = table;
+        }
+
+        String getTable() {
+            return table;
+        }
+    }
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+
+    @Autowired
+    private TrafficAccidentRepository trafficAccidentRepository;
+
+    @Autowired
+    private SubwayRidershipRepository subwayRidershipRepository;
+
+    @Autowired
+    private PermittedEventRepository permittedEventRepository;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private RiskRuleService riskRuleService;
+
+    @Autowired
+    private AccidentBaselineService accidentBaselineService;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Layer, LayerState> states = new EnumMap<>(Layer.class);
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "risk-cube-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 批量评估临时构建立方体用，各层的数据加载并行执行
+     */
+    private ExecutorService batchExecutor;
+
+    private LocalDate startDate;
+    private int days;
+
+    /**
+     * 常驻立方体快照；整体替换，重建在 synchronized (this) 内发布，重算评分按实例比较后替换
+     */
+    private volatile Published published;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        RiskConfig.RiskProperties.Cube config = properties.getCube();
+        startDate = LocalDate.parse(config.getStartDate());
+        LocalDate endDate = LocalDate.parse(config.getEndDate());
+        days = (int) ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (days <= 0) {
+            throw new IllegalArgumentException("风险立方体结束日期不能早于起始日期");
+        }
+        for (Layer layer : Layer.values()) {
+            states.put(layer, new LayerState());
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getBatch().getParallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "risk-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        hitCounter = Counter.builder("risk.cube.lookups").tag("result", "hit")
+            .description("风险预警查询风险立方体的次数").register(meterRegistry);
+        missCounter = Counter.builder("risk.cube.lookups").tag("result", "miss")
+            .description("风险预警查询风险立方体的次数").register(meterRegistry);
+        Gauge.builder("risk.cube.memory.bytes", this, service -> {
+            Published current = service.published;
+            return current != null ? current.cube.estimateBytes() : 0;
+        }).description("风险立方体估算内存占用").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        batchExecutor.shutdownNow();
+    }
+
+    /**
+     * 获取覆盖目标时间且各层与数据表版本一致的立方体，不可用时返回 null（调用方实时计算）
+     * 发现过期的层时在后台重建
+     */
+    public RiskCube lookup(LocalDateTime targetDateTime) {
+        if (!Boolean.TRUE.equals(properties.getCube().getEnabled())) {
+            return null;
+        }
+        Published current = currentPublished();
+        if (current == null || current.cube.slot(targetDateTime) < 0 || !isCurrent(current)) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        return current.cube;
+    }
+
+    /**
+     * 获取完整覆盖 [from, to] 且与数据表版本一致的常驻立方体，不可用时返回 null
+     */
+    public RiskCube lookupRange(LocalDate from, LocalDate to) {
+        if (!Boolean.TRUE.equals(properties.getCube().getEnabled())) {
+            return null;
+        }
+        Published current = currentPublished();
+        if (current == null || current.cube.slot(from.atStartOfDay()) < 0 || current.cube.slot(to.atStartOfDay()) < 0
+                || !isCurrent(current)) {
+            return null;
+        }
+        return current.cube;
+    }
+
+    /**
+     * 为任意日期范围构建一个临时立方体（不替换常驻立方体）
+     * 每张数据表只查询一次，四层并行加载；withZones 为 false 时跳过按天的高风险区域 Top-N 查询
+     */
+    public RiskCube buildCube(LocalDate from, LocalDate to, boolean withZones) {
+        int rangeDays = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        if (rangeDays <= 0) {
+            throw new IllegalArgumentException("结束日期不能早于起始日期");
+        }
+        long start = System.nanoTime();
+        CompletableFuture<RiskCube.WeatherLayer> weather = CompletableFuture.supplyAsync(
+            () -> buildWeatherLayer(from, rangeDays), batchExecutor);
+        CompletableFuture<RiskCube.AccidentLayer> accidents = CompletableFuture.supplyAsync(
+            () -> buildAccidentLayer(from, rangeDays, withZones), batchExecutor);
+        CompletableFuture<RiskCube.RidershipLayer> ridership = CompletableFuture.supplyAsync(
+            () -> buildRidershipLayer(from, rangeDays, withZones), batchExecutor);
+        CompletableFuture<RiskCube.EventLayer> events = CompletableFuture.supplyAsync(
+            () -> buildEventLayer(from, rangeDays), batchExecutor);
+        try {
+            CompletableFuture.allOf(weather, accidents, ridership, events).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        RiskCube result = new RiskCube(from, rangeDays, weather.join(), accidents.join(), ridership.join(), events.join(),
+            riskRuleService.getRules(), accidentBaselineService.getBaseline());
+        logger.info("临时风险立方体构建完成: {} ~ {}, {} 天, 耗时 {} ms", from, to, rangeDays,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    /**
+     * 后台重建所有层
+     */
+    public void refreshAllAsync() {
+        for (Layer layer : Layer.values()) {
+            submitFull(layer);
+        }
+    }
+
+    /**
+     * 后台重建依赖指定数据表的层
+     */
+    public void refreshAsync(String table) {
+        for (Layer layer : Layer.values()) {
+            if (layer.getTable().equalsIgnoreCase(table.replace("`", "").trim())) {
+                submitFull(layer);
+            }
+        }
+    }
+
+    /**
+     * 数据变更：版本与已知版本连续且带日期范围时只标记受影响的目标日期，否则整层重建
+     */
+    @EventListener
+    public void onDataChange(DataChangeEvent event) {
+        for (Layer layer : Layer.values()) {
+            if (!layer.getTable().equalsIgnoreCase(event.getTable())) {
+                continue;
+            }
+            LayerState state = states.get(layer);
+            synchronized (state) {
+                // 已由进行中的整层重建覆盖
+                if (event.getVersion() <= state.knownVersion) {
+                    continue;
+                }
+                if (!event.hasRange() || event.getVersion() != state.knownVersion + 1) {
+                    state.fullRequired = true;
+                } else {
+                    int[] range = affectedDays(layer, startDate, event.getFrom(), event.getTo());
+                    int first = Math.max(0, range[0]);
+                    int last = Math.min(days - 1, range[1]);
+                    if (first <= last) {
+                        state.dirty.set(first, last + 1);
+                    }
+                }
+                state.knownVersion = event.getVersion();
+                if (state.pendingSince == 0) {
+                    state.pendingSince = event.getDetectedAt();
+                }
+            }
+            submit(layer);
+        }
+    }
+
+    /**
+     * 立方体各层状态
+     */
+    public Map<String, Object> getStats() {
+        Published current = published;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.getCube().getEnabled());
+        stats.put("startDate", startDate);
+        stats.put("days", days);
+        stats.put("ready", current != null);
+        stats.put("memoryBytes", current != null ? current.cube.estimateBytes() : 0);
+
+        List<Map<String, Object>> layers = new ArrayList<>();
+        for (Layer layer : Layer.values()) {
+            LayerState state = states.get(layer);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("layer", layer.name().toLowerCase(Locale.ROOT));
+            item.put("table", layer.getTable());
+            item.put("builtVersion", state.builtVersion);
+            item.put("tableVersion", tableVersionRegistry.currentVersion(layer.getTable()));
+            synchronized (state) {
+                item.put("dirtyDays", state.dirty.cardinality());
+            }
+            item.put("lastRefreshType", state.lastRefreshType);
+            item.put("lastRecomputedDays", state.lastRecomputedDays);
+            item.put("lastRefreshMillis", state.lastRefreshMillis);
+            item.put("lastRefreshedAt", state.lastRefreshedAt > 0 ? new Date(state.lastRefreshedAt) : null);
+            item.put("lastFreshnessLagMillis", state.lastFreshnessLagMillis);
+            item.put("lastError", state.lastError);
+            layers.add(item);
+        }
+        stats.put("layers", layers);
+        return stats;
+    }
+
+    /**
+     * 常驻立方体快照；评分规则已重新加载或事故基线已重建时先重算评分（只涉及内存中的各层数据）。
+     * 重算在锁外进行，只有快照仍是重算所基于的实例时才替换，期间已发布新快照时基于新快照重试
+     */
+    private Published currentPublished() {
+        while (true) {
+            Published current = published;
+            RiskRules rules = riskRuleService.getRules();
+            AccidentBaseline baseline = accidentBaselineService.getBaseline();
+            if (current == null || (current.cube.getRules() == rules && current.cube.getBaseline() == baseline)) {
+                return current;
+            }
+            Published rescored = new Published(current.cube.rescore(rules, baseline), current.versions);
+            synchronized (this) {
+                if (published == current) {
+                    published = rescored;
+                    logger.info("风险立方体评分已重算: 规则版本 {}, 事故基线版本 {}", rules.getVersion(),
+                        baseline != null ? baseline.getVersion() : null);
+                    return rescored;
+                }
+            }
+        }
+    }
+
+    /**
+     * 快照的各层是否与数据表版本一致；过期的层提交后台重建
+     */
+    private boolean isCurrent(Published snapshot) {
+        boolean current = true;
+        for (Layer layer : Layer.values()) {
+            if (snapshot.versions[layer.ordinal()] != tableVersionRegistry.currentVersion(layer.getTable())) {
+                submit(layer);
+                current = false;
+            }
+        }
+        return current;
+    }
+
+    private void submitFull(Layer layer) {
+        LayerState state = states.get(layer);
+        synchronized (state) {
+            state.fullRequired = true;
+        }
+        submit(layer);
+    }
+
+    private void submit(Layer layer) {
+        LayerState state = states.get(layer);
+        if (state.queued.compareAndSet(false, true)) {
+            refreshExecutor.execute(() -> {
+                state.queued.set(false);
+                refresh(layer);
+            });
+        }
+    }
+
+    /**
+     * 重建单层并替换立方体；四层都已构建后才对外提供
+     * 只有待重算日期时按其最小、最大下标之间的连续范围重新查询，替换到现有层的副本中
+     */
+    void refresh(Layer layer) {
+        LayerState state = states.get(layer);
+        long version;
+        boolean full;
+        BitSet dirty;
+        long pendingSince;
+        synchronized (state) {
+            // 先取版本再读数据，重建期间有新变更时会再次标记并提交
+            version = tableVersionRegistry.snapshot(List.of(layer.getTable())).values().iterator().next();
+            full = state.data == null || state.fullRequired || state.knownVersion != version;
+            dirty = (BitSet) state.dirty.clone();
+            pendingSince = state.pendingSince;
+            state.dirty.clear();
+            state.fullRequired = false;
+            state.knownVersion = version;
+            state.pendingSince = 0;
+        }
+        if (!full && dirty.isEmpty() && state.builtVersion == version) {
+            return;
+        }
+
+        String type = full ? "full" : "incremental";
+        int first = full ? 0 : dirty.nextSetBit(0);
+        // 变更只涉及数据窗口之外的日期时 dirty 为空，只需更新版本
+        int count = full ? days : dirty.isEmpty() ? 0 : dirty.length() - first;
+        long start = System.nanoTime();
+        try {
+            Object data = state.data;
+            if (full) {
+                data = buildLayer(layer, startDate, days);
+            } else if (count > 0) {
+                data = splice(layer, data, first, buildLayer(layer, startDate.plusDays(first), count));
+            }
+            publish(state, data, version);
+            state.lastError = null;
+            state.lastRefreshType = type;
+            state.lastRecomputedDays = count;
+            Counter.builder("risk.cube.recomputed.days").tag("layer", layer.name().toLowerCase(Locale.ROOT))
+                .tag("type", type).description("风险立方体重算的目标日期数").register(meterRegistry)
+                .increment(count);
+            if (pendingSince > 0) {
+                long lag = Math.max(0, System.currentTimeMillis() - pendingSince);
+                state.lastFreshnessLagMillis = lag;
+                Timer.builder("risk.cube.freshness.lag").tag("layer", layer.name().toLowerCase(Locale.ROOT))
+                    .description("数据变更被发现到风险立方体更新完成的延迟").register(meterRegistry)
+                    .record(lag, TimeUnit.MILLISECONDS);
+            }
+            logger.info("风险立方体 {} 层重建完成({}): 重算 {} 天, 表版本 {}", layer, type, count, version);
+        } catch (Exception e) {
+            synchronized (state) {
+                state.fullRequired = true;
+                if (state.pendingSince == 0 || (pendingSince > 0 && pendingSince < state.pendingSince)) {
+                    state.pendingSince = pendingSince;
+                }
+            }
+            state.lastError = e.getMessage();
+            logger.warn("风险立方体 {} 层重建失败，风险预警将实时计算: {}", layer, e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            state.lastRefreshMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            state.lastRefreshedAt = System.currentTimeMillis();
+            Timer.builder("risk.cube.refresh").tag("layer", layer.name().toLowerCase(Locale.ROOT)).tag("type", type)
+                .description("风险立方体分层重建耗时").register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 替换单层数据与版本；四层都已构建时以各层当前数据与版本发布新快照
+     */
+    private synchronized void publish(LayerState state, Object data, long version) {
+        state.data = data;
+        state.builtVersion = version;
+
+        RiskCube.WeatherLayer weather = (RiskCube.WeatherLayer) states.get(Layer.WEATHER).data;
+        RiskCube.AccidentLayer accidents = (RiskCube.AccidentLayer) states.get(Layer.ACCIDENTS).data;
+        RiskCube.RidershipLayer ridership = (RiskCube.RidershipLayer) states.get(Layer.RIDERSHIP).data;
+        RiskCube.EventLayer events = (RiskCube.EventLayer) states.get(Layer.EVENTS).data;
+        if (weather == null || accidents == null || ridership == null || events == null) {
+            return;
+        }
+        long[] versions = new long[Layer.values().length];
+        for (Layer layer : Layer.values()) {
+            versions[layer.ordinal()] = states.get(layer).builtVersion;
+        }
+        published = new Published(new RiskCube(startDate, days, weather, accidents, ridership, events,
+            riskRuleService.getRules(), accidentBaselineService.getBaseline()), versions);
+    }
+
+    private Object buildLayer(Layer layer, LocalDate from, int count) {
+        return switch (layer) {
+            case WEATHER -> buildWeatherLayer(from, count);
+            case ACCIDENTS -> buildAccidentLayer(from, count, true);
+            case RIDERSHIP -> buildRidershipLayer(from, count, true);
+            case EVENTS -> buildEventLayer(from, count);
+        };
+    }
+
+    private static Object splice(Layer layer, Object data, int offset, Object part) {
+        return switch (layer) {
+            case WEATHER -> ((RiskCube.WeatherLayer) data).splice(offset, (RiskCube.WeatherLayer) part);
+            case ACCIDENTS -> ((RiskCube.AccidentLayer) data).splice(offset, (RiskCube.AccidentLayer) part);
+            case RIDERSHIP -> ((RiskCube.RidershipLayer) data).splice(offset, (RiskCube.RidershipLayer) part);
+            case EVENTS -> ((RiskCube.EventLayer) data).splice(offset, (RiskCube.EventLayer) part);
+        };
+    }
+
+    /**
+     * 数据日期 [from, to] 的变更影响的目标日期下标范围（未裁剪到数据窗口）
+     * 事故与客流目标日 d 统计 [d-30, d+1]，活动统计 [d-1, d+1]，天气只影响当天
+     */
+    static int[] affectedDays(Layer layer, LocalDate startDate, LocalDate from, LocalDate to) {
+        int first = (int) ChronoUnit.DAYS.between(startDate, from);
+        int last = (int) ChronoUnit.DAYS.between(startDate, to);
+        return switch (layer) {
+            case WEATHER -> new int[] {first, last};
+            case ACCIDENTS, RIDERSHIP -> new int[] {first - LOOKAHEAD_DAYS, last + LOOKBACK_DAYS};
+            case EVENTS -> new int[] {first - EVENT_WINDOW_DAYS, last + EVENT_WINDOW_DAYS};
+        };
+    }
+
+    private RiskCube.WeatherLayer buildWeatherLayer(LocalDate startDate, int days) {
+        byte[] flags = new byte[days];
+        String[] descriptions = new String[days];
+        for (WeatherData weather : weatherDataRepository.findByDateRange(startDate, startDate.plusDays(days - 1))) {
+            if (weather.getDatetime() == null) {
+                continue;
+            }
+            long day = ChronoUnit.DAYS.between(startDate, weather.getDatetime().toLocalDate());
+            // 同一天有多条记录时取第一条
+            if (day < 0 || day >= days || (flags[(int) day] & RiskCube.WeatherLayer.AVAILABLE) != 0) {
+                continue;
+            }
+            byte flag = RiskCube.WeatherLayer.AVAILABLE;
+            if (RiskWarningService.hasSnow(weather)) {
+                flag |= RiskCube.WeatherLayer.SNOW;
+            }
+            if (weather.hasIcingRisk()) {
+                flag |= RiskCube.WeatherLayer.ICING;
+            }
+            if (weather.isSevereWeather()) {
+                flag |= RiskCube.WeatherLayer.SEVERE;
+            }
+            flags[(int) day] = flag;
+            descriptions[(int) day] = weather.getWeatherDescription();
+        }
+        return new RiskCube.WeatherLayer(flags, descriptions);
+    }
+
+    private RiskCube.AccidentLayer buildAccidentLayer(LocalDate startDate, int days, boolean withZones) {
+        LocalDate from = startDate.minusDays(LOOKBACK_DAYS);
+        long[] daily = new long[days + LOOKBACK_DAYS + LOOKAHEAD_DAYS];
+        for (Object[] row : trafficAccidentRepository.countAccidentsByDay(from,
+                startDate.plusDays(days - 1 + LOOKAHEAD_DAYS))) {
+            addDaily(daily, from, row);
+        }
+
+        RiskCube.Zone[][] streets = new RiskCube.Zone[days][];
+        for (int day = 0; day < days; day++) {
+            if (!withZones) {
+                streets[day] = NO_ZONES;
+                continue;
+            }
+            LocalDate date = startDate.plusDays(day);
+            List<Object[]> rows = trafficAccidentRepository.countAccidentsByStreet(date.minusDays(LOOKBACK_DAYS),
+                date.plusDays(LOOKAHEAD_DAYS), PageRequest.of(0, TOP_STREETS));
+            streets[day] = new RiskCube.Zone[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                Object[] row = rows.get(i);
+                streets[day][i] = new RiskCube.Zone((String) row[0], ((Number) row[1]).longValue(), null, null);
+            }
+        }
+        return new RiskCube.AccidentLayer(windowCounts(daily, days), streets);
+    }
+
+    private RiskCube.RidershipLayer buildRidershipLayer(LocalDate startDate, int days, boolean withZones) {
+        LocalDate from = startDate.minusDays(LOOKBACK_DAYS);
+        long[] daily = new long[days + LOOKBACK_DAYS + LOOKAHEAD_DAYS];
+        for (Object[] row : subwayRidershipRepository.countHighDensityRecordsByDay(from.atStartOfDay(),
+                startDate.plusDays(days + LOOKAHEAD_DAYS).atStartOfDay(), HIGH_DENSITY_RIDERSHIP)) {
+            addDaily(daily, from, row);
+        }
+
+        RiskCube.Zone[][] stations = new RiskCube.Zone[days][];
+        for (int day = 0; day < days; day++) {
+            if (!withZones) {
+                stations[day] = NO_ZONES;
+                continue;
+            }
+            LocalDate date = startDate.plusDays(day);
+            List<Object[]> rows = subwayRidershipRepository.findTopRidershipStations(
+                date.minusDays(LOOKBACK_DAYS).atStartOfDay(), date.plusDays(LOOKAHEAD_DAYS + 1).atStartOfDay(),
+                ZONE_RIDERSHIP, PageRequest.of(0, TOP_STATIONS));
+            stations[day] = new RiskCube.Zone[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                Object[] row = rows.get(i);
+                stations[day][i] = new RiskCube.Zone(String.valueOf(row[0]),
+                    row[3] != null ? ((Number) row[3]).longValue() : 0, toDouble(row[1]), toDouble(row[2]));
+            }
+        }
+        return new RiskCube.RidershipLayer(windowCounts(daily, days), stations);
+    }
+
+    private RiskCube.EventLayer buildEventLayer(LocalDate startDate, int days) {
+        List<PermittedEvent> events = permittedEventRepository.findByBoroughAndDateRange(EVENT_BOROUGH,
+            startDate.minusDays(EVENT_WINDOW_DAYS), startDate.plusDays(days - 1 + EVENT_WINDOW_DAYS));
+
+        int[] activeEvents = new int[days];
+        int[] highImpactEvents = new int[days];
+        String[] eventTypes = new String[days];
+        for (int day = 0; day < days; day++) {
+            LocalDate from = startDate.plusDays(day - EVENT_WINDOW_DAYS);
+            LocalDate to = startDate.plusDays(day + EVENT_WINDOW_DAYS);
+            // 与 findByBoroughAndDateRange 的条件一致：开始日期不晚于窗口结束，结束日期不早于窗口开始
+            List<PermittedEvent> active = new ArrayList<>();
+            for (PermittedEvent event : events) {
+                if (event.getStartAt() != null && event.getEndAt() != null
+                        && !event.getStartAt().toLocalDate().isAfter(to)
+                        && !event.getEndAt().toLocalDate().isBefore(from)) {
+                    active.add(event);
+                }
+            }
+            activeEvents[day] = active.size();
+            highImpactEvents[day] = RiskWarningService.countHighImpactEvents(active);
+            eventTypes[day] = RiskWarningService.describeEventTypes(active);
+        }
+        return new RiskCube.EventLayer(activeEvents, highImpactEvents, eventTypes);
+    }
+
+    /**
+     * 由按天计数求每天 [d-30, d+1] 窗口内的合计；daily[0] 对应起始日期前 30 天
+     */
+    private static int[] windowCounts(long[] daily, int days) {
+        long[] prefix = new long[daily.length + 1];
+        for (int i = 0; i < daily.length; i++) {
+            prefix[i + 1] = prefix[i] + daily[i];
+        }
+        int window = LOOKBACK_DAYS + LOOKAHEAD_DAYS + 1;
+        int[] counts = new int[days];
+        for (int day = 0; day < days; day++) {
+            counts[day] = (int) (prefix[day + window] - prefix[day]);
+        }
+        return counts;
+    }
+
+    private static void addDaily(long[] daily, LocalDate from, Object[] row) {
+        LocalDate date = toLocalDate(row[0]);
+        if (date == null) {
+            return;
+        }
+        long index = ChronoUnit.DAYS.between(from, date);
+        if (index >= 0 && index < daily.length) {
+            daily[(int) index] += ((Number) row[1]).longValue();
+        }
+    }
+
+    static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.toLocalDate();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        if (value instanceof java.util.Date date) {
+            return new java.sql.Date(date.getTime()).toLocalDate();
+        }
+        return value != null ? LocalDate.parse(value.toString().substring(0, 10)) : null;
+    }
+
+    static Double toDouble(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal.doubleValue();
+        }
+        return value instanceof Number number ? number.doubleValue() : null;
+    }
+
+    /**
+     * 常驻立方体及构建它的各层表版本（下标为 Layer.ordinal()）
+     */
+    private static final class Published {
+        private final RiskCube cube;
+        private final long[] versions;
+
+        private Published(RiskCube cube, long[] versions) {
+            this.cube = cube;
+            this.versions = versions;
+        }
+    }
+
+    /**
+     * 单层运行状态；dirty、knownVersion、fullRequired、pendingSince 在 synchronized (state) 内访问，
+     * data 与 builtVersion 只在 publish 中一起修改
+     */
+    private static class LayerState {
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile Object data;
+        private volatile long builtVersion = -1;
+
+        /**
+         * 待重算的目标日期下标
+         */
+        private final BitSet dirty = new BitSet();
+
+        /**
+         * 已纳入重建计划（整层或 dirty）的表版本
+         */
+        private long knownVersion = -1;
+        private boolean fullRequired;
+
+        /**
+         * 最早一条未处理变更的发现时间（毫秒），0 表示没有
+         */
+        private long pendingSince;
+
+        private volatile String lastRefreshType;
+        private volatile int lastRecomputedDays;
+        private volatile long lastFreshnessLagMillis;
+        private volatile long lastRefreshMillis;
+        private volatile long lastRefreshedAt;
+        private volatile String lastError;
+    }
+}
@@ -0,0 +1,388 @@
+package org.example.smarttransportation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.DataChangeEvent;
+import org.example.smarttransportation.dto.RiskWarningReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 当前风险预警报告缓存
+ * 以（时间桶、区域、规则指纹与版本）为键缓存 generateRiskWarning 的结果：本地近端缓存按时间桶保存最新一份报告，
+ * Redis 哈希（每个时间桶一个，字段为规则指纹与版本）在节点间共享，同一时间桶内各节点的请求只生成一次报告。
+ * 规则版本是各节点的加载序号，规则重新加载后即使内容相同也视为新规则重算报告。
+ * 当前时间桶结束前在后台提前生成下一时间桶的报告（Redis 锁保证只有一个节点生成）；
+ * 规则变化或数据变更后先返回原报告并在后台重算，只有冷启动时请求才等待生成。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class RiskReportCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskReportCache.class);
+
+    private static final String KEY_PREFIX = "risk:report:";
+
+    /**
+     * 预警报告目前只覆盖曼哈顿区
+     */
+    private static final String AREA = "manhattan";
+
+    private static final String GENERATED_AT_SUFFIX = ":at";
+
+    private static final DateTimeFormatter BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+
+    /**
+     * 生成锁的过期时间，持锁节点异常退出时由其他节点接手
+     */
+    private static final Duration LOCK_TTL = Duration.ofSeconds(30);
+
+    /**
+     * 超过该时间没有请求时不再提前生成下一时间桶
+     */
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Autowired
+    private RiskWarningService riskWarningService;
+
+    @Autowired
+    private RiskRuleService riskRuleService;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private StringRedisTemplate redisTemplate;
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "risk-report-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 近端缓存：时间桶起始时间 -> 该时间桶最新的报告
+     */
+    private final Map<LocalDateTime, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 正在生成的时间桶，并发请求等待同一次生成
+     */
+    private final Map<LocalDateTime, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final Set<LocalDateTime> queued = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 最近一次数据变更的时间，早于它生成的报告视为过期
+     */
+    private volatile long dataChangedAt;
+    private volatile long lastRequestAt;
+
+    private Timer loadTimer;
+
+    @PostConstruct
+    public void init() {
+        loadTimer = Timer.builder("risk.report.cache.load").description("风险预警报告生成耗时").register(meterRegistry);
+        Gauge.builder("risk.report.cache.entries", entries, Map::size)
+            .description("风险预警报告近端缓存条目数").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 当前时间的风险预警报告；未启用缓存时直接生成
+     */
+    public RiskWarningReport getCurrentReport() {
+        LocalDateTime now = LocalDateTime.now();
+        if (!isEnabled()) {
+            return riskWarningService.generateRiskWarning(now);
+        }
+        lastRequestAt = System.currentTimeMillis();
+        LocalDateTime bucket = bucketOf(now);
+        String fingerprint = ruleKey();
+
+        Entry entry = entries.get(bucket);
+        String result = "near";
+        if (entry == null) {
+            entry = readShared(bucket, fingerprint);
+            result = "shared";
+            if (entry != null) {
+                entries.put(bucket, entry);
+            }
+        }
+        if (entry == null) {
+            count("miss");
+            return load(bucket, fingerprint).report;
+        }
+        if (!isFresh(entry, fingerprint)) {
+            // 规则或数据已变化：先返回原报告，后台重算
+            result = "stale";
+            refreshAsync(bucket);
+        }
+        count(result);
+        return entry.report;
+    }
+
+    /**
+     * 当前时间桶临近结束时在后台生成下一时间桶的报告，并清理已过去的时间桶
+     */
+    @Scheduled(initialDelay = 5, fixedDelay = 5, timeUnit = TimeUnit.SECONDS)
+    public void refreshAhead() {
+        if (!isEnabled()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime bucket = bucketOf(now);
+        entries.keySet().removeIf(key -> key.isBefore(bucket));
+        if (System.currentTimeMillis() - lastRequestAt > IDLE_MILLIS) {
+            return;
+        }
+        LocalDateTime next = bucket.plusMinutes(bucketMinutes());
+        if (!now.isBefore(next.minusSeconds(properties.getReportCache().getRefreshAheadSeconds()))) {
+            refreshAsync(next);
+        }
+    }
+
+    /**
+     * 数据变更后当前报告过期，后台重算当前时间桶
+     */
+    @EventListener
+    public void onDataChange(DataChangeEvent event) {
+        dataChangedAt = System.currentTimeMillis();
+        if (isEnabled() && !entries.isEmpty()) {
+            refreshAsync(bucketOf(LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * 缓存状态
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.getReportCache().getEnabled());
+        stats.put("shared", isShared());
+        stats.put("bucketMinutes", bucketMinutes());
+        stats.put("buckets", entries.keySet().stream().sorted().map(BUCKET_FORMAT::format).toList());
+        stats.put("dataChangedAt", dataChangedAt);
+        stats.put("loads", loadTimer.count());
+        stats.put("loadMeanMillis", loadTimer.mean(TimeUnit.MILLISECONDS));
+        return stats;
+    }
+
+    private void refreshAsync(LocalDateTime bucket) {
+        if (queued.add(bucket)) {
+            refreshExecutor.execute(() -> {
+                queued.remove(bucket);
+                refresh(bucket);
+            });
+        }
+    }
+
+    /**
+     * 后台刷新：优先采用其他节点已生成的报告，取得锁后才自行生成
+     */
+    void refresh(LocalDateTime bucket) {
+        String fingerprint = ruleKey();
+        Entry current = entries.get(bucket);
+        if (current != null && isFresh(current, fingerprint)) {
+            return;
+        }
+        Entry shared = readShared(bucket, fingerprint);
+        if (shared != null && isFresh(shared, fingerprint)) {
+            entries.put(bucket, shared);
+            return;
+        }
+        String lockKey = KEY_PREFIX + "lock:" + AREA + ":" + BUCKET_FORMAT.format(bucket) + ":" + fingerprint;
+        if (!tryLock(lockKey)) {
+            // 其他节点正在生成，下次检查或请求时从 Redis 读取
+            return;
+        }
+        try {
+            load(bucket, fingerprint);
+        } catch (Exception e) {
+            logger.warn("风险预警报告后台生成失败: {}", e.getMessage());
+        } finally {
+            unlock(lockKey);
+        }
+    }
+
+    /**
+     * 生成报告；同一时间桶已在生成时等待那次结果
+     */
+    private Entry load(LocalDateTime bucket, String fingerprint) {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> running = loading.putIfAbsent(bucket, future);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            // 生成开始前记录时间，生成期间发生的数据变更会让这份报告被判为过期
+            long generatedAt = System.currentTimeMillis();
+            long start = System.nanoTime();
+            RiskWarningReport report = riskWarningService.generateRiskWarning(bucket);
+            loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            Entry entry = new Entry(report, fingerprint, generatedAt);
+            entries.put(bucket, entry);
+            writeShared(bucket, entry);
+            future.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(bucket, future);
+        }
+    }
+
+    private Entry readShared(LocalDateTime bucket, String fingerprint) {
+        if (!isShared()) {
+            return null;
+        }
+        try {
+            List<Object> values = redisTemplate.opsForHash().multiGet(sharedKey(bucket),
+                List.<Object>of(fingerprint, fingerprint + GENERATED_AT_SUFFIX));
+            if (values.get(0) == null) {
+                return null;
+            }
+            RiskWarningReport report = objectMapper.readValue((String) values.get(0), RiskWarningReport.class);
+            long generatedAt = values.get(1) != null ? Long.parseLong((String) values.get(1)) : 0;
+            return new Entry(report, fingerprint, generatedAt);
+        } catch (Exception e) {
+            logger.debug("读取共享风险预警报告失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeShared(LocalDateTime bucket, Entry entry) {
+        if (!isShared()) {
+            return;
+        }
+        try {
+            String key = sharedKey(bucket);
+            Map<String, String> fields = Map.of(
+                entry.fingerprint, objectMapper.writeValueAsString(entry.report),
+                entry.fingerprint + GENERATED_AT_SUFFIX, String.valueOf(entry.generatedAt));
+            redisTemplate.opsForHash().putAll(key, fields);
+            // 时间桶过去后不再读取，多保留一个时间桶供时钟略慢的节点使用
+            redisTemplate.expire(key, Duration.ofMinutes(2L * bucketMinutes()));
+        } catch (Exception e) {
+            // 共享失败不影响本地缓存
+            logger.debug("写入共享风险预警报告失败: {}", e.getMessage());
+        }
+    }
+
+    private boolean tryLock(String lockKey) {
+        if (!isShared()) {
+            return true;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, nodeId, LOCK_TTL));
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private void unlock(String lockKey) {
+        if (!isShared()) {
+            return;
+        }
+        try {
+            if (nodeId.equals(redisTemplate.opsForValue().get(lockKey))) {
+                redisTemplate.delete(lockKey);
+            }
+        } catch (Exception e) {
+            // 锁会自动过期
+        }
+    }
+
+    /**
+     * 规则键：内容指纹（含等级名称）加规则版本
+     */
+    private String ruleKey() {
+        RiskRules rules = riskRuleService.getRules();
+        return rules.getFingerprint() + ":" + rules.getVersion();
+    }
+
+    private boolean isFresh(Entry entry, String fingerprint) {
+        return entry.fingerprint.equals(fingerprint) && entry.generatedAt >= dataChangedAt;
+    }
+
+    private LocalDateTime bucketOf(LocalDateTime time) {
+        LocalDateTime minute = time.truncatedTo(ChronoUnit.MINUTES);
+        int bucketMinutes = bucketMinutes();
+        long minuteOfDay = minute.getHour() * 60L + minute.getMinute();
+        return minute.minusMinutes(minuteOfDay % bucketMinutes);
+    }
+
+    private int bucketMinutes() {
+        return Math.max(1, properties.getReportCache().getBucketMinutes());
+    }
+
+    private String sharedKey(LocalDateTime bucket) {
+        return KEY_PREFIX + AREA + ":" + BUCKET_FORMAT.format(bucket);
+    }
+
+    private boolean isEnabled() {
+        return Boolean.TRUE.equals(properties.getReportCache().getEnabled());
+    }
+
+    private boolean isShared() {
+        return redisTemplate != null && Boolean.TRUE.equals(properties.getReportCache().getShared());
+    }
+
+    private void count(String result) {
+        Counter.builder("risk.report.cache.requests").tag("result", result)
+            .description("当前风险预警报告请求数").register(meterRegistry).increment();
+    }
+
+    private static class Entry {
+        private final RiskWarningReport report;
+        private final String fingerprint;
+        private final long generatedAt;
+
+        private Entry(RiskWarningReport report, String fingerprint, long generatedAt) {
+            this.report = report;
+            this.fingerprint = fingerprint;
+            this.generatedAt = generatedAt;
+        }
+    }
+}
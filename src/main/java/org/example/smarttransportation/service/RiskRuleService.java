@@ -0,0 +1,129 @@
+package org.example.smarttransportation.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.smarttransportation.config.RiskConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 风险评分规则服务
+ * 启动时加载并编译 risk.rules.location 指向的规则文件，之后定期检查文件修改时间，变化时重新编译并整体替换；
+ * 新规则编译失败时保留原规则。风险立方体在下一次查询时按新规则重算评分，不需要重新查询数据库。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class RiskRuleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskRuleService.class);
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile RiskRules rules;
+    private volatile long lastModified;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        try {
+            load();
+        } catch (Exception e) {
+            throw new IllegalStateException("风险评分规则加载失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 当前生效的规则
+     */
+    public RiskRules getRules() {
+        return rules;
+    }
+
+    /**
+     * 规则文件有修改时重新加载
+     */
+    @Scheduled(initialDelayString = "${risk.rules.reload-interval-seconds:10}",
+        fixedDelayString = "${risk.rules.reload-interval-seconds:10}", timeUnit = TimeUnit.SECONDS)
+    public void reloadIfModified() {
+        try {
+            Resource resource = resource();
+            if (resource.lastModified() != lastModified) {
+                reload();
+            }
+        } catch (IOException e) {
+            // jar 内的规则文件无法取得修改时间，只能通过 reload 接口重新加载
+            logger.debug("无法检查风险评分规则文件修改时间: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重新加载规则，失败时保留原规则
+     *
+     * @return 是否已替换为新规则
+     */
+    public synchronized boolean reload() {
+        try {
+            load();
+            return true;
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.warn("风险评分规则重新加载失败，继续使用版本 {}: {}", rules.getVersion(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 当前规则摘要与最近一次加载错误
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = rules.describe();
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private synchronized void load() throws IOException {
+        Resource resource = resource();
+        long modified = lastModifiedOf(resource);
+        Map<String, Object> config;
+        try (InputStream input = resource.getInputStream()) {
+            config = new Yaml().load(input);
+        }
+        RiskRules compiled = RiskRules.compile(config, versions.incrementAndGet(), properties.getRules().getLocation());
+        rules = compiled;
+        lastModified = modified;
+        lastError = null;
+        logger.info("风险评分规则已加载: 版本 {}, {} 条规则, 来源 {}", compiled.getVersion(), compiled.getRuleCount(),
+            compiled.getSource());
+    }
+
+    private Resource resource() {
+        return resourceLoader.getResource(properties.getRules().getLocation());
+    }
+
+    private static long lastModifiedOf(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
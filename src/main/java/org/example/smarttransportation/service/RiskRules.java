@@ -0,0 +1,592 @@
+package org.example.smarttransportation.service;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 风险评分规则
+ * 由规则文件（risk-rules.yml）解析出的 Map 编译而来：规则按风险因子分组后展开为平行数组，
+ * 评分时按下标顺序比较、累加，不做表达式解析和对象分配，可用于批量评估上万个时间窗口。
+ * 实例不可变，热加载时整体替换。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class RiskRules {
+
+    /**
+     * 默认风险等级名称（由高到低），规则文件可用 level-names 改名；建议措施与 SOP 按等级序号匹配
+     */
+    public static final List<String> LEVELS = List.of("一级风险", "二级风险", "三级风险", "四级风险");
+
+    /**
+     * 需要预警的等级数：二级风险及以上
+     */
+    private static final int WARNING_LEVELS = 2;
+
+    /**
+     * 事故数超过该值的街道列为事故多发区域（规则文件 hotspot-street-accidents 未配置时）
+     */
+    private static final int DEFAULT_HOTSPOT_STREET_ACCIDENTS = 3;
+
+    /**
+     * 高风险区域等级的默认最低值（按等级序号）：空间网格评分与事故多发街道的事故数，
+     * 规则文件 grid-zone-levels、street-zone-levels 未配置时使用
+     */
+    private static final int[] DEFAULT_GRID_ZONE_THRESHOLDS = {60, 35};
+    private static final int[] DEFAULT_STREET_ZONE_THRESHOLDS = {11};
+
+    /**
+     * 未达到任何区域阈值时的等级序号：网格与人流密集站点为三级风险，事故多发街道为二级风险
+     */
+    private static final int GRID_ZONE_FLOOR = 2;
+    private static final int STREET_ZONE_FLOOR = 1;
+    private static final int STATION_ZONE_RANK = 2;
+
+    /**
+     * 单个因子评分上限：风险立方体按字节存放评分
+     */
+    private static final int MAX_FACTOR_SCORE = Byte.MAX_VALUE;
+
+    private static final Pattern CONDITION =
+        Pattern.compile("^\\s*([a-z_]+)\\s*(?:(>=|<=|==|!=|>|<)\\s*(-?\\d+(?:\\.\\d+)?)\\s*)?$");
+
+    /**
+     * 规则输入：position 为该输入在所属因子评分参数中的位置
+     */
+    public enum Input {
+        SNOW(RiskCube.Factor.WEATHER, 0),
+        ICING(RiskCube.Factor.WEATHER, 1),
+        SEVERE_WEATHER(RiskCube.Factor.WEATHER, 2),
+        RUSH_HOUR(RiskCube.Factor.TRAFFIC, 0),
+        ACCIDENTS(RiskCube.Factor.TRAFFIC, 1),
+        HIGH_DENSITY_STATIONS(RiskCube.Factor.TRAFFIC, 2),
+        ACCIDENT_Z(RiskCube.Factor.TRAFFIC, 3),
+        ACTIVE_EVENTS(RiskCube.Factor.EVENT, 0),
+        HIGH_IMPACT_EVENTS(RiskCube.Factor.EVENT, 1);
+
+        private final RiskCube.Factor factor;
+        private final int position;
+
+        Input(RiskCube.Factor factor, int position) {
+            this.factor = factor;
+            this.position = position;
+        }
+
+        public RiskCube.Factor getFactor() {
+            return factor;
+        }
+    }
+
+    private static final byte GT = 0;
+    private static final byte GE = 1;
+    private static final byte LT = 2;
+    private static final byte LE = 3;
+    private static final byte EQ = 4;
+    private static final byte NE = 5;
+
+    private final long version;
+    private final String source;
+    private final int ruleCount;
+    private final boolean[] rushHours;
+
+    /**
+     * 规则按因子排序后的平行数组；因子 f 的规则位于 [factorStart[f], factorStart[f + 1])
+     */
+    private final int[] factorStart;
+    private final byte[] positions;
+    private final byte[] operators;
+    private final double[] thresholds;
+    private final int[] points;
+    private final String[] names;
+
+    /**
+     * 等级名称（由高到低）与除最低一级外各级的最低评分
+     */
+    private final List<String> levelNames;
+    private final int[] levelThresholds;
+    private final int hotspotStreetAccidents;
+
+    /**
+     * 高风险区域各等级的最低网格评分与最低街道事故数，下标为等级序号
+     */
+    private final int[] gridZoneThresholds;
+    private final int[] streetZoneThresholds;
+
+    private final String fingerprint;
+
+    private RiskRules(long version, String source, boolean[] rushHours, List<CompiledRule> rules,
+                      List<String> levelNames, int[] levelThresholds, int hotspotStreetAccidents,
+                      int[] gridZoneThresholds, int[] streetZoneThresholds) {
+        this.version = version;
+        this.source = source;
+        this.rushHours = rushHours;
+        this.levelNames = levelNames;
+        this.levelThresholds = levelThresholds;
+        this.hotspotStreetAccidents = hotspotStreetAccidents;
+        this.gridZoneThresholds = gridZoneThresholds;
+        this.streetZoneThresholds = streetZoneThresholds;
+        this.ruleCount = rules.size();
+
+        rules.sort(Comparator.comparingInt(rule -> rule.input.factor.ordinal()));
+        RiskCube.Factor[] factors = RiskCube.Factor.values();
+        factorStart = new int[factors.length + 1];
+        positions = new byte[ruleCount];
+        operators = new byte[ruleCount];
+        thresholds = new double[ruleCount];
+        points = new int[ruleCount];
+        names = new String[ruleCount];
+        for (int i = 0; i < ruleCount; i++) {
+            CompiledRule rule = rules.get(i);
+            positions[i] = (byte) rule.input.position;
+            operators[i] = rule.operator;
+            thresholds[i] = rule.threshold;
+            points[i] = rule.points;
+            names[i] = rule.name;
+            factorStart[rule.input.factor.ordinal() + 1]++;
+        }
+        for (int f = 0; f < factors.length; f++) {
+            factorStart[f + 1] += factorStart[f];
+        }
+        fingerprint = computeFingerprint();
+    }
+
+    /**
+     * 编译规则文件内容
+     *
+     * @param config  规则文件解析出的 Map，包含 rush-hours、rules、levels，
+     *                可选 level-names、hotspot-street-accidents、grid-zone-levels、street-zone-levels
+     * @param version 规则版本号
+     * @param source  规则来源（用于日志与状态展示）
+     * @throws IllegalArgumentException 规则不合法
+     */
+    @SuppressWarnings("unchecked")
+    public static RiskRules compile(Map<String, Object> config, long version, String source) {
+        if (config == null) {
+            throw new IllegalArgumentException("风险规则文件为空");
+        }
+
+        boolean[] rushHours = new boolean[RiskCube.HOURS_PER_DAY];
+        Object hours = config.get("rush-hours");
+        if (!(hours instanceof List<?> hourList)) {
+            throw new IllegalArgumentException("风险规则缺少 rush-hours");
+        }
+        for (Object hour : hourList) {
+            int value = toInt(hour, "rush-hours");
+            if (value < 0 || value >= RiskCube.HOURS_PER_DAY) {
+                throw new IllegalArgumentException("高峰小时必须在 0-23 之间: " + value);
+            }
+            rushHours[value] = true;
+        }
+
+        Object ruleList = config.get("rules");
+        if (!(ruleList instanceof List<?> items) || items.isEmpty()) {
+            throw new IllegalArgumentException("风险规则缺少 rules");
+        }
+        List<CompiledRule> rules = new ArrayList<>();
+        int[] factorMax = new int[RiskCube.Factor.values().length];
+        for (Object item : items) {
+            if (!(item instanceof Map<?, ?> rule)) {
+                throw new IllegalArgumentException("规则必须包含 when 与 points: " + item);
+            }
+            CompiledRule compiled = compileRule((Map<String, Object>) rule);
+            factorMax[compiled.input.factor.ordinal()] += compiled.points;
+            rules.add(compiled);
+        }
+        for (RiskCube.Factor factor : RiskCube.Factor.values()) {
+            if (factorMax[factor.ordinal()] > MAX_FACTOR_SCORE) {
+                throw new IllegalArgumentException(factor + " 因子评分合计不能超过 " + MAX_FACTOR_SCORE);
+            }
+        }
+
+        List<String> levelNames = LEVELS;
+        Object names = config.get("level-names");
+        if (names != null) {
+            if (!(names instanceof List<?> nameList) || nameList.size() != LEVELS.size()) {
+                throw new IllegalArgumentException("level-names 必须依次列出 " + LEVELS.size() + " 个风险等级名称");
+            }
+            levelNames = nameList.stream().map(name -> String.valueOf(name).trim()).toList();
+            if (levelNames.contains("") || new HashSet<>(levelNames).size() != levelNames.size()) {
+                throw new IllegalArgumentException("风险等级名称不能为空或重复: " + levelNames);
+            }
+        }
+
+        Object levels = config.get("levels");
+        if (!(levels instanceof Map<?, ?> levelMap)) {
+            throw new IllegalArgumentException("风险规则缺少 levels");
+        }
+        int[] levelThresholds = new int[levelNames.size() - 1];
+        for (int i = 0; i < levelThresholds.length; i++) {
+            Object threshold = levelMap.get(levelNames.get(i));
+            if (threshold == null) {
+                throw new IllegalArgumentException("风险规则缺少 " + levelNames.get(i) + " 的最低评分");
+            }
+            levelThresholds[i] = toInt(threshold, levelNames.get(i));
+            if (i > 0 && levelThresholds[i] >= levelThresholds[i - 1]) {
+                throw new IllegalArgumentException("风险等级最低评分必须逐级递减");
+            }
+        }
+        for (Object name : levelMap.keySet()) {
+            if (!levelNames.subList(0, levelThresholds.length).contains(String.valueOf(name))) {
+                throw new IllegalArgumentException("未知的风险等级: " + name);
+            }
+        }
+
+        Object hotspot = config.get("hotspot-street-accidents");
+        int hotspotStreetAccidents = hotspot != null ? toInt(hotspot, "hotspot-street-accidents")
+            : DEFAULT_HOTSPOT_STREET_ACCIDENTS;
+        if (hotspotStreetAccidents < 0) {
+            throw new IllegalArgumentException("hotspot-street-accidents 不能为负: " + hotspotStreetAccidents);
+        }
+        int[] gridZoneThresholds = compileZoneLevels(config, "grid-zone-levels", levelNames,
+            DEFAULT_GRID_ZONE_THRESHOLDS);
+        int[] streetZoneThresholds = compileZoneLevels(config, "street-zone-levels", levelNames,
+            DEFAULT_STREET_ZONE_THRESHOLDS);
+        return new RiskRules(version, source, rushHours, rules, levelNames, levelThresholds, hotspotStreetAccidents,
+            gridZoneThresholds, streetZoneThresholds);
+    }
+
+    /**
+     * 编译高风险区域等级：键为等级名称，值为该等级的最低值，只能配置未达到任何阈值时所取等级之上的各级；
+     * 未配置的等级不会被取到
+     */
+    private static int[] compileZoneLevels(Map<String, Object> config, String key, List<String> levelNames,
+                                           int[] defaults) {
+        Object levels = config.get(key);
+        if (levels == null) {
+            return defaults;
+        }
+        if (!(levels instanceof Map<?, ?> levelMap) || levelMap.isEmpty()) {
+            throw new IllegalArgumentException(key + " 必须按等级名称列出最低值");
+        }
+        List<String> allowed = levelNames.subList(0, defaults.length);
+        int[] thresholds = new int[defaults.length];
+        Arrays.fill(thresholds, Integer.MAX_VALUE);
+        for (Map.Entry<?, ?> entry : levelMap.entrySet()) {
+            int rank = allowed.indexOf(String.valueOf(entry.getKey()));
+            if (rank < 0) {
+                throw new IllegalArgumentException(key + " 只能配置 " + allowed + ": " + entry.getKey());
+            }
+            thresholds[rank] = toInt(entry.getValue(), key);
+            if (thresholds[rank] < 0) {
+                throw new IllegalArgumentException(key + " 不能为负: " + thresholds[rank]);
+            }
+        }
+        int previous = Integer.MAX_VALUE;
+        for (int threshold : thresholds) {
+            if (threshold == Integer.MAX_VALUE) {
+                continue;
+            }
+            if (previous != Integer.MAX_VALUE && threshold >= previous) {
+                throw new IllegalArgumentException(key + " 最低值必须逐级递减");
+            }
+            previous = threshold;
+        }
+        return thresholds;
+    }
+
+    private static CompiledRule compileRule(Map<String, Object> rule) {
+        Object when = rule.get("when");
+        Matcher matcher = CONDITION.matcher(when != null ? when.toString() : "");
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("无法解析规则条件: " + when);
+        }
+        Input input;
+        try {
+            input = Input.valueOf(matcher.group(1).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("未知的规则输入: " + matcher.group(1));
+        }
+        byte operator = NE;
+        double threshold = 0;
+        if (matcher.group(2) != null) {
+            operator = switch (matcher.group(2)) {
+                case ">" -> GT;
+                case ">=" -> GE;
+                case "<" -> LT;
+                case "<=" -> LE;
+                case "==" -> EQ;
+                default -> NE;
+            };
+            threshold = Double.parseDouble(matcher.group(3));
+        }
+        int points = toInt(rule.get("points"), "points");
+        if (points < 0) {
+            throw new IllegalArgumentException("规则加分不能为负: " + when);
+        }
+        Object name = rule.get("name");
+        return new CompiledRule(name != null ? name.toString() : when.toString(), input, operator, threshold, points);
+    }
+
+    private static int toInt(Object value, String field) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        try {
+            return Integer.parseInt(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " 必须是整数: " + value);
+        }
+    }
+
+    public boolean isRushHour(int hour) {
+        return rushHours[hour];
+    }
+
+    /**
+     * 高峰小时合并成的连续时段，每项为 [起始小时, 结束小时)，如 7、8、9 点合并为 [7, 10)
+     * 用于把高峰过滤下推为数据库范围条件
+     */
+    public List<int[]> rushHourWindows() {
+        List<int[]> windows = new ArrayList<>();
+        int hour = 0;
+        while (hour < rushHours.length) {
+            if (!rushHours[hour]) {
+                hour++;
+                continue;
+            }
+            int start = hour;
+            while (hour < rushHours.length && rushHours[hour]) {
+                hour++;
+            }
+            windows.add(new int[] {start, hour});
+        }
+        return windows;
+    }
+
+    public int weatherScore(boolean hasSnow, boolean hasIcingRisk, boolean isSevereWeather) {
+        return evaluate(RiskCube.Factor.WEATHER, hasSnow ? 1 : 0, hasIcingRisk ? 1 : 0, isSevereWeather ? 1 : 0, 0);
+    }
+
+    /**
+     * @param accidentZ 事故数相对历史基线的 z 分数，基线不可用时为 0
+     */
+    public int trafficScore(boolean isRushHour, int accidentCount, int highDensityStations, double accidentZ) {
+        return evaluate(RiskCube.Factor.TRAFFIC, isRushHour ? 1 : 0, accidentCount, highDensityStations, accidentZ);
+    }
+
+    public int eventScore(int activeEvents, int highImpactEvents) {
+        return evaluate(RiskCube.Factor.EVENT, activeEvents, highImpactEvents, 0, 0);
+    }
+
+    /**
+     * 按因子评分：a、b、c、d 依次为该因子 Input 的 position 0、1、2、3
+     */
+    public int evaluate(RiskCube.Factor factor, double a, double b, double c, double d) {
+        int score = 0;
+        int end = factorStart[factor.ordinal() + 1];
+        for (int i = factorStart[factor.ordinal()]; i < end; i++) {
+            double value = switch (positions[i]) {
+                case 0 -> a;
+                case 1 -> b;
+                case 2 -> c;
+                default -> d;
+            };
+            if (matches(i, value)) {
+                score += points[i];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * 该输入取 value 时是否有规则加分；用于报告中的风险因子描述与专项建议，与评分使用同一组阈值
+     */
+    public boolean triggers(Input input, double value) {
+        int end = factorStart[input.factor.ordinal() + 1];
+        for (int i = factorStart[input.factor.ordinal()]; i < end; i++) {
+            if (positions[i] == input.position && points[i] > 0 && matches(i, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(int rule, double value) {
+        double threshold = thresholds[rule];
+        return switch (operators[rule]) {
+            case GT -> value > threshold;
+            case GE -> value >= threshold;
+            case LT -> value < threshold;
+            case LE -> value <= threshold;
+            case EQ -> value == threshold;
+            default -> value != threshold;
+        };
+    }
+
+    /**
+     * 综合评分对应的风险等级
+     */
+    public String level(int totalScore) {
+        return levelNames.get(levelRank(totalScore));
+    }
+
+    /**
+     * 综合评分对应的等级序号，0 为最高一级
+     */
+    public int levelRank(int totalScore) {
+        for (int i = 0; i < levelThresholds.length; i++) {
+            if (totalScore >= levelThresholds[i]) {
+                return i;
+            }
+        }
+        return levelNames.size() - 1;
+    }
+
+    /**
+     * 等级名称对应的序号，0 为最高一级，未知名称返回 -1
+     */
+    public int levelRank(String level) {
+        return levelNames.indexOf(level);
+    }
+
+    /**
+     * 是否为需要预警的等级（二级风险及以上）
+     */
+    public boolean isWarningLevel(String level) {
+        int rank = levelRank(level);
+        return rank >= 0 && rank < WARNING_LEVELS;
+    }
+
+    public List<String> getLevelNames() {
+        return levelNames;
+    }
+
+    /**
+     * 事故数超过该值的街道列为事故多发区域
+     */
+    public int getHotspotStreetAccidents() {
+        return hotspotStreetAccidents;
+    }
+
+    /**
+     * 空间网格高风险区域的等级
+     */
+    public String gridZoneLevel(double score) {
+        return zoneLevel(gridZoneThresholds, score, GRID_ZONE_FLOOR);
+    }
+
+    /**
+     * 事故多发街道的等级
+     */
+    public String streetZoneLevel(long accidentCount) {
+        return zoneLevel(streetZoneThresholds, accidentCount, STREET_ZONE_FLOOR);
+    }
+
+    /**
+     * 人流密集站点的等级
+     */
+    public String stationZoneLevel() {
+        return levelNames.get(STATION_ZONE_RANK);
+    }
+
+    private String zoneLevel(int[] zoneThresholds, double value, int floor) {
+        for (int i = 0; i < zoneThresholds.length; i++) {
+            if (value >= zoneThresholds[i]) {
+                return levelNames.get(i);
+            }
+        }
+        return levelNames.get(floor);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * 规则内容指纹，与版本号、来源无关：各节点加载同一份规则时指纹相同，可作为跨节点共享缓存的键
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 规则摘要：按因子分组的规则名称与加分、高峰小时、等级最低评分
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("version", version);
+        description.put("source", source);
+        description.put("fingerprint", fingerprint);
+        List<Integer> hours = new ArrayList<>();
+        for (int hour = 0; hour < rushHours.length; hour++) {
+            if (rushHours[hour]) {
+                hours.add(hour);
+            }
+        }
+        description.put("rushHours", hours);
+        for (RiskCube.Factor factor : RiskCube.Factor.values()) {
+            List<String> rules = new ArrayList<>();
+            for (int i = factorStart[factor.ordinal()]; i < factorStart[factor.ordinal() + 1]; i++) {
+                rules.add(names[i] + " +" + points[i]);
+            }
+            description.put(factor.name().toLowerCase(Locale.ROOT), rules);
+        }
+        Map<String, Integer> levels = new LinkedHashMap<>();
+        for (int i = 0; i < levelThresholds.length; i++) {
+            levels.put(levelNames.get(i), levelThresholds[i]);
+        }
+        description.put("levels", levels);
+        description.put("levelNames", levelNames);
+        description.put("hotspotStreetAccidents", hotspotStreetAccidents);
+        description.put("gridZoneLevels", zoneLevels(gridZoneThresholds));
+        description.put("streetZoneLevels", zoneLevels(streetZoneThresholds));
+        return description;
+    }
+
+    private Map<String, Integer> zoneLevels(int[] zoneThresholds) {
+        Map<String, Integer> levels = new LinkedHashMap<>();
+        for (int i = 0; i < zoneThresholds.length; i++) {
+            if (zoneThresholds[i] != Integer.MAX_VALUE) {
+                levels.put(levelNames.get(i), zoneThresholds[i]);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * 对编译后的数组计算 64 位 FNV-1a 哈希
+     */
+    private String computeFingerprint() {
+        StringBuilder content = new StringBuilder();
+        content.append(Arrays.toString(rushHours)).append('|').append(Arrays.toString(factorStart))
+            .append('|').append(levelNames).append('|').append(Arrays.toString(levelThresholds))
+            .append('|').append(hotspotStreetAccidents).append('|').append(Arrays.toString(gridZoneThresholds))
+            .append('|').append(Arrays.toString(streetZoneThresholds));
+        for (int i = 0; i < ruleCount; i++) {
+            content.append('|').append(names[i]).append(',').append(positions[i]).append(',').append(operators[i])
+                .append(',').append(thresholds[i]).append(',').append(points[i]);
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < content.length(); i++) {
+            hash ^= content.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return String.format("%016x", hash);
+    }
+
+    private static class CompiledRule {
+        private final String name;
+        private final Input input;
+        private final byte operator;
+        private final double threshold;
+        private final int points;
+
+        CompiledRule(String name, Input input, byte operator, double threshold, int points) {
+            this.name = name;
+            this.input = input;
+            this.operator = operator;
+            this.threshold = threshold;
+            this.points = points;
+        }
+    }
+}
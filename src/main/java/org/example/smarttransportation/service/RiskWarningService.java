@@ -1,16 +1,22 @@
 package org.example.smarttransportation.service;
 
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.ChartData;
 import org.example.smarttransportation.dto.RiskWarningReport;
 import org.example.smarttransportation.entity.*;
 import org.example.smarttransportation.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * 风险预警服务
@@ -34,9 +40,31 @@ public class RiskWarningService {
     @Autowired
     private SubwayRidershipRepository subwayRidershipRepository;
 
+    @Autowired
+    private ColumnarStore columnarStore;
+
+    @Autowired
+    private RiskCubeService riskCubeService;
+
+    @Autowired
+    private RiskAlertService riskAlertService;
+
+    @Autowired
+    private SpatialRiskService spatialRiskService;
+
+    @Autowired
+    private RiskRuleService riskRuleService;
+
+    @Autowired
+    private AccidentBaselineService accidentBaselineService;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
     /**
      * 生成风险预警通报
      * 核心算法：识别"暴雪+晚高峰+道路结冰隐患"的二级风险
+     * 风险立方体覆盖目标时间且与数据表版本一致时直接查表，否则实时查询计算
      */
     public RiskWarningReport generateRiskWarning(LocalDateTime targetDateTime) {
         RiskWarningReport report = new RiskWarningReport();
@@ -46,25 +74,168 @@ public class RiskWarningService {
         report.setAffectedArea("纽约市曼哈顿区");
 
         // 分析各类风险
-        RiskWarningReport.RiskAnalysis riskAnalysis = analyzeRisks(targetDateTime);
+        RiskCube cube = riskCubeService.lookup(targetDateTime);
+        RiskWarningReport.RiskAnalysis riskAnalysis = cube != null
+            ? analyzeRisks(cube, cube.slot(targetDateTime)) : analyzeRisks(targetDateTime);
         report.setRiskAnalysis(riskAnalysis);
 
-        // 确定整体风险等级
-        String riskLevel = determineRiskLevel(riskAnalysis);
+        // 确定整体风险等级；等级名称、建议措施与 SOP 使用同一份规则
+        RiskRules rules = riskRuleService.getRules();
+        String riskLevel = rules.level(riskAnalysis.getOverallRiskScore());
         report.setRiskLevel(riskLevel);
         report.setRiskType(determineRiskType(riskAnalysis));
 
-        // 识别高风险区域
-        List<RiskWarningReport.HighRiskZone> highRiskZones = identifyHighRiskZones(targetDateTime, riskAnalysis);
+        // 识别高风险区域：优先按空间网格评分，网格不可用时按事故街道与高客流站点
+        List<SpatialRiskIndex.Zone> gridZones = spatialRiskService.findHighRiskZones(targetDateTime.toLocalDate());
+        List<RiskWarningReport.HighRiskZone> highRiskZones;
+        if (gridZones != null) {
+            highRiskZones = gridZones.stream()
+                .map(gridZone -> gridZone(rules, gridZone, targetDateTime.toLocalDate()))
+                .collect(Collectors.toList());
+        } else {
+            highRiskZones = cube != null
+                ? identifyHighRiskZones(cube, RiskCube.dayOf(cube.slot(targetDateTime)))
+                : identifyHighRiskZones(targetDateTime);
+        }
         report.setHighRiskZones(highRiskZones);
 
         // 生成建议和SOP引用
-        report.setRecommendations(generateRecommendations(riskLevel, riskAnalysis));
-        report.setSopReference(getSopReference(riskLevel));
+        report.setRecommendations(generateRecommendations(rules, riskLevel, riskAnalysis));
+        report.setSopReference(getSopReference(rules, riskLevel));
 
         return report;
     }
 
+    /**
+     * 批量评估时间范围内各时间窗口的风险（风险热力图）
+     * 整个范围的天气、事故、客流、活动数据各查询一次并按天分桶为立方体（常驻立方体覆盖时直接复用），
+     * 各窗口取窗口内小时槽位的最高评分，并行计算。
+     *
+     * @param from      起始时间（按整点对齐）
+     * @param to        结束时间（不含）
+     * @param stepHours 时间窗口长度（小时）
+     * @return 横轴为窗口起始时间，序列依次为综合、天气、交通、活动评分
+     */
+    public ChartData evaluateRange(LocalDateTime from, LocalDateTime to, int stepHours) {
+        if (from == null || to == null || !to.isAfter(from)) {
+            throw new IllegalArgumentException("结束时间必须晚于起始时间");
+        }
+        if (stepHours < 1 || stepHours > 7 * RiskCube.HOURS_PER_DAY) {
+            throw new IllegalArgumentException("时间窗口长度必须在 1 到 168 小时之间");
+        }
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDate firstDate = start.toLocalDate();
+        LocalDate lastDate = to.minusNanos(1).toLocalDate();
+        long rangeDays = ChronoUnit.DAYS.between(firstDate, lastDate) + 1;
+        if (rangeDays > properties.getBatch().getMaxDays()) {
+            throw new IllegalArgumentException("单次评估不能超过 " + properties.getBatch().getMaxDays() + " 天");
+        }
+
+        RiskCube cube = riskCubeService.lookupRange(firstDate, lastDate);
+        if (cube == null) {
+            cube = riskCubeService.buildCube(firstDate, lastDate, false);
+        }
+        RiskCube source = cube;
+
+        int hours = (int) ChronoUnit.HOURS.between(start, to.minusNanos(1)) + 1;
+        int windows = (hours + stepHours - 1) / stepHours;
+        int firstSlot = source.slot(start);
+        double[] overall = new double[windows];
+        double[] weather = new double[windows];
+        double[] traffic = new double[windows];
+        double[] event = new double[windows];
+        IntStream.range(0, windows).parallel().forEach(window -> {
+            int begin = firstSlot + window * stepHours;
+            int end = Math.min(begin + stepHours, firstSlot + hours);
+            for (int slot = begin; slot < end; slot++) {
+                overall[window] = Math.max(overall[window], source.overallScore(slot));
+                weather[window] = Math.max(weather[window], source.score(slot, RiskCube.Factor.WEATHER));
+                traffic[window] = Math.max(traffic[window], source.score(slot, RiskCube.Factor.TRAFFIC));
+                event[window] = Math.max(event[window], source.score(slot, RiskCube.Factor.EVENT));
+            }
+        });
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+        List<String> labels = new ArrayList<>(windows);
+        for (int window = 0; window < windows; window++) {
+            labels.add(start.plusHours((long) window * stepHours).format(formatter));
+        }
+        ChartData chart = new ChartData("风险热力图", "heatmap");
+        chart.setLabels(labels);
+        chart.getSeries().add(new ChartData.Series("综合", toList(overall)));
+        chart.getSeries().add(new ChartData.Series("天气", toList(weather)));
+        chart.getSeries().add(new ChartData.Series("交通", toList(traffic)));
+        chart.getSeries().add(new ChartData.Series("活动", toList(event)));
+        return chart;
+    }
+
+    /**
+     * 分时段事故与客流分布：[startDate, endDate] 内按小时各做一次聚合，
+     * 再按评分规则的高峰时段汇总，不加载实体、不在内存中解析时间
+     *
+     * @return chart 为 24 小时的事故数与客流量，rushHours 为各高峰时段合计，unknownTimeAccidents 为发生时间未知的事故数
+     */
+    public Map<String, Object> getHourlyProfile(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("结束日期不能早于起始日期");
+        }
+        double[] accidents = new double[RiskCube.HOURS_PER_DAY];
+        long unknownTimeAccidents = 0;
+        for (Object[] row : trafficAccidentRepository.countAccidentsByHour(startDate, endDate)) {
+            long count = ((Number) row[1]).longValue();
+            if (row[0] == null) {
+                unknownTimeAccidents += count;
+            } else {
+                accidents[((Number) row[0]).intValue()] += count;
+            }
+        }
+        double[] ridership = new double[RiskCube.HOURS_PER_DAY];
+        for (Object[] row : subwayRidershipRepository.sumRidershipByHour(startDate.atStartOfDay(),
+                endDate.plusDays(1).atStartOfDay())) {
+            if (row[0] != null && row[1] != null) {
+                ridership[((Number) row[0]).intValue()] += ((Number) row[1]).doubleValue();
+            }
+        }
+
+        List<Map<String, Object>> rushHours = new ArrayList<>();
+        for (int[] window : riskRuleService.getRules().rushHourWindows()) {
+            double windowAccidents = 0;
+            double windowRidership = 0;
+            for (int hour = window[0]; hour < window[1]; hour++) {
+                windowAccidents += accidents[hour];
+                windowRidership += ridership[hour];
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("window", String.format("%02d:00-%02d:00", window[0], window[1]));
+            item.put("accidents", (long) windowAccidents);
+            item.put("ridership", (long) windowRidership);
+            rushHours.add(item);
+        }
+
+        List<String> labels = new ArrayList<>(RiskCube.HOURS_PER_DAY);
+        for (int hour = 0; hour < RiskCube.HOURS_PER_DAY; hour++) {
+            labels.add(String.format("%02d:00", hour));
+        }
+        ChartData chart = new ChartData("分时段事故与客流", "bar");
+        chart.setLabels(labels);
+        chart.getSeries().add(new ChartData.Series("事故数", toList(accidents)));
+        chart.getSeries().add(new ChartData.Series("客流量", toList(ridership)));
+
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("chart", chart);
+        profile.put("rushHours", rushHours);
+        profile.put("unknownTimeAccidents", unknownTimeAccidents);
+        return profile;
+    }
+
+    private static List<Double> toList(double[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (double value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
     /**
      * 分析各类风险
      */
@@ -83,6 +254,38 @@ public class RiskWarningService {
         RiskWarningReport.EventRisk eventRisk = analyzeEventRisk(targetDateTime);
         analysis.setEventRisk(eventRisk);
 
+        return completeAnalysis(analysis);
+    }
+
+    /**
+     * 从风险立方体读取各类风险（与实时计算使用相同的评分规则）
+     */
+    private RiskWarningReport.RiskAnalysis analyzeRisks(RiskCube cube, int slot) {
+        int day = RiskCube.dayOf(slot);
+        RiskWarningReport.RiskAnalysis analysis = new RiskWarningReport.RiskAnalysis();
+
+        RiskCube.WeatherLayer weather = cube.getWeather();
+        analysis.setWeatherRisk(weather.isAvailable(day)
+            ? buildWeatherRisk(weather.hasSnow(day), weather.hasIcingRisk(day), weather.isSevereWeather(day),
+                weather.getDescription(day))
+            : unavailableWeatherRisk());
+        analysis.setTrafficRisk(buildTrafficRisk(RiskCube.hourOf(slot), cube.getAccidents().getCount(day),
+            cube.getRidership().getCount(day), cube.getBaseline() != null ? cube.getExpectedAccidents(day) : null));
+        RiskCube.EventLayer events = cube.getEvents();
+        analysis.setEventRisk(buildEventRisk(events.getActiveEvents(day), events.getHighImpactEvents(day),
+            events.getEventTypes(day)));
+
+        return completeAnalysis(analysis);
+    }
+
+    /**
+     * 计算综合风险评分并生成风险因子描述
+     */
+    private RiskWarningReport.RiskAnalysis completeAnalysis(RiskWarningReport.RiskAnalysis analysis) {
+        RiskWarningReport.WeatherRisk weatherRisk = analysis.getWeatherRisk();
+        RiskWarningReport.TrafficRisk trafficRisk = analysis.getTrafficRisk();
+        RiskWarningReport.EventRisk eventRisk = analysis.getEventRisk();
+
         // 计算综合风险评分
         int overallScore = weatherRisk.getRiskScore() + trafficRisk.getRiskScore() + eventRisk.getRiskScore();
         analysis.setOverallRiskScore(overallScore);
@@ -97,73 +300,93 @@ public class RiskWarningService {
      * 分析天气风险
      */
     private RiskWarningReport.WeatherRisk analyzeWeatherRisk(LocalDateTime targetDateTime) {
-        RiskWarningReport.WeatherRisk weatherRisk = new RiskWarningReport.WeatherRisk();
-
         // 查询目标时间的天气数据 (修复：将LocalDateTime转换为LocalDate)
         Optional<WeatherData> weatherOpt = weatherDataRepository.findByDate(targetDateTime.toLocalDate());
 
         if (weatherOpt.isPresent()) {
             WeatherData weather = weatherOpt.get();
-
-            // 检查是否有降雪
-            boolean hasSnow = weather.getSnow() != null && weather.getSnow().doubleValue() > 0;
-            weatherRisk.setHasSnow(hasSnow);
-
-            // 检查结冰风险
-            boolean hasIcingRisk = weather.hasIcingRisk();
-            weatherRisk.setHasIcingRisk(hasIcingRisk);
-
-            // 检查恶劣天气
-            boolean isSevereWeather = weather.isSevereWeather();
-            weatherRisk.setSevereWeather(isSevereWeather);
-
-            // 设置天气描述
-            weatherRisk.setWeatherDescription(weather.getWeatherDescription());
-
-            // 计算天气风险评分
-            int score = 0;
-            if (hasSnow) {
-                score += 30;
-            }
-            if (hasIcingRisk) {
-                score += 25;
-            }
-            if (isSevereWeather) {
-                score += 20;
-            }
-
-            weatherRisk.setRiskScore(score);
-        } else {
-            weatherRisk.setWeatherDescription("天气数据不可用");
-            weatherRisk.setRiskScore(0);
+            return buildWeatherRisk(hasSnow(weather), weather.hasIcingRisk(), weather.isSevereWeather(),
+                weather.getWeatherDescription());
         }
+        return unavailableWeatherRisk();
+    }
 
+    private RiskWarningReport.WeatherRisk buildWeatherRisk(boolean hasSnow, boolean hasIcingRisk,
+                                                          boolean isSevereWeather, String description) {
+        RiskWarningReport.WeatherRisk weatherRisk = new RiskWarningReport.WeatherRisk();
+        weatherRisk.setHasSnow(hasSnow);
+        weatherRisk.setHasIcingRisk(hasIcingRisk);
+        weatherRisk.setSevereWeather(isSevereWeather);
+        weatherRisk.setWeatherDescription(description);
+        weatherRisk.setRiskScore(riskRuleService.getRules().weatherScore(hasSnow, hasIcingRisk, isSevereWeather));
         return weatherRisk;
     }
 
+    private RiskWarningReport.WeatherRisk unavailableWeatherRisk() {
+        RiskWarningReport.WeatherRisk weatherRisk = new RiskWarningReport.WeatherRisk();
+        weatherRisk.setWeatherDescription("天气数据不可用");
+        weatherRisk.setRiskScore(0);
+        return weatherRisk;
+    }
+
+    /**
+     * 是否有降雪
+     */
+    static boolean hasSnow(WeatherData weather) {
+        return weather.getSnow() != null && weather.getSnow().doubleValue() > 0;
+    }
+
     /**
      * 分析交通风险
      */
     private RiskWarningReport.TrafficRisk analyzeTrafficRisk(LocalDateTime targetDateTime) {
-        RiskWarningReport.TrafficRisk trafficRisk = new RiskWarningReport.TrafficRisk();
-
-        // 判断是否为高峰时段
-        int hour = targetDateTime.getHour();
-        boolean isRushHour = (hour >= 7 && hour <= 9) || (hour >= 17 && hour <= 19);
-        trafficRisk.setRushHour(isRushHour);
-
         // 查询历史事故数据（同一时段）(修复：将LocalDateTime转换为LocalDate)
         LocalDate startDate = targetDateTime.toLocalDate().minusDays(30);
         LocalDate endDate = targetDateTime.toLocalDate().plusDays(1);
 
-        List<TrafficAccident> accidents = trafficAccidentRepository.findByDateRange(startDate, endDate);
-        int accidentCount = accidents.size();
-        trafficRisk.setAccidentCount(accidentCount);
+        // 列式内存表可用时只做计数扫描，不加载实体
+        ColumnarResult accidentResult = columnarStore.query(ColumnarQuery.from("nyc_traffic_accidents")
+            .where(ColumnarQuery.dateRange("crash_date", startDate, endDate)).count());
+        int accidentCount = accidentResult != null ? (int) accidentResult.getLong(0, 0)
+            : (int) trafficAccidentRepository.countByDateRange(startDate, endDate);
 
         // 查询地铁高密度站点
-        List<SubwayRidership> highDensityStations = subwayRidershipRepository
-            .findHighDensityStations(startDate, endDate, 500);
-        trafficRisk.setHighDensityStations(highDensityStations.size());
+        ColumnarResult stationResult = columnarStore.query(ColumnarQuery.from("subway_ridership")
+            .where(ColumnarQuery.dateRange("transit_timestamp", startDate, endDate))
+            .where(ColumnarQuery.atLeast("ridership", 500)).count());
+        int highDensityStations = stationResult != null ? (int) stationResult.getLong(0, 0)
+            : (int) subwayRidershipRepository.countHighDensityRecords(
+                startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay(), 500);
+
+        // 同一窗口按周内小时累加的历史期望事故数
+        AccidentBaseline baseline = accidentBaselineService.getBaseline();
+        Double expectedAccidents = baseline != null ? baseline.expectedCount(startDate, endDate) : null;
+
+        return buildTrafficRisk(targetDateTime.getHour(), accidentCount, highDensityStations, expectedAccidents);
+    }
+
+    /**
+     * @param expectedAccidents 事故统计窗口的基线期望事故数，基线不可用时为 null（z 分数按 0 评分）
+     */
+    private RiskWarningReport.TrafficRisk buildTrafficRisk(int hour, int accidentCount, int highDensityStations,
+                                                          Double expectedAccidents) {
+        RiskWarningReport.TrafficRisk trafficRisk = new RiskWarningReport.TrafficRisk();
+        RiskRules rules = riskRuleService.getRules();
+
+        // 判断是否为高峰时段
+        boolean isRushHour = rules.isRushHour(hour);
+        trafficRisk.setRushHour(isRushHour);
+        trafficRisk.setAccidentCount(accidentCount);
+        trafficRisk.setHighDensityStations(highDensityStations);
+
+        // 事故数相对历史基线的偏离
+        double accidentZ = 0;
+        if (expectedAccidents != null) {
+            accidentZ = AccidentBaseline.zScore(accidentCount, expectedAccidents);
+            trafficRisk.setExpectedAccidents(expectedAccidents);
+            trafficRisk.setAccidentZScore(accidentZ);
+            trafficRisk.setAccidentTailProbability(AccidentBaseline.poissonUpperTail(accidentCount, expectedAccidents));
+        }
 
         // 设置交通模式描述
         if (isRushHour) {
@@ -173,18 +396,7 @@ public class RiskWarningService {
         }
 
         // 计算交通风险评分
-        int score = 0;
-        if (isRushHour) {
-            score += 25;
-        }
-        if (accidentCount > 10) {
-            score += 20;
-        }
-        if (highDensityStations.size() > 5) {
-            score += 15;
-        }
-
-        trafficRisk.setRiskScore(score);
+        trafficRisk.setRiskScore(rules.trafficScore(isRushHour, accidentCount, highDensityStations, accidentZ));
 
         return trafficRisk;
     }
@@ -193,24 +405,40 @@ public class RiskWarningService {
      * 分析事件风险
      */
     private RiskWarningReport.EventRisk analyzeEventRisk(LocalDateTime targetDateTime) {
-        RiskWarningReport.EventRisk eventRisk = new RiskWarningReport.EventRisk();
-
         // 查询活跃事件 (修复：将LocalDateTime转换为LocalDate)
         LocalDate startTime = targetDateTime.toLocalDate().minusDays(1);
         LocalDate endTime = targetDateTime.toLocalDate().plusDays(1);
 
         List<PermittedEvent> activeEvents = permittedEventRepository
             .findByBoroughAndDateRange("Manhattan", startTime, endTime);
-        eventRisk.setActiveEvents(activeEvents.size());
 
-        // 统计高影响事件
-        long highImpactCount = activeEvents.stream()
+        return buildEventRisk(activeEvents.size(), countHighImpactEvents(activeEvents),
+            describeEventTypes(activeEvents));
+    }
+
+    private RiskWarningReport.EventRisk buildEventRisk(int activeEvents, int highImpactEvents, String eventTypes) {
+        RiskWarningReport.EventRisk eventRisk = new RiskWarningReport.EventRisk();
+        eventRisk.setActiveEvents(activeEvents);
+        eventRisk.setHighImpactEvents(highImpactEvents);
+        eventRisk.setEventTypes(eventTypes);
+        eventRisk.setRiskScore(riskRuleService.getRules().eventScore(activeEvents, highImpactEvents));
+        return eventRisk;
+    }
+
+    /**
+     * 统计高影响事件
+     */
+    static int countHighImpactEvents(List<PermittedEvent> events) {
+        return (int) events.stream()
             .filter(event -> "高影响".equals(event.getImpactLevel()))
             .count();
-        eventRisk.setHighImpactEvents((int) highImpactCount);
+    }
 
-        // 统计事件类型
-        Map<String, Long> eventTypeCount = activeEvents.stream()
+    /**
+     * 统计事件类型，形如 "Parade(2), Street Event(1)"
+     */
+    static String describeEventTypes(List<PermittedEvent> events) {
+        Map<String, Long> eventTypeCount = events.stream()
             .collect(Collectors.groupingBy(
                 PermittedEvent::getEventType,
                 Collectors.counting()
@@ -219,37 +447,7 @@ public class RiskWarningService {
         String eventTypes = eventTypeCount.entrySet().stream()
             .map(entry -> entry.getKey() + "(" + entry.getValue() + ")")
             .collect(Collectors.joining(", "));
-        eventRisk.setEventTypes(eventTypes.isEmpty() ? "无活跃事件" : eventTypes);
-
-        // 计算事件风险评分
-        int score = 0;
-        if (activeEvents.size() > 3) {
-            score += 15;
-        }
-        if (highImpactCount > 0) {
-            score += 20;
-        }
-
-        eventRisk.setRiskScore(score);
-
-        return eventRisk;
-    }
-
-    /**
-     * 确定风险等级
-     */
-    private String determineRiskLevel(RiskWarningReport.RiskAnalysis analysis) {
-        int totalScore = analysis.getOverallRiskScore();
-
-        if (totalScore >= 70) {
-            return "一级风险"; // 高风险
-        } else if (totalScore >= 50) {
-            return "二级风险"; // 中高风险
-        } else if (totalScore >= 30) {
-            return "三级风险"; // 中等风险
-        } else {
-            return "四级风险"; // 低风险
-        }
+        return eventTypes.isEmpty() ? "无活跃事件" : eventTypes;
     }
 
     /**
@@ -283,89 +481,196 @@ public class RiskWarningService {
     /**
      * 识别高风险区域
      */
-    private List<RiskWarningReport.HighRiskZone> identifyHighRiskZones(
-            LocalDateTime targetDateTime, RiskWarningReport.RiskAnalysis analysis) {
-
+    private List<RiskWarningReport.HighRiskZone> identifyHighRiskZones(LocalDateTime targetDateTime) {
         List<RiskWarningReport.HighRiskZone> zones = new ArrayList<>();
 
         // 基于历史事故数据识别事故多发区域 (修复：将LocalDateTime转换为LocalDate)
         LocalDate startDate = targetDateTime.toLocalDate().minusDays(30);
         LocalDate endDate = targetDateTime.toLocalDate().plusDays(1);
 
+        // 取前5个事故多发街道
+        RiskRules rules = riskRuleService.getRules();
+        int hotspotStreetAccidents = rules.getHotspotStreetAccidents();
         List<Object[]> accidentsByStreet = trafficAccidentRepository
-            .countAccidentsByStreet(startDate, endDate);
+            .countAccidentsByStreet(startDate, endDate, PageRequest.of(0, 5));
 
-        // 取前5个事故多发街道
-        for (int i = 0; i < Math.min(5, accidentsByStreet.size()); i++) {
-            Object[] result = accidentsByStreet.get(i);
+        for (Object[] result : accidentsByStreet) {
             String streetName = (String) result[0];
             Long accidentCount = (Long) result[1];
 
-            if (accidentCount > 3) { // 只考虑事故数量较多的街道
-                RiskWarningReport.HighRiskZone zone = new RiskWarningReport.HighRiskZone();
-                zone.setZoneName("事故多发区域");
-                zone.setLocation(streetName);
-                zone.setRiskLevel(accidentCount > 10 ? "极高风险" : "高风险");
-                zone.setRiskFactors("历史事故频发，天气条件恶化");
-
-                List<String> suggestions = Arrays.asList(
-                    "增派交警巡逻",
-                    "设置临时警示标志",
-                    "加强路面除雪除冰",
-                    "限制车辆通行速度"
-                );
-                zone.setDeploymentSuggestions(suggestions);
-
-                zones.add(zone);
+            if (accidentCount > hotspotStreetAccidents) { // 只考虑事故数量较多的街道
+                zones.add(accidentZone(rules, streetName, accidentCount));
             }
         }
 
-        // 基于地铁高密度站点识别人流密集区域
-        List<SubwayRidership> highDensityStations = subwayRidershipRepository
-            .findHighDensityStations(startDate, endDate, 800);
+        // 基于地铁高密度站点识别人流密集区域（只取客流最高的前3条）
+        List<Object[]> highDensityStations = subwayRidershipRepository.findTopRidershipStations(
+            startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay(), 800, PageRequest.of(0, 3));
 
-        for (SubwayRidership station : highDensityStations.subList(0, Math.min(3, highDensityStations.size()))) {
-            RiskWarningReport.HighRiskZone zone = new RiskWarningReport.HighRiskZone();
-            zone.setZoneName("人流密集区域");
-            zone.setLocation(station.getStationComplex() + "地铁站周边");
-            zone.setRiskLevel("中高风险");
-            zone.setRiskFactors("人流密集，恶劣天气下疏散困难");
-            zone.setLatitude(station.getLatitude() != null ? station.getLatitude().doubleValue() : null);
-            zone.setLongitude(station.getLongitude() != null ? station.getLongitude().doubleValue() : null);
+        for (Object[] station : highDensityStations) {
+            BigDecimal latitude = (BigDecimal) station[1];
+            BigDecimal longitude = (BigDecimal) station[2];
+            zones.add(stationZone(rules, String.valueOf(station[0]),
+                latitude != null ? latitude.doubleValue() : null,
+                longitude != null ? longitude.doubleValue() : null));
+        }
 
-            List<String> suggestions = Arrays.asList(
-                "增加地面引导人员",
-                "开放临时避难场所",
-                "加强地铁站周边除雪",
-                "准备应急疏散预案"
-            );
-            zone.setDeploymentSuggestions(suggestions);
+        return zones;
+    }
 
-            zones.add(zone);
+    /**
+     * 从风险立方体读取当天的事故多发街道与人流密集站点
+     */
+    private List<RiskWarningReport.HighRiskZone> identifyHighRiskZones(RiskCube cube, int day) {
+        List<RiskWarningReport.HighRiskZone> zones = new ArrayList<>();
+        RiskRules rules = cube.getRules();
+        for (RiskCube.Zone street : cube.getAccidents().getStreets(day)) {
+            if (street.getMetric() > rules.getHotspotStreetAccidents()) {
+                zones.add(accidentZone(rules, street.getLocation(), street.getMetric()));
+            }
+        }
+        for (RiskCube.Zone station : cube.getRidership().getStations(day)) {
+            zones.add(stationZone(rules, station.getLocation(), station.getLatitude(), station.getLongitude()));
         }
-
         return zones;
     }
 
+    /**
+     * 空间网格高风险区域：名称与处置建议取决于评分贡献最大的数据源，坐标为网格内记录的质心
+     */
+    private RiskWarningReport.HighRiskZone gridZone(RiskRules rules, SpatialRiskIndex.Zone gridZone, LocalDate date) {
+        RiskWarningReport.HighRiskZone zone = new RiskWarningReport.HighRiskZone();
+        String location = gridZone.getLabel() != null ? gridZone.getLabel()
+            : String.format("(%.4f, %.4f)", gridZone.getLatitude(), gridZone.getLongitude());
+        zone.setLocation(location + "周边");
+        zone.setLatitude(gridZone.getLatitude());
+        zone.setLongitude(gridZone.getLongitude());
+        zone.setRiskLevel(rules.gridZoneLevel(gridZone.getScore()));
+
+        List<String> factors = new ArrayList<>();
+        long accidents = gridZone.getMetric(SpatialRiskIndex.Source.ACCIDENTS);
+        long ridership = gridZone.getMetric(SpatialRiskIndex.Source.RIDERSHIP);
+        long events = gridZone.getMetric(SpatialRiskIndex.Source.EVENTS);
+        long complaints = gridZone.getMetric(SpatialRiskIndex.Source.COMPLAINTS);
+        if (accidents > 0) {
+            factors.add("近30天事故" + accidents + "起");
+            String deviation = baselineDeviation(gridZone.getCell(), accidents, date);
+            if (deviation != null) {
+                factors.add(deviation);
+            }
+        }
+        if (ridership > 0) {
+            factors.add("高客流时段" + ridership + "个");
+        }
+        if (events > 0) {
+            factors.add("前后一天活动" + events + "场次");
+        }
+        if (complaints > 0) {
+            factors.add("近30天投诉" + complaints + "件");
+        }
+        zone.setRiskFactors(String.join("，", factors));
+
+        switch (gridZone.getDominantSource()) {
+            case RIDERSHIP -> {
+                zone.setZoneName("人流密集区域");
+                zone.setDeploymentSuggestions(Arrays.asList("增加地面引导人员", "开放临时避难场所",
+                    "加强地铁站周边除雪", "准备应急疏散预案"));
+            }
+            case EVENTS -> {
+                zone.setZoneName("活动聚集区域");
+                zone.setDeploymentSuggestions(Arrays.asList("协调活动主办方调整时间", "设置临时交通疏导点",
+                    "提前发布绕行提示"));
+            }
+            case COMPLAINTS -> {
+                zone.setZoneName("投诉集中区域");
+                zone.setDeploymentSuggestions(Arrays.asList("核查投诉集中路段的道路状况", "加强路面除雪除冰",
+                    "安排巡查人员"));
+            }
+            default -> {
+                zone.setZoneName("事故多发区域");
+                zone.setDeploymentSuggestions(Arrays.asList("增派交警巡逻", "设置临时警示标志",
+                    "加强路面除雪除冰", "限制车辆通行速度"));
+            }
+        }
+        return zone;
+    }
+
+    /**
+     * 网格事故数显著高于该网格历史基线时的说明，基线不可用或不显著时返回 null；
+     * 期望只按统计窗口内有基线数据的天数计算
+     */
+    private String baselineDeviation(long cell, long accidents, LocalDate date) {
+        AccidentBaseline baseline = accidentBaselineService.getBaseline();
+        if (baseline == null || baseline.getGrid() != spatialRiskService.getGrid()) {
+            return null;
+        }
+        SpatialRiskIndex.Source source = SpatialRiskIndex.Source.ACCIDENTS;
+        int days = baseline.coveredDays(date.minusDays(source.getLookbackDays()), date.plusDays(source.getLookaheadDays()));
+        double expected = baseline.expectedInCell(cell, days);
+        double significance = properties.getBaseline().getZoneSignificance();
+        if (expected <= 0 || AccidentBaseline.poissonUpperTail(accidents, expected) >= significance) {
+            return null;
+        }
+        return String.format("事故数为该区域历史基线的%.1f倍", accidents / expected);
+    }
+
+    private RiskWarningReport.HighRiskZone accidentZone(RiskRules rules, String streetName, long accidentCount) {
+        RiskWarningReport.HighRiskZone zone = new RiskWarningReport.HighRiskZone();
+        zone.setZoneName("事故多发区域");
+        zone.setLocation(streetName);
+        zone.setRiskLevel(rules.streetZoneLevel(accidentCount));
+        zone.setRiskFactors("历史事故频发，天气条件恶化");
+
+        List<String> suggestions = Arrays.asList(
+            "增派交警巡逻",
+            "设置临时警示标志",
+            "加强路面除雪除冰",
+            "限制车辆通行速度"
+        );
+        zone.setDeploymentSuggestions(suggestions);
+        return zone;
+    }
+
+    private RiskWarningReport.HighRiskZone stationZone(RiskRules rules, String stationName,
+                                                       Double latitude, Double longitude) {
+        RiskWarningReport.HighRiskZone zone = new RiskWarningReport.HighRiskZone();
+        zone.setZoneName("人流密集区域");
+        zone.setLocation(stationName + "地铁站周边");
+        zone.setRiskLevel(rules.stationZoneLevel());
+        zone.setRiskFactors("人流密集，恶劣天气下疏散困难");
+        zone.setLatitude(latitude);
+        zone.setLongitude(longitude);
+
+        List<String> suggestions = Arrays.asList(
+            "增加地面引导人员",
+            "开放临时避难场所",
+            "加强地铁站周边除雪",
+            "准备应急疏散预案"
+        );
+        zone.setDeploymentSuggestions(suggestions);
+        return zone;
+    }
+
     /**
      * 生成建议措施
      */
-    private List<String> generateRecommendations(String riskLevel, RiskWarningReport.RiskAnalysis analysis) {
+    private List<String> generateRecommendations(RiskRules rules, String riskLevel,
+                                                 RiskWarningReport.RiskAnalysis analysis) {
         List<String> recommendations = new ArrayList<>();
 
-        // 基于风险等级的通用建议
-        switch (riskLevel) {
-            case "一级风险":
+        // 基于风险等级的通用建议（按等级序号，0 为最高一级）
+        switch (rules.levelRank(riskLevel)) {
+            case 0:
                 recommendations.add("立即启动应急预案，全面部署应急资源");
                 recommendations.add("发布交通管制通告，限制非必要车辆出行");
                 recommendations.add("开放所有应急避难场所");
                 break;
-            case "二级风险":
+            case 1:
                 recommendations.add("启动二级应急响应，重点区域部署警力");
                 recommendations.add("发布交通安全提醒，建议市民谨慎出行");
                 recommendations.add("加强重点路段巡逻和监控");
                 break;
-            case "三级风险":
+            case 2:
                 recommendations.add("加强交通监控，做好应急准备");
                 recommendations.add("向市民发布出行提醒");
                 break;
@@ -390,7 +695,7 @@ public class RiskWarningService {
             recommendations.add("优化信号灯配时，提高通行效率");
         }
 
-        if (analysis.getEventRisk().getHighImpactEvents() > 0) {
+        if (rules.triggers(RiskRules.Input.HIGH_IMPACT_EVENTS, analysis.getEventRisk().getHighImpactEvents())) {
             recommendations.add("协调活动主办方，做好人流疏导");
             recommendations.add("制定活动期间应急疏散方案");
         }
@@ -399,27 +704,28 @@ public class RiskWarningService {
     }
 
     /**
-     * 获取SOP引用
+     * 获取SOP引用：编号按等级序号，名称取规则中的等级名称
      */
-    private String getSopReference(String riskLevel) {
-        switch (riskLevel) {
-            case "一级风险":
-                return "SOP-PW-L1: 一级风险应急处置标准作业程序";
-            case "二级风险":
-                return "SOP-PW-L2: 二级风险预警处置标准作业程序";
-            case "三级风险":
-                return "SOP-PW-L3: 三级风险监控标准作业程序";
+    private String getSopReference(RiskRules rules, String riskLevel) {
+        switch (rules.levelRank(riskLevel)) {
+            case 0:
+                return "SOP-PW-L1: " + riskLevel + "应急处置标准作业程序";
+            case 1:
+                return "SOP-PW-L2: " + riskLevel + "预警处置标准作业程序";
+            case 2:
+                return "SOP-PW-L3: " + riskLevel + "监控标准作业程序";
             default:
                 return "SOP-PW-L4: 常规监控标准作业程序";
         }
     }
 
     /**
-     * 生成风险因子描述
+     * 生成风险因子描述；计数类因子按规则文件中的阈值判断，与评分一致
      */
     private String generateRiskFactors(RiskWarningReport.WeatherRisk weather,
                                      RiskWarningReport.TrafficRisk traffic,
                                      RiskWarningReport.EventRisk event) {
+        RiskRules rules = riskRuleService.getRules();
         List<String> factors = new ArrayList<>();
 
         if (weather.isHasSnow()) {
@@ -435,17 +741,18 @@ public class RiskWarningService {
         if (traffic.isRushHour()) {
             factors.add("交通高峰时段");
         }
-        if (traffic.getAccidentCount() > 10) {
-            factors.add("历史事故频发");
+        if (traffic.getAccidentZScore() != null
+                && rules.triggers(RiskRules.Input.ACCIDENT_Z, traffic.getAccidentZScore())) {
+            factors.add("事故数显著高于历史基线");
         }
-        if (traffic.getHighDensityStations() > 5) {
+        if (rules.triggers(RiskRules.Input.HIGH_DENSITY_STATIONS, traffic.getHighDensityStations())) {
             factors.add("人流密集");
         }
 
-        if (event.getActiveEvents() > 3) {
+        if (rules.triggers(RiskRules.Input.ACTIVE_EVENTS, event.getActiveEvents())) {
             factors.add("多个活动同时进行");
         }
-        if (event.getHighImpactEvents() > 0) {
+        if (rules.triggers(RiskRules.Input.HIGH_IMPACT_EVENTS, event.getHighImpactEvents())) {
             factors.add("高影响事件");
         }
 
@@ -464,6 +771,7 @@ public class RiskWarningService {
     /**
      * 扫描风险并生成结构化通报对象
      * 实现场景一：事前·主动风险预警 (Proactive Risk Warning)
+     * 报告保存到数据库（与该时间窗口上一份报告相同时去重），风险等级变化时推送给订阅的大屏
      *
      * @param targetDateTime 目标时间
      * @return 风险预警报告
@@ -472,10 +780,8 @@ public class RiskWarningService {
         // 生成风险预警报告
         RiskWarningReport report = generateRiskWarning(targetDateTime);
 
-        // 可以在这里添加额外的处理逻辑，例如：
-        // 1. 将报告保存到数据库
-        // 2. 发送通知给相关人员
-        // 3. 触发其他服务
+        // 保存并通知
+        riskAlertService.record(targetDateTime, report);
 
         return report;
     }
@@ -487,13 +793,16 @@ public class RiskWarningService {
      * @return 是否存在风险
      */
     public boolean hasRiskConditions(LocalDateTime targetDateTime) {
-        // 分析各类风险
-        RiskWarningReport.RiskAnalysis riskAnalysis = analyzeRisks(targetDateTime);
+        // 风险立方体可用时直接读取预计算的综合评分，否则实时分析各类风险
+        RiskCube cube = riskCubeService.lookup(targetDateTime);
+        int overallScore = cube != null ? cube.overallScore(cube.slot(targetDateTime))
+            : analyzeRisks(targetDateTime).getOverallRiskScore();
 
         // 确定整体风险等级
-        String riskLevel = determineRiskLevel(riskAnalysis);
+        RiskRules rules = riskRuleService.getRules();
+        String riskLevel = rules.level(overallScore);
 
         // 如果风险等级为二级及以上，则认为存在风险
-        return "一级风险".equals(riskLevel) || "二级风险".equals(riskLevel);
+        return rules.isWarningLevel(riskLevel);
     }
 }
\ No newline at end of file
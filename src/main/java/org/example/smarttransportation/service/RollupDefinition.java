@@ -0,0 +1,213 @@
+package org.example.smarttransportation.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 预聚合汇总表定义
+ * 描述汇总表的维度（汇总表字段 <- 原始表表达式）和度量（原始表字段求和），
+ * 并据此生成建表、构建/增量刷新 SQL，以及查询改写时原始表达式到汇总表表达式的映射。
+ *
+ * 每张汇总表都有 row_count 字段记录对应的原始行数，COUNT(*) 改写为 SUM(row_count)。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class RollupDefinition {
+
+    static final String ROW_COUNT_COLUMN = "row_count";
+
+    private final String name;
+    private final String sourceTable;
+    private final String sourceTimeColumn;
+    private final String timeColumn;
+    private final List<Dimension> dimensions = new ArrayList<>();
+    private final List<String> measures = new ArrayList<>();
+    private final List<String> nonNullColumns = new ArrayList<>();
+    private final Set<String> hourAlignedKeys = new HashSet<>();
+    private final List<String> indexes = new ArrayList<>();
+
+    /**
+     * @param name             汇总表名
+     * @param sourceTable      原始表名
+     * @param sourceTimeColumn 原始表时间字段，增量刷新按此字段过滤
+     * @param timeColumn       汇总表时间桶字段（原始时间截断到小时/天），作为增量刷新的水位线
+     */
+    public RollupDefinition(String name, String sourceTable, String sourceTimeColumn, String timeColumn) {
+        this.name = name;
+        this.sourceTable = sourceTable;
+        this.sourceTimeColumn = sourceTimeColumn;
+        this.timeColumn = timeColumn;
+    }
+
+    /**
+     * 添加维度
+     *
+     * @param column           汇总表字段
+     * @param type             汇总表字段类型
+     * @param sourceExpression 构建时从原始表取值的表达式
+     * @param matchKey         查询中可被替换为该字段的原始表达式（小写、无空白，如 date(started_at)）
+     */
+    public RollupDefinition dimension(String column, String type, String sourceExpression, String matchKey) {
+        dimensions.add(new Dimension(column, type, sourceExpression, matchKey));
+        return this;
+    }
+
+    /**
+     * 添加度量：原始表字段在分组内求和，汇总表中同名保存
+     */
+    public RollupDefinition sum(String... columns) {
+        Collections.addAll(measures, columns);
+        return this;
+    }
+
+    /**
+     * 原始表中非空的字段，COUNT(字段) 等价于 COUNT(*)
+     */
+    public RollupDefinition nonNull(String... columns) {
+        Collections.addAll(nonNullColumns, columns);
+        return this;
+    }
+
+    /**
+     * 标记截断到整点的时间维度（按匹配键）：查询中与之比较的时间字面量必须是整点，否则不改写
+     */
+    public RollupDefinition hourAligned(String matchKey) {
+        hourAlignedKeys.add(matchKey);
+        return this;
+    }
+
+    /**
+     * 添加汇总表索引（字段列表，逗号分隔）
+     */
+    public RollupDefinition index(String columns) {
+        indexes.add(columns);
+        return this;
+    }
+
+    public String createTableSql() {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(name).append(" (");
+        for (Dimension dimension : dimensions) {
+            sql.append(dimension.column).append(' ').append(dimension.type).append(", ");
+        }
+        for (String measure : measures) {
+            sql.append(measure).append(" BIGINT, ");
+        }
+        sql.append(ROW_COUNT_COLUMN).append(" BIGINT NOT NULL");
+        for (int i = 0; i < indexes.size(); i++) {
+            sql.append(", KEY idx_").append(name).append('_').append(i + 1).append(" (").append(indexes.get(i)).append(')');
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * 从原始表聚合写入汇总表；incremental 为 true 时只处理时间不早于参数 ? 的原始行
+     */
+    public String insertSql(boolean incremental) {
+        List<String> columns = new ArrayList<>();
+        List<String> expressions = new ArrayList<>();
+        for (Dimension dimension : dimensions) {
+            columns.add(dimension.column);
+            expressions.add(dimension.sourceExpression);
+        }
+        for (String measure : measures) {
+            columns.add(measure);
+            expressions.add("SUM(" + measure + ")");
+        }
+        columns.add(ROW_COUNT_COLUMN);
+        expressions.add("COUNT(*)");
+
+        String groupBy = IntStream.rangeClosed(1, dimensions.size())
+            .mapToObj(String::valueOf).collect(Collectors.joining(", "));
+        return "INSERT INTO " + name + " (" + String.join(", ", columns) + ") SELECT "
+            + String.join(", ", expressions) + " FROM " + sourceTable
+            + (incremental ? " WHERE " + sourceTimeColumn + " >= ?" : "")
+            + " GROUP BY " + groupBy;
+    }
+
+    /**
+     * 原始表达式（匹配键）-> 汇总表字段
+     */
+    public Map<String, String> dimensionColumns() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Dimension dimension : dimensions) {
+            result.put(dimension.matchKey, dimension.column);
+        }
+        return result;
+    }
+
+    /**
+     * 聚合函数（小写、无空白，如 sum(ridership)）-> 汇总表上的等价表达式
+     */
+    public Map<String, String> measureExpressions() {
+        Map<String, String> result = new LinkedHashMap<>();
+        String count = "CAST(COALESCE(SUM(" + ROW_COUNT_COLUMN + "), 0) AS SIGNED)";
+        result.put("count(*)", count);
+        result.put("count(1)", count);
+        for (String column : nonNullColumns) {
+            result.put("count(" + column + ")", count);
+        }
+        for (String measure : measures) {
+            result.put("sum(" + measure + ")", "SUM(" + measure + ")");
+        }
+        // 维度字段的最值与去重计数在汇总表上结果不变
+        for (Dimension dimension : dimensions) {
+            result.put("min(" + dimension.matchKey + ")", "MIN(" + dimension.column + ")");
+            result.put("max(" + dimension.matchKey + ")", "MAX(" + dimension.column + ")");
+            result.put("count(distinct" + dimension.matchKey + ")", "COUNT(DISTINCT " + dimension.column + ")");
+        }
+        return result;
+    }
+
+    /**
+     * 截断到整点的维度匹配键
+     */
+    public Set<String> hourAlignedKeys() {
+        return Collections.unmodifiableSet(hourAlignedKeys);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSourceTable() {
+        return sourceTable;
+    }
+
+    public String getSourceTimeColumn() {
+        return sourceTimeColumn;
+    }
+
+    public String getTimeColumn() {
+        return timeColumn;
+    }
+
+    public boolean matchesSource(String table) {
+        return sourceTable.equals(table.replace("`", "").trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 汇总表维度
+     */
+    private static class Dimension {
+        private final String column;
+        private final String type;
+        private final String sourceExpression;
+        private final String matchKey;
+
+        private Dimension(String column, String type, String sourceExpression, String matchKey) {
+            this.column = column;
+            this.type = type;
+            this.sourceExpression = sourceExpression;
+            this.matchKey = matchKey;
+        }
+    }
+}
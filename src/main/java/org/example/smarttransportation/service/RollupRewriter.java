@@ -0,0 +1,333 @@
+package org.example.smarttransportation.service;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.*;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 汇总表查询改写
+ * 将原始表上的聚合查询改写到预聚合汇总表：查询只引用汇总表维度（或其上的函数）、
+ * 聚合函数都能由汇总表度量等价计算时才改写，否则返回 null 继续查询原始表。
+ *
+ * 截断到整点的时间维度（如小时客流的 transit_timestamp）只接受整点时间字面量的比较，
+ * '2024-02-15 08:30:00' 之类的条件在汇总表上无法等价计算，保留原始表查询。
+ *
+ * 例：SELECT borough, COUNT(*) FROM nyc_traffic_accidents WHERE crash_date = '2024-02-15' GROUP BY borough
+ * -> SELECT borough, CAST(COALESCE(SUM(row_count), 0) AS SIGNED) AS `COUNT(*)` FROM accident_borough_daily ...
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public final class RollupRewriter {
+
+    /**
+     * 日期或整点时间字面量：2024-02-15、2024-02-15 08:00、2024-02-15 08:00:00(.000)
+     */
+    private static final Pattern HOUR_ALIGNED_LITERAL =
+        Pattern.compile("\\d{4}-\\d{1,2}-\\d{1,2}( \\d{1,2}:00(:00(\\.0+)?)?)?");
+
+    private static final Set<String> AGGREGATE_FUNCTIONS = Set.of("count", "sum", "avg", "min", "max",
+        "group_concat", "std", "stddev", "variance", "bit_and", "bit_or", "json_arrayagg");
+
+    private RollupRewriter() {
+    }
+
+    /**
+     * 按顺序尝试候选汇总表，返回第一个可改写的结果
+     *
+     * @param checkedSql 已通过 SqlGuard 校验的 SQL
+     * @param rollups    候选汇总表（应按粒度由粗到细排列）
+     */
+    public static String rewrite(String checkedSql, List<RollupDefinition> rollups) {
+        for (RollupDefinition rollup : rollups) {
+            String rewritten = rewrite(checkedSql, rollup);
+            if (rewritten != null) {
+                return rewritten;
+            }
+        }
+        return null;
+    }
+
+    static String rewrite(String checkedSql, RollupDefinition rollup) {
+        Statement statement;
+        try {
+            // 改写会修改语法树，每次尝试都重新解析
+            statement = CCJSqlParserUtil.parse(checkedSql);
+        } catch (JSQLParserException e) {
+            return null;
+        }
+        if (!(statement instanceof PlainSelect select)
+            || !(select.getFromItem() instanceof Table table)
+            || (select.getJoins() != null && !select.getJoins().isEmpty())
+            || !rollup.matchesSource(table.getName())) {
+            return null;
+        }
+
+        Rewriter rewriter = new Rewriter(rollup, selectAliases(select));
+        try {
+            rewriteSelect(select, rewriter);
+        } catch (NotRewritableException e) {
+            return null;
+        }
+        // 非聚合的明细查询必须查原始表
+        if (select.getGroupBy() == null && !rewriter.aggregated) {
+            return null;
+        }
+        select.setFromItem(new Table(rollup.getName()));
+        return select.toString();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void rewriteSelect(PlainSelect select, Rewriter rewriter) {
+        for (SelectItem item : select.getSelectItems()) {
+            Expression original = item.getExpression();
+            String label = original.toString();
+            Expression rewritten = rewriter.rewrite(original);
+            // 保持结果列名与原查询一致
+            if (item.getAlias() == null && !label.equals(rewritten.toString()) && !label.contains("`")) {
+                item.setAlias(new Alias("`" + label + "`"));
+            }
+            item.setExpression(rewritten);
+        }
+        select.setWhere(rewriter.rewrite(select.getWhere()));
+        GroupByElement groupBy = select.getGroupBy();
+        if (groupBy != null) {
+            if (groupBy.getGroupingSets() != null && !groupBy.getGroupingSets().isEmpty()) {
+                throw NotRewritableException.INSTANCE;
+            }
+            ExpressionList groupByExpressions = groupBy.getGroupByExpressionList();
+            if (groupByExpressions != null) {
+                rewriter.rewriteList(groupByExpressions);
+            }
+        }
+        select.setHaving(rewriter.rewrite(select.getHaving()));
+        if (select.getOrderByElements() != null) {
+            for (OrderByElement element : select.getOrderByElements()) {
+                element.setExpression(rewriter.rewrite(element.getExpression()));
+            }
+        }
+    }
+
+    private static Set<String> selectAliases(PlainSelect select) {
+        Set<String> aliases = new HashSet<>();
+        for (SelectItem<?> item : select.getSelectItems()) {
+            if (item.getAlias() != null) {
+                aliases.add(normalize(item.getAlias().getName()));
+            }
+        }
+        return aliases;
+    }
+
+    /**
+     * 表达式的匹配键：字段名或函数调用，小写、无空白、不带表限定，如 date(started_at)；其他表达式返回 null
+     */
+    static String matchKey(Expression expression) {
+        if (expression instanceof Column column) {
+            return normalize(column.getColumnName());
+        }
+        if (expression instanceof Function function && !function.isDistinct()) {
+            ExpressionList<?> parameters = function.getParameters();
+            StringJoiner joiner = new StringJoiner(",", normalize(function.getName()) + "(", ")");
+            if (function.isAllColumns()) {
+                joiner.add("*");
+            } else if (parameters != null) {
+                for (Expression parameter : parameters) {
+                    String key = parameter instanceof AllColumns ? "*"
+                        : parameter instanceof LongValue || parameter instanceof StringValue
+                        ? parameter.toString().toLowerCase(Locale.ROOT) : matchKey(parameter);
+                    if (key == null) {
+                        return null;
+                    }
+                    joiner.add(key);
+                }
+            }
+            return joiner.toString();
+        }
+        return null;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("`", "").replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 在单个汇总表上递归改写表达式
+     */
+    private static class Rewriter {
+        private final Map<String, String> dimensions;
+        private final Map<String, String> measures;
+        private final Set<String> hourAlignedKeys;
+        private final Set<String> aliases;
+        private boolean aggregated;
+
+        private Rewriter(RollupDefinition rollup, Set<String> aliases) {
+            this.dimensions = rollup.dimensionColumns();
+            this.measures = rollup.measureExpressions();
+            this.hourAlignedKeys = rollup.hourAlignedKeys();
+            this.aliases = aliases;
+        }
+
+        private Expression rewrite(Expression expression) {
+            if (expression == null) {
+                return null;
+            }
+            String key = matchKey(expression);
+            if (key != null && dimensions.containsKey(key)) {
+                return new Column(dimensions.get(key));
+            }
+            if (expression instanceof Column column) {
+                // ORDER BY / HAVING 引用查询中定义的别名
+                if (column.getTable() == null && aliases.contains(normalize(column.getColumnName()))) {
+                    return column;
+                }
+                throw NotRewritableException.INSTANCE;
+            }
+            if (expression instanceof Function function) {
+                return rewriteFunction(function);
+            }
+            if (expression instanceof ExpressionList<?> list) {
+                rewriteList(list);
+                return list;
+            }
+            if (expression instanceof ComparisonOperator comparison) {
+                requireHourAligned(comparison.getLeftExpression(), comparison.getRightExpression());
+                requireHourAligned(comparison.getRightExpression(), comparison.getLeftExpression());
+            }
+            if (expression instanceof BinaryExpression binary) {
+                binary.setLeftExpression(rewrite(binary.getLeftExpression()));
+                binary.setRightExpression(rewrite(binary.getRightExpression()));
+                return binary;
+            }
+            if (expression instanceof Between between) {
+                requireHourAligned(between.getLeftExpression(),
+                    between.getBetweenExpressionStart(), between.getBetweenExpressionEnd());
+                between.setLeftExpression(rewrite(between.getLeftExpression()));
+                between.setBetweenExpressionStart(rewrite(between.getBetweenExpressionStart()));
+                between.setBetweenExpressionEnd(rewrite(between.getBetweenExpressionEnd()));
+                return between;
+            }
+            if (expression instanceof InExpression in) {
+                if (in.getRightExpression() instanceof ExpressionList<?> values) {
+                    requireHourAligned(in.getLeftExpression(), values.toArray(new Expression[0]));
+                } else {
+                    requireHourAligned(in.getLeftExpression(), in.getRightExpression());
+                }
+                in.setLeftExpression(rewrite(in.getLeftExpression()));
+                in.setRightExpression(rewrite(in.getRightExpression()));
+                return in;
+            }
+            if (expression instanceof IsNullExpression isNull) {
+                isNull.setLeftExpression(rewrite(isNull.getLeftExpression()));
+                return isNull;
+            }
+            if (expression instanceof NotExpression not) {
+                not.setExpression(rewrite(not.getExpression()));
+                return not;
+            }
+            if (expression instanceof SignedExpression signed) {
+                signed.setExpression(rewrite(signed.getExpression()));
+                return signed;
+            }
+            if (expression instanceof StringValue || expression instanceof LongValue
+                || expression instanceof DoubleValue || expression instanceof NullValue
+                || expression instanceof DateValue || expression instanceof TimeValue
+                || expression instanceof TimestampValue || expression instanceof DateTimeLiteralExpression) {
+                return expression;
+            }
+            // 子查询、CASE、窗口函数等不改写
+            throw NotRewritableException.INSTANCE;
+        }
+
+        private Expression rewriteFunction(Function function) {
+            String name = normalize(function.getName());
+            if (!AGGREGATE_FUNCTIONS.contains(name)) {
+                // 普通函数（DATE、HOUR 等）作用于维度上时逐个改写参数
+                if (function.getParameters() != null) {
+                    rewriteList(function.getParameters());
+                }
+                return function;
+            }
+
+            String key;
+            if (function.isDistinct()) {
+                ExpressionList<?> parameters = function.getParameters();
+                String parameterKey = parameters != null && parameters.size() == 1 ? matchKey(parameters.get(0)) : null;
+                key = parameterKey != null ? name + "(distinct" + parameterKey + ")" : null;
+            } else {
+                key = matchKey(function);
+            }
+            String replacement = key != null ? measures.get(key) : null;
+            if (replacement == null) {
+                throw NotRewritableException.INSTANCE;
+            }
+            aggregated = true;
+            try {
+                return CCJSqlParserUtil.parseExpression(replacement);
+            } catch (JSQLParserException e) {
+                throw NotRewritableException.INSTANCE;
+            }
+        }
+
+        /**
+         * 截断到整点的维度只能与整点时间字面量比较，其他取值（非整点、非字面量）不改写
+         */
+        private void requireHourAligned(Expression target, Expression... values) {
+            String key = matchKey(target);
+            if (key == null || !hourAlignedKeys.contains(key)) {
+                return;
+            }
+            for (Expression value : values) {
+                if (!isHourAligned(value)) {
+                    throw NotRewritableException.INSTANCE;
+                }
+            }
+        }
+
+        private static boolean isHourAligned(Expression value) {
+            String literal;
+            if (value instanceof StringValue string) {
+                literal = string.getValue();
+            } else if (value instanceof DateValue) {
+                return true;
+            } else if (value instanceof TimestampValue timestamp) {
+                literal = timestamp.getValue().toString();
+            } else if (value instanceof DateTimeLiteralExpression dateTime) {
+                literal = dateTime.getValue().replace("'", "");
+            } else {
+                return false;
+            }
+            return HOUR_ALIGNED_LITERAL.matcher(literal.trim()).matches();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void rewriteList(ExpressionList<?> list) {
+            ExpressionList<Expression> expressions = (ExpressionList<Expression>) list;
+            for (int i = 0; i < expressions.size(); i++) {
+                expressions.set(i, rewrite(expressions.get(i)));
+            }
+        }
+    }
+
+    /**
+     * 查询包含汇总表无法等价计算的部分
+     */
+    private static class NotRewritableException extends RuntimeException {
+        private static final NotRewritableException INSTANCE = new NotRewritableException();
+
+        private NotRewritableException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 预聚合汇总表服务
+ * 维护小时/天粒度的客流、事故、投诉和单车站点对汇总表：启动时在后台构建，
+ * 原始表版本递增（数据导入）后按时间水位线增量刷新——删除最后一个时间桶及之后的汇总行，
+ * 再从原始表重新聚合这部分数据。汇总表与原始表版本一致时，NL2SQL 的聚合查询改写到汇总表执行。
+ *
+ * 增量刷新假设数据按时间追加导入；历史数据被修正时需调用全量重建。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class RollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupService.class);
+
+    private static final String BOROUGH_TYPE = "VARCHAR(64)";
+    private static final String NAME_TYPE = "VARCHAR(255)";
+
+    /**
+     * 汇总表目录，同一原始表的汇总表按粒度由粗到细排列，改写时优先使用更小的表
+     */
+    static final List<RollupDefinition> ROLLUPS = List.of(
+        // 地铁客流：MTA 数据按小时发布，小时汇总表可直接替换 transit_timestamp
+        new RollupDefinition("rollup_subway_station_daily", "subway_ridership", "transit_timestamp", "transit_date")
+            .dimension("transit_date", "DATE", "DATE(transit_timestamp)", "date(transit_timestamp)")
+            .dimension("station_complex_id", "INT", "station_complex_id", "station_complex_id")
+            .dimension("station_complex", NAME_TYPE, "station_complex", "station_complex")
+            .dimension("borough", BOROUGH_TYPE, "borough", "borough")
+            .sum("ridership")
+            .index("transit_date")
+            .index("station_complex, transit_date"),
+        new RollupDefinition("rollup_subway_station_hourly", "subway_ridership", "transit_timestamp", "transit_timestamp")
+            .dimension("transit_timestamp", "DATETIME",
+                "TIMESTAMP(DATE_FORMAT(transit_timestamp, '%Y-%m-%d %H:00:00'))", "transit_timestamp")
+            .hourAligned("transit_timestamp")
+            .dimension("station_complex_id", "INT", "station_complex_id", "station_complex_id")
+            .dimension("station_complex", NAME_TYPE, "station_complex", "station_complex")
+            .dimension("borough", BOROUGH_TYPE, "borough", "borough")
+            .sum("ridership")
+            .index("transit_timestamp")
+            .index("station_complex, transit_timestamp"),
+        // 交通事故：按行政区、按街道的每日计数与伤亡人数
+        accidentRollup("rollup_accident_borough_daily")
+            .index("crash_date"),
+        accidentRollup("rollup_accident_street_daily")
+            .dimension("on_street_name", NAME_TYPE, "on_street_name", "on_street_name")
+            .index("crash_date")
+            .index("on_street_name, crash_date"),
+        // 投诉：按行政区和投诉类型的每日计数
+        new RollupDefinition("rollup_complaint_type_daily", "complaints", "created_at", "created_date")
+            .dimension("created_date", "DATE", "DATE(created_at)", "date(created_at)")
+            .dimension("borough", BOROUGH_TYPE, "borough", "borough")
+            .dimension("complaint_type", NAME_TYPE, "complaint_type", "complaint_type")
+            .nonNull("unique_key")
+            .index("created_date")
+            .index("complaint_type, created_date"),
+        // 共享单车：起终点站点对的每日行程数
+        new RollupDefinition("rollup_citibike_station_pair_daily", "citibike_trips_202402", "started_at", "trip_date")
+            .dimension("trip_date", "DATE", "DATE(started_at)", "date(started_at)")
+            .dimension("start_station_name", NAME_TYPE, "start_station_name", "start_station_name")
+            .dimension("end_station_name", NAME_TYPE, "end_station_name", "end_station_name")
+            .index("trip_date")
+            .index("start_station_name, end_station_name")
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, RollupState> states = new ConcurrentHashMap<>();
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rollup-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Counter rewriteCounter;
+
+    @PostConstruct
+    public void init() {
+        for (RollupDefinition rollup : ROLLUPS) {
+            states.put(rollup.getName(), new RollupState());
+        }
+        rewriteCounter = Counter.builder("nl2sql.rollup.rewrites")
+            .description("改写到汇总表执行的NL2SQL查询数").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 将聚合查询改写到与原始表版本一致的汇总表，无法改写时返回 null
+     */
+    public String rewrite(String checkedSql) {
+        if (!Boolean.TRUE.equals(properties.getRollup().getEnabled())) {
+            return null;
+        }
+        List<RollupDefinition> candidates = new ArrayList<>();
+        for (RollupDefinition rollup : ROLLUPS) {
+            RollupState state = states.get(rollup.getName());
+            if (state.ready && state.builtVersion == tableVersionRegistry.currentVersion(rollup.getSourceTable())) {
+                candidates.add(rollup);
+            } else if (state.ready) {
+                // 原始表已有新数据导入，后台增量刷新，刷新完成前查询原始表
+                submit(rollup, false);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        String rewritten = RollupRewriter.rewrite(checkedSql, candidates);
+        if (rewritten != null) {
+            rewriteCounter.increment();
+            logger.debug("聚合查询改写到汇总表: {}", rewritten);
+        }
+        return rewritten;
+    }
+
+    /**
+     * 后台刷新所有汇总表
+     */
+    public void refreshAllAsync(boolean full) {
+        for (RollupDefinition rollup : ROLLUPS) {
+            submit(rollup, full);
+        }
+    }
+
+    /**
+     * 后台刷新依赖指定原始表的汇总表
+     */
+    public void refreshAsync(String sourceTable, boolean full) {
+        for (RollupDefinition rollup : ROLLUPS) {
+            if (rollup.matchesSource(sourceTable)) {
+                submit(rollup, full);
+            }
+        }
+    }
+
+    /**
+     * 汇总表状态
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (RollupDefinition rollup : ROLLUPS) {
+            RollupState state = states.get(rollup.getName());
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", rollup.getName());
+            item.put("sourceTable", rollup.getSourceTable());
+            item.put("ready", state.ready);
+            item.put("builtVersion", state.builtVersion);
+            item.put("sourceVersion", tableVersionRegistry.currentVersion(rollup.getSourceTable()));
+            item.put("rows", state.rows);
+            item.put("lastRefreshMillis", state.lastRefreshMillis);
+            item.put("lastRefreshedAt", state.lastRefreshedAt > 0 ? new Date(state.lastRefreshedAt) : null);
+            item.put("lastError", state.lastError);
+            stats.add(item);
+        }
+        return stats;
+    }
+
+    private void submit(RollupDefinition rollup, boolean full) {
+        RollupState state = states.get(rollup.getName());
+        if (state.queued.compareAndSet(false, true)) {
+            refreshExecutor.execute(() -> {
+                state.queued.set(false);
+                refresh(rollup, full);
+            });
+        }
+    }
+
+    /**
+     * 刷新单张汇总表：无水位线（新建或全量）时清空重建，否则从最后一个时间桶开始重新聚合
+     */
+    void refresh(RollupDefinition rollup, boolean full) {
+        RollupState state = states.get(rollup.getName());
+        String name = rollup.getName();
+        String timeColumn = rollup.getTimeColumn();
+        // 先取版本再读数据，刷新期间有新导入时版本不一致，下次查询会再触发刷新
+        long version = tableVersionRegistry.snapshot(List.of(rollup.getSourceTable())).values().iterator().next();
+        long start = System.nanoTime();
+        String type = full ? "full" : "incremental";
+        try {
+            jdbcTemplate.execute(rollup.createTableSql());
+            Timestamp watermark = full ? null
+                : jdbcTemplate.queryForObject("SELECT MAX(" + timeColumn + ") FROM " + name, Timestamp.class);
+
+            state.ready = false;
+            int inserted;
+            if (watermark == null) {
+                type = "full";
+                jdbcTemplate.execute("TRUNCATE TABLE " + name);
+                inserted = jdbcTemplate.update(rollup.insertSql(false));
+            } else {
+                jdbcTemplate.update("DELETE FROM " + name + " WHERE " + timeColumn + " >= ?", watermark);
+                inserted = jdbcTemplate.update(rollup.insertSql(true), watermark);
+            }
+            Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + name, Long.class);
+
+            state.rows = rows != null ? rows : 0;
+            state.builtVersion = version;
+            state.lastError = null;
+            state.ready = true;
+            logger.info("汇总表 {} 刷新完成({}): 写入 {} 行, 共 {} 行", name, type, inserted, state.rows);
+        } catch (Exception e) {
+            state.lastError = e.getMessage();
+            logger.warn("汇总表 {} 刷新失败，查询将回退到原始表: {}", name, e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            state.lastRefreshMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            state.lastRefreshedAt = System.currentTimeMillis();
+            Timer.builder("nl2sql.rollup.refresh").tag("rollup", name).tag("type", type)
+                .description("汇总表刷新耗时").register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static RollupDefinition accidentRollup(String name) {
+        return new RollupDefinition(name, "nyc_traffic_accidents", "crash_date", "crash_date")
+            .dimension("crash_date", "DATE", "crash_date", "crash_date")
+            .dimension("borough", BOROUGH_TYPE, "borough", "borough")
+            .sum("number_of_persons_injured", "number_of_persons_killed",
+                "number_of_pedestrians_injured", "number_of_pedestrians_killed",
+                "number_of_cyclist_injured", "number_of_cyclist_killed",
+                "number_of_motorist_injured", "number_of_motorist_killed")
+            .nonNull("collision_id");
+    }
+
+    /**
+     * 汇总表运行状态
+     */
+    private static class RollupState {
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile boolean ready;
+        private volatile long builtVersion = -1;
+        private volatile long rows;
+        private volatile long lastRefreshMillis;
+        private volatile long lastRefreshedAt;
+        private volatile String lastError;
+    }
+}
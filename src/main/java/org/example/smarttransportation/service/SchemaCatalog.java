@@ -0,0 +1,290 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * NL2SQL 表结构目录
+ * 启动时从 JDBC 元数据读取白名单表的字段及类型（只保留 SqlGuard 允许访问的字段），
+ * 按问题选出相关的表，生成只包含这些表结构的提示词片段，减少提示词长度和大模型耗时。
+ *
+ * 选表顺序：表关键词/字段名匹配 -> 表描述向量相似度 -> 全部表。
+ * 元数据读取失败时使用白名单字段（无类型信息）。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class SchemaCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaCatalog.class);
+
+    /**
+     * 表描述与选表关键词（小写）
+     */
+    private static final Map<String, TableHint> TABLE_HINTS = new LinkedHashMap<>();
+
+    static {
+        TABLE_HINTS.put("citibike_trips_202402", new TableHint("共享单车出行数据 (2024年2月数据)",
+            "单车", "自行车", "骑行", "citibike", "citi bike", "bike", "cycling", "行程", "trip"));
+        TABLE_HINTS.put("complaints", new TableHint("城市投诉数据 (311)",
+            "投诉", "举报", "311", "噪音", "complaint", "noise", "工单", "诉求"));
+        TABLE_HINTS.put("nyc_traffic_accidents", new TableHint(
+            "机动车碰撞事故，crash_minute 为发生时间的当日分钟数（按时段过滤用它） (注意：数据为2024年2月)",
+            "事故", "车祸", "碰撞", "伤亡", "受伤", "死亡", "撞", "accident", "collision", "crash", "injur", "kill"));
+        TABLE_HINTS.put("nyc_permitted_events", new TableHint("纽约许可活动数据 (注意：数据为2024年2月)",
+            "活动", "赛事", "游行", "演出", "封路", "封闭", "event", "parade", "permit"));
+        TABLE_HINTS.put("subway_ridership", new TableHint("地铁客流数据，每小时一条 (注意：数据为2024年2月)",
+            "地铁", "客流", "乘客", "进站", "subway", "ridership", "metro", "mta"));
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile List<TableSchema> tables = fallbackTables();
+
+    /**
+     * 表描述向量，与 tables 下标对应，首次按向量选表时计算
+     */
+    private volatile List<List<Float>> tableVectors;
+
+    private DistributionSummary promptTables;
+    private DistributionSummary promptChars;
+
+    @PostConstruct
+    public void init() {
+        promptTables = DistributionSummary.builder("nl2sql.prompt.schema.tables")
+            .description("NL2SQL提示词包含的表数").register(meterRegistry);
+        promptChars = DistributionSummary.builder("nl2sql.prompt.schema.chars")
+            .description("NL2SQL提示词表结构部分字符数").register(meterRegistry);
+        reload();
+    }
+
+    /**
+     * 从 JDBC 元数据重新读取表结构
+     */
+    public void reload() {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            List<TableSchema> loaded = new ArrayList<>();
+            for (Map.Entry<String, TableHint> entry : TABLE_HINTS.entrySet()) {
+                loaded.add(introspect(metaData, connection.getCatalog(), entry.getKey(), entry.getValue()));
+            }
+            tables = Collections.unmodifiableList(loaded);
+            tableVectors = null;
+            logger.info("NL2SQL表结构目录已从数据库元数据加载: {} 张表", loaded.size());
+        } catch (Exception e) {
+            logger.warn("读取数据库元数据失败，使用内置表结构: {}", e.getMessage());
+        }
+    }
+
+    public List<TableSchema> getTables() {
+        return tables;
+    }
+
+    /**
+     * 生成提示词中的表结构部分
+     */
+    public String buildSchemaPrompt(String question) {
+        List<TableSchema> selected = Boolean.TRUE.equals(properties.getPrompt().getSchemaPruning())
+            ? selectTables(question) : tables;
+        String prompt = describe(selected);
+        promptTables.record(selected.size());
+        promptChars.record(prompt.length());
+        return prompt;
+    }
+
+    /**
+     * 选出与问题相关的表
+     */
+    public List<TableSchema> selectTables(String question) {
+        List<TableSchema> all = tables;
+        if (!StringUtils.hasText(question)) {
+            return all;
+        }
+        List<TableSchema> matched = selectByKeywords(question, all);
+        if (matched.isEmpty() && Boolean.TRUE.equals(properties.getPrompt().getEmbeddingFallback())) {
+            matched = selectByEmbedding(question, all);
+        }
+        return matched.isEmpty() ? all : matched;
+    }
+
+    /**
+     * 表关键词或字段名出现在问题中即视为相关
+     */
+    static List<TableSchema> selectByKeywords(String question, List<TableSchema> tables) {
+        String text = question.toLowerCase(Locale.ROOT);
+        List<TableSchema> matched = new ArrayList<>();
+        for (TableSchema table : tables) {
+            if (text.contains(table.name) || table.keywords.stream().anyMatch(text::contains)
+                || table.columns.stream().anyMatch(column -> column.name.contains("_") && text.contains(column.name))) {
+                matched.add(table);
+            }
+        }
+        return matched;
+    }
+
+    private List<TableSchema> selectByEmbedding(String question, List<TableSchema> all) {
+        try {
+            List<List<Float>> vectors = tableVectors;
+            if (vectors == null) {
+                List<String> texts = new ArrayList<>();
+                for (TableSchema table : all) {
+                    texts.add(table.name + " " + table.description + " " + String.join(" ", table.keywords));
+                }
+                vectors = embeddingService.embedTexts(texts);
+                tableVectors = vectors;
+            }
+            List<Float> questionVector = embeddingService.embedText(question);
+
+            NL2SQLConfig.NL2SQLProperties.Prompt config = properties.getPrompt();
+            List<Map.Entry<TableSchema, Double>> scored = new ArrayList<>();
+            for (int i = 0; i < all.size() && i < vectors.size(); i++) {
+                double similarity = embeddingService.calculateCosineSimilarity(questionVector, vectors.get(i));
+                if (similarity >= config.getEmbeddingThreshold()) {
+                    scored.add(Map.entry(all.get(i), similarity));
+                }
+            }
+            scored.sort(Map.Entry.<TableSchema, Double>comparingByValue().reversed());
+
+            List<TableSchema> matched = new ArrayList<>();
+            for (int i = 0; i < scored.size() && i < config.getMaxTables(); i++) {
+                matched.add(scored.get(i).getKey());
+            }
+            return matched;
+        } catch (Exception e) {
+            logger.debug("向量选表失败，使用全部表结构: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * 表结构描述文本
+     */
+    static String describe(List<TableSchema> tables) {
+        StringBuilder builder = new StringBuilder("数据库表结构信息：\n");
+        int index = 1;
+        for (TableSchema table : tables) {
+            builder.append('\n').append(index++).append(". ").append(table.name).append(" - ").append(table.description)
+                .append("\n字段：");
+            StringJoiner columns = new StringJoiner(", ");
+            for (ColumnSchema column : table.columns) {
+                String text = column.type != null ? column.name + " " + column.type : column.name;
+                columns.add(StringUtils.hasText(column.remark) ? text + "(" + column.remark + ")" : text);
+            }
+            builder.append(columns).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static TableSchema introspect(DatabaseMetaData metaData, String catalog, String table, TableHint hint)
+        throws SQLException {
+        Set<String> allowed = SqlGuard.ALLOWED_COLUMNS.get(table);
+        List<ColumnSchema> columns = new ArrayList<>();
+        try (ResultSet resultSet = metaData.getColumns(catalog, null, table, "%")) {
+            while (resultSet.next()) {
+                String name = resultSet.getString("COLUMN_NAME").toLowerCase(Locale.ROOT);
+                if (allowed.contains(name)) {
+                    columns.add(new ColumnSchema(name, resultSet.getString("TYPE_NAME"), resultSet.getString("REMARKS")));
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            logger.warn("数据库中未找到表 {} 的字段，使用内置表结构", table);
+            return fallbackTable(table, hint);
+        }
+
+        String description = hint.description;
+        try (ResultSet resultSet = metaData.getTables(catalog, null, table, new String[]{"TABLE"})) {
+            if (resultSet.next() && StringUtils.hasText(resultSet.getString("REMARKS"))) {
+                description = resultSet.getString("REMARKS") + " " + hint.description;
+            }
+        }
+        return new TableSchema(table, description, hint.keywords, columns);
+    }
+
+    private static List<TableSchema> fallbackTables() {
+        List<TableSchema> result = new ArrayList<>();
+        TABLE_HINTS.forEach((table, hint) -> result.add(fallbackTable(table, hint)));
+        return Collections.unmodifiableList(result);
+    }
+
+    private static TableSchema fallbackTable(String table, TableHint hint) {
+        List<ColumnSchema> columns = new ArrayList<>();
+        new TreeSet<>(SqlGuard.ALLOWED_COLUMNS.get(table)).forEach(name -> columns.add(new ColumnSchema(name, null, null)));
+        return new TableSchema(table, hint.description, hint.keywords, columns);
+    }
+
+    private static class TableHint {
+        private final String description;
+        private final List<String> keywords;
+
+        private TableHint(String description, String... keywords) {
+            this.description = description;
+            this.keywords = List.of(keywords);
+        }
+    }
+
+    /**
+     * 表结构
+     */
+    public static class TableSchema {
+        private final String name;
+        private final String description;
+        private final List<String> keywords;
+        private final List<ColumnSchema> columns;
+
+        public TableSchema(String name, String description, List<String> keywords, List<ColumnSchema> columns) {
+            this.name = name;
+            this.description = description;
+            this.keywords = keywords;
+            this.columns = List.copyOf(columns);
+        }
+
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+        public List<ColumnSchema> getColumns() { return columns; }
+    }
+
+    /**
+     * 字段结构，type 为空表示未从元数据读取
+     */
+    public static class ColumnSchema {
+        private final String name;
+        private final String type;
+        private final String remark;
+
+        public ColumnSchema(String name, String type, String remark) {
+            this.name = name;
+            this.type = type;
+            this.remark = remark;
+        }
+
+        public String getName() { return name; }
+        public String getType() { return type; }
+        public String getRemark() { return remark; }
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.smarttransportation.service;
+
+/**
+ * 经纬度等面积网格
+ * 按参考纬度把经度步长放大 1/cos(lat)，使网格单元在纽约附近近似为边长 cellMeters 的正方形。
+ * 单元编号为 (行 << 32) | 列，相邻单元的行列号相差 1，邻域查找不需要额外索引。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class SpatialGrid {
+
+    private static final double METERS_PER_DEGREE_LAT = 111_320.0;
+
+    private final double cellMeters;
+    private final double latStep;
+    private final double lonStep;
+
+    public SpatialGrid(double cellMeters, double referenceLatitude) {
+        if (cellMeters <= 0) {
+            throw new IllegalArgumentException("网格边长必须大于 0");
+        }
+        this.cellMeters = cellMeters;
+        this.latStep = cellMeters / METERS_PER_DEGREE_LAT;
+        this.lonStep = latStep / Math.cos(Math.toRadians(referenceLatitude));
+    }
+
+    /**
+     * 坐标所在的网格单元
+     */
+    public long cellOf(double latitude, double longitude) {
+        return cell((int) Math.floor(latitude / latStep), (int) Math.floor(longitude / lonStep));
+    }
+
+    public static long cell(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    public static int rowOf(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    public static int colOf(long cell) {
+        return (int) cell;
+    }
+
+    /**
+     * 网格单元中心点 {纬度, 经度}
+     */
+    public double[] center(long cell) {
+        return new double[]{(rowOf(cell) + 0.5) * latStep, (colOf(cell) + 0.5) * lonStep};
+    }
+
+    public double getCellMeters() {
+        return cellMeters;
+    }
+}
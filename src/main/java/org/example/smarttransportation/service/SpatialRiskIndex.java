@@ -0,0 +1,440 @@
+package org.example.smarttransportation.service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 空间风险网格索引
+ * 事故、客流、活动、投诉在加载时按坐标落入 SpatialGrid 网格单元，每个单元按天累计并保存前缀和；
+ * 查询某天的高风险区域时按各数据源的统计窗口求和、按当天最大值归一化后加权，
+ * 再用 3×3 邻域核（中心 4、边 2、角 1）平滑，避免同一路口因坐标落在网格边界两侧而被拆散。
+ * 每个数据源只依赖一张数据表，可单独重建。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public class SpatialRiskIndex {
+
+    /**
+     * 数据源：统计窗口与 RiskWarningService 一致，权重用于合成网格风险评分
+     */
+    public enum Source {
+        ACCIDENTS(30, 1, 0.40),
+        RIDERSHIP(30, 1, 0.25),
+        EVENTS(1, 1, 0.20),
+        COMPLAINTS(30, 1, 0.15);
+
+        private final int lookbackDays;
+        private final int lookaheadDays;
+        private final double weight;
+
+        Source(int lookbackDays, int lookaheadDays, double weight) {
+            this.lookbackDays = lookbackDays;
+            this.lookaheadDays = lookaheadDays;
+            this.weight = weight;
+        }
+
+        public int getLookbackDays() {
+            return lookbackDays;
+        }
+
+        public int getLookaheadDays() {
+            return lookaheadDays;
+        }
+    }
+
+    private static final Source[] SOURCES = Source.values();
+
+    private final SpatialGrid grid;
+    private final LocalDate startDate;
+    private final int days;
+    private final SourceLayer[] layers = new SourceLayer[SOURCES.length];
+
+    public SpatialRiskIndex(SpatialGrid grid, LocalDate startDate, int days, Map<Source, SourceLayer> layers) {
+        this.grid = grid;
+        this.startDate = startDate;
+        this.days = days;
+        for (Source source : SOURCES) {
+            SourceLayer layer = layers.get(source);
+            if (layer == null || layer.source != source || layer.days != days || layer.grid != grid) {
+                throw new IllegalArgumentException("空间风险网格各数据源与网格、天数不一致");
+            }
+            this.layers[source.ordinal()] = layer;
+        }
+    }
+
+    /**
+     * 日期在数据窗口内的下标，超出时返回 -1
+     */
+    public int dayOf(LocalDate date) {
+        long day = ChronoUnit.DAYS.between(startDate, date);
+        return day >= 0 && day < days ? (int) day : -1;
+    }
+
+    /**
+     * 指定日期评分最高的网格单元
+     *
+     * @param day      日期下标
+     * @param limit    最多返回的单元数
+     * @param minScore 平滑后评分下限（0-100）
+     */
+    public List<Zone> topZones(int day, int limit, double minScore) {
+        if (day < 0 || day >= days) {
+            throw new IllegalArgumentException("日期超出空间风险网格数据窗口");
+        }
+        Map<Long, long[]> metrics = new HashMap<>();
+        long[] max = new long[SOURCES.length];
+        for (SourceLayer layer : layers) {
+            int index = layer.source.ordinal();
+            for (Map.Entry<Long, CellSeries> entry : layer.cells.entrySet()) {
+                long value = layer.window(entry.getValue(), day);
+                if (value > 0) {
+                    metrics.computeIfAbsent(entry.getKey(), cell -> new long[SOURCES.length])[index] = value;
+                    max[index] = Math.max(max[index], value);
+                }
+            }
+        }
+
+        Map<Long, Double> raw = new HashMap<>(metrics.size() * 2);
+        for (Map.Entry<Long, long[]> entry : metrics.entrySet()) {
+            raw.put(entry.getKey(), rawScore(entry.getValue(), max));
+        }
+
+        List<Zone> zones = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : metrics.entrySet()) {
+            long cell = entry.getKey();
+            double score = smooth(cell, raw);
+            if (score >= minScore) {
+                zones.add(zone(cell, score, entry.getValue(), max));
+            }
+        }
+        zones.sort(Comparator.comparingDouble(Zone::getScore).reversed());
+        return zones.size() > limit ? new ArrayList<>(zones.subList(0, limit)) : zones;
+    }
+
+    private static double rawScore(long[] values, long[] max) {
+        double score = 0;
+        for (Source source : SOURCES) {
+            int index = source.ordinal();
+            if (max[index] > 0) {
+                score += source.weight * values[index] / max[index];
+            }
+        }
+        return score * 100;
+    }
+
+    /**
+     * 3×3 邻域加权平均（中心 4、边 2、角 1，合计 16）
+     */
+    private static double smooth(long cell, Map<Long, Double> raw) {
+        int row = SpatialGrid.rowOf(cell);
+        int col = SpatialGrid.colOf(cell);
+        double total = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                Double value = raw.get(SpatialGrid.cell(row + dr, col + dc));
+                if (value != null) {
+                    total += value * (dr == 0 ? 2 : 1) * (dc == 0 ? 2 : 1);
+                }
+            }
+        }
+        return total / 16;
+    }
+
+    private Zone zone(long cell, double score, long[] values, long[] max) {
+        Source dominant = null;
+        double best = -1;
+        double sumLat = 0;
+        double sumLon = 0;
+        long points = 0;
+        for (SourceLayer layer : layers) {
+            Source source = layer.source;
+            int index = source.ordinal();
+            double contribution = max[index] > 0 ? source.weight * values[index] / max[index] : 0;
+            if (contribution > best) {
+                best = contribution;
+                dominant = source;
+            }
+            CellSeries series = layer.cells.get(cell);
+            if (series != null) {
+                sumLat += series.sumLat;
+                sumLon += series.sumLon;
+                points += series.points;
+            }
+        }
+        double[] centroid = points > 0 ? new double[]{sumLat / points, sumLon / points} : grid.center(cell);
+        return new Zone(cell, label(cell, dominant), dominant, score, values.clone(), centroid[0], centroid[1]);
+    }
+
+    /**
+     * 单元名称：优先取主导数据源出现最多的地点名，其次按事故街道、地铁站、活动地点的顺序
+     */
+    private String label(long cell, Source dominant) {
+        String label = layers[dominant.ordinal()].label(cell);
+        for (Source source : List.of(Source.ACCIDENTS, Source.RIDERSHIP, Source.EVENTS)) {
+            if (label == null) {
+                label = layers[source.ordinal()].label(cell);
+            }
+        }
+        return label;
+    }
+
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * 有数据的网格单元数
+     */
+    public int getCellCount() {
+        Set<Long> cells = new HashSet<>();
+        for (SourceLayer layer : layers) {
+            cells.addAll(layer.cells.keySet());
+        }
+        return cells.size();
+    }
+
+    public long estimateBytes() {
+        long bytes = 0;
+        for (SourceLayer layer : layers) {
+            bytes += layer.estimateBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 地点名规范化：去掉首尾空白、合并连续空白并转大写，"Broadway " 与 "BROADWAY" 视为同一地点
+     */
+    static String normalizeLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        String normalized = label.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    /**
+     * 单个数据源的网格层：每个单元的按天计数前缀和、坐标合计与地点名
+     */
+    public static class SourceLayer {
+        private final Source source;
+        private final SpatialGrid grid;
+        private final int days;
+        private final Map<Long, CellSeries> cells;
+
+        private SourceLayer(Source source, SpatialGrid grid, int days, Map<Long, CellSeries> cells) {
+            this.source = source;
+            this.grid = grid;
+            this.days = days;
+            this.cells = cells;
+        }
+
+        /**
+         * 单元在第 day 天统计窗口 [day - lookback, day + lookahead] 内的合计
+         */
+        long window(CellSeries series, int day) {
+            return series.prefix[day + source.lookbackDays + source.lookaheadDays + 1] - series.prefix[day];
+        }
+
+        String label(long cell) {
+            CellSeries series = cells.get(cell);
+            return series != null ? series.label : null;
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        public int getCellCount() {
+            return cells.size();
+        }
+
+        long estimateBytes() {
+            long bytes = 48L + cells.size() * 48L;
+            for (CellSeries series : cells.values()) {
+                bytes += 64 + series.prefix.length * 8L + (series.label != null ? 40 + series.label.length() * 2L : 0);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 按数据源构建网格层：坐标落入网格后按天累计，数据窗口外（含统计窗口前后扩展）的记录忽略
+     */
+    public static class LayerBuilder {
+        private final Source source;
+        private final SpatialGrid grid;
+        private final LocalDate firstDate;
+        private final int days;
+        private final int length;
+        private final Map<Long, long[]> daily = new HashMap<>();
+        private final Map<Long, double[]> coordinates = new HashMap<>();
+        private final Map<Long, Map<String, Long>> labels = new HashMap<>();
+
+        public LayerBuilder(Source source, SpatialGrid grid, LocalDate startDate, int days) {
+            this.source = source;
+            this.grid = grid;
+            this.firstDate = startDate.minusDays(source.lookbackDays);
+            this.days = days;
+            this.length = days + source.lookbackDays + source.lookaheadDays;
+        }
+
+        /**
+         * 统计窗口覆盖的首日（查询数据的起始日期）
+         */
+        public LocalDate getFirstDate() {
+            return firstDate;
+        }
+
+        /**
+         * 统计窗口覆盖的末日（查询数据的结束日期）
+         */
+        public LocalDate getLastDate() {
+            return firstDate.plusDays(length - 1);
+        }
+
+        public void add(LocalDate date, Double latitude, Double longitude, long count, String label) {
+            addSpan(date, date, latitude, longitude, count, label);
+        }
+
+        /**
+         * 在 [from, to] 的每一天累计 count（跨天的活动按持续天数计入）
+         */
+        public void addSpan(LocalDate from, LocalDate to, Double latitude, Double longitude, long count, String label) {
+            if (from == null || to == null || latitude == null || longitude == null || count <= 0
+                    || (latitude == 0 && longitude == 0)) {
+                return;
+            }
+            long first = Math.max(0, ChronoUnit.DAYS.between(firstDate, from));
+            long last = Math.min(length - 1, ChronoUnit.DAYS.between(firstDate, to));
+            if (first > last) {
+                return;
+            }
+            long cell = grid.cellOf(latitude, longitude);
+            long[] counts = daily.computeIfAbsent(cell, key -> new long[length]);
+            for (int day = (int) first; day <= last; day++) {
+                counts[day] += count;
+            }
+            double[] sum = coordinates.computeIfAbsent(cell, key -> new double[3]);
+            sum[0] += latitude * count;
+            sum[1] += longitude * count;
+            sum[2] += count;
+            String normalized = normalizeLabel(label);
+            if (normalized != null) {
+                labels.computeIfAbsent(cell, key -> new HashMap<>()).merge(normalized, count, Long::sum);
+            }
+        }
+
+        public SourceLayer build() {
+            Map<Long, CellSeries> cells = new HashMap<>(daily.size() * 2);
+            for (Map.Entry<Long, long[]> entry : daily.entrySet()) {
+                long cell = entry.getKey();
+                long[] counts = entry.getValue();
+                long[] prefix = new long[counts.length + 1];
+                for (int i = 0; i < counts.length; i++) {
+                    prefix[i + 1] = prefix[i] + counts[i];
+                }
+                double[] sum = coordinates.get(cell);
+                cells.put(cell, new CellSeries(prefix, sum[0], sum[1], (long) sum[2], mostFrequent(labels.get(cell))));
+            }
+            return new SourceLayer(source, grid, days, cells);
+        }
+
+        /**
+         * 出现次数最多的地点名，次数相同时取字典序较小者
+         */
+        private static String mostFrequent(Map<String, Long> counts) {
+            String best = null;
+            long bestCount = 0;
+            if (counts != null) {
+                for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                    if (entry.getValue() > bestCount || (entry.getValue() == bestCount && entry.getKey().compareTo(best) < 0)) {
+                        best = entry.getKey();
+                        bestCount = entry.getValue();
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * 单元的按天计数前缀和；坐标合计按计数加权，用于求质心
+     */
+    private static class CellSeries {
+        private final long[] prefix;
+        private final double sumLat;
+        private final double sumLon;
+        private final long points;
+        private final String label;
+
+        CellSeries(long[] prefix, double sumLat, double sumLon, long points, String label) {
+            this.prefix = prefix;
+            this.sumLat = sumLat;
+            this.sumLon = sumLon;
+            this.points = points;
+            this.label = label;
+        }
+    }
+
+    /**
+     * 高风险网格单元：score 为平滑后的综合评分（0-100），metrics 按 Source 顺序存放各数据源窗口计数
+     */
+    public static class Zone {
+        private final long cell;
+        private final String label;
+        private final Source dominantSource;
+        private final double score;
+        private final long[] metrics;
+        private final double latitude;
+        private final double longitude;
+
+        Zone(long cell, String label, Source dominantSource, double score, long[] metrics,
+             double latitude, double longitude) {
+            this.cell = cell;
+            this.label = label;
+            this.dominantSource = dominantSource;
+            this.score = score;
+            this.metrics = metrics;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public long getCell() {
+            return cell;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Source getDominantSource() {
+            return dominantSource;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public long getMetric(Source source) {
+            return metrics[source.ordinal()];
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+    }
+}
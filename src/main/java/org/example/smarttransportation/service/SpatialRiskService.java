@@ -0,0 +1,307 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.config.RiskConfig;
+import org.example.smarttransportation.dto.DataChangeEvent;
+import org.example.smarttransportation.repository.ComplaintRepository;
+import org.example.smarttransportation.repository.PermittedEventRepository;
+import org.example.smarttransportation.repository.SubwayRidershipRepository;
+import org.example.smarttransportation.repository.TrafficAccidentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 空间风险网格服务
+ * 在后台把数据窗口内的事故、高客流记录、活动、投诉按坐标分桶到网格，风险预警按网格评分识别高风险区域，
+ * 不再依赖原始街道名分组。每个数据源只依赖一张数据表，版本递增后只重建该数据源，
+ * 重建完成前网格已过期，预警回退到按街道、站点识别。
+ * 收到数据变更事件时同样只重建该数据源：单个数据源只有一次查询，不按日期局部替换。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class SpatialRiskService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialRiskService.class);
+
+    /**
+     * 网格按曼哈顿中部纬度取等面积经度步长
+     */
+    private static final double REFERENCE_LATITUDE = 40.75;
+    private static final String EVENT_BOROUGH = "Manhattan";
+    private static final int HIGH_DENSITY_RIDERSHIP = 500;
+
+    private static final Map<SpatialRiskIndex.Source, String> TABLES = Map.of(
+        SpatialRiskIndex.Source.ACCIDENTS, "nyc_traffic_accidents",
+        SpatialRiskIndex.Source.RIDERSHIP, "subway_ridership",
+        SpatialRiskIndex.Source.EVENTS, "nyc_permitted_events",
+        SpatialRiskIndex.Source.COMPLAINTS, "complaints");
+
+    @Autowired
+    private TrafficAccidentRepository trafficAccidentRepository;
+
+    @Autowired
+    private SubwayRidershipRepository subwayRidershipRepository;
+
+    @Autowired
+    private PermittedEventRepository permittedEventRepository;
+
+    @Autowired
+    private ComplaintRepository complaintRepository;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private RiskConfig.RiskProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<SpatialRiskIndex.Source, SourceState> states = new EnumMap<>(SpatialRiskIndex.Source.class);
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spatial-risk-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SpatialGrid grid;
+    private LocalDate startDate;
+    private int days;
+    private volatile SpatialRiskIndex index;
+
+    @PostConstruct
+    public void init() {
+        RiskConfig.RiskProperties.Cube window = properties.getCube();
+        startDate = LocalDate.parse(window.getStartDate());
+        days = (int) ChronoUnit.DAYS.between(startDate, LocalDate.parse(window.getEndDate())) + 1;
+        if (days <= 0) {
+            throw new IllegalArgumentException("空间风险网格结束日期不能早于起始日期");
+        }
+        grid = new SpatialGrid(properties.getSpatial().getCellMeters(), REFERENCE_LATITUDE);
+        for (SpatialRiskIndex.Source source : SpatialRiskIndex.Source.values()) {
+            states.put(source, new SourceState());
+        }
+        Gauge.builder("risk.spatial.memory.bytes", this, service -> {
+            SpatialRiskIndex current = service.index;
+            return current != null ? current.estimateBytes() : 0;
+        }).description("空间风险网格估算内存占用").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 指定日期的高风险网格，网格未就绪、已过期或日期超出数据窗口时返回 null（调用方按街道、站点识别）
+     */
+    public List<SpatialRiskIndex.Zone> findHighRiskZones(LocalDate date) {
+        RiskConfig.RiskProperties.Spatial config = properties.getSpatial();
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return null;
+        }
+        // 先检查版本：未构建或过期的数据源在后台重建
+        boolean upToDate = isCurrent();
+        SpatialRiskIndex current = index;
+        if (current == null || !upToDate || current.dayOf(date) < 0) {
+            return null;
+        }
+        return current.topZones(current.dayOf(date), config.getTopZones(), config.getMinScore());
+    }
+
+    /**
+     * 后台重建所有数据源
+     */
+    public void refreshAllAsync() {
+        for (SpatialRiskIndex.Source source : SpatialRiskIndex.Source.values()) {
+            submit(source);
+        }
+    }
+
+    /**
+     * 后台重建依赖指定数据表的数据源
+     */
+    public void refreshAsync(String table) {
+        String name = table.replace("`", "").trim();
+        TABLES.forEach((source, sourceTable) -> {
+            if (sourceTable.equalsIgnoreCase(name)) {
+                submit(source);
+            }
+        });
+    }
+
+    /**
+     * 数据变更后在后台重建依赖该表的数据源
+     */
+    @EventListener
+    public void onDataChange(DataChangeEvent event) {
+        refreshAsync(event.getTable());
+    }
+
+    /**
+     * 空间网格划分，事故基线按同一网格汇总
+     */
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * 网格各数据源状态
+     */
+    public Map<String, Object> getStats() {
+        SpatialRiskIndex current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.getSpatial().getEnabled());
+        stats.put("cellMeters", grid.getCellMeters());
+        stats.put("startDate", startDate);
+        stats.put("days", days);
+        stats.put("ready", current != null);
+        stats.put("cells", current != null ? current.getCellCount() : 0);
+        stats.put("memoryBytes", current != null ? current.estimateBytes() : 0);
+
+        List<Map<String, Object>> sources = new ArrayList<>();
+        for (SpatialRiskIndex.Source source : SpatialRiskIndex.Source.values()) {
+            SourceState state = states.get(source);
+            SpatialRiskIndex.SourceLayer layer = state.layer;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("source", source.name().toLowerCase(Locale.ROOT));
+            item.put("table", TABLES.get(source));
+            item.put("cells", layer != null ? layer.getCellCount() : 0);
+            item.put("builtVersion", state.builtVersion);
+            item.put("tableVersion", tableVersionRegistry.currentVersion(TABLES.get(source)));
+            item.put("lastRefreshMillis", state.lastRefreshMillis);
+            item.put("lastError", state.lastError);
+            sources.add(item);
+        }
+        stats.put("sources", sources);
+        return stats;
+    }
+
+    private boolean isCurrent() {
+        boolean current = true;
+        for (SpatialRiskIndex.Source source : SpatialRiskIndex.Source.values()) {
+            if (states.get(source).builtVersion != tableVersionRegistry.currentVersion(TABLES.get(source))) {
+                submit(source);
+                current = false;
+            }
+        }
+        return current;
+    }
+
+    private void submit(SpatialRiskIndex.Source source) {
+        SourceState state = states.get(source);
+        if (state.queued.compareAndSet(false, true)) {
+            refreshExecutor.execute(() -> {
+                state.queued.set(false);
+                refresh(source);
+            });
+        }
+    }
+
+    /**
+     * 重建单个数据源并替换网格索引；四个数据源都已构建后才对外提供
+     */
+    void refresh(SpatialRiskIndex.Source source) {
+        SourceState state = states.get(source);
+        String table = TABLES.get(source);
+        long version = tableVersionRegistry.snapshot(List.of(table)).values().iterator().next();
+        long start = System.nanoTime();
+        try {
+            SpatialRiskIndex.LayerBuilder builder = new SpatialRiskIndex.LayerBuilder(source, grid, startDate, days);
+            switch (source) {
+                case ACCIDENTS -> loadAccidents(builder);
+                case RIDERSHIP -> loadRidership(builder);
+                case EVENTS -> loadEvents(builder);
+                case COMPLAINTS -> loadComplaints(builder);
+            }
+            state.layer = builder.build();
+            state.builtVersion = version;
+            state.lastError = null;
+
+            Map<SpatialRiskIndex.Source, SpatialRiskIndex.SourceLayer> layers = new EnumMap<>(SpatialRiskIndex.Source.class);
+            for (SpatialRiskIndex.Source each : SpatialRiskIndex.Source.values()) {
+                SpatialRiskIndex.SourceLayer layer = states.get(each).layer;
+                if (layer != null) {
+                    layers.put(each, layer);
+                }
+            }
+            if (layers.size() == SpatialRiskIndex.Source.values().length) {
+                index = new SpatialRiskIndex(grid, startDate, days, layers);
+            }
+            logger.info("空间风险网格 {} 数据源重建完成: {} 个网格, 表版本 {}", source, state.layer.getCellCount(), version);
+        } catch (Exception e) {
+            state.lastError = e.getMessage();
+            logger.warn("空间风险网格 {} 数据源重建失败，高风险区域将按街道、站点识别: {}", source, e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            state.lastRefreshMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            Timer.builder("risk.spatial.refresh").tag("source", source.name().toLowerCase(Locale.ROOT))
+                .description("空间风险网格分数据源重建耗时").register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void loadAccidents(SpatialRiskIndex.LayerBuilder builder) {
+        for (Object[] row : trafficAccidentRepository.findAccidentLocations(builder.getFirstDate(), builder.getLastDate())) {
+            builder.add(RiskCubeService.toLocalDate(row[0]), RiskCubeService.toDouble(row[1]),
+                RiskCubeService.toDouble(row[2]), 1, (String) row[3]);
+        }
+    }
+
+    private void loadRidership(SpatialRiskIndex.LayerBuilder builder) {
+        for (Object[] row : subwayRidershipRepository.countHighDensityRecordsByStationAndDay(
+                builder.getFirstDate().atStartOfDay(), builder.getLastDate().plusDays(1).atStartOfDay(),
+                HIGH_DENSITY_RIDERSHIP)) {
+            builder.add(RiskCubeService.toLocalDate(row[0]), RiskCubeService.toDouble(row[2]),
+                RiskCubeService.toDouble(row[3]), ((Number) row[4]).longValue(), (String) row[1]);
+        }
+    }
+
+    private void loadEvents(SpatialRiskIndex.LayerBuilder builder) {
+        for (Object[] row : permittedEventRepository.findEventLocations(EVENT_BOROUGH, builder.getFirstDate(),
+                builder.getLastDate())) {
+            builder.addSpan(RiskCubeService.toLocalDate(row[0]), RiskCubeService.toLocalDate(row[1]),
+                RiskCubeService.toDouble(row[2]), RiskCubeService.toDouble(row[3]), 1, (String) row[4]);
+        }
+    }
+
+    /**
+     * 投诉类型不是地点名，不参与网格命名
+     */
+    private void loadComplaints(SpatialRiskIndex.LayerBuilder builder) {
+        for (Object[] row : complaintRepository.findComplaintLocations(builder.getFirstDate().atStartOfDay(),
+                builder.getLastDate().plusDays(1).atStartOfDay())) {
+            builder.add(RiskCubeService.toLocalDate(row[0]), RiskCubeService.toDouble(row[1]),
+                RiskCubeService.toDouble(row[2]), 1, null);
+        }
+    }
+
+    /**
+     * 单个数据源运行状态
+     */
+    private static class SourceState {
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile SpatialRiskIndex.SourceLayer layer;
+        private volatile long builtVersion = -1;
+        private volatile long lastRefreshMillis;
+        private volatile String lastError;
+    }
+}
@@ -0,0 +1,353 @@
+package org.example.smarttransportation.service;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.WithItem;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * NL2SQL 执行防护
+ * 基于 SQL 语法树校验：仅允许 SELECT，仅允许访问白名单中的表和字段；
+ * 自动注入或收紧 LIMIT。执行阶段的成本与并发控制见 SqlQueryExecutor。
+ *
+ * 单表查询的 SELECT * / t.* 展开为白名单字段，其他位置的 * 拒绝；表名只允许不带库名或带当前数据库名。
+ * 查询中定义的列别名只能在同层 ORDER BY 和外层查询（派生表、WITH）中引用，不会放行同名的表字段。
+ *
+ * 校验不通过时抛出 IllegalArgumentException，消息说明拒绝原因。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class SqlGuard {
+
+    /**
+     * 允许访问的表及字段（SchemaCatalog 只向提示词暴露这些表和字段）
+     */
+    static final Map<String, Set<String>> ALLOWED_COLUMNS = Map.of(
+        "citibike_trips_202402", Set.of("started_at", "start_station_name", "ended_at", "end_station_name",
+            "start_lat", "start_lng", "end_lat", "end_lng"),
+        "complaints", Set.of("unique_key", "closed_at", "agency", "complaint_type", "descriptor", "status",
+            "resolution_description", "latitude", "longitude", "borough", "created_at"),
+        "nyc_traffic_accidents", Set.of("collision_id", "crash_date", "crash_time", "crash_minute", "borough",
+            "latitude", "longitude", "on_street_name", "cross_street_name", "off_street_name",
+            "number_of_persons_injured", "number_of_persons_killed", "number_of_pedestrians_injured",
+            "number_of_pedestrians_killed", "number_of_cyclist_injured", "number_of_cyclist_killed",
+            "number_of_motorist_injured", "number_of_motorist_killed", "contributing_factor_vehicle_1",
+            "contributing_factor_vehicle_2", "vehicle_type_code1", "vehicle_type_code2"),
+        "nyc_permitted_events", Set.of("event_id", "event_name", "start_at", "end_at", "event_borough",
+            "event_location", "event_street_side", "street_closure_type", "latitude", "longitude",
+            "geocode_query", "geocode_status"),
+        "subway_ridership", Set.of("transit_timestamp", "station_complex_id", "station_complex", "borough",
+            "ridership", "latitude", "longitude", "stratum")
+    );
+
+    /**
+     * 解析器会把这些关键字识别为字段（如 TIMESTAMPDIFF(MINUTE, ...)），需放行
+     */
+    private static final Set<String> KEYWORD_COLUMNS = Set.of(
+        "microsecond", "second", "minute", "hour", "day", "week", "month", "quarter", "year",
+        "current_date", "current_time", "current_timestamp", "true", "false", "null"
+    );
+
+    private static final Pattern STRING_LITERAL_PATTERN = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern DATABASE_PATTERN = Pattern.compile("^jdbc:mysql://[^/]*/([^?;/]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FORBIDDEN_CLAUSE_PATTERN = Pattern.compile(
+        "\\bINTO\\b|\\bFOR\\s+UPDATE\\b|\\bFOR\\s+SHARE\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b"
+            + "|\\bSLEEP\\s*\\(|\\bBENCHMARK\\s*\\(|\\bLOAD_FILE\\s*\\(",
+        Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Autowired(required = false)
+    private DataSourceProperties dataSourceProperties;
+
+    /**
+     * 校验并改写 SQL：语法树检查通过后返回注入/收紧 LIMIT 的 SQL
+     */
+    public String check(String sql) {
+        if (!StringUtils.hasText(sql)) {
+            throw new IllegalArgumentException("SQL为空");
+        }
+
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql.trim().replaceAll(";+\\s*$", ""));
+        } catch (JSQLParserException e) {
+            throw new IllegalArgumentException("SQL语法无法解析");
+        }
+        if (!(statement instanceof Select select)) {
+            throw new IllegalArgumentException("只允许SELECT查询");
+        }
+
+        String deparsed = select.toString();
+        String withoutLiterals = STRING_LITERAL_PATTERN.matcher(deparsed).replaceAll("''");
+        Matcher forbidden = FORBIDDEN_CLAUSE_PATTERN.matcher(withoutLiterals);
+        if (forbidden.find()) {
+            throw new IllegalArgumentException("不允许的子句: " + forbidden.group().trim());
+        }
+        if (select instanceof PlainSelect plainSelect && plainSelect.getIntoTables() != null) {
+            throw new IllegalArgumentException("不允许SELECT INTO");
+        }
+
+        checkTablesAndColumns(select);
+        enforceLimit(select);
+        return select.toString();
+    }
+
+    private void checkTablesAndColumns(Select select) {
+        // TablesNamesFinder 只返回物理表，WITH 子句中定义的名称不在其中
+        ColumnCollector collector = new ColumnCollector(withAliases(select));
+        List<String> tables = collector.getTableList((Statement) select);
+
+        Set<String> allowedColumns = new HashSet<>(KEYWORD_COLUMNS);
+        for (String table : tables) {
+            allowedColumns.addAll(allowedColumns(table));
+        }
+
+        for (Column column : collector.columns) {
+            String name = column.getColumnName();
+            if (name == null || name.startsWith("\"")) {
+                // MySQL 双引号字符串会被解析为字段，按字面量放行
+                continue;
+            }
+            if (collector.aliasReferences.contains(column)) {
+                continue;
+            }
+            if (!allowedColumns.contains(normalizeName(name))) {
+                throw new IllegalArgumentException("不允许访问的字段: " + name);
+            }
+        }
+    }
+
+    /**
+     * 白名单表的字段；表名带库名时只允许当前数据库
+     */
+    private Set<String> allowedColumns(String qualifiedTable) {
+        Set<String> columns = ALLOWED_COLUMNS.get(tableName(qualifiedTable));
+        if (columns == null) {
+            throw new IllegalArgumentException("不允许访问的表: " + qualifiedTable);
+        }
+        return columns;
+    }
+
+    private String tableName(String qualifiedTable) {
+        String value = qualifiedTable.replace("`", "").trim().toLowerCase(Locale.ROOT);
+        int dot = value.lastIndexOf('.');
+        if (dot < 0) {
+            return value;
+        }
+        String database = databaseName();
+        if (database == null || !database.equals(value.substring(0, dot))) {
+            throw new IllegalArgumentException("不允许跨库访问: " + qualifiedTable);
+        }
+        return value.substring(dot + 1);
+    }
+
+    /**
+     * NL2SQL 查询所在的数据库名，取自只读数据源地址（未配置时为主数据源）
+     */
+    String databaseName() {
+        NL2SQLConfig.NL2SQLProperties.Datasource datasource = properties.getDatasource();
+        String url = StringUtils.hasText(datasource.getReplicaUrl()) ? datasource.getReplicaUrl()
+            : StringUtils.hasText(datasource.getUrl()) ? datasource.getUrl()
+            : dataSourceProperties != null ? dataSourceProperties.getUrl() : null;
+        if (url == null) {
+            return null;
+        }
+        Matcher matcher = DATABASE_PATTERN.matcher(url);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * WITH 子句查询定义的列别名，整条语句中都可引用
+     */
+    private static Set<String> withAliases(Select select) {
+        Set<String> aliases = new HashSet<>();
+        if (select.getWithItemsList() != null) {
+            for (WithItem withItem : select.getWithItemsList()) {
+                aliases.addAll(selectItemAliases(withItem.getSelect()));
+            }
+        }
+        return aliases;
+    }
+
+    /**
+     * 查询最外层 SELECT 列表定义的别名（UNION 取第一个分支）
+     */
+    private static Set<String> selectItemAliases(Select select) {
+        Set<String> aliases = new HashSet<>();
+        if (select instanceof ParenthesedSelect parenthesed) {
+            return selectItemAliases(parenthesed.getSelect());
+        }
+        if (select instanceof SetOperationList setOperation && !setOperation.getSelects().isEmpty()) {
+            return selectItemAliases(setOperation.getSelects().get(0));
+        }
+        if (select instanceof PlainSelect plainSelect && plainSelect.getSelectItems() != null) {
+            for (SelectItem<?> item : plainSelect.getSelectItems()) {
+                if (item.getAlias() != null) {
+                    aliases.add(normalizeName(item.getAlias().getName()));
+                }
+            }
+        }
+        return aliases;
+    }
+
+    private void enforceLimit(Select select) {
+        NL2SQLConfig.NL2SQLProperties.Guard config = properties.getGuard();
+        Limit limit = select.getLimit();
+        if (limit == null) {
+            select.setLimit(new Limit().withRowCount(new LongValue(config.getDefaultLimit())));
+            return;
+        }
+        if (!(limit.getRowCount() instanceof LongValue rowCount) || rowCount.getValue() > config.getMaxLimit()) {
+            limit.setRowCount(new LongValue(config.getMaxLimit()));
+        }
+    }
+
+    /**
+     * 字段名、别名的比较形式：去掉反引号与限定前缀，小写
+     */
+    private static String normalizeName(String name) {
+        String value = name.replace("`", "").trim().toLowerCase(Locale.ROOT);
+        int dot = value.lastIndexOf('.');
+        return dot >= 0 ? value.substring(dot + 1) : value;
+    }
+
+    /**
+     * 遍历语法树收集表名的同时收集所有字段引用；展开单表查询的 *，并记下引用列别名的字段
+     */
+    private class ColumnCollector extends TablesNamesFinder {
+        private final Set<Column> columns = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Column> aliasReferences = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<String> withAliases;
+        private final Deque<Set<String>> derivedAliases = new ArrayDeque<>();
+
+        private ColumnCollector(Set<String> withAliases) {
+            this.withAliases = withAliases;
+        }
+
+        @Override
+        public void visit(PlainSelect plainSelect) {
+            expandAllColumns(plainSelect);
+
+            // 外层查询可引用派生表和 WITH 查询定义的列别名；派生表别名限定的引用记为 "t.列别名"
+            Set<String> derived = new HashSet<>(withAliases);
+            addDerivedAliases(plainSelect.getFromItem(), derived);
+            if (plainSelect.getJoins() != null) {
+                for (Join join : plainSelect.getJoins()) {
+                    addDerivedAliases(join.getRightItem(), derived);
+                }
+            }
+            derivedAliases.push(derived);
+            try {
+                super.visit(plainSelect);
+                if (plainSelect.getOrderByElements() != null) {
+                    // 同层 ORDER BY 可直接引用 SELECT 列表中的别名（含省略 AS 的写法）
+                    Set<String> local = selectItemAliases(plainSelect);
+                    for (OrderByElement element : plainSelect.getOrderByElements()) {
+                        if (element.getExpression() instanceof Column column
+                            && column.getTable() == null && local.contains(normalizeName(column.getColumnName()))) {
+                            aliasReferences.add(column);
+                        }
+                        element.getExpression().accept(this);
+                    }
+                }
+            } finally {
+                derivedAliases.pop();
+            }
+        }
+
+        @Override
+        public void visit(Column tableColumn) {
+            columns.add(tableColumn);
+            Set<String> derived = derivedAliases.peek();
+            String name = normalizeName(tableColumn.getColumnName());
+            String key = tableColumn.getTable() == null || tableColumn.getTable().getName() == null
+                ? name : normalizeName(tableColumn.getTable().getName()) + "." + name;
+            if (derived != null && derived.contains(key)) {
+                aliasReferences.add(tableColumn);
+            }
+            super.visit(tableColumn);
+        }
+
+        private void addDerivedAliases(FromItem fromItem, Set<String> derived) {
+            if (fromItem instanceof Select subquery) {
+                Set<String> aliases = selectItemAliases(subquery);
+                derived.addAll(aliases);
+                if (subquery.getAlias() != null) {
+                    String qualifier = normalizeName(subquery.getAlias().getName());
+                    aliases.forEach(alias -> derived.add(qualifier + "." + alias));
+                }
+            }
+        }
+
+        /**
+         * 单表查询的 * 与 t.* 展开为白名单字段（按字段名排序），其他位置的 * 无法逐字段校验，直接拒绝
+         */
+        private void expandAllColumns(PlainSelect plainSelect) {
+            if (plainSelect.getSelectItems() == null) {
+                return;
+            }
+            List<SelectItem<?>> expanded = new ArrayList<>();
+            boolean changed = false;
+            for (SelectItem<?> item : plainSelect.getSelectItems()) {
+                if (!(item.getExpression() instanceof AllColumns allColumns)) {
+                    expanded.add(item);
+                    continue;
+                }
+                Table table = starTable(plainSelect, allColumns);
+                Table qualifier = allColumns instanceof AllTableColumns ? ((AllTableColumns) allColumns).getTable() : null;
+                for (String name : new TreeSet<>(allowedColumns(table.getFullyQualifiedName()))) {
+                    expanded.add(new SelectItem<>(new Column(qualifier, name)));
+                }
+                changed = true;
+            }
+            if (changed) {
+                plainSelect.setSelectItems(expanded);
+            }
+        }
+
+        private Table starTable(PlainSelect plainSelect, AllColumns allColumns) {
+            if (!(plainSelect.getFromItem() instanceof Table table)
+                || (plainSelect.getJoins() != null && !plainSelect.getJoins().isEmpty())) {
+                throw new IllegalArgumentException("多表或子查询中不允许使用 *，请列出需要的字段");
+            }
+            if (allColumns instanceof AllTableColumns tableColumns) {
+                String qualifier = normalizeName(tableColumns.getTable().getName());
+                boolean matches = table.getAlias() != null
+                    ? qualifier.equals(normalizeName(table.getAlias().getName()))
+                    : qualifier.equals(normalizeName(table.getName()));
+                if (!matches) {
+                    throw new IllegalArgumentException("无法解析的字段引用: " + tableColumns);
+                }
+            }
+            return table;
+        }
+    }
+}
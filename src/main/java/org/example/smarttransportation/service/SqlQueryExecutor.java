@@ -0,0 +1,363 @@
+package org.example.smarttransportation.service;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NL2SQL 查询执行器（并发隔离）
+ * 生成的 SQL 使用独立的只读连接池执行，与 JPA 主连接池隔离；配置只读副本时查询全部路由到副本。
+ * 同时执行的查询数受信号量限制，排队超时即拒绝；执行前通过 EXPLAIN 估算扫描行数，超过阈值直接拒绝；
+ * 执行时设置 JDBC 查询超时，并以只进游标流式读取结果预览；执行中的语句登记到 QueryExecution，可随时取消。
+ * 校验阶段的 EXPLAIN 结果随 Validation 传给执行阶段，同一条 SQL 不再重复 EXPLAIN。
+ *
+ * 指标：nl2sql.query.queue.wait（排队耗时）、nl2sql.query.execution（执行耗时，按结果分类）、
+ * nl2sql.query.rejected（按原因分类）、nl2sql.query.active、nl2sql.query.waiting。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class SqlQueryExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlQueryExecutor.class);
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 不注册为 DataSource Bean，避免主数据源自动配置失效
+     */
+    private HikariDataSource readOnlyDataSource;
+    private JdbcTemplate readOnlyJdbcTemplate;
+    private Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private Timer queueWaitTimer;
+
+    @PostConstruct
+    public void init() {
+        NL2SQLConfig.NL2SQLProperties.Datasource datasource = properties.getDatasource();
+        int maxConcurrent = Math.max(1, properties.getBulkhead().getMaxConcurrentQueries());
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("nl2sql-readonly");
+        config.setJdbcUrl(resolveUrl(datasource));
+        config.setUsername(StringUtils.hasText(datasource.getUsername())
+            ? datasource.getUsername() : dataSourceProperties.determineUsername());
+        config.setPassword(StringUtils.hasText(datasource.getPassword())
+            ? datasource.getPassword() : dataSourceProperties.determinePassword());
+        config.setReadOnly(true);
+        // 仅此连接池使用服务端游标，按 fetchSize 分批拉取预览；主数据源仍一次性读取结果
+        config.addDataSourceProperty("useCursorFetch", "true");
+        config.setMaximumPoolSize(maxConcurrent);
+        config.setMinimumIdle(1);
+        config.setConnectionTimeout(datasource.getConnectionTimeoutMillis());
+        // 启动时不强制建立连接，数据库不可用时不影响应用启动
+        config.setInitializationFailTimeout(-1);
+        readOnlyDataSource = new HikariDataSource(config);
+
+        NL2SQLConfig.NL2SQLProperties.Guard guard = properties.getGuard();
+        readOnlyJdbcTemplate = new JdbcTemplate(readOnlyDataSource);
+        readOnlyJdbcTemplate.setQueryTimeout(guard.getQueryTimeoutSeconds());
+        readOnlyJdbcTemplate.setMaxRows(guard.getMaxLimit());
+
+        permits = new Semaphore(maxConcurrent, true);
+
+        queueWaitTimer = Timer.builder("nl2sql.query.queue.wait")
+            .description("NL2SQL查询排队等待耗时").publishPercentileHistogram().register(meterRegistry);
+        Gauge.builder("nl2sql.query.active", active, AtomicInteger::get)
+            .description("NL2SQL正在执行的查询数").register(meterRegistry);
+        Gauge.builder("nl2sql.query.waiting", waiting, AtomicInteger::get)
+            .description("NL2SQL排队中的查询数").register(meterRegistry);
+
+        logger.info("NL2SQL只读连接池已创建: 最大并发 {}, 路由到{}", maxConcurrent,
+            StringUtils.hasText(datasource.getReplicaUrl()) ? "只读副本" : "主库");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (readOnlyDataSource != null) {
+            readOnlyDataSource.close();
+        }
+    }
+
+    /**
+     * 执行已通过校验的 SQL：排队获取执行许可后估算成本并流式读取前 N 行；
+     * 结果超过预览行数时另行 COUNT 总行数，内存中至多保留预览行
+     *
+     * @throws IllegalStateException    排队超时
+     * @throws IllegalArgumentException 预计扫描行数超过上限
+     */
+    public ResultPreview execute(String checkedSql) {
+        return execute(checkedSql, QueryExecution.untracked());
+    }
+
+    /**
+     * 执行已通过校验的 SQL，并向执行上下文登记语句以便取消、报告已读取的行数
+     *
+     * @throws java.util.concurrent.CancellationException 查询已被取消
+     */
+    public ResultPreview execute(String checkedSql, QueryExecution execution) {
+        return execute(checkedSql, null, execution);
+    }
+
+    /**
+     * 执行已通过 validate 的 SQL：执行的正是校验过的语句时沿用校验时的扫描行数估算，不再 EXPLAIN
+     *
+     * @param validation 校验结果，可为 null；与 checkedSql 不是同一条语句时（如改写到汇总表）重新估算
+     */
+    public ResultPreview execute(String checkedSql, Validation validation, QueryExecution execution) {
+        acquire();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            // 排队期间可能已被取消
+            execution.checkCancelled();
+            long estimatedRows = validation != null && validation.isValid() && checkedSql.equals(validation.getSql())
+                ? validation.getEstimatedRows() : explainRows(checkedSql);
+            ResultPreview preview = queryPreview(checkedSql, estimatedRows, execution);
+            outcome = "success";
+            return preview;
+        } catch (IllegalArgumentException e) {
+            outcome = "rejected";
+            throw e;
+        } catch (RuntimeException e) {
+            if (execution.isCancelled()) {
+                outcome = "cancelled";
+                throw new CancellationException("查询已取消");
+            }
+            throw e;
+        } finally {
+            execution.detach();
+            active.decrementAndGet();
+            permits.release();
+            Timer.builder("nl2sql.query.execution").tag("outcome", outcome)
+                .description("NL2SQL查询执行耗时").publishPercentileHistogram().register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 以 EXPLAIN 校验 SQL 能否在数据库上执行（字段名、语法等），失败时结果中带数据库错误信息；
+     * 通过时同时记下扫描行数估算，供 execute 复用。连接失败等非 SQL 本身的错误照常抛出
+     *
+     * @throws IllegalStateException 排队超时
+     */
+    public Validation validate(String checkedSql) {
+        acquire();
+        try {
+            List<Map<String, Object>> plan = readOnlyJdbcTemplate.queryForList("EXPLAIN " + checkedSql);
+            long estimatedRows = Boolean.TRUE.equals(properties.getGuard().getExplainEnabled()) ? estimateRows(plan) : 0;
+            return new Validation(checkedSql, null, estimatedRows);
+        } catch (InvalidDataAccessResourceUsageException e) {
+            return new Validation(checkedSql, e.getMostSpecificCause().getMessage(), 0);
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * 并发与连接池状态
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrentQueries", properties.getBulkhead().getMaxConcurrentQueries());
+        stats.put("active", active.get());
+        stats.put("waiting", waiting.get());
+        stats.put("queueWaitMeanMillis", queueWaitTimer.mean(TimeUnit.MILLISECONDS));
+        stats.put("queueWaitMaxMillis", queueWaitTimer.max(TimeUnit.MILLISECONDS));
+        stats.put("rejectedQueueTimeout", rejectedCount("queue_timeout"));
+        stats.put("rejectedCost", rejectedCount("cost"));
+        stats.put("replica", StringUtils.hasText(properties.getDatasource().getReplicaUrl()));
+        return stats;
+    }
+
+    private void acquire() {
+        long timeoutMillis = properties.getBulkhead().getQueueTimeoutMillis();
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("查询排队被中断");
+        } finally {
+            waiting.decrementAndGet();
+            queueWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            reject("queue_timeout");
+            throw new IllegalStateException(String.format("查询繁忙，排队超过 %d 毫秒，请稍后重试", timeoutMillis));
+        }
+        active.incrementAndGet();
+    }
+
+    private ResultPreview queryPreview(String checkedSql, long estimatedRows, QueryExecution execution) {
+        NL2SQLConfig.NL2SQLProperties.Guard config = properties.getGuard();
+        if (estimatedRows > config.getMaxExplainRows()) {
+            reject("cost");
+            throw new IllegalArgumentException(String.format(
+                "查询预计扫描 %d 行，超过上限 %d 行，请缩小时间范围或增加过滤条件", estimatedRows, config.getMaxExplainRows()));
+        }
+
+        int previewRows = Math.max(1, config.getPreviewRows());
+        // 多取一行用于判断是否还有剩余结果，驱动每批也只拉取这么多
+        int fetchSize = Math.min(config.getFetchSize(), previewRows + 1);
+        ResultPreview preview = readOnlyJdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                checkedSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            execution.attach(statement);
+            return statement;
+        }, (ResultSetExtractor<ResultPreview>) resultSet -> ResultPreview.read(resultSet, previewRows));
+
+        if (preview == null) {
+            return ResultPreview.empty();
+        }
+        execution.progress(NL2SQLService.QueryProgress.rowsFetched(preview.getPreviewRows(), !preview.isTruncated()));
+        if (preview.isTruncated()) {
+            String countSql = "SELECT COUNT(*) FROM (" + checkedSql + ") AS preview_total";
+            Long total = readOnlyJdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(countSql);
+                execution.attach(statement);
+                return statement;
+            }, (ResultSetExtractor<Long>) resultSet -> resultSet.next() ? resultSet.getLong(1) : null);
+            preview.setTotalRows(total != null ? total : preview.getPreviewRows());
+            execution.progress(NL2SQLService.QueryProgress.rowsFetched(preview.getTotalRows(), true));
+        }
+        return preview;
+    }
+
+    /**
+     * EXPLAIN 估算扫描行数：同一 SELECT 内各表 rows 相乘（嵌套循环连接），各 SELECT 之间相加
+     */
+    long explainRows(String checkedSql) {
+        if (!Boolean.TRUE.equals(properties.getGuard().getExplainEnabled())) {
+            return 0;
+        }
+        List<Map<String, Object>> plan;
+        try {
+            plan = readOnlyJdbcTemplate.queryForList("EXPLAIN " + checkedSql);
+        } catch (Exception e) {
+            logger.warn("EXPLAIN 执行失败，跳过行数估算: {}", e.getMessage());
+            return 0;
+        }
+        return estimateRows(plan);
+    }
+
+    private static long estimateRows(List<Map<String, Object>> plan) {
+        Map<String, Long> rowsBySelect = new LinkedHashMap<>();
+        for (Map<String, Object> row : plan) {
+            Object rows = row.get("rows");
+            if (!(rows instanceof Number number)) {
+                continue;
+            }
+            String selectId = String.valueOf(row.get("id"));
+            long value = Math.max(1L, number.longValue());
+            rowsBySelect.merge(selectId, value, SqlQueryExecutor::saturatedMultiply);
+        }
+
+        long total = 0;
+        for (long rows : rowsBySelect.values()) {
+            total = total > Long.MAX_VALUE - rows ? Long.MAX_VALUE : total + rows;
+        }
+        return total;
+    }
+
+    private String resolveUrl(NL2SQLConfig.NL2SQLProperties.Datasource datasource) {
+        if (StringUtils.hasText(datasource.getReplicaUrl())) {
+            return datasource.getReplicaUrl();
+        }
+        if (StringUtils.hasText(datasource.getUrl())) {
+            return datasource.getUrl();
+        }
+        return dataSourceProperties.determineUrl();
+    }
+
+    private void reject(String reason) {
+        Counter.builder("nl2sql.query.rejected").tag("reason", reason)
+            .description("NL2SQL被拒绝的查询数").register(meterRegistry).increment();
+    }
+
+    private double rejectedCount(String reason) {
+        Counter counter = meterRegistry.find("nl2sql.query.rejected").tag("reason", reason).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long result = a * b;
+        if (a != 0 && (result / a != b || result < 0)) {
+            return Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    /**
+     * EXPLAIN 校验结果：通过时带扫描行数估算（未开启 explain-enabled 时为 0）
+     */
+    public static class Validation {
+        private final String sql;
+        private final String error;
+        private final long estimatedRows;
+
+        Validation(String sql, String error, long estimatedRows) {
+            this.sql = sql;
+            this.error = error;
+            this.estimatedRows = estimatedRows;
+        }
+
+        public boolean isValid() {
+            return error == null;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * 数据库返回的错误信息，校验通过时为 null
+         */
+        public String getError() {
+            return error;
+        }
+
+        public long getEstimatedRows() {
+            return estimatedRows;
+        }
+    }
+}
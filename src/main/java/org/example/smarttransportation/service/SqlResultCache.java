@@ -0,0 +1,287 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * NL2SQL 查询结果缓存
+ * 以规范化后的 SQL 文本为键缓存查询结果预览，限制条目数、单条行数和总行数；
+ * 条目记录所依赖表的版本号，表数据重新导入（版本递增）或超过 TTL 后失效。
+ *
+ * 指标：nl2sql.cache.lookup（命中/未命中耗时）、nl2sql.cache.evictions、
+ * nl2sql.cache.entries、nl2sql.cache.rows、nl2sql.cache.memory（估算字节数）。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class SqlResultCache {
+
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'|`[^`]+`|[\\w.]+|[(),]");
+    private static final Set<String> TABLE_TERMINATORS = Set.of(
+        "where", "group", "order", "limit", "having", "union", "join", "inner", "left", "right",
+        "cross", "on", "using", "natural", "straight_join", ")"
+    );
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Autowired
+    private TableVersionRegistry tableVersionRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalRows;
+    private long totalBytes;
+
+    private Timer hitTimer;
+    private Timer missTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hitTimer = Timer.builder("nl2sql.cache.lookup").tag("result", "hit")
+            .description("NL2SQL结果缓存查找耗时").register(meterRegistry);
+        missTimer = Timer.builder("nl2sql.cache.lookup").tag("result", "miss")
+            .description("NL2SQL结果缓存查找耗时").register(meterRegistry);
+        Gauge.builder("nl2sql.cache.entries", this, cache -> cache.size())
+            .description("NL2SQL结果缓存条目数").register(meterRegistry);
+        Gauge.builder("nl2sql.cache.rows", this, cache -> cache.getTotalRows())
+            .description("NL2SQL结果缓存总行数").register(meterRegistry);
+        Gauge.builder("nl2sql.cache.memory", this, cache -> cache.getTotalBytes())
+            .baseUnit("bytes").description("NL2SQL结果缓存估算内存占用").register(meterRegistry);
+    }
+
+    /**
+     * 查找缓存结果，未命中、已过期或依赖表版本变化时返回 null
+     */
+    public ResultPreview get(String sql) {
+        if (!isEnabled()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        String key = canonicalize(sql);
+        ResultPreview preview = null;
+        synchronized (this) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                if (isExpired(entry)) {
+                    remove(key, "ttl");
+                } else if (!tableVersionRegistry.isCurrent(entry.tableVersions)) {
+                    remove(key, "version");
+                } else {
+                    preview = entry.preview;
+                }
+            }
+        }
+        (preview != null ? hitTimer : missTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return preview;
+    }
+
+    /**
+     * 写入缓存；超过单条行数上限或无法识别依赖表的查询不缓存
+     */
+    public void put(String sql, ResultPreview preview) {
+        NL2SQLConfig.NL2SQLProperties.Cache config = properties.getCache();
+        if (!isEnabled() || preview == null || preview.getPreviewRows() > config.getMaxRowsPerEntry()) {
+            return;
+        }
+        String key = canonicalize(sql);
+        Set<String> tables = extractTables(key);
+        if (tables.isEmpty()) {
+            return;
+        }
+
+        CacheEntry entry = new CacheEntry(preview, tableVersionRegistry.snapshot(tables),
+            System.currentTimeMillis(), preview.estimateBytes() + key.length() * 2L);
+
+        synchronized (this) {
+            remove(key, null);
+            entries.put(key, entry);
+            totalRows += preview.getPreviewRows();
+            totalBytes += entry.bytes;
+            evictIfNecessary(config);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalRows = 0;
+        totalBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalRows() {
+        return totalRows;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("rows", totalRows);
+            stats.put("estimatedBytes", totalBytes);
+        }
+        stats.put("hits", hitTimer.count());
+        stats.put("misses", missTimer.count());
+        stats.put("hitMeanMillis", hitTimer.mean(TimeUnit.MILLISECONDS));
+        return stats;
+    }
+
+    /**
+     * SQL 规范化：字符串字面量外的空白合并、转小写，去掉末尾分号
+     */
+    static String canonicalize(String sql) {
+        if (!StringUtils.hasText(sql)) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                builder.append(c);
+                if (c == '\\' && i + 1 < sql.length()) {
+                    builder.append(sql.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                builder.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'' || c == '"') {
+                quote = c;
+                builder.append(c);
+            } else {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        int end = builder.length();
+        while (end > 0 && (builder.charAt(end - 1) == ';' || builder.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        return builder.substring(0, end);
+    }
+
+    /**
+     * 从规范化 SQL 中提取 FROM / JOIN 引用的表名（含逗号连接的多表）
+     */
+    static Set<String> extractTables(String canonicalSql) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN_PATTERN.matcher(canonicalSql);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+
+        Set<String> tables = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (!token.equals("from") && !token.equals("join")) {
+                continue;
+            }
+            int j = i + 1;
+            while (j < tokens.size()) {
+                String name = tokens.get(j);
+                if (name.equals("(")) {
+                    break;
+                }
+                tables.add(name.replace("`", ""));
+                j++;
+                // 跳过别名，遇到逗号继续读取下一张表
+                while (j < tokens.size() && !tokens.get(j).equals(",")
+                    && !TABLE_TERMINATORS.contains(tokens.get(j))) {
+                    j++;
+                }
+                if (j < tokens.size() && tokens.get(j).equals(",")) {
+                    j++;
+                } else {
+                    break;
+                }
+            }
+        }
+        return tables;
+    }
+
+    private boolean isEnabled() {
+        return Boolean.TRUE.equals(properties.getCache().getEnabled());
+    }
+
+    private boolean isExpired(CacheEntry entry) {
+        long ttlMillis = properties.getCache().getTtlSeconds() * 1000L;
+        return ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt > ttlMillis;
+    }
+
+    private void evictIfNecessary(NL2SQLConfig.NL2SQLProperties.Cache config) {
+        Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()
+            && (entries.size() > config.getMaxEntries() || totalRows > config.getMaxTotalRows())) {
+            Map.Entry<String, CacheEntry> eldest = iterator.next();
+            String reason = entries.size() > config.getMaxEntries() ? "size" : "rows";
+            iterator.remove();
+            release(eldest.getValue(), reason);
+        }
+    }
+
+    private void remove(String key, String reason) {
+        CacheEntry removed = entries.remove(key);
+        if (removed != null) {
+            release(removed, reason);
+        }
+    }
+
+    private void release(CacheEntry entry, String reason) {
+        totalRows -= entry.preview.getPreviewRows();
+        totalBytes -= entry.bytes;
+        if (reason != null) {
+            Counter.builder("nl2sql.cache.evictions").tag("reason", reason).register(meterRegistry).increment();
+        }
+    }
+
+    private static class CacheEntry {
+        private final ResultPreview preview;
+        private final Map<String, Long> tableVersions;
+        private final long createdAt;
+        private final long bytes;
+
+        private CacheEntry(ResultPreview preview, Map<String, Long> tableVersions, long createdAt, long bytes) {
+            this.preview = preview;
+            this.tableVersions = tableVersions;
+            this.createdAt = createdAt;
+            this.bytes = bytes;
+        }
+    }
+}
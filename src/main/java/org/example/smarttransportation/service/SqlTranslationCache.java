@@ -0,0 +1,285 @@
+package org.example.smarttransportation.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NL2SQL 翻译缓存与模板库
+ * 以问题模板键（日期、行政区、站点名抽象为槽位后的规范化问题）为键，保存已验证可执行的参数化 SQL。
+ * 查找顺序：模板键精确匹配 -> 模板键向量近邻（相似度超过阈值且槽位一致），命中后填充槽位即可，无需调用大模型；
+ * 填充出的 SQL 只替换字面量，调用方只做语法树校验，执行时的成本估算照常进行。模板库中没有相同槽位组合的模板时不做近邻查找，避免每次未命中都向量化一次问题。
+ *
+ * 指标：nl2sql.translation（按来源计数）、nl2sql.llm.latency（大模型翻译耗时）、
+ * nl2sql.translation.llm.avoided（命中缓存节省的大模型耗时估算，毫秒）。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Service
+public class SqlTranslationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlTranslationCache.class);
+
+    private static final int NEIGHBOUR_CANDIDATES = 32;
+
+    @Autowired
+    private NL2SQLConfig.NL2SQLProperties properties;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LinkedHashMap<String, QuestionTemplate.SqlTemplate> templates = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * 模板键向量索引，槽位编号与 indexedKeys 下标一一对应；模板被淘汰后索引中保留旧槽位，查找时跳过
+     */
+    private QuantizedVectorIndex neighbourIndex;
+    private final List<String> indexedKeys = new ArrayList<>();
+
+    private volatile Map<String, String> stationNames;
+
+    private Timer llmTimer;
+    private Counter avoidedLlmMillis;
+
+    @PostConstruct
+    public void registerMetrics() {
+        llmTimer = Timer.builder("nl2sql.llm.latency")
+            .description("大模型生成SQL耗时").register(meterRegistry);
+        avoidedLlmMillis = Counter.builder("nl2sql.translation.llm.avoided")
+            .baseUnit("milliseconds").description("翻译缓存命中节省的大模型耗时估算").register(meterRegistry);
+    }
+
+    /**
+     * 解析问题模板
+     */
+    public QuestionTemplate parse(String question) {
+        return QuestionTemplate.parse(question, getStationNames());
+    }
+
+    /**
+     * 查找可直接使用的 SQL，未命中返回 null
+     */
+    public String lookup(QuestionTemplate question) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        QuestionTemplate.SqlTemplate template;
+        synchronized (this) {
+            template = templates.get(question.getKey());
+        }
+        if (template != null) {
+            String sql = template.fill(question.getSlots());
+            if (sql != null) {
+                recordHit(question.getSlots().isEmpty() ? "exact" : "template");
+                return sql;
+            }
+        }
+
+        String sql = lookupNeighbour(question);
+        if (sql != null) {
+            recordHit("neighbour");
+        }
+        return sql;
+    }
+
+    /**
+     * 记录一次大模型翻译的耗时
+     */
+    public void recordLlmCall(long elapsedNanos) {
+        llmTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("nl2sql.translation").tag("source", "llm").register(meterRegistry).increment();
+    }
+
+    /**
+     * 从执行成功的大模型 SQL 学习模板
+     */
+    public void learn(QuestionTemplate question, String sql) {
+        if (!isEnabled()) {
+            return;
+        }
+        QuestionTemplate.SqlTemplate template = question.learn(sql);
+        if (template == null) {
+            logger.debug("SQL未能参数化，跳过模板学习: {}", question.getKey());
+            return;
+        }
+
+        boolean added;
+        synchronized (this) {
+            added = templates.put(template.getKey(), template) == null;
+            int maxTemplates = properties.getTranslation().getMaxTemplates();
+            Iterator<String> iterator = templates.keySet().iterator();
+            while (templates.size() > maxTemplates && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        if (added) {
+            indexKey(template.getKey());
+        }
+    }
+
+    /**
+     * 清空模板库
+     */
+    public synchronized void clear() {
+        templates.clear();
+        indexedKeys.clear();
+        neighbourIndex = null;
+    }
+
+    /**
+     * 模板库统计：命中率与节省的大模型耗时
+     */
+    public Map<String, Object> getStats() {
+        double exact = countOf("exact");
+        double template = countOf("template");
+        double neighbour = countOf("neighbour");
+        double llm = countOf("llm");
+        double hits = exact + template + neighbour;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("templates", templates.size());
+        }
+        stats.put("exactHits", (long) exact);
+        stats.put("templateHits", (long) template);
+        stats.put("neighbourHits", (long) neighbour);
+        stats.put("llmCalls", (long) llm);
+        stats.put("hitRate", hits + llm == 0 ? 0.0 : hits / (hits + llm));
+        stats.put("llmMeanMillis", llmTimer.mean(TimeUnit.MILLISECONDS));
+        stats.put("avoidedLlmMillis", (long) avoidedLlmMillis.count());
+        return stats;
+    }
+
+    private String lookupNeighbour(QuestionTemplate question) {
+        NL2SQLConfig.NL2SQLProperties.Translation config = properties.getTranslation();
+        QuantizedVectorIndex index;
+        synchronized (this) {
+            index = neighbourIndex;
+        }
+        if (!Boolean.TRUE.equals(config.getNeighbourEnabled()) || index == null || index.size() == 0) {
+            return null;
+        }
+        if (!hasSlotSignature(question.getSlots())) {
+            return null;
+        }
+
+        try {
+            List<Float> vector = embeddingService.embedText(question.getKey());
+            for (QuantizedVectorIndex.Hit hit : index.search(vector, 3, NEIGHBOUR_CANDIDATES)) {
+                if (hit.getScore() < config.getNeighbourThreshold()) {
+                    break;
+                }
+                QuestionTemplate.SqlTemplate template;
+                synchronized (this) {
+                    template = hit.getSlot() < indexedKeys.size() ? templates.get(indexedKeys.get(hit.getSlot())) : null;
+                }
+                String sql = template != null ? template.fill(question.getSlots()) : null;
+                if (sql != null) {
+                    return sql;
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("模板近邻查找失败: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 是否有模板的槽位与问题完全一致（近邻模板只有槽位一致才能填充）
+     */
+    private synchronized boolean hasSlotSignature(List<QuestionTemplate.Slot> slots) {
+        Set<String> names = new HashSet<>();
+        for (QuestionTemplate.Slot slot : slots) {
+            names.add(slot.getName());
+        }
+        for (QuestionTemplate.SqlTemplate template : templates.values()) {
+            if (template.getSlotNames().equals(names)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void indexKey(String key) {
+        if (!Boolean.TRUE.equals(properties.getTranslation().getNeighbourEnabled())) {
+            return;
+        }
+        try {
+            List<Float> vector = embeddingService.embedText(key);
+            synchronized (this) {
+                if (neighbourIndex == null) {
+                    neighbourIndex = new QuantizedVectorIndex(vector.size(), true);
+                }
+                neighbourIndex.add(vector);
+                indexedKeys.add(key);
+            }
+        } catch (Exception e) {
+            logger.debug("模板向量化失败，仅支持精确匹配: {}", e.getMessage());
+        }
+    }
+
+    private void recordHit(String source) {
+        Counter.builder("nl2sql.translation").tag("source", source).register(meterRegistry).increment();
+        avoidedLlmMillis.increment(llmTimer.mean(TimeUnit.MILLISECONDS));
+    }
+
+    private double countOf(String source) {
+        Counter counter = meterRegistry.find("nl2sql.translation").tag("source", source).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private boolean isEnabled() {
+        return Boolean.TRUE.equals(properties.getTranslation().getEnabled());
+    }
+
+    /**
+     * 懒加载地铁站和共享单车站点名，用于识别问题中的站点槽位
+     */
+    private Map<String, String> getStationNames() {
+        Map<String, String> names = stationNames;
+        if (names != null) {
+            return names;
+        }
+        synchronized (this) {
+            if (stationNames != null) {
+                return stationNames;
+            }
+            Map<String, String> loaded = new HashMap<>();
+            int limit = properties.getTranslation().getMaxStationNames();
+            try {
+                loadStationNames(loaded, "SELECT DISTINCT station_complex FROM subway_ridership WHERE station_complex IS NOT NULL LIMIT " + limit);
+                loadStationNames(loaded, "SELECT DISTINCT start_station_name FROM citibike_trips_202402 WHERE start_station_name IS NOT NULL LIMIT " + limit);
+                logger.info("已加载站点名 {} 个用于问题模板识别", loaded.size());
+            } catch (Exception e) {
+                logger.warn("加载站点名失败，问题模板将不识别站点: {}", e.getMessage());
+            }
+            stationNames = Collections.unmodifiableMap(loaded);
+            return stationNames;
+        }
+    }
+
+    private void loadStationNames(Map<String, String> target, String sql) {
+        for (String name : jdbcTemplate.queryForList(sql, String.class)) {
+            target.putIfAbsent(name.trim().toLowerCase(Locale.ROOT), name.trim());
+        }
+    }
+}
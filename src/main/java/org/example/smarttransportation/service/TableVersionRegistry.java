@@ -0,0 +1,84 @@
+package org.example.smarttransportation.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据表版本登记
+ * 每张表维护一个单调递增的版本号，数据导入完成后递增版本，
+ * 依赖该表的缓存（查询结果、统计等）据此判断是否失效。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class TableVersionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableVersionRegistry.class);
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * 获取表的当前版本（未登记的表版本为 0）
+     */
+    public long currentVersion(String table) {
+        AtomicLong version = versions.get(normalize(table));
+        return version != null ? version.get() : 0L;
+    }
+
+    /**
+     * 获取多张表的版本快照（顺带登记这些表，使 bumpAll 能覆盖到）
+     */
+    public Map<String, Long> snapshot(Collection<String> tables) {
+        Map<String, Long> result = new HashMap<>();
+        for (String table : tables) {
+            String key = normalize(table);
+            result.put(key, versions.computeIfAbsent(key, k -> new AtomicLong()).get());
+        }
+        return result;
+    }
+
+    /**
+     * 判断快照中各表的版本是否仍为最新
+     */
+    public boolean isCurrent(Map<String, Long> snapshot) {
+        for (Map.Entry<String, Long> entry : snapshot.entrySet()) {
+            if (currentVersion(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 数据变更后递增表版本
+     */
+    public long bump(String table) {
+        long version = versions.computeIfAbsent(normalize(table), key -> new AtomicLong()).incrementAndGet();
+        logger.info("数据表版本更新: {} -> {}", table, version);
+        return version;
+    }
+
+    /**
+     * 递增所有已登记表的版本（全量重新导入时使用）
+     */
+    public void bumpAll() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        logger.info("所有数据表版本已更新");
+    }
+
+    private String normalize(String table) {
+        if (table == null) {
+            throw new IllegalArgumentException("表名不能为空");
+        }
+        return table.replace("`", "").trim().toLowerCase(Locale.ROOT);
+    }
+}
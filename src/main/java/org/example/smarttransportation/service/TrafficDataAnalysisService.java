@@ -42,6 +42,9 @@ public class TrafficDataAnalysisService {
     @Autowired
     private SubwayRidershipRepository subwayRidershipRepository;
 
+    @Autowired
+    private ColumnarStore columnarStore;
+
     /**
      * 分析用户查询并返回相关数据摘要
      */
@@ -104,6 +107,11 @@ public class TrafficDataAnalysisService {
             LocalDate startTime = LocalDate.of(2024, 2, 1);
             LocalDate endTime = LocalDate.of(2024, 2, 28);
 
+            String columnarAnalysis = analyzeAccidentsColumnar(startTime, endTime);
+            if (columnarAnalysis != null) {
+                return columnarAnalysis;
+            }
+
             List<TrafficAccident> recentAccidents = trafficAccidentRepository
                 .findByDateRange(startTime, endTime);
 
@@ -153,6 +161,48 @@ public class TrafficDataAnalysisService {
         }
     }
 
+    /**
+     * 在列式内存表上统计事故，结果与逐条加载实体统计一致；列式表不可用时返回 null
+     */
+    private String analyzeAccidentsColumnar(LocalDate startTime, LocalDate endTime) {
+        ColumnarQuery.Filter period = ColumnarQuery.dateRange("crash_date", startTime, endTime);
+        ColumnarResult totals = columnarStore.query(ColumnarQuery.from("nyc_traffic_accidents").where(period)
+            .count().sum("number_of_persons_injured").sum("number_of_persons_killed"));
+        if (totals == null) {
+            return null;
+        }
+        long accidentCount = totals.getLong(0, 0);
+        if (accidentCount == 0) {
+            return "2024年2月暂无交通事故记录。";
+        }
+
+        // 严重事故：有死亡或受伤 3 人及以上，与 TrafficAccident.isSevere 一致
+        ColumnarResult severe = columnarStore.query(ColumnarQuery.from("nyc_traffic_accidents").where(period)
+            .where(ColumnarQuery.atLeast("number_of_persons_killed", 1)
+                .or(ColumnarQuery.atLeast("number_of_persons_injured", 3)))
+            .count());
+        ColumnarResult topBorough = columnarStore.query(ColumnarQuery.from("nyc_traffic_accidents").where(period)
+            .where(ColumnarQuery.notNull("borough")).groupBy("borough").count().orderBy(1, true).limit(1));
+        if (severe == null || topBorough == null) {
+            return null;
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("2024年2月共发生 %d 起交通事故\n", accidentCount));
+        long severeAccidents = severe.getLong(0, 0);
+        if (severeAccidents > 0) {
+            result.append(String.format("其中严重事故 %d 起\n", severeAccidents));
+        }
+        long totalInjured = totals.getLong(0, 1);
+        long totalKilled = totals.getLong(0, 2);
+        if (totalInjured > 0 || totalKilled > 0) {
+            result.append(String.format("造成伤亡：受伤 %d 人，死亡 %d 人\n", totalInjured, totalKilled));
+        }
+        String topLocation = topBorough.getRowCount() > 0 ? String.valueOf(topBorough.getValue(0, 0)) : "未知";
+        result.append(String.format("事故高发区域：%s", topLocation));
+        return result.toString();
+    }
+
     /**
      * 分析天气数据
      */
@@ -215,6 +265,11 @@ public class TrafficDataAnalysisService {
             LocalDate startTime = LocalDate.of(2024, 2, 1);
             LocalDate endTime = LocalDate.of(2024, 2, 28);
 
+            String columnarAnalysis = analyzeRidershipColumnar(startTime, endTime);
+            if (columnarAnalysis != null) {
+                return columnarAnalysis;
+            }
+
             List<SubwayRidership> recentRidership = subwayRidershipRepository
                 .findByDateRange(startTime, endTime);
 
@@ -244,6 +299,29 @@ public class TrafficDataAnalysisService {
         }
     }
 
+    /**
+     * 在列式内存表上统计客流；列式表不可用时返回 null
+     */
+    private String analyzeRidershipColumnar(LocalDate startTime, LocalDate endTime) {
+        ColumnarResult totals = columnarStore.query(ColumnarQuery.from("subway_ridership")
+            .where(ColumnarQuery.dateRange("transit_timestamp", startTime, endTime))
+            .count().sum("ridership"));
+        if (totals == null) {
+            return null;
+        }
+        long records = totals.getLong(0, 0);
+        if (records == 0) {
+            return "2024年2月暂无地铁客流数据。";
+        }
+
+        long totalRidership = totals.getLong(0, 1);
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("2024年2月地铁客流数据（共 %d 条记录）\n", records));
+        result.append(String.format("总客流量：%,d 人次\n", totalRidership));
+        result.append(String.format("日均客流量：%,.0f 人次", (double) totalRidership / records));
+        return result.toString();
+    }
+
     /**
      * 分析许可事件数据
      */
@@ -0,0 +1,220 @@
+package org.example.smarttransportation.service;
+
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import org.example.smarttransportation.config.MilvusConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 向量索引策略
+ * 根据配置和集合规模决定索引类型、构建参数与检索参数
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+@Component
+public class VectorIndexStrategy {
+
+    // IVF 训练时每个聚类中心至少需要的样本数（低于此值聚类近乎为空，召回不可控）
+    private static final int MIN_POINTS_PER_CLUSTER = 39;
+    private static final int MAX_NLIST = 65536;
+
+    @Autowired
+    private MilvusConfig.MilvusProperties milvusProperties;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    /**
+     * 按集合规模生成索引方案
+     */
+    public IndexPlan plan(long rowCount) {
+        MilvusConfig.MilvusProperties.Index config = milvusProperties.getIndex();
+        IndexType indexType = resolveIndexType(config, rowCount);
+        return planFor(indexType, rowCount, null);
+    }
+
+    /**
+     * 为指定索引类型生成方案，度量类型取配置值
+     */
+    public IndexPlan planFor(IndexType indexType, long rowCount, Integer existingNlist) {
+        return planFor(indexType, null, rowCount, existingNlist);
+    }
+
+    /**
+     * 为指定索引类型生成方案（用于已存在的索引，existingMetric、existingNlist 为已有索引的度量类型与 nlist，
+     * 为空时取配置值）；检索必须使用建索引时的度量类型
+     */
+    public IndexPlan planFor(IndexType indexType, MetricType existingMetric, long rowCount, Integer existingNlist) {
+        MilvusConfig.MilvusProperties.Index config = milvusProperties.getIndex();
+        MetricType metricType = existingMetric != null ? existingMetric : resolveMetricType(config.getMetricType());
+        IndexPlan plan = new IndexPlan(indexType, metricType);
+
+        switch (indexType) {
+            case HNSW:
+                plan.getBuildParams().put("M", config.getHnsw().getM());
+                plan.getBuildParams().put("efConstruction", config.getHnsw().getEfConstruction());
+                plan.getSearchParams().put("ef", config.getHnsw().getEf());
+                break;
+            case IVF_FLAT:
+            case IVF_SQ8:
+            case IVF_PQ: {
+                int nlist = existingNlist != null ? existingNlist : resolveNlist(config.getIvf(), rowCount);
+                plan.getBuildParams().put("nlist", nlist);
+                if (indexType == IndexType.IVF_PQ) {
+                    plan.getBuildParams().put("m", resolvePqM(config.getIvf().getPqM()));
+                    plan.getBuildParams().put("nbits", config.getIvf().getPqNbits());
+                }
+                plan.getSearchParams().put("nprobe", resolveNprobe(config.getIvf(), nlist));
+                break;
+            }
+            default:
+                // FLAT / AUTOINDEX 无需额外参数
+                break;
+        }
+
+        return plan;
+    }
+
+    /**
+     * 确定索引类型
+     */
+    private IndexType resolveIndexType(MilvusConfig.MilvusProperties.Index config, long rowCount) {
+        String type = config.getType() != null ? config.getType().trim().toUpperCase() : "AUTO";
+        if (!"AUTO".equals(type)) {
+            try {
+                return IndexType.valueOf(type);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的向量索引类型: " + config.getType());
+            }
+        }
+
+        if (rowCount <= config.getFlatMaxRows()) {
+            return IndexType.FLAT;
+        }
+        if (rowCount <= config.getHnswMaxRows()) {
+            return IndexType.HNSW;
+        }
+        return IndexType.IVF_PQ;
+    }
+
+    private MetricType resolveMetricType(String metricType) {
+        try {
+            return MetricType.valueOf(metricType != null ? metricType.trim().toUpperCase() : "COSINE");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的向量度量类型: " + metricType);
+        }
+    }
+
+    /**
+     * nlist 经验值为 4*sqrt(N)，同时保证每个聚类中心至少有 MIN_POINTS_PER_CLUSTER 个样本
+     */
+    private int resolveNlist(MilvusConfig.MilvusProperties.Ivf ivf, long rowCount) {
+        if (ivf.getNlist() != null && ivf.getNlist() > 0) {
+            return Math.min(ivf.getNlist(), MAX_NLIST);
+        }
+        long bySqrt = Math.round(4 * Math.sqrt(Math.max(rowCount, 1)));
+        long byTraining = Math.max(rowCount / MIN_POINTS_PER_CLUSTER, 1);
+        return (int) Math.max(1, Math.min(Math.min(bySqrt, byTraining), MAX_NLIST));
+    }
+
+    /**
+     * nprobe 默认探测约 1/16 的聚类，且不少于 8 个、不超过 nlist
+     */
+    private int resolveNprobe(MilvusConfig.MilvusProperties.Ivf ivf, int nlist) {
+        if (ivf.getNprobe() != null && ivf.getNprobe() > 0) {
+            return Math.min(ivf.getNprobe(), nlist);
+        }
+        return Math.min(Math.max(8, nlist / 16), nlist);
+    }
+
+    /**
+     * PQ 子空间数必须整除向量维度，取不超过配置值的最大因子
+     */
+    private int resolvePqM(Integer configuredM) {
+        int dimension = embeddingService.getEmbeddingDimension();
+        int m = configuredM != null && configuredM > 0 ? Math.min(configuredM, dimension) : 64;
+        while (m > 1 && dimension % m != 0) {
+            m--;
+        }
+        return m;
+    }
+
+    /**
+     * 索引方案
+     */
+    public static class IndexPlan {
+        private final IndexType indexType;
+        private final MetricType metricType;
+        private final Map<String, Integer> buildParams = new LinkedHashMap<>();
+        private final Map<String, Integer> searchParams = new LinkedHashMap<>();
+
+        public IndexPlan(IndexType indexType, MetricType metricType) {
+            this.indexType = indexType;
+            this.metricType = metricType;
+        }
+
+        public IndexType getIndexType() { return indexType; }
+        public MetricType getMetricType() { return metricType; }
+        public Map<String, Integer> getBuildParams() { return buildParams; }
+        public Map<String, Integer> getSearchParams() { return searchParams; }
+
+        /**
+         * 复制本方案并覆盖部分检索参数；生效中的方案可能正被检索线程读取，调整参数时不能原地修改
+         */
+        public IndexPlan withSearchParams(Map<String, Integer> overrides) {
+            IndexPlan copy = new IndexPlan(indexType, metricType);
+            copy.buildParams.putAll(buildParams);
+            copy.searchParams.putAll(searchParams);
+            copy.searchParams.putAll(overrides);
+            return copy;
+        }
+
+        public String getBuildParamsJson() {
+            return toJson(buildParams);
+        }
+
+        /**
+         * 生成检索参数，HNSW 的 ef 不能小于 topK
+         */
+        public String getSearchParamsJson(int topK) {
+            Map<String, Integer> params = new LinkedHashMap<>(searchParams);
+            params.computeIfPresent("ef", (key, ef) -> Math.max(ef, topK));
+            return toJson(params);
+        }
+
+        /**
+         * 与另一方案是否为同一索引类型、度量类型和构建参数
+         */
+        public boolean sameBuildAs(IndexPlan other) {
+            return sameKindAs(other) && buildParams.equals(other.buildParams);
+        }
+
+        /**
+         * 与另一方案是否为同一索引类型和度量类型（只比较规模跨过策略边界或度量配置变化，不比较 nlist 等构建参数）
+         */
+        public boolean sameKindAs(IndexPlan other) {
+            return other != null && indexType == other.indexType && metricType == other.metricType;
+        }
+
+        @Override
+        public String toString() {
+            return indexType + "/" + metricType + " build=" + toJson(buildParams) + " search=" + toJson(searchParams);
+        }
+
+        private static String toJson(Map<String, Integer> params) {
+            StringBuilder json = new StringBuilder("{");
+            for (Map.Entry<String, Integer> entry : params.entrySet()) {
+                if (json.length() > 1) {
+                    json.append(",");
+                }
+                json.append("\"").append(entry.getKey()).append("\":").append(entry.getValue());
+            }
+            return json.append("}").toString();
+        }
+    }
+}
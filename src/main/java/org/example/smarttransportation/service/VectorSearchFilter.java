@@ -0,0 +1,189 @@
+package org.example.smarttransportation.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * 向量检索标量过滤条件
+ * 以类型安全的方式构建 Milvus 布尔表达式（expr），在向量检索前完成 category/title/knowledge_type 预过滤
+ *
+ * 示例：VectorSearchFilter.category().in("SOP", "专家知识").or(VectorSearchFilter.title().contains("手册"))
+ *
+ * SOP/专家知识在入库时按标题和分类关键词（不区分大小写）归类写入 knowledge_type 字段，
+ * 检索时只对该字段做等值过滤，可以走标量索引，不必在检索时做不区分大小写的 like 匹配。
+ *
+ * @author pojin
+ * @date 2025/11/22
+ */
+public final class VectorSearchFilter {
+
+    static final String CATEGORY_FIELD = "category";
+    static final String TITLE_FIELD = "title";
+    static final String KNOWLEDGE_TYPE_FIELD = "knowledge_type";
+
+    /**
+     * knowledge_type 取值
+     */
+    public static final String SOP_KNOWLEDGE = "sop";
+    public static final String GENERAL_KNOWLEDGE = "general";
+
+    // SOP/专家知识的识别关键词（小写），入库时与小写后的标题、分类比较
+    private static final String[] SOP_TITLE_KEYWORDS = {"sop", "手册", "manual", "handbook"};
+    private static final String[] SOP_CATEGORY_KEYWORDS = {"sop", "专家", "expert", "standard"};
+
+    private static final VectorSearchFilter SOP_OR_EXPERT_KNOWLEDGE = knowledgeType().eq(SOP_KNOWLEDGE);
+    private static final VectorSearchFilter GENERAL_KNOWLEDGE_FILTER = knowledgeType().eq(GENERAL_KNOWLEDGE);
+
+    private final String expr;
+
+    private VectorSearchFilter(String expr) {
+        this.expr = expr;
+    }
+
+    /**
+     * 分类字段条件
+     */
+    public static Field category() {
+        return new Field(CATEGORY_FIELD);
+    }
+
+    /**
+     * 标题字段条件
+     */
+    public static Field title() {
+        return new Field(TITLE_FIELD);
+    }
+
+    /**
+     * 知识类型字段条件
+     */
+    public static Field knowledgeType() {
+        return new Field(KNOWLEDGE_TYPE_FIELD);
+    }
+
+    /**
+     * SOP 或专家知识（入库时标题或分类包含相应关键词）
+     */
+    public static VectorSearchFilter sopOrExpertKnowledge() {
+        return SOP_OR_EXPERT_KNOWLEDGE;
+    }
+
+    /**
+     * SOP/专家知识以外的知识，与 sopOrExpertKnowledge 互斥
+     */
+    public static VectorSearchFilter generalKnowledge() {
+        return GENERAL_KNOWLEDGE_FILTER;
+    }
+
+    /**
+     * 入库时按标题、分类归类知识类型，关键词不区分大小写
+     */
+    public static String classifyKnowledge(String title, String category) {
+        return containsAny(title, SOP_TITLE_KEYWORDS) || containsAny(category, SOP_CATEGORY_KEYWORDS)
+            ? SOP_KNOWLEDGE : GENERAL_KNOWLEDGE;
+    }
+
+    private static boolean containsAny(String value, String[] keywords) {
+        if (value == null) {
+            return false;
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        return Arrays.stream(keywords).anyMatch(lower::contains);
+    }
+
+    public VectorSearchFilter and(VectorSearchFilter other) {
+        return new VectorSearchFilter("(" + expr + ") and (" + other.expr + ")");
+    }
+
+    public VectorSearchFilter or(VectorSearchFilter other) {
+        return new VectorSearchFilter("(" + expr + ") or (" + other.expr + ")");
+    }
+
+    public VectorSearchFilter not() {
+        return new VectorSearchFilter("not (" + expr + ")");
+    }
+
+    /**
+     * 编译为 Milvus 表达式
+     */
+    public String toExpr() {
+        return expr;
+    }
+
+    @Override
+    public String toString() {
+        return expr;
+    }
+
+    /**
+     * 字符串字面量转义，防止关键词中的引号破坏表达式
+     */
+    private static String quote(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("过滤条件的值不能为空");
+        }
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * like 模式中的通配符需要转义
+     */
+    private static String likeLiteral(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("过滤条件的值不能为空");
+        }
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("\"", "\\\"");
+    }
+
+    /**
+     * 标量字段
+     */
+    public static final class Field {
+        private final String name;
+
+        private Field(String name) {
+            this.name = name;
+        }
+
+        public VectorSearchFilter eq(String value) {
+            return new VectorSearchFilter(name + " == " + quote(value));
+        }
+
+        public VectorSearchFilter notEq(String value) {
+            return new VectorSearchFilter(name + " != " + quote(value));
+        }
+
+        public VectorSearchFilter in(String... values) {
+            return in(Arrays.asList(values));
+        }
+
+        public VectorSearchFilter in(Collection<String> values) {
+            if (values == null || values.isEmpty()) {
+                throw new IllegalArgumentException("in 条件至少需要一个值");
+            }
+            return new VectorSearchFilter(name + " in ["
+                + values.stream().map(VectorSearchFilter::quote).collect(Collectors.joining(", ")) + "]");
+        }
+
+        public VectorSearchFilter startsWith(String prefix) {
+            return new VectorSearchFilter(name + " like \"" + likeLiteral(prefix) + "%\"");
+        }
+
+        public VectorSearchFilter contains(String keyword) {
+            return new VectorSearchFilter(name + " like \"%" + likeLiteral(keyword) + "%\"");
+        }
+
+        public VectorSearchFilter containsAny(String... keywords) {
+            if (keywords == null || keywords.length == 0) {
+                throw new IllegalArgumentException("containsAny 条件至少需要一个关键词");
+            }
+            String joined = Arrays.stream(keywords)
+                .map(keyword -> name + " like \"%" + likeLiteral(keyword) + "%\"")
+                .collect(Collectors.joining(" or "));
+            return new VectorSearchFilter(joined);
+        }
+
+    }
+}
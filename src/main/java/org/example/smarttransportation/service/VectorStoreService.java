@@ -1,20 +1,47 @@
 package org.example.smarttransportation.service;
 
-import io.milvus.client.MilvusServiceClient;
+import io.milvus.client.MilvusClient;
 import io.milvus.param.R;
 import io.milvus.param.RpcStatus;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
 import io.milvus.param.collection.*;
 import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryParam;
 import io.milvus.param.dml.SearchParam;
 import io.milvus.param.index.CreateIndexParam;
+import io.milvus.param.index.DescribeIndexParam;
+import io.milvus.param.index.DropIndexParam;
+import io.milvus.grpc.CheckHealthResponse;
 import io.milvus.grpc.DataType;
+import io.milvus.grpc.DescribeCollectionResponse;
+import io.milvus.grpc.FieldData;
+import io.milvus.grpc.DescribeIndexResponse;
+import io.milvus.grpc.GetCollectionStatisticsResponse;
+import io.milvus.grpc.GetLoadStateResponse;
+import io.milvus.grpc.IndexDescription;
+import io.milvus.grpc.KeyValuePair;
+import io.milvus.grpc.LoadState;
+import io.milvus.grpc.QueryResults;
+import io.milvus.grpc.SearchResultData;
 import io.milvus.grpc.SearchResults;
 import io.milvus.grpc.MutationResult;
+import io.milvus.response.DescCollResponseWrapper;
+import io.milvus.response.GetCollStatResponseWrapper;
+import io.milvus.response.QueryResultsWrapper;
+import org.example.smarttransportation.config.MilvusClientPool;
+import org.example.smarttransportation.config.MilvusConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 向量存储服务
@@ -25,12 +52,20 @@ import java.util.*;
  */
 @Service
 public class VectorStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorStoreService.class);
     
     @Autowired(required = false)
-    private MilvusServiceClient milvusClient;
+    private MilvusClientPool milvusClientPool;
     
     @Autowired
     private EmbeddingService embeddingService;
+
+    @Autowired
+    private VectorIndexStrategy indexStrategy;
+
+    @Autowired
+    private MilvusConfig.MilvusProperties milvusProperties;
     
     // 修改集合名称以匹配Python脚本中创建的名称
     private static final String COLLECTION_NAME = "knowledge_base";
@@ -40,25 +75,44 @@ public class VectorStoreService {
     // 修改字段名以匹配Python脚本中创建的字段
     private static final String METADATA_FIELD = "category";
     private static final String SOURCE_FIELD = "title";
+    // 入库时归类的知识类型（见 VectorSearchFilter.classifyKnowledge），SOP 过滤按此字段等值匹配
+    private static final String KNOWLEDGE_TYPE_FIELD = VectorSearchFilter.KNOWLEDGE_TYPE_FIELD;
+    private static final String SCALAR_INDEX_SUFFIX = "_trie_idx";
+    private static final Pattern NLIST_PATTERN = Pattern.compile("\"nlist\"\\s*:\\s*\"?(\\d+)");
+
+    // 当前生效的索引方案（检索参数随之变化）
+    private volatile VectorIndexStrategy.IndexPlan activePlan;
+
+    // 集合是否有 knowledge_type 字段（旧集合需重新运行 init_knowledge_base.py 重建）
+    private volatile boolean knowledgeTypeField = true;
 
     /**
      * 初始化向量集合
      */
     public boolean initializeCollection() {
-        if (milvusClient == null) {
+        if (milvusClientPool == null) {
             throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
         }
 
         try {
             // 检查集合是否存在
-            R<Boolean> hasCollection = milvusClient.hasCollection(
+            R<Boolean> hasCollection = adminClient().hasCollection(
                 HasCollectionParam.newBuilder()
                     .withCollectionName(COLLECTION_NAME)
                     .build()
             );
 
             if (hasCollection.getData()) {
-                return true; // 集合已存在
+                // 集合已存在，识别现有索引并按规模校验索引方案
+                activePlan = resolveExistingPlan();
+                alignIndexWithCollectionSize(true);
+                knowledgeTypeField = hasField(KNOWLEDGE_TYPE_FIELD);
+                if (!knowledgeTypeField) {
+                    logger.warn("集合 {} 缺少 {} 字段，SOP/专家知识不做预过滤；请运行 init_knowledge_base.py 重建集合",
+                        COLLECTION_NAME, KNOWLEDGE_TYPE_FIELD);
+                }
+                ensureScalarIndexes();
+                return true;
             }
 
             // 创建字段定义
@@ -88,6 +142,11 @@ public class VectorStoreService {
                     .withName(SOURCE_FIELD)
                     .withDataType(DataType.VarChar)
                     .withMaxLength(100)
+                    .build(),
+                FieldType.newBuilder()
+                    .withName(KNOWLEDGE_TYPE_FIELD)
+                    .withDataType(DataType.VarChar)
+                    .withMaxLength(16)
                     .build()
             );
 
@@ -99,14 +158,22 @@ public class VectorStoreService {
                 .withFieldTypes(fields)
                 .build();
 
-            R<RpcStatus> createResult = milvusClient.createCollection(createParam);
+            R<RpcStatus> createResult = adminClient().createCollection(createParam);
 
             if (createResult.getStatus() != 0) {
                 throw new RuntimeException("创建集合失败: " + createResult.getMessage());
             }
 
-            // 创建向量索引
-            createVectorIndex();
+            // 创建向量索引（新集合为空，按当前规模选择索引；写入后由 replanIndex 随规模调整）
+            VectorIndexStrategy.IndexPlan plan = indexStrategy.plan(0);
+            createVectorIndex(plan);
+            activePlan = plan;
+
+            // 为过滤字段创建标量索引
+            createScalarIndex(METADATA_FIELD);
+            createScalarIndex(SOURCE_FIELD);
+            createScalarIndex(KNOWLEDGE_TYPE_FIELD);
+            knowledgeTypeField = true;
 
             // 加载集合
             loadCollection();
@@ -121,35 +188,358 @@ public class VectorStoreService {
     /**
      * 创建向量索引
      */
-    private void createVectorIndex() {
-        if (milvusClient == null) {
+    private void createVectorIndex(VectorIndexStrategy.IndexPlan plan) {
+        if (milvusClientPool == null) {
             throw new IllegalStateException("Milvus客户端未配置");
         }
 
         CreateIndexParam indexParam = CreateIndexParam.newBuilder()
             .withCollectionName(COLLECTION_NAME)
             .withFieldName(VECTOR_FIELD)
-            .withIndexType(io.milvus.param.IndexType.IVF_FLAT)
-            .withMetricType(io.milvus.param.MetricType.COSINE)
-            .withExtraParam("{\"nlist\":1024}")
+            .withIndexType(plan.getIndexType())
+            .withMetricType(plan.getMetricType())
+            .withExtraParam(plan.getBuildParamsJson())
+            .withSyncMode(Boolean.TRUE)
             .build();
 
-        R<RpcStatus> indexResult = milvusClient.createIndex(indexParam);
+        R<RpcStatus> indexResult = adminClient().createIndex(indexParam);
 
         if (indexResult.getStatus() != 0) {
             throw new RuntimeException("创建索引失败: " + indexResult.getMessage());
         }
+        logger.info("已创建向量索引: {}", plan);
+    }
+
+    /**
+     * 为 VarChar 过滤字段创建 Trie 标量索引，加速 knowledge_type 等值过滤与 category/title 前缀过滤
+     */
+    private void createScalarIndex(String fieldName) {
+        CreateIndexParam indexParam = CreateIndexParam.newBuilder()
+            .withCollectionName(COLLECTION_NAME)
+            .withFieldName(fieldName)
+            .withIndexName(fieldName + SCALAR_INDEX_SUFFIX)
+            .withIndexType(IndexType.TRIE)
+            .withSyncMode(Boolean.TRUE)
+            .build();
+
+        R<RpcStatus> indexResult = adminClient().createIndex(indexParam);
+
+        if (indexResult.getStatus() != 0) {
+            throw new RuntimeException("创建标量索引失败(" + fieldName + "): " + indexResult.getMessage());
+        }
+    }
+
+    /**
+     * 补齐已存在集合缺失的标量索引（需要先释放集合）
+     */
+    private void ensureScalarIndexes() {
+        List<String> missing = new ArrayList<>();
+        List<String> fieldNames = new ArrayList<>(Arrays.asList(METADATA_FIELD, SOURCE_FIELD));
+        if (knowledgeTypeField) {
+            fieldNames.add(KNOWLEDGE_TYPE_FIELD);
+        }
+        for (String fieldName : fieldNames) {
+            R<DescribeIndexResponse> describeResult = adminClient().describeIndex(
+                DescribeIndexParam.newBuilder()
+                    .withCollectionName(COLLECTION_NAME)
+                    .withFieldName(fieldName)
+                    .build()
+            );
+            if (describeResult.getStatus() != 0 || describeResult.getData().getIndexDescriptionsCount() == 0) {
+                missing.add(fieldName);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        adminClient().releaseCollection(
+            ReleaseCollectionParam.newBuilder()
+                .withCollectionName(COLLECTION_NAME)
+                .build()
+        );
+        for (String fieldName : missing) {
+            createScalarIndex(fieldName);
+            logger.info("已为字段 {} 创建标量索引", fieldName);
+        }
+        loadCollection();
+    }
+
+    private boolean hasField(String fieldName) {
+        R<DescribeCollectionResponse> describeResult = adminClient().describeCollection(
+            DescribeCollectionParam.newBuilder()
+                .withCollectionName(COLLECTION_NAME)
+                .build()
+        );
+        if (describeResult.getStatus() != 0) {
+            throw new RuntimeException("获取集合结构失败: " + describeResult.getMessage());
+        }
+        return new DescCollResponseWrapper(describeResult.getData()).getFieldByName(fieldName) != null;
+    }
+
+    /**
+     * 集合能否按 knowledge_type 过滤
+     */
+    public boolean hasKnowledgeTypeField() {
+        return knowledgeTypeField;
+    }
+
+    /**
+     * 获取集合当前行数
+     */
+    public long getCollectionRowCount() {
+        if (milvusClientPool == null) {
+            throw new IllegalStateException("Milvus客户端未配置");
+        }
+
+        R<GetCollectionStatisticsResponse> statsResult = adminClient().getCollectionStatistics(
+            GetCollectionStatisticsParam.newBuilder()
+                .withCollectionName(COLLECTION_NAME)
+                .build()
+        );
+
+        if (statsResult.getStatus() != 0) {
+            throw new RuntimeException("获取集合统计信息失败: " + statsResult.getMessage());
+        }
+        return new GetCollStatResponseWrapper(statsResult.getData()).getRowCount();
+    }
+
+    /**
+     * 读取已存在集合的向量索引描述，还原为索引方案
+     */
+    private VectorIndexStrategy.IndexPlan resolveExistingPlan() {
+        long rowCount = getCollectionRowCount();
+        IndexDescription description = describeVectorIndex();
+        if (description == null) {
+            return null;
+        }
+
+        IndexType indexType = null;
+        MetricType metricType = null;
+        Integer nlist = null;
+        for (KeyValuePair pair : description.getParamsList()) {
+            if ("index_type".equals(pair.getKey())) {
+                try {
+                    indexType = IndexType.valueOf(pair.getValue().trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    logger.warn("无法识别的向量索引类型: {}", pair.getValue());
+                }
+            } else if ("metric_type".equals(pair.getKey())) {
+                try {
+                    metricType = MetricType.valueOf(pair.getValue().trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    logger.warn("无法识别的向量度量类型: {}", pair.getValue());
+                }
+            } else if ("nlist".equals(pair.getKey())) {
+                nlist = Integer.valueOf(pair.getValue().trim());
+            } else if ("params".equals(pair.getKey())) {
+                Matcher matcher = NLIST_PATTERN.matcher(pair.getValue());
+                if (matcher.find()) {
+                    nlist = Integer.valueOf(matcher.group(1));
+                }
+            }
+        }
+
+        if (indexType == null) {
+            return null;
+        }
+        VectorIndexStrategy.IndexPlan plan = indexStrategy.planFor(indexType, metricType, rowCount, nlist);
+        logger.info("识别到现有向量索引: {}, 集合行数: {}", plan, rowCount);
+        return plan;
+    }
+
+    private IndexDescription describeVectorIndex() {
+        R<DescribeIndexResponse> describeResult = adminClient().describeIndex(
+            DescribeIndexParam.newBuilder()
+                .withCollectionName(COLLECTION_NAME)
+                .withFieldName(VECTOR_FIELD)
+                .build()
+        );
+
+        if (describeResult.getStatus() != 0 || describeResult.getData().getIndexDescriptionsCount() == 0) {
+            return null;
+        }
+        return describeResult.getData().getIndexDescriptions(0);
+    }
+
+    /**
+     * 比较现有索引与当前规模推荐的索引：索引类型或度量类型不一致（集合规模跨过策略边界、度量配置变化）时重建；
+     * 只有 nlist 等构建参数不同时，启动时按 milvus.index.rebuild-on-mismatch 决定是否重建，运行中不重建
+     * （自动推算的 nlist 随行数持续变化，逐次重建代价过高）
+     *
+     * @param startup 是否为启动时的校验
+     */
+    private synchronized void alignIndexWithCollectionSize(boolean startup) {
+        VectorIndexStrategy.IndexPlan current = activePlan;
+        long rowCount = getCollectionRowCount();
+        VectorIndexStrategy.IndexPlan recommended = indexStrategy.plan(rowCount);
+        if (recommended.sameBuildAs(current)) {
+            return;
+        }
+
+        if (!recommended.sameKindAs(current)) {
+            logger.info("集合行数 {}，现有向量索引 [{}] 与推荐方案 [{}] 的索引或度量类型不一致，重建索引",
+                rowCount, current, recommended);
+            rebuildVectorIndex();
+            return;
+        }
+        if (!startup) {
+            return;
+        }
+        if (Boolean.TRUE.equals(milvusProperties.getIndex().getRebuildOnMismatch())) {
+            rebuildVectorIndex();
+            return;
+        }
+        logger.warn("现有向量索引 [{}] 与推荐方案 [{}] 构建参数不一致，可开启 milvus.index.rebuild-on-mismatch 自动重建",
+            current, recommended);
+    }
+
+    /**
+     * 按当前行数重新规划向量索引，集合规模跨过策略边界（如 FLAT → HNSW）时重建。
+     * 批量写入后调用，并定期执行以覆盖 init_knowledge_base.py 等直接写入 Milvus 的数据；
+     * 集合尚未初始化时跳过
+     */
+    @Scheduled(initialDelayString = "${milvus.index.check-interval-seconds:600}",
+        fixedDelayString = "${milvus.index.check-interval-seconds:600}", timeUnit = TimeUnit.SECONDS)
+    public void replanIndex() {
+        if (milvusClientPool == null || activePlan == null) {
+            return;
+        }
+        try {
+            alignIndexWithCollectionSize(false);
+        } catch (Exception e) {
+            logger.warn("重新规划向量索引失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按当前集合规模重建向量索引
+     */
+    public synchronized VectorIndexStrategy.IndexPlan rebuildVectorIndex() {
+        if (milvusClientPool == null) {
+            throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
+        }
+
+        VectorIndexStrategy.IndexPlan plan = indexStrategy.plan(getCollectionRowCount());
+
+        adminClient().releaseCollection(
+            ReleaseCollectionParam.newBuilder()
+                .withCollectionName(COLLECTION_NAME)
+                .build()
+        );
+
+        IndexDescription existing = describeVectorIndex();
+        if (existing != null) {
+            R<RpcStatus> dropResult = adminClient().dropIndex(
+                DropIndexParam.newBuilder()
+                    .withCollectionName(COLLECTION_NAME)
+                    .withIndexName(existing.getIndexName())
+                    .build()
+            );
+            if (dropResult.getStatus() != 0) {
+                throw new RuntimeException("删除旧索引失败: " + dropResult.getMessage());
+            }
+        }
+
+        createVectorIndex(plan);
+        loadCollection();
+        activePlan = plan;
+        return plan;
+    }
+
+    /**
+     * 获取当前生效的索引方案
+     */
+    public VectorIndexStrategy.IndexPlan getActiveIndexPlan() {
+        return activePlan;
+    }
+
+    /**
+     * 运行时调整检索参数（如 ef、nprobe），通常依据离线基准测试的推荐值。
+     * 生成新方案后整体替换，检索线程读到的始终是完整的一份参数
+     */
+    public synchronized void tuneSearchParams(Map<String, Integer> searchParams) {
+        VectorIndexStrategy.IndexPlan plan = activePlan;
+        if (plan == null) {
+            throw new IllegalStateException("向量索引尚未初始化");
+        }
+        VectorIndexStrategy.IndexPlan tuned = plan.withSearchParams(searchParams);
+        activePlan = tuned;
+        logger.info("向量检索参数已调整: {}", tuned);
+    }
+
+    /**
+     * 集合管理与写入操作使用主客户端
+     */
+    private MilvusClient adminClient() {
+        return milvusClientPool.primary();
+    }
+
+    private String currentSearchParams(int topK) {
+        VectorIndexStrategy.IndexPlan plan = activePlan;
+        return plan != null ? plan.getSearchParamsJson(topK) : "{}";
+    }
+
+    private MetricType currentMetricType() {
+        VectorIndexStrategy.IndexPlan plan = activePlan;
+        return plan != null ? plan.getMetricType() : MetricType.COSINE;
+    }
+
+    /**
+     * Milvus 服务健康检查
+     */
+    public boolean isHealthy() {
+        if (milvusClientPool == null) {
+            return false;
+        }
+        R<CheckHealthResponse> healthResult = adminClient().checkHealth();
+        return healthResult.getStatus() == 0 && healthResult.getData().getIsHealthy();
+    }
+
+    /**
+     * 集合是否已加载到内存
+     */
+    public boolean isCollectionLoaded() {
+        if (milvusClientPool == null) {
+            return false;
+        }
+        R<GetLoadStateResponse> loadState = adminClient().getLoadState(
+            GetLoadStateParam.newBuilder()
+                .withCollectionName(COLLECTION_NAME)
+                .build()
+        );
+        return loadState.getStatus() == 0 && loadState.getData().getState() == LoadState.LoadStateLoaded;
+    }
+
+    /**
+     * 确保集合已加载（同步加载，已加载时为空操作）
+     */
+    public void ensureCollectionLoaded() {
+        if (milvusClientPool == null) {
+            throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
+        }
+        if (!isCollectionLoaded()) {
+            loadCollection();
+        }
+    }
+
+    /**
+     * 客户端池大小（预热时每个连接都需要建立通道）
+     */
+    public int getClientPoolSize() {
+        return milvusClientPool != null ? milvusClientPool.size() : 0;
     }
 
     /**
      * 加载集合到内存
      */
     private void loadCollection() {
-        if (milvusClient == null) {
+        if (milvusClientPool == null) {
             throw new IllegalStateException("Milvus客户端未配置");
         }
 
-        R<RpcStatus> loadResult = milvusClient.loadCollection(
+        R<RpcStatus> loadResult = adminClient().loadCollection(
             LoadCollectionParam.newBuilder()
                 .withCollectionName(COLLECTION_NAME)
                 .build()
@@ -168,7 +558,7 @@ public class VectorStoreService {
             throw new IllegalArgumentException("文档内容不能为空");
         }
 
-        if (milvusClient == null) {
+        if (milvusClientPool == null) {
             throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
         }
 
@@ -182,19 +572,14 @@ public class VectorStoreService {
             List<String> metadataList = Arrays.asList(metadata != null ? metadata : "");
             List<String> sources = Arrays.asList(source != null ? source : "unknown");
 
-            List<InsertParam.Field> fields = Arrays.asList(
-                new InsertParam.Field(VECTOR_FIELD, vectors),
-                new InsertParam.Field(CONTENT_FIELD, contents),
-                new InsertParam.Field(METADATA_FIELD, metadataList),
-                new InsertParam.Field(SOURCE_FIELD, sources)
-            );
+            List<InsertParam.Field> fields = insertFields(vectors, contents, metadataList, sources);
 
             InsertParam insertParam = InsertParam.newBuilder()
                 .withCollectionName(COLLECTION_NAME)
                 .withFields(fields)
                 .build();
 
-            R<MutationResult> insertResult = milvusClient.insert(insertParam);
+            R<MutationResult> insertResult = adminClient().insert(insertParam);
 
             if (insertResult.getStatus() != 0) {
                 throw new RuntimeException("插入文档失败: " + insertResult.getMessage());
@@ -215,7 +600,7 @@ public class VectorStoreService {
             return true;
         }
 
-        if (milvusClient == null) {
+        if (milvusClientPool == null) {
             throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
         }
 
@@ -233,60 +618,115 @@ public class VectorStoreService {
             // 批量生成向量
             List<List<Float>> vectors = embeddingService.embedTexts(contents);
 
-            List<InsertParam.Field> fields = Arrays.asList(
-                new InsertParam.Field(VECTOR_FIELD, vectors),
-                new InsertParam.Field(CONTENT_FIELD, contents),
-                new InsertParam.Field(METADATA_FIELD, metadataList),
-                new InsertParam.Field(SOURCE_FIELD, sources)
-            );
+            List<InsertParam.Field> fields = insertFields(vectors, contents, metadataList, sources);
 
             InsertParam insertParam = InsertParam.newBuilder()
                 .withCollectionName(COLLECTION_NAME)
                 .withFields(fields)
                 .build();
 
-            R<MutationResult> insertResult = milvusClient.insert(insertParam);
+            R<MutationResult> insertResult = adminClient().insert(insertParam);
+            if (insertResult.getStatus() != 0) {
+                return false;
+            }
 
-            return insertResult.getStatus() == 0;
+            replanIndex();
+            return true;
 
         } catch (Exception e) {
             throw new RuntimeException("批量添加文档失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 插入字段；知识类型在入库时由标题、分类归类，检索时按等值过滤
+     */
+    private List<InsertParam.Field> insertFields(List<List<Float>> vectors, List<String> contents,
+                                                 List<String> metadataList, List<String> sources) {
+        List<InsertParam.Field> fields = new ArrayList<>(Arrays.asList(
+            new InsertParam.Field(VECTOR_FIELD, vectors),
+            new InsertParam.Field(CONTENT_FIELD, contents),
+            new InsertParam.Field(METADATA_FIELD, metadataList),
+            new InsertParam.Field(SOURCE_FIELD, sources)
+        ));
+        if (knowledgeTypeField) {
+            List<String> knowledgeTypes = new ArrayList<>(sources.size());
+            for (int i = 0; i < sources.size(); i++) {
+                knowledgeTypes.add(VectorSearchFilter.classifyKnowledge(sources.get(i), metadataList.get(i)));
+            }
+            fields.add(new InsertParam.Field(KNOWLEDGE_TYPE_FIELD, knowledgeTypes));
+        }
+        return fields;
+    }
+
     /**
      * 语义搜索
      */
     public List<SearchResult> semanticSearch(String query, int topK) {
+        return semanticSearch(query, topK, null);
+    }
+
+    /**
+     * 带标量预过滤的语义搜索，filter 为空时等同于普通语义搜索
+     */
+    public List<SearchResult> semanticSearch(String query, int topK, VectorSearchFilter filter) {
+        return searchHits(query, topK, filter).materializeAll();
+    }
+
+    /**
+     * 语义搜索，返回列式结果视图
+     * 分数与主键直接从 protobuf 读取，文本字段只在调用方访问时才解码，
+     * 适合先多取候选、重排后只物化少量命中的场景
+     */
+    public SearchHits searchHits(String query, int topK, VectorSearchFilter filter) {
         if (!StringUtils.hasText(query)) {
-            return new ArrayList<>();
+            return SearchHits.empty();
         }
 
-        if (milvusClient == null) {
+        if (milvusClientPool == null) {
             throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
         }
 
+        List<Float> queryVector;
         try {
-            // 生成查询向量
-            List<Float> queryVector = embeddingService.embedText(query);
+            queryVector = embeddingService.embedText(query);
+        } catch (Exception e) {
+            throw new RuntimeException("语义搜索失败: " + e.getMessage(), e);
+        }
+        return searchHits(queryVector, topK, filter);
+    }
 
-            SearchParam searchParam = SearchParam.newBuilder()
+    /**
+     * 按已生成的查询向量检索，同一问题分多个过滤条件检索时只需向量化一次
+     */
+    public SearchHits searchHits(List<Float> queryVector, int topK, VectorSearchFilter filter) {
+        if (milvusClientPool == null) {
+            throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
+        }
+
+        try {
+            SearchParam.Builder searchBuilder = SearchParam.newBuilder()
                 .withCollectionName(COLLECTION_NAME)
-                .withMetricType(io.milvus.param.MetricType.COSINE)
+                .withMetricType(currentMetricType())
                 .withOutFields(Arrays.asList(CONTENT_FIELD, METADATA_FIELD, SOURCE_FIELD))
                 .withTopK(topK)
                 .withVectors(Arrays.asList(queryVector))
                 .withVectorFieldName(VECTOR_FIELD)
-                .withParams("{\"nprobe\":10}")
-                .build();
+                .withParams(currentSearchParams(topK));
 
-            R<SearchResults> searchResult = milvusClient.search(searchParam);
+            if (filter != null) {
+                searchBuilder.withExpr(filter.toExpr());
+            }
+
+            SearchParam searchParam = searchBuilder.build();
+
+            R<SearchResults> searchResult = milvusClientPool.next().search(searchParam);
 
             if (searchResult.getStatus() != 0) {
                 throw new RuntimeException("搜索失败: " + searchResult.getMessage());
             }
 
-            return parseSearchResults(searchResult.getData());
+            return new SearchHits(searchResult.getData().getResults());
 
         } catch (Exception e) {
             throw new RuntimeException("语义搜索失败: " + e.getMessage(), e);
@@ -294,65 +734,173 @@ public class VectorStoreService {
     }
 
     /**
-     * 解析搜索结果
+     * 按向量检索，返回命中的主键（供离线基准测试对比不同检索参数）
      */
-    private List<SearchResult> parseSearchResults(SearchResults searchResults) {
-        List<SearchResult> results = new ArrayList<>();
+    public List<Long> searchIdsByVector(List<Float> vector, int topK, String searchParamsJson) {
+        if (milvusClientPool == null) {
+            throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
+        }
 
-        if (searchResults.getResults().getFieldsDataCount() == 0) {
-            return results;
+        SearchParam searchParam = SearchParam.newBuilder()
+            .withCollectionName(COLLECTION_NAME)
+            .withMetricType(currentMetricType())
+            .withTopK(topK)
+            .withVectors(Arrays.asList(vector))
+            .withVectorFieldName(VECTOR_FIELD)
+            .withParams(searchParamsJson)
+            .build();
+
+        R<SearchResults> searchResult = milvusClientPool.next().search(searchParam);
+        if (searchResult.getStatus() != 0) {
+            throw new RuntimeException("搜索失败: " + searchResult.getMessage());
+        }
+        return new ArrayList<>(searchResult.getData().getResults().getIds().getIntId().getDataList());
+    }
+
+    /**
+     * 读取集合中的向量样本（供离线基准测试构建暴力检索真值）
+     */
+    public Map<Long, List<Float>> sampleVectors(int limit) {
+        if (milvusClientPool == null) {
+            throw new IllegalStateException("Milvus客户端未配置，请检查Milvus连接配置");
+        }
+
+        R<QueryResults> queryResult = adminClient().query(
+            QueryParam.newBuilder()
+                .withCollectionName(COLLECTION_NAME)
+                .withExpr(ID_FIELD + " >= 0")
+                .withOutFields(Arrays.asList(ID_FIELD, VECTOR_FIELD))
+                .withLimit((long) limit)
+                .build()
+        );
+
+        if (queryResult.getStatus() != 0) {
+            throw new RuntimeException("读取向量样本失败: " + queryResult.getMessage());
         }
 
-        // 获取字段数据
-        var fieldsData = searchResults.getResults().getFieldsDataList();
-        var ids = searchResults.getResults().getIds().getIntId().getDataList();
-        var scores = searchResults.getResults().getScoresList();
+        QueryResultsWrapper wrapper = new QueryResultsWrapper(queryResult.getData());
+        List<?> ids = wrapper.getFieldWrapper(ID_FIELD).getFieldData();
+        List<?> vectors = wrapper.getFieldWrapper(VECTOR_FIELD).getFieldData();
 
-        // 解析每个字段的数据
-        Map<String, List<String>> fieldValues = new HashMap<>();
-        for (var fieldData : fieldsData) {
-            String fieldName = fieldData.getFieldName();
-            List<String> values = new ArrayList<>();
+        Map<Long, List<Float>> samples = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            @SuppressWarnings("unchecked")
+            List<Float> vector = (List<Float>) vectors.get(i);
+            samples.put((Long) ids.get(i), vector);
+        }
+        return samples;
+    }
 
-            if (fieldData.getType() == DataType.VarChar) {
-                var varcharData = fieldData.getScalars().getStringData();
-                values.addAll(varcharData.getDataList());
+    /**
+     * 列式搜索结果视图
+     * 仅持有 protobuf 结果的引用，不复制字段数据；单次检索（nq=1）的命中按下标访问
+     */
+    public static class SearchHits {
+        private static final SearchHits EMPTY = new SearchHits(SearchResultData.getDefaultInstance());
+
+        private final SearchResultData data;
+        private final int size;
+        private final FieldData contentField;
+        private final FieldData metadataField;
+        private final FieldData sourceField;
+
+        SearchHits(SearchResultData data) {
+            this.data = data;
+
+            FieldData content = null;
+            FieldData metadata = null;
+            FieldData source = null;
+            for (FieldData fieldData : data.getFieldsDataList()) {
+                if (fieldData.getType() != DataType.VarChar) {
+                    continue;
+                }
+                switch (fieldData.getFieldName()) {
+                    case CONTENT_FIELD -> content = fieldData;
+                    case METADATA_FIELD -> metadata = fieldData;
+                    case SOURCE_FIELD -> source = fieldData;
+                    default -> { }
+                }
             }
+            this.contentField = content;
+            this.metadataField = metadata;
+            this.sourceField = source;
 
-            fieldValues.put(fieldName, values);
+            // 单个查询向量时第一个 topk 即命中数，缺省时退回到分数个数
+            int hitCount = data.getTopksCount() > 0 ? (int) data.getTopks(0) : data.getScoresCount();
+            this.size = Math.min(hitCount, data.getScoresCount());
         }
 
-        // 构建搜索结果对象
-        int resultCount = ids.size();
-        for (int i = 0; i < resultCount; i++) {
-            SearchResult result = new SearchResult();
-            result.setScore(scores.size() > i ? (float) scores.get(i) : 0.0f);
+        public static SearchHits empty() {
+            return EMPTY;
+        }
 
-            // 设置内容
-            List<String> contents = fieldValues.get(CONTENT_FIELD);
-            if (contents != null && contents.size() > i) {
-                result.setContent(contents.get(i));
-            }
+        public int size() {
+            return size;
+        }
 
-            // 设置元数据
-            List<String> metadataList = fieldValues.get(METADATA_FIELD);
-            if (metadataList != null && metadataList.size() > i) {
-                result.setMetadata(metadataList.get(i));
-            }
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public float score(int index) {
+            return data.getScores(index);
+        }
 
-            // 设置数据源
-            List<String> sources = fieldValues.get(SOURCE_FIELD);
-            if (sources != null && sources.size() > i) {
-                result.setSource(sources.get(i));
+        /**
+         * 命中文档主键，可用于去重和缓存；无整型主键时返回 -1
+         */
+        public long id(int index) {
+            if (!data.getIds().hasIntId() || index >= data.getIds().getIntId().getDataCount()) {
+                return -1L;
             }
+            return data.getIds().getIntId().getData(index);
+        }
 
-            results.add(result);
+        public String content(int index) {
+            return stringAt(contentField, index);
         }
 
-        return results;
-    }
+        public String metadata(int index) {
+            return stringAt(metadataField, index);
+        }
+
+        public String source(int index) {
+            return stringAt(sourceField, index);
+        }
+
+        /**
+         * 物化单个命中
+         */
+        public SearchResult materialize(int index) {
+            SearchResult result = new SearchResult();
+            long id = id(index);
+            result.setId(id >= 0 ? id : null);
+            result.setScore(score(index));
+            result.setContent(content(index));
+            result.setMetadata(metadata(index));
+            result.setSource(source(index));
+            return result;
+        }
 
+        /**
+         * 物化全部命中
+         */
+        public List<SearchResult> materializeAll() {
+            List<SearchResult> results = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                results.add(materialize(i));
+            }
+            return results;
+        }
 
+        private static String stringAt(FieldData fieldData, int index) {
+            if (fieldData == null) {
+                return null;
+            }
+            var stringData = fieldData.getScalars().getStringData();
+            return index < stringData.getDataCount() ? stringData.getData(index) : null;
+        }
+    }
 
     /**
      * 文档信息类
@@ -381,12 +929,15 @@ public class VectorStoreService {
      * 搜索结果类
      */
     public static class SearchResult {
+        private Long id;
         private float score;
         private String content;
         private String metadata;
         private String source;
 
         // Getters and Setters
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
         public float getScore() { return score; }
         public void setScore(float score) { this.score = score; }
         public String getContent() { return content; }
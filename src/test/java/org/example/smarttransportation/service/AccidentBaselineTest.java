@@ -0,0 +1,88 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccidentBaselineTest {
+
+    private static final SpatialGrid GRID = new SpatialGrid(400, 40.75);
+
+    @Test
+    void hourOfWeekRatesAverageOverOccurrences() {
+        // 2024-02-05 与 2024-02-12 都是周一
+        AccidentBaseline.Builder builder = new AccidentBaseline.Builder(GRID, LocalDate.of(2024, 2, 5),
+            LocalDate.of(2024, 2, 18));
+        builder.addHourly(LocalDate.of(2024, 2, 5), 8, 6);
+        builder.addHourly(LocalDate.of(2024, 2, 12), 8, 4);
+        builder.addHourly(LocalDate.of(2024, 2, 13), -1, 48);
+        builder.addHourly(LocalDate.of(2024, 3, 1), 8, 100);
+        AccidentBaseline baseline = builder.build(1);
+
+        assertEquals(58, baseline.getTotalAccidents());
+        assertEquals(5.0, baseline.expectedInHour(LocalDateTime.of(2024, 2, 19, 8, 30)), 1e-9);
+        assertEquals(1.0, baseline.getHourlyRate(AccidentBaseline.hourOfWeek(DayOfWeek.TUESDAY, 3)), 1e-9);
+        // 两周共 58 起，任意连续 7 天的期望都是 29
+        assertEquals(29.0, baseline.expectedCount(LocalDate.of(2024, 2, 7), LocalDate.of(2024, 2, 13)), 1e-9);
+        assertEquals(58.0, baseline.expectedCount(LocalDate.of(2024, 2, 5), LocalDate.of(2024, 2, 18)), 1e-9);
+        assertEquals(5.0, baseline.expectedCount(LocalDate.of(2024, 2, 12), LocalDate.of(2024, 2, 12)), 1e-9);
+    }
+
+    @Test
+    void expectationsOnlyCoverDaysWithData() {
+        AccidentBaseline.Builder builder = new AccidentBaseline.Builder(GRID, LocalDate.of(2024, 2, 5),
+            LocalDate.of(2024, 2, 18));
+        builder.addHourly(LocalDate.of(2024, 2, 5), 8, 6);
+        builder.addHourly(LocalDate.of(2024, 2, 12), 8, 4);
+        builder.addHourly(LocalDate.of(2024, 2, 13), -1, 48);
+        builder.addLocation(40.7571, -73.9857, 28);
+        AccidentBaseline baseline = builder.build(1);
+
+        // 事故统计窗口 [目标日 - 30, 目标日 + 1] 跨过数据末尾，只有 2/12 至 2/18 的 7 天有数据
+        LocalDate target = LocalDate.of(2024, 3, 13);
+        assertEquals(29.0, baseline.expectedCount(target.minusDays(30), target.plusDays(1)), 1e-9);
+        assertEquals(7, baseline.coveredDays(target.minusDays(30), target.plusDays(1)));
+        // 窗口跨过数据开头：2/5 至 2/6 两天，周一 5 起、周二 24 起
+        assertEquals(29.0, baseline.expectedCount(LocalDate.of(2024, 1, 20), LocalDate.of(2024, 2, 6)), 1e-9);
+        assertEquals(2, baseline.coveredDays(LocalDate.of(2024, 1, 20), LocalDate.of(2024, 2, 6)));
+        // 完全没有数据的窗口期望为 0
+        assertEquals(0.0, baseline.expectedCount(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 10)), 1e-9);
+        assertEquals(0, baseline.coveredDays(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 10)));
+        assertEquals(14.0, baseline.expectedInCell(GRID.cellOf(40.7571, -73.9857),
+            baseline.coveredDays(target.minusDays(30), target.plusDays(1))), 1e-9);
+    }
+
+    @Test
+    void cellRatesUseGridCells() {
+        AccidentBaseline.Builder builder = new AccidentBaseline.Builder(GRID, LocalDate.of(2024, 2, 1),
+            LocalDate.of(2024, 2, 10));
+        builder.addLocation(40.7571, -73.9857, 15);
+        builder.addLocation(null, -73.9857, 3);
+        AccidentBaseline baseline = builder.build(1);
+
+        assertEquals(1, baseline.getCellCount());
+        assertEquals(48.0, baseline.expectedInCell(GRID.cellOf(40.7571, -73.9857), 32), 1e-9);
+        assertEquals(0.0, baseline.expectedInCell(GRID.cellOf(40.70, -74.01), 32), 1e-9);
+    }
+
+    @Test
+    void poissonTailMatchesExactValues() {
+        assertEquals(0.0, AccidentBaseline.logGamma(1), 1e-12);
+        assertEquals(Math.log(24), AccidentBaseline.logGamma(5), 1e-12);
+
+        // P(X >= 1) = 1 - e^-2, P(X >= 5) = 1 - e^-2 (1 + 2 + 2 + 4/3 + 2/3)
+        assertEquals(1 - Math.exp(-2), AccidentBaseline.poissonUpperTail(1, 2), 1e-12);
+        assertEquals(1 - Math.exp(-2) * 7, AccidentBaseline.poissonUpperTail(5, 2), 1e-12);
+        assertEquals(1.0, AccidentBaseline.poissonUpperTail(0, 2), 1e-12);
+
+        // 期望很大时不下溢：高出 4 个标准差的上尾概率约为 3e-5
+        double tail = AccidentBaseline.poissonUpperTail(3220, 3000);
+        assertTrue(tail > 1e-5 && tail < 1e-4, "tail=" + tail);
+        assertEquals(4.0166, AccidentBaseline.zScore(3220, 3000), 1e-3);
+        assertEquals(0.0, AccidentBaseline.zScore(5, 0), 1e-12);
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarQueryTest {
+
+    private static final String[] BOROUGHS = {"BROOKLYN", "QUEENS", null, "BRONX"};
+
+    private static ForkJoinPool pool;
+    private static ColumnarTable table;
+    private static long[] expectedCounts;
+    private static long expectedBrooklynInjured;
+    private static long expectedSevere;
+
+    @BeforeAll
+    static void setUp() {
+        pool = new ForkJoinPool(4);
+        ColumnarTable.Builder builder = ColumnarTable.builder("nyc_traffic_accidents")
+            .column("borough", ColumnarTable.Type.DICTIONARY)
+            .column("crash_date", ColumnarTable.Type.EPOCH_MINUTE)
+            .column("number_of_persons_injured", ColumnarTable.Type.INT)
+            .column("number_of_persons_killed", ColumnarTable.Type.INT);
+
+        // 随机数据，同时逐行统计期望值
+        Random random = new Random(42);
+        expectedCounts = new long[BOROUGHS.length];
+        for (int i = 0; i < 200_000; i++) {
+            int borough = random.nextInt(BOROUGHS.length);
+            LocalDate date = LocalDate.of(2024, 2, 1).plusDays(random.nextInt(29));
+            Integer injured = random.nextInt(10) == 0 ? null : random.nextInt(5);
+            int killed = random.nextInt(50) == 0 ? 1 : 0;
+            builder.append(BOROUGHS[borough], date, injured, killed);
+
+            if (date.getDayOfMonth() >= 10 && date.getDayOfMonth() <= 12) {
+                expectedCounts[borough]++;
+                if (borough == 0 && injured != null) {
+                    expectedBrooklynInjured += injured;
+                }
+                if (killed > 0 || (injured != null && injured >= 3)) {
+                    expectedSevere++;
+                }
+            }
+        }
+        table = builder.build();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void testGroupByMatchesRowByRowCount() {
+        ColumnarResult result = ColumnarQuery.from("nyc_traffic_accidents")
+            .where(ColumnarQuery.dateRange("crash_date", LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 12)))
+            .groupBy("borough").count().sum("number_of_persons_injured")
+            .execute(table, pool, 4096);
+
+        assertEquals(BOROUGHS.length, result.getRowCount());
+        for (Object[] row : result.getRows()) {
+            int index = java.util.Arrays.asList(BOROUGHS).indexOf(row[0]);
+            assertEquals(expectedCounts[index], row[1]);
+            if ("BROOKLYN".equals(row[0])) {
+                assertEquals(expectedBrooklynInjured, row[2]);
+            }
+        }
+        // 默认按分组列升序，NULL 在前
+        assertNull(result.getValue(0, 0));
+        assertEquals("BRONX", result.getValue(1, 0));
+    }
+
+    @Test
+    void testOrFilterAndCaseInsensitiveMatch() {
+        ColumnarResult severe = ColumnarQuery.from("nyc_traffic_accidents")
+            .where(ColumnarQuery.dateRange("crash_date", LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 12)))
+            .where(ColumnarQuery.atLeast("number_of_persons_killed", 1)
+                .or(ColumnarQuery.atLeast("number_of_persons_injured", 3)))
+            .count()
+            .execute(table, pool, 4096);
+        assertEquals(expectedSevere, severe.getLong(0, 0));
+
+        ColumnarResult brooklyn = ColumnarQuery.from("nyc_traffic_accidents")
+            .where(ColumnarQuery.equalTo("borough", "brooklyn"))
+            .where(ColumnarQuery.timeRange("crash_date", LocalDateTime.of(2024, 2, 10, 0, 0), LocalDateTime.of(2024, 2, 13, 0, 0)))
+            .count()
+            .execute(table, pool, 4096);
+        assertEquals(expectedCounts[0], brooklyn.getLong(0, 0));
+    }
+
+    @Test
+    void testOrderLimitAndEmptyAggregate() {
+        ColumnarResult daily = ColumnarQuery.from("nyc_traffic_accidents")
+            .groupByDay("crash_date").count().as("accidents")
+            .orderBy(1, true).limit(3)
+            .execute(table, pool, 4096);
+        assertEquals(3, daily.getRowCount());
+        assertEquals("accidents", daily.getColumns().get(1));
+        assertTrue(daily.getLong(0, 1) >= daily.getLong(1, 1));
+        assertInstanceOf(LocalDate.class, daily.getValue(0, 0));
+
+        // 无分组时与 SQL 一致返回一行
+        ColumnarResult empty = ColumnarQuery.from("nyc_traffic_accidents")
+            .where(ColumnarQuery.equalTo("borough", "STATEN ISLAND"))
+            .count().sum("number_of_persons_injured")
+            .execute(table, pool, 4096);
+        assertEquals(1, empty.getRowCount());
+        assertEquals(0L, empty.getValue(0, 0));
+        assertNull(empty.getValue(0, 1));
+    }
+
+    @Test
+    void testRejectInvalidAggregates() {
+        assertThrows(IllegalArgumentException.class, () -> ColumnarQuery.from("nyc_traffic_accidents")
+            .sum("borough").execute(table, pool, 4096));
+        assertThrows(IllegalArgumentException.class, () -> ColumnarQuery.from("nyc_traffic_accidents")
+            .max("borough").execute(table, pool, 4096));
+        assertThrows(IllegalArgumentException.class, () -> ColumnarQuery.from("nyc_traffic_accidents")
+            .groupBy("missing").count().execute(table, pool, 4096));
+    }
+}
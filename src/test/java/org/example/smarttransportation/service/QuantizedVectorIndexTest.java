@@ -0,0 +1,98 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 1536;
+
+    @Test
+    void testKernels() {
+        long[] a = {0b1011L, -1L};
+        long[] b = {0b0001L, 0L};
+        assertEquals(2 + 64, EmbeddingQuantizer.hamming(a, 0, b, 0, 2));
+
+        byte[] x = {1, -2, 3, 4, 5};
+        byte[] y = {5, 4, 3, -2, 1};
+        assertEquals(5 - 8 + 9 - 8 + 5, EmbeddingQuantizer.dotInt8(x, 0, y, 0, 5));
+
+        float[] vector = new float[130];
+        vector[0] = 1f;
+        vector[64] = 0.5f;
+        vector[129] = -0.5f;
+        long[] words = new long[EmbeddingQuantizer.binaryWords(vector.length)];
+        EmbeddingQuantizer.quantizeBinary(vector, words);
+        assertArrayEquals(new long[]{1L, 1L, 0L}, words);
+    }
+
+    @Test
+    void testSearchFindsNearestNeighbours() {
+        Random random = new Random(7);
+        List<List<Float>> corpus = clusteredVectors(random, 2000, 40);
+
+        QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, true);
+        corpus.forEach(index::add);
+
+        List<QuantizedVectorIndex.Hit> hits = index.search(corpus.get(123), 10, 100);
+        assertEquals(10, hits.size());
+        assertEquals(123, hits.get(0).getSlot());
+        assertEquals(1.0f, hits.get(0).getScore(), 1e-4);
+        assertThrows(IllegalArgumentException.class, () -> index.add(new float[8]));
+    }
+
+    @Test
+    void testBenchmarkRecallAndMemory() {
+        Random random = new Random(42);
+        List<List<Float>> corpus = clusteredVectors(random, 2000, 40);
+        List<List<Float>> queries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            queries.add(corpus.get(random.nextInt(corpus.size())));
+        }
+
+        QuantizationBenchmark.Report report = new QuantizationBenchmark(new EmbeddingService())
+            .run(corpus, queries, 10, 10);
+
+        assertEquals(2000, report.getCorpusSize());
+        assertEquals(50, report.getQueryCount());
+        assertEquals(2000L * DIMENSION * Float.BYTES, report.getFloatBytes());
+        assertEquals(2000L * (DIMENSION + Float.BYTES), report.getInt8Bytes());
+        assertEquals(2000L * (DIMENSION / 64) * Long.BYTES, report.getBinaryBytes());
+        assertEquals(report.getBinaryBytes() + report.getInt8Bytes(), report.getIndexBytes());
+        assertEquals(1.0 - (double) report.getIndexBytes() / report.getFloatBytes(), report.getMemorySavedRatio(), 1e-9);
+        assertTrue(report.getMemorySavedRatio() > 0.7);
+
+        assertTrue(report.getBinaryRecall() > 0 && report.getBinaryRecall() <= 1.0);
+        assertTrue(report.getFloatRecall() <= 1.0);
+        assertTrue(report.getInt8Recall() >= report.getBinaryRecall());
+        assertTrue(report.getInt8Recall() > 0.9);
+        assertTrue(report.getFloatRecall() > 0.95);
+    }
+
+    /**
+     * 生成围绕若干中心分布的向量，近似真实文本向量的聚簇特性
+     */
+    private List<List<Float>> clusteredVectors(Random random, int count, int clusters) {
+        float[][] centers = new float[clusters][DIMENSION];
+        for (float[] center : centers) {
+            for (int i = 0; i < DIMENSION; i++) {
+                center[i] = (float) random.nextGaussian();
+            }
+        }
+        List<List<Float>> vectors = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            float[] center = centers[n % clusters];
+            List<Float> vector = new ArrayList<>(DIMENSION);
+            for (int i = 0; i < DIMENSION; i++) {
+                vector.add(center[i] + (float) random.nextGaussian() * 0.8f);
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionTemplateTest {
+
+    private static final Map<String, String> STATIONS = Map.of("times sq-42 st", "Times Sq-42 St");
+
+    @Test
+    void testParseSlots() {
+        QuestionTemplate template = QuestionTemplate.parse("曼哈顿2月15日发生了多少起事故？", STATIONS);
+
+        assertEquals("{borough1}{date1}发生了多少起事故", template.getKey());
+        assertEquals("Manhattan", template.getSlots().get(0).getValue());
+        assertEquals("2024-02-15", template.getSlots().get(1).getValue());
+        assertEquals(template.getKey(), QuestionTemplate.parse("布鲁克林 2024-02-03 发生了多少起事故", STATIONS).getKey());
+    }
+
+    @Test
+    void testLearnAndFill() {
+        QuestionTemplate learned = QuestionTemplate.parse("曼哈顿2月15日发生了多少起事故", STATIONS);
+        QuestionTemplate.SqlTemplate sqlTemplate = learned.learn(
+            "SELECT COUNT(*) FROM nyc_traffic_accidents WHERE borough = 'MANHATTAN' AND crash_date = '2024-02-15'");
+        assertNotNull(sqlTemplate);
+
+        QuestionTemplate question = QuestionTemplate.parse("皇后区2月3日发生了多少起事故", STATIONS);
+        assertEquals("SELECT COUNT(*) FROM nyc_traffic_accidents WHERE borough = 'QUEENS' AND crash_date = '2024-02-03'",
+            sqlTemplate.fill(question.getSlots()));
+    }
+
+    @Test
+    void testRejectUnboundSlots() {
+        QuestionTemplate station = QuestionTemplate.parse("Times Sq-42 St 2月的客流", STATIONS);
+        assertEquals(QuestionTemplate.SlotType.STATION, station.getSlots().get(0).getType());
+
+        // SQL 中未出现站点名，说明结果不依赖该槽位，不能学习为模板
+        assertNull(station.learn("SELECT SUM(ridership) FROM subway_ridership"));
+    }
+
+    @Test
+    void testRejectDerivedLiterals() {
+        QuestionTemplate question = QuestionTemplate.parse("曼哈顿2月15日发生了多少起事故", STATIONS);
+
+        // 次日、月份由日期槽位推算而来，填充其他日期时会保持不变
+        assertNull(question.learn("SELECT COUNT(*) FROM nyc_traffic_accidents WHERE borough = 'MANHATTAN' " +
+            "AND crash_date >= '2024-02-15' AND crash_date < '2024-02-16'"));
+        assertNull(question.learn("SELECT COUNT(*) FROM nyc_traffic_accidents WHERE borough = 'MANHATTAN' " +
+            "AND crash_date = '2024-02-15' AND MONTH(crash_date) = 2"));
+
+        // 槽位后的时刻与 LIMIT 不依赖槽位取值
+        QuestionTemplate.SqlTemplate template = question.learn("SELECT COUNT(*) FROM nyc_traffic_accidents " +
+            "WHERE borough = 'MANHATTAN' AND crash_date BETWEEN '2024-02-15 00:00:00' AND '2024-02-15 23:59:59' LIMIT 100");
+        assertNotNull(template);
+        assertEquals("SELECT COUNT(*) FROM nyc_traffic_accidents WHERE borough = 'BRONX' " +
+                "AND crash_date BETWEEN '2024-02-03 00:00:00' AND '2024-02-03 23:59:59' LIMIT 100",
+            template.fill(QuestionTemplate.parse("布朗克斯2月3日发生了多少起事故", STATIONS).getSlots()));
+
+        // 问题中原样出现的数字由模板键固定
+        QuestionTemplate top = QuestionTemplate.parse("曼哈顿伤亡超过3人的事故", STATIONS);
+        assertNotNull(top.learn("SELECT * FROM nyc_traffic_accidents WHERE borough = 'MANHATTAN' " +
+            "AND number_of_persons_injured > 3 LIMIT 10"));
+    }
+}
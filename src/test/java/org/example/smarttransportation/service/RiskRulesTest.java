@@ -0,0 +1,179 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RiskRulesTest {
+
+    @Test
+    void defaultRuleFileScoring() throws Exception {
+        RiskRules rules = loadDefaultRules();
+
+        assertEquals(8, rules.getRuleCount());
+        for (int hour = 0; hour < RiskCube.HOURS_PER_DAY; hour++) {
+            assertEquals((hour >= 7 && hour <= 9) || (hour >= 17 && hour <= 19), rules.isRushHour(hour));
+        }
+        assertEquals(0, rules.weatherScore(false, false, false));
+        assertEquals(75, rules.weatherScore(true, true, true));
+        assertEquals(55, rules.weatherScore(true, true, false));
+        assertEquals(25, rules.trafficScore(true, 10, 5, 0));
+        assertEquals(40, rules.trafficScore(true, 500, 6, 1.99));
+        assertEquals(60, rules.trafficScore(true, 11, 6, 2.0));
+        assertEquals(0, rules.eventScore(3, 0));
+        assertEquals(35, rules.eventScore(4, 1));
+    }
+
+    @Test
+    void levelsUseConfiguredThresholds() throws Exception {
+        RiskRules rules = loadDefaultRules();
+        assertEquals("一级风险", rules.level(70));
+        assertEquals("二级风险", rules.level(69));
+        assertEquals("二级风险", rules.level(50));
+        assertEquals("三级风险", rules.level(30));
+        assertEquals("四级风险", rules.level(29));
+    }
+
+    @Test
+    void rushHoursMergeIntoWindows() throws Exception {
+        List<int[]> windows = loadDefaultRules().rushHourWindows();
+        assertEquals(2, windows.size());
+        assertArrayEquals(new int[] {7, 10}, windows.get(0));
+        assertArrayEquals(new int[] {17, 20}, windows.get(1));
+
+        Map<String, Object> config = config(List.of(rule("snow", 10)));
+        config.put("rush-hours", List.of(23, 0, 5));
+        windows = RiskRules.compile(config, 1, "test").rushHourWindows();
+        assertEquals(3, windows.size());
+        assertArrayEquals(new int[] {0, 1}, windows.get(0));
+        assertArrayEquals(new int[] {23, 24}, windows.get(2));
+    }
+
+    @Test
+    void supportsAllComparisonOperators() {
+        Map<String, Object> config = config(List.of(
+            rule("accidents >= 10", 1), rule("accidents < 3", 2), rule("accidents <= 3", 4),
+            rule("accidents == 5", 8), rule("accidents != 5", 16), rule("high_density_stations > 0", 32),
+            rule("accident_z > 1.5", 64)));
+        RiskRules rules = RiskRules.compile(config, 1, "test");
+
+        assertEquals(2 + 4 + 16, rules.trafficScore(false, 2, 0, 0));
+        assertEquals(8, rules.trafficScore(false, 5, 0, 1.5));
+        assertEquals(1 + 16 + 32 + 64, rules.trafficScore(false, 10, 1, 1.6));
+        assertEquals(0, rules.weatherScore(true, true, true));
+    }
+
+    @Test
+    void fingerprintDependsOnlyOnContent() {
+        RiskRules first = RiskRules.compile(config(List.of(rule("snow", 10), rule("accidents > 3", 5))), 1, "a");
+        RiskRules reloaded = RiskRules.compile(config(List.of(rule("snow", 10), rule("accidents > 3", 5))), 7, "b");
+        RiskRules changed = RiskRules.compile(config(List.of(rule("snow", 10), rule("accidents > 3", 6))), 1, "a");
+
+        assertEquals(first.getFingerprint(), reloaded.getFingerprint());
+        assertNotEquals(first.getFingerprint(), changed.getFingerprint());
+        assertEquals(16, first.getFingerprint().length());
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        assertThrows(IllegalArgumentException.class,
+            () -> RiskRules.compile(config(List.of(rule("rain", 10))), 1, "test"));
+        assertThrows(IllegalArgumentException.class,
+            () -> RiskRules.compile(config(List.of(rule("accidents >> 3", 10))), 1, "test"));
+        assertThrows(IllegalArgumentException.class,
+            () -> RiskRules.compile(config(List.of(rule("snow", 100), rule("icing", 100))), 1, "test"));
+
+        Map<String, Object> unordered = config(List.of(rule("snow", 10)));
+        unordered.put("levels", Map.of("一级风险", 30, "二级风险", 50, "三级风险", 10));
+        assertThrows(IllegalArgumentException.class, () -> RiskRules.compile(unordered, 1, "test"));
+    }
+
+    @Test
+    void levelNamesAndTriggersComeFromRules() throws Exception {
+        RiskRules defaults = loadDefaultRules();
+        assertEquals(RiskRules.LEVELS, defaults.getLevelNames());
+        assertTrue(defaults.isWarningLevel("二级风险"));
+        assertFalse(defaults.isWarningLevel("三级风险"));
+        assertEquals(3, defaults.getHotspotStreetAccidents());
+        assertTrue(defaults.triggers(RiskRules.Input.ACCIDENT_Z, 2.0));
+        assertFalse(defaults.triggers(RiskRules.Input.ACCIDENT_Z, 1.99));
+        assertFalse(defaults.triggers(RiskRules.Input.HIGH_DENSITY_STATIONS, 5));
+        assertTrue(defaults.triggers(RiskRules.Input.ACTIVE_EVENTS, 4));
+
+        Map<String, Object> config = config(List.of(rule("high_density_stations >= 20", 15)));
+        config.put("level-names", List.of("红色预警", "橙色预警", "黄色预警", "蓝色预警"));
+        config.put("levels", Map.of("红色预警", 70, "橙色预警", 50, "黄色预警", 30));
+        config.put("hotspot-street-accidents", 8);
+        RiskRules renamed = RiskRules.compile(config, 2, "test");
+        assertEquals("橙色预警", renamed.level(55));
+        assertEquals("蓝色预警", renamed.level(0));
+        assertEquals(1, renamed.levelRank("橙色预警"));
+        assertTrue(renamed.isWarningLevel("红色预警"));
+        assertFalse(renamed.isWarningLevel("二级风险"));
+        assertEquals(8, renamed.getHotspotStreetAccidents());
+        assertFalse(renamed.triggers(RiskRules.Input.HIGH_DENSITY_STATIONS, 6));
+        assertTrue(renamed.triggers(RiskRules.Input.HIGH_DENSITY_STATIONS, 20));
+        assertNotEquals(RiskRules.compile(config(List.of(rule("high_density_stations >= 20", 15))), 2, "test")
+            .getFingerprint(), renamed.getFingerprint());
+
+        config.put("level-names", List.of("红色预警", "橙色预警", "黄色预警"));
+        assertThrows(IllegalArgumentException.class, () -> RiskRules.compile(config, 3, "test"));
+    }
+
+    @Test
+    void zoneLevelsUseRuleLevelNames() throws Exception {
+        RiskRules defaults = loadDefaultRules();
+        assertEquals("一级风险", defaults.gridZoneLevel(60));
+        assertEquals("二级风险", defaults.gridZoneLevel(59.9));
+        assertEquals("三级风险", defaults.gridZoneLevel(20));
+        assertEquals("一级风险", defaults.streetZoneLevel(11));
+        assertEquals("二级风险", defaults.streetZoneLevel(10));
+        assertEquals("三级风险", defaults.stationZoneLevel());
+
+        Map<String, Object> config = config(List.of(rule("snow", 30)));
+        config.put("level-names", List.of("红色预警", "橙色预警", "黄色预警", "蓝色预警"));
+        config.put("levels", Map.of("红色预警", 70, "橙色预警", 50, "黄色预警", 30));
+        config.put("grid-zone-levels", Map.of("橙色预警", 40));
+        config.put("street-zone-levels", Map.of("红色预警", 20));
+        RiskRules renamed = RiskRules.compile(config, 2, "test");
+        assertEquals("橙色预警", renamed.gridZoneLevel(90));
+        assertEquals("黄色预警", renamed.gridZoneLevel(39));
+        assertEquals("红色预警", renamed.streetZoneLevel(20));
+        assertEquals("橙色预警", renamed.streetZoneLevel(19));
+        assertEquals("黄色预警", renamed.stationZoneLevel());
+
+        config.put("grid-zone-levels", Map.of("黄色预警", 10));
+        assertThrows(IllegalArgumentException.class, () -> RiskRules.compile(config, 3, "test"));
+        config.put("grid-zone-levels", Map.of("红色预警", 30, "橙色预警", 40));
+        assertThrows(IllegalArgumentException.class, () -> RiskRules.compile(config, 3, "test"));
+    }
+
+    private RiskRules loadDefaultRules() throws Exception {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("risk-rules.yml")) {
+            assertNotNull(input);
+            Map<String, Object> config = new Yaml().load(input);
+            return RiskRules.compile(config, 1, "classpath:risk-rules.yml");
+        }
+    }
+
+    private static Map<String, Object> config(List<Map<String, Object>> rules) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rush-hours", List.of(7, 8, 9));
+        config.put("rules", rules);
+        config.put("levels", Map.of("一级风险", 70, "二级风险", 50, "三级风险", 30));
+        return config;
+    }
+
+    private static Map<String, Object> rule(String when, int points) {
+        Map<String, Object> rule = new LinkedHashMap<>();
+        rule.put("when", when);
+        rule.put("points", points);
+        return rule;
+    }
+}
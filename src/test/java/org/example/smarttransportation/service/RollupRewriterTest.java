@@ -0,0 +1,87 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupRewriterTest {
+
+    @Test
+    void testRewriteCountByBoroughToCoarsestRollup() {
+        String sql = RollupRewriter.rewrite(
+            "SELECT borough, COUNT(*) FROM nyc_traffic_accidents WHERE crash_date = '2024-02-15' GROUP BY borough LIMIT 100",
+            RollupService.ROLLUPS);
+
+        assertNotNull(sql);
+        assertTrue(sql.contains("FROM rollup_accident_borough_daily"));
+        assertTrue(sql.contains("SUM(row_count)"));
+        assertTrue(sql.contains("AS `COUNT(*)`"));
+        assertTrue(sql.endsWith("LIMIT 100"));
+    }
+
+    @Test
+    void testRewriteStreetAndDateFunctions() {
+        String street = RollupRewriter.rewrite(
+            "SELECT on_street_name, SUM(number_of_persons_injured) AS injured FROM nyc_traffic_accidents "
+                + "GROUP BY on_street_name ORDER BY injured DESC LIMIT 10",
+            RollupService.ROLLUPS);
+        assertNotNull(street);
+        assertTrue(street.contains("FROM rollup_accident_street_daily"));
+
+        String daily = RollupRewriter.rewrite(
+            "SELECT DATE(transit_timestamp) AS day, SUM(ridership) FROM subway_ridership "
+                + "WHERE station_complex = 'Times Sq-42 St' GROUP BY DATE(transit_timestamp)",
+            RollupService.ROLLUPS);
+        assertNotNull(daily);
+        assertTrue(daily.contains("FROM rollup_subway_station_daily"));
+        assertTrue(daily.contains("transit_date"));
+
+        String hourly = RollupRewriter.rewrite(
+            "SELECT HOUR(transit_timestamp) AS h, SUM(ridership) FROM subway_ridership GROUP BY HOUR(transit_timestamp)",
+            RollupService.ROLLUPS);
+        assertNotNull(hourly);
+        assertTrue(hourly.contains("FROM rollup_subway_station_hourly"));
+    }
+
+    @Test
+    void testKeepRawTableWhenNotEquivalent() {
+        // 明细查询
+        assertNull(RollupRewriter.rewrite(
+            "SELECT borough, on_street_name FROM nyc_traffic_accidents LIMIT 10", RollupService.ROLLUPS));
+        // 过滤字段不在汇总表中
+        assertNull(RollupRewriter.rewrite(
+            "SELECT borough, COUNT(*) FROM nyc_traffic_accidents WHERE vehicle_type_code1 = 'Taxi' GROUP BY borough",
+            RollupService.ROLLUPS));
+        // AVG 无法由汇总表等价计算
+        assertNull(RollupRewriter.rewrite(
+            "SELECT station_complex, AVG(ridership) FROM subway_ridership GROUP BY station_complex",
+            RollupService.ROLLUPS));
+        // 分钟级条件
+        assertNull(RollupRewriter.rewrite(
+            "SELECT COUNT(*) FROM citibike_trips_202402 WHERE started_at >= '2024-02-15 08:30:00'",
+            RollupService.ROLLUPS));
+    }
+
+    @Test
+    void testHourlyRollupOnlyForHourAlignedLiterals() {
+        String aligned = RollupRewriter.rewrite(
+            "SELECT station_complex, SUM(ridership) FROM subway_ridership "
+                + "WHERE transit_timestamp >= '2024-02-15 08:00:00' AND transit_timestamp < '2024-02-15 10:00' "
+                + "GROUP BY station_complex",
+            RollupService.ROLLUPS);
+        assertNotNull(aligned);
+        assertTrue(aligned.contains("FROM rollup_subway_station_hourly"));
+
+        assertNull(RollupRewriter.rewrite(
+            "SELECT station_complex, SUM(ridership) FROM subway_ridership "
+                + "WHERE transit_timestamp >= '2024-02-15 08:30:00' GROUP BY station_complex",
+            RollupService.ROLLUPS));
+        assertNull(RollupRewriter.rewrite(
+            "SELECT SUM(ridership) FROM subway_ridership "
+                + "WHERE transit_timestamp BETWEEN '2024-02-15 08:00:00' AND '2024-02-15 08:59:59'",
+            RollupService.ROLLUPS));
+        assertNull(RollupRewriter.rewrite(
+            "SELECT SUM(ridership) FROM subway_ridership WHERE transit_timestamp IN ('2024-02-15 08:00:00', '2024-02-15 08:15:00')",
+            RollupService.ROLLUPS));
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialRiskIndexTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 2, 1);
+    private static final int DAYS = 29;
+
+    private final SpatialGrid grid = new SpatialGrid(400, 40.75);
+
+    @Test
+    void neighbouringCellsShareOneGridStep() {
+        long cell = grid.cellOf(40.7580, -73.9855);
+        long north = grid.cellOf(40.7580 + 400 / 111_320.0, -73.9855);
+        assertEquals(SpatialGrid.rowOf(cell) + 1, SpatialGrid.rowOf(north));
+        assertEquals(SpatialGrid.colOf(cell), SpatialGrid.colOf(north));
+        assertTrue(SpatialGrid.colOf(cell) < 0);
+    }
+
+    @Test
+    void mergesStreetNameVariantsAndReportsCentroid() {
+        Map<SpatialRiskIndex.Source, SpatialRiskIndex.LayerBuilder> builders = builders();
+        SpatialRiskIndex.LayerBuilder accidents = builders.get(SpatialRiskIndex.Source.ACCIDENTS);
+        accidents.add(LocalDate.of(2024, 2, 10), 40.7570, -73.9855, 1, "BROADWAY");
+        accidents.add(LocalDate.of(2024, 2, 11), 40.7572, -73.9853, 1, "Broadway ");
+        accidents.add(LocalDate.of(2024, 2, 12), 40.7571, -73.9854, 1, " broadway");
+        accidents.add(LocalDate.of(2024, 2, 12), 40.7000, -74.0100, 1, "WATER STREET");
+
+        SpatialRiskIndex index = build(builders);
+        List<SpatialRiskIndex.Zone> zones = index.topZones(index.dayOf(LocalDate.of(2024, 2, 13)), 5, 0);
+
+        SpatialRiskIndex.Zone top = zones.get(0);
+        assertEquals("BROADWAY", top.getLabel());
+        assertEquals(3, top.getMetric(SpatialRiskIndex.Source.ACCIDENTS));
+        assertEquals(SpatialRiskIndex.Source.ACCIDENTS, top.getDominantSource());
+        assertEquals(40.7571, top.getLatitude(), 1e-6);
+        assertEquals(-73.9854, top.getLongitude(), 1e-6);
+        assertEquals(2, zones.size());
+    }
+
+    @Test
+    void countsOnlyTheStatisticsWindow() {
+        Map<SpatialRiskIndex.Source, SpatialRiskIndex.LayerBuilder> builders = builders();
+        SpatialRiskIndex.LayerBuilder events = builders.get(SpatialRiskIndex.Source.EVENTS);
+        events.add(LocalDate.of(2024, 2, 5), 40.7580, -73.9855, 1, "TIMES SQUARE");
+        builders.get(SpatialRiskIndex.Source.ACCIDENTS)
+            .add(LocalDate.of(2024, 1, 5), 40.7000, -74.0100, 1, "WATER STREET");
+
+        SpatialRiskIndex index = build(builders);
+        assertEquals(1, index.topZones(index.dayOf(LocalDate.of(2024, 2, 6)), 5, 0).size());
+        assertEquals(0, index.topZones(index.dayOf(LocalDate.of(2024, 2, 8)), 5, 0).size());
+        assertEquals(-1, index.dayOf(LocalDate.of(2024, 3, 1)));
+    }
+
+    @Test
+    void smoothingFavoursClustersOverIsolatedCells() {
+        Map<SpatialRiskIndex.Source, SpatialRiskIndex.LayerBuilder> builders = builders();
+        SpatialRiskIndex.LayerBuilder accidents = builders.get(SpatialRiskIndex.Source.ACCIDENTS);
+        double step = 400 / 111_320.0;
+        // 孤立单元 4 起事故；聚集区中心 3 起、北侧相邻单元 3 起
+        for (int i = 0; i < 4; i++) {
+            accidents.add(LocalDate.of(2024, 2, 10), 40.7000, -74.0100, 1, "ISOLATED");
+        }
+        for (int i = 0; i < 3; i++) {
+            accidents.add(LocalDate.of(2024, 2, 10), 40.7580, -73.9855, 1, "CLUSTER");
+            accidents.add(LocalDate.of(2024, 2, 10), 40.7580 + step, -73.9855, 1, "CLUSTER NORTH");
+        }
+
+        SpatialRiskIndex index = build(builders);
+        List<SpatialRiskIndex.Zone> zones = index.topZones(index.dayOf(LocalDate.of(2024, 2, 10)), 3, 0);
+        assertNotEquals("ISOLATED", zones.get(0).getLabel());
+        assertEquals("ISOLATED", zones.get(2).getLabel());
+    }
+
+    private Map<SpatialRiskIndex.Source, SpatialRiskIndex.LayerBuilder> builders() {
+        Map<SpatialRiskIndex.Source, SpatialRiskIndex.LayerBuilder> builders = new EnumMap<>(SpatialRiskIndex.Source.class);
+        for (SpatialRiskIndex.Source source : SpatialRiskIndex.Source.values()) {
+            builders.put(source, new SpatialRiskIndex.LayerBuilder(source, grid, START, DAYS));
+        }
+        return builders;
+    }
+
+    private SpatialRiskIndex build(Map<SpatialRiskIndex.Source, SpatialRiskIndex.LayerBuilder> builders) {
+        Map<SpatialRiskIndex.Source, SpatialRiskIndex.SourceLayer> layers = new EnumMap<>(SpatialRiskIndex.Source.class);
+        builders.forEach((source, builder) -> layers.put(source, builder.build()));
+        return new SpatialRiskIndex(grid, START, DAYS, layers);
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.smarttransportation.service;
+
+import org.example.smarttransportation.config.NL2SQLConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlGuardTest {
+
+    private SqlGuard sqlGuard;
+
+    @BeforeEach
+    void setUp() {
+        sqlGuard = new SqlGuard();
+        ReflectionTestUtils.setField(sqlGuard, "properties", new NL2SQLConfig.NL2SQLProperties());
+    }
+
+    @Test
+    void testAllowColumnsNamedLikeKeywords() {
+        String sql = sqlGuard.check("SELECT borough, created_at FROM complaints WHERE status = 'Closed'");
+
+        assertTrue(sql.toUpperCase().endsWith("LIMIT 100"));
+        assertTrue(sql.contains("created_at"));
+    }
+
+    @Test
+    void testCapLimit() {
+        String sql = sqlGuard.check("SELECT station_complex, ridership FROM subway_ridership LIMIT 100000");
+
+        assertTrue(sql.toUpperCase().endsWith("LIMIT 1000"));
+    }
+
+    @Test
+    void testAllowImplicitAliases() {
+        String sql = sqlGuard.check(
+            "SELECT borough, COUNT(*) cnt FROM nyc_traffic_accidents GROUP BY borough ORDER BY cnt DESC");
+        assertTrue(sql.contains("ORDER BY cnt DESC"));
+
+        sqlGuard.check("SELECT t.total FROM (SELECT SUM(ridership) total FROM subway_ridership) t");
+        assertThrows(IllegalArgumentException.class,
+            () -> sqlGuard.check("SELECT borough, COUNT(*) cnt FROM complaints GROUP BY borough ORDER BY password"));
+    }
+
+    @Test
+    void testExpandStarToAllowedColumns() {
+        String sql = sqlGuard.check("SELECT * FROM subway_ridership LIMIT 10");
+        assertTrue(sql.startsWith("SELECT borough, latitude, longitude, ridership, station_complex, station_complex_id"));
+        assertFalse(sql.contains("*"));
+
+        String qualified = sqlGuard.check("SELECT s.* FROM subway_ridership s LIMIT 10");
+        assertTrue(qualified.startsWith("SELECT s.borough, s.latitude"));
+
+        assertTrue(sqlGuard.check("SELECT COUNT(*) FROM complaints").contains("COUNT(*)"));
+        assertThrows(IllegalArgumentException.class, () -> sqlGuard.check(
+            "SELECT * FROM complaints c JOIN nyc_permitted_events e ON c.borough = e.event_borough"));
+        assertThrows(IllegalArgumentException.class,
+            () -> sqlGuard.check("SELECT t.* FROM (SELECT borough FROM complaints) t"));
+    }
+
+    @Test
+    void testAliasesOnlyReachOrderByAndOuterQueries() {
+        assertThrows(IllegalArgumentException.class,
+            () -> sqlGuard.check("SELECT borough AS password FROM complaints WHERE password = 'x'"));
+        assertThrows(IllegalArgumentException.class, () -> sqlGuard.check(
+            "SELECT c.password FROM complaints c, (SELECT borough AS password FROM complaints) t"));
+        sqlGuard.check("SELECT t.password FROM (SELECT borough AS password FROM complaints) t");
+        sqlGuard.check("WITH daily AS (SELECT DATE(created_at) d, COUNT(*) cnt FROM complaints GROUP BY DATE(created_at)) "
+            + "SELECT d, cnt FROM daily ORDER BY cnt DESC");
+    }
+
+    @Test
+    void testRejectOtherSchemas() {
+        assertThrows(IllegalArgumentException.class,
+            () -> sqlGuard.check("SELECT borough FROM otherdb.nyc_traffic_accidents"));
+        assertThrows(IllegalArgumentException.class, () -> sqlGuard.check("SELECT user FROM mysql.user"));
+
+        DataSourceProperties dataSource = new DataSourceProperties();
+        dataSource.setUrl("jdbc:mysql://localhost:3306/smart_transportation?useSSL=false");
+        ReflectionTestUtils.setField(sqlGuard, "dataSourceProperties", dataSource);
+        sqlGuard.check("SELECT borough FROM smart_transportation.nyc_traffic_accidents");
+        assertThrows(IllegalArgumentException.class,
+            () -> sqlGuard.check("SELECT borough FROM otherdb.nyc_traffic_accidents"));
+    }
+
+    @Test
+    void testRejectUnsafeStatements() {
+        assertThrows(IllegalArgumentException.class, () -> sqlGuard.check("DELETE FROM complaints"));
+        assertThrows(IllegalArgumentException.class, () -> sqlGuard.check("SELECT * FROM users"));
+        assertThrows(IllegalArgumentException.class, () -> sqlGuard.check("SELECT password FROM complaints"));
+        assertThrows(IllegalArgumentException.class,
+            () -> sqlGuard.check("SELECT * FROM complaints INTO OUTFILE '/tmp/x'"));
+    }
+}
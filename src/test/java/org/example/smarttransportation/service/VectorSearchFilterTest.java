@@ -0,0 +1,45 @@
+package org.example.smarttransportation.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorSearchFilterTest {
+
+    @Test
+    void testCompileFieldConditions() {
+        assertEquals("category == \"SOP\"", VectorSearchFilter.category().eq("SOP").toExpr());
+        assertEquals("category in [\"SOP\", \"专家知识\"]",
+            VectorSearchFilter.category().in("SOP", "专家知识").toExpr());
+        assertEquals("title like \"暴雪%\"", VectorSearchFilter.title().startsWith("暴雪").toExpr());
+        assertEquals("title like \"%手册%\"", VectorSearchFilter.title().contains("手册").toExpr());
+    }
+
+    @Test
+    void testCombineConditions() {
+        VectorSearchFilter filter = VectorSearchFilter.category().eq("SOP")
+            .or(VectorSearchFilter.title().contains("手册"));
+
+        assertEquals("(category == \"SOP\") or (title like \"%手册%\")", filter.toExpr());
+        assertEquals("not ((category == \"SOP\") or (title like \"%手册%\"))", filter.not().toExpr());
+    }
+
+    @Test
+    void testEscapeLiterals() {
+        assertEquals("title == \"a\\\"b\"", VectorSearchFilter.title().eq("a\"b").toExpr());
+        assertEquals("title like \"%100\\%%\"", VectorSearchFilter.title().contains("100%").toExpr());
+        assertThrows(IllegalArgumentException.class, () -> VectorSearchFilter.category().in());
+    }
+
+    @Test
+    void testKnowledgeTypeFilters() {
+        assertEquals("knowledge_type == \"sop\"", VectorSearchFilter.sopOrExpertKnowledge().toExpr());
+        assertEquals("knowledge_type == \"general\"", VectorSearchFilter.generalKnowledge().toExpr());
+
+        assertEquals(VectorSearchFilter.SOP_KNOWLEDGE, VectorSearchFilter.classifyKnowledge("暴雪应急 HandBook", "天气影响"));
+        assertEquals(VectorSearchFilter.SOP_KNOWLEDGE, VectorSearchFilter.classifyKnowledge("事故处置", "EXPERT"));
+        assertEquals(VectorSearchFilter.SOP_KNOWLEDGE, VectorSearchFilter.classifyKnowledge("《T-Agent行动手册》", null));
+        assertEquals(VectorSearchFilter.GENERAL_KNOWLEDGE, VectorSearchFilter.classifyKnowledge("2024年2月暴雪天气交通预警", "天气影响"));
+        assertEquals(VectorSearchFilter.GENERAL_KNOWLEDGE, VectorSearchFilter.classifyKnowledge(null, null));
+    }
+}